@@ -0,0 +1,231 @@
+package io.github.dankosik.investstarterdemojava;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.github.dankosik.starter.invest.processor.marketdata.BlockingCandleStreamProcessorAdapter;
+import io.github.dankosik.starter.invest.processor.marketdata.BlockingLastPriceStreamProcessorAdapter;
+import io.github.dankosik.starter.invest.processor.marketdata.BlockingOrderBookStreamProcessorAdapter;
+import io.github.dankosik.starter.invest.processor.marketdata.BlockingTradeStreamProcessorAdapter;
+import io.github.dankosik.starter.invest.processor.marketdata.CandleStreamProcessorAdapterFactory;
+import io.github.dankosik.starter.invest.processor.marketdata.LastPriceStreamProcessorAdapterFactory;
+import io.github.dankosik.starter.invest.processor.marketdata.OrderBookStreamProcessorAdapterFactory;
+import io.github.dankosik.starter.invest.processor.marketdata.TradeStreamProcessorAdapterFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Сравнение способов обработки одного события цепочкой хендлеров без сети:
+ * before-each хендлер, затем chainDepth хендлеров параллельно, затем after-each хендлер - так же как у @Handle* аннотаций.
+ * <ul>
+ *     <li>annotationAsync - @HandleAll* AsyncHandler через реестр и StreamProcessor самого стартера ({@link StarterDispatch})</li>
+ *     <li>annotationBlocking - @HandleAll* BlockingHandler через реестр и StreamProcessor самого стартера</li>
+ *     <li>asyncCommonPool - AsyncHandler с CompletableFuture.runAsync на каждое событие (как было в примерах)</li>
+ *     <li>asyncCompleted - AsyncHandler который работает в потоке стрима и возвращает завершенный future (как EventSink)</li>
+ *     <li>blockingVirtualThreads - BlockingHandler, каждый вызов в своем виртуальном потоке</li>
+ *     <li>adapterFactoryBlocking - Blocking*StreamProcessorAdapter из *StreamProcessorAdapterFactory.createBlockingHandler</li>
+ * </ul>
+ * Остальные варианты повторяют цепочку вручную и показывают цену самого способа вызова хендлера,
+ * annotation* - то, во что обходится диспетчеризация стартера с его корутинами.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="HandlerDispatchBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HandlerDispatchBenchmark {
+
+    private static final int EVENTS = 1024;
+
+    public enum EventType {TRADE, ORDER_BOOK, CANDLE, LAST_PRICE}
+
+    @Param({"TRADE", "ORDER_BOOK", "CANDLE", "LAST_PRICE"})
+    public EventType eventType;
+
+    @Param({"1", "4", "16"})
+    public int chainDepth;
+
+    private Object[] events;
+    private MarketDataResponse[] responses;
+    private int cursor;
+    private ExecutorService virtualThreads;
+    private Consumer<Object> adapter;
+    private StarterDispatch annotationAsync;
+    private StarterDispatch annotationBlocking;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        SyntheticMarketData data = new SyntheticMarketData(42, StarterDispatch.TICKERS.size());
+        events = new Object[EVENTS];
+        responses = new MarketDataResponse[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            int instrument = data.nextInstrument();
+            long time = i * 1_000_000L;
+            events[i] = switch (eventType) {
+                case TRADE -> data.trade(instrument, time);
+                case ORDER_BOOK -> data.orderBook(instrument, 20, time);
+                case CANDLE -> data.candle(instrument, SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE, time);
+                case LAST_PRICE -> data.lastPrice(instrument, time);
+            };
+            responses[i] = switch (eventType) {
+                case TRADE -> MarketDataResponse.newBuilder().setTrade((Trade) events[i]).build();
+                case ORDER_BOOK -> MarketDataResponse.newBuilder().setOrderbook((OrderBook) events[i]).build();
+                case CANDLE -> MarketDataResponse.newBuilder().setCandle((Candle) events[i]).build();
+                case LAST_PRICE -> MarketDataResponse.newBuilder().setLastPrice((LastPrice) events[i]).build();
+            };
+        }
+        virtualThreads = Executors.newVirtualThreadPerTaskExecutor();
+        adapter = createAdapter();
+        annotationAsync = new StarterDispatch(eventType, false, chainDepth, this::handle);
+        annotationBlocking = new StarterDispatch(eventType, true, chainDepth, this::handle);
+    }
+
+    @TearDown
+    public void tearDown() {
+        virtualThreads.close();
+        annotationAsync.close();
+        annotationBlocking.close();
+    }
+
+    @Benchmark
+    public void annotationAsync() {
+        annotationAsync.dispatch(nextResponse());
+    }
+
+    @Benchmark
+    public void annotationBlocking() {
+        annotationBlocking.dispatch(nextResponse());
+    }
+
+    @Benchmark
+    public void asyncCommonPool() {
+        Object event = nextEvent();
+        dispatchAsync(event, e -> CompletableFuture.runAsync(() -> handle(e)));
+    }
+
+    @Benchmark
+    public void asyncCompleted() {
+        Object event = nextEvent();
+        dispatchAsync(event, e -> {
+            handle(e);
+            return CompletableFuture.completedFuture(null);
+        });
+    }
+
+    @Benchmark
+    public void blockingVirtualThreads() {
+        Object event = nextEvent();
+        dispatchAsync(event, e -> CompletableFuture.runAsync(() -> handle(e), virtualThreads));
+    }
+
+    @Benchmark
+    public void adapterFactoryBlocking() {
+        Object event = nextEvent();
+        dispatchAsync(event, e -> CompletableFuture.runAsync(() -> adapter.accept(e), virtualThreads));
+    }
+
+    private void dispatchAsync(Object event, Function<Object, CompletableFuture<Void>> handler) {
+        handler.apply(event).join();
+        CompletableFuture<?>[] parallel = new CompletableFuture<?>[chainDepth];
+        for (int i = 0; i < chainDepth; i++) {
+            parallel[i] = handler.apply(event);
+        }
+        CompletableFuture.allOf(parallel).join();
+        handler.apply(event).join();
+    }
+
+    private MarketDataResponse nextResponse() {
+        MarketDataResponse response = responses[cursor];
+        cursor = (cursor + 1) & (EVENTS - 1);
+        return response;
+    }
+
+    private Object nextEvent() {
+        Object event = events[cursor];
+        cursor = (cursor + 1) & (EVENTS - 1);
+        return event;
+    }
+
+    /**
+     * Минимальная работа хендлера: достать цену и инструмент из события
+     */
+    private void handle(Object event) {
+        switch (event) {
+            case Trade trade -> {
+                blackhole.consume(trade.getInstrumentUid());
+                blackhole.consume(Prices.toScaled(trade.getPrice()));
+            }
+            case OrderBook orderBook -> {
+                blackhole.consume(orderBook.getInstrumentUid());
+                blackhole.consume(Prices.toScaled(orderBook.getBids(0).getPrice()));
+                blackhole.consume(Prices.toScaled(orderBook.getAsks(0).getPrice()));
+            }
+            case Candle candle -> {
+                blackhole.consume(candle.getInstrumentUid());
+                blackhole.consume(Prices.toScaled(candle.getClose()));
+            }
+            case LastPrice lastPrice -> {
+                blackhole.consume(lastPrice.getInstrumentUid());
+                blackhole.consume(Prices.toScaled(lastPrice.getPrice()));
+            }
+            default -> blackhole.consume(event);
+        }
+    }
+
+    private Consumer<Object> createAdapter() {
+        return switch (eventType) {
+            case TRADE -> {
+                BlockingTradeStreamProcessorAdapter tradeAdapter = TradeStreamProcessorAdapterFactory
+                        .withTickers(StarterDispatch.TICKERS)
+                        .createBlockingHandler(this::handle);
+                yield event -> tradeAdapter.process((Trade) event);
+            }
+            case ORDER_BOOK -> {
+                BlockingOrderBookStreamProcessorAdapter orderBookAdapter = OrderBookStreamProcessorAdapterFactory
+                        .withTickers(StarterDispatch.TICKERS)
+                        .createBlockingHandler(this::handle);
+                yield event -> orderBookAdapter.process((OrderBook) event);
+            }
+            case CANDLE -> {
+                BlockingCandleStreamProcessorAdapter candleAdapter = CandleStreamProcessorAdapterFactory
+                        .withSubscriptionInterval(SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+                        .withTickers(StarterDispatch.TICKERS)
+                        .createBlockingHandler(this::handle);
+                yield event -> candleAdapter.process((Candle) event);
+            }
+            case LAST_PRICE -> {
+                BlockingLastPriceStreamProcessorAdapter lastPriceAdapter = LastPriceStreamProcessorAdapterFactory
+                        .withTickers(StarterDispatch.TICKERS)
+                        .createBlockingHandler(this::handle);
+                yield event -> lastPriceAdapter.process((LastPrice) event);
+            }
+        };
+    }
+}
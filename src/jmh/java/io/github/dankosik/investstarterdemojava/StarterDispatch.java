@@ -0,0 +1,283 @@
+package io.github.dankosik.investstarterdemojava;
+
+import io.github.dankosik.investstarterdemojava.HandlerDispatchBenchmark.EventType;
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllCandles;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllLastPrices;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllOrderBooks;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllTrades;
+import io.github.dankosik.starter.invest.configuration.StreamProcessorsAutoConfiguration;
+import io.github.dankosik.starter.invest.contract.marketdata.candle.AsyncCandleHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.candle.BlockingCandleHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.lastprice.AsyncLastPriceHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.lastprice.BlockingLastPriceHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.AsyncOrderBookHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.BlockingOrderBookHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.BlockingTradeHandler;
+import io.github.dankosik.starter.invest.registry.marketdata.CandleHandlerRegistry;
+import io.github.dankosik.starter.invest.registry.marketdata.LastPriceHandlerRegistry;
+import io.github.dankosik.starter.invest.registry.marketdata.OrderBookHandlerRegistry;
+import io.github.dankosik.starter.invest.registry.marketdata.TradesHandlerRegistry;
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.context.support.GenericApplicationContext;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.core.InvestApi;
+import ru.tinkoff.piapi.core.stream.StreamProcessor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Диспетчеризация самого стартера без сети и без запуска приложения: *HandlerRegistry собирает хендлеры с @HandleAll*
+ * аннотациями из контекста, StreamProcessor из StreamProcessorsAutoConfiguration раскладывает по ним MarketDataResponse
+ * так же как при подписке.
+ * before-each и after-each хендлеры асинхронные как в демо, между ними chainDepth AsyncHandler или BlockingHandler.
+ * Стартер запускает хендлеры в корутинах и не ждет их, поэтому событие обработано когда отработали все chainDepth + 2
+ */
+final class StarterDispatch implements AutoCloseable {
+
+    /**
+     * Тикеры из аннотаций хендлеров, инструменты SyntheticMarketData с номерами 0..3
+     */
+    static final List<String> TICKERS = List.of("CRH4", "BRG4", "SBER", "LKOH");
+
+    private final GenericApplicationContext context = new GenericApplicationContext();
+    private final ManagedChannel channel = InProcessChannelBuilder.forName("handler-dispatch-benchmark").build();
+    private final AtomicLong handled = new AtomicLong();
+    private final StreamProcessor<MarketDataResponse> processor;
+    private final int handlersPerEvent;
+    private long expected;
+
+    StarterDispatch(EventType eventType, boolean blocking, int chainDepth, Consumer<Object> work) {
+        Consumer<Object> handler = event -> {
+            work.accept(event);
+            handled.incrementAndGet();
+        };
+        Class<?>[] classes = handlerClasses(eventType, blocking);
+        register(classes[0], 1, handler);
+        register(classes[1], chainDepth, handler);
+        register(classes[2], 1, handler);
+        context.refresh();
+        handlersPerEvent = chainDepth + 2;
+
+        Map<String, String> tickerToUid = new HashMap<>();
+        for (int i = 0; i < TICKERS.size(); i++) {
+            tickerToUid.put(TICKERS.get(i), SyntheticMarketData.instrumentUid(i));
+        }
+        var configuration = new StreamProcessorsAutoConfiguration(tickerToUid, List.of(), List.of(), List.of(),
+                List.of(InvestApi.createReadonly(channel).getInstrumentsService()));
+        processor = switch (eventType) {
+            case TRADE -> configuration.tradesStreamProcessor$invest_api_java_sdk_starter(
+                    new TradesHandlerRegistry(context, tickerToUid), List.of());
+            case ORDER_BOOK -> configuration.orderBookStreamProcessor$invest_api_java_sdk_starter(
+                    new OrderBookHandlerRegistry(context, tickerToUid), List.of());
+            case CANDLE -> configuration.candleStreamProcessor$invest_api_java_sdk_starter(
+                    new CandleHandlerRegistry(context, tickerToUid), List.of(), List.of());
+            case LAST_PRICE -> configuration.lastPriceStreamProcessor$invest_api_java_sdk_starter(
+                    new LastPriceHandlerRegistry(context, tickerToUid), List.of());
+        };
+    }
+
+    /**
+     * Отдает событие стартеру и ждет пока его обработают все хендлеры
+     */
+    void dispatch(MarketDataResponse response) {
+        expected += handlersPerEvent;
+        processor.process(response);
+        while (handled.get() < expected) {
+            Thread.onSpinWait();
+        }
+    }
+
+    @Override
+    public void close() {
+        context.close();
+        channel.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void register(Class<?> handlerClass, int count, Consumer<Object> handler) {
+        for (int i = 0; i < count; i++) {
+            context.registerBean(handlerClass.getSimpleName() + i, (Class<Object>) handlerClass, () -> newHandler(handlerClass, handler));
+        }
+    }
+
+    private static Object newHandler(Class<?> handlerClass, Consumer<Object> handler) {
+        try {
+            return handlerClass.getDeclaredConstructor(Consumer.class).newInstance(handler);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * before-each, хендлер цепочки, after-each
+     */
+    private static Class<?>[] handlerClasses(EventType eventType, boolean blocking) {
+        return switch (eventType) {
+            case TRADE -> new Class<?>[]{BeforeEachTrade.class, blocking ? BlockingTrade.class : AsyncTrade.class, AfterEachTrade.class};
+            case ORDER_BOOK -> new Class<?>[]{BeforeEachOrderBook.class, blocking ? BlockingOrderBook.class : AsyncOrderBook.class, AfterEachOrderBook.class};
+            case CANDLE -> new Class<?>[]{BeforeEachCandle.class, blocking ? BlockingCandle.class : AsyncCandle.class, AfterEachCandle.class};
+            case LAST_PRICE -> new Class<?>[]{BeforeEachLastPrice.class, blocking ? BlockingLastPrice.class : AsyncLastPrice.class, AfterEachLastPrice.class};
+        };
+    }
+
+    private static CompletableFuture<Void> completed(Consumer<Object> handler, Object event) {
+        handler.accept(event);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @HandleAllTrades(tickers = {"CRH4", "BRG4", "SBER", "LKOH"}, beforeEachTradesHandler = true)
+    record BeforeEachTrade(Consumer<Object> handler) implements AsyncTradeHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
+            return completed(handler, trade);
+        }
+    }
+
+    @HandleAllTrades(tickers = {"CRH4", "BRG4", "SBER", "LKOH"})
+    record AsyncTrade(Consumer<Object> handler) implements AsyncTradeHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
+            return completed(handler, trade);
+        }
+    }
+
+    @HandleAllTrades(tickers = {"CRH4", "BRG4", "SBER", "LKOH"})
+    record BlockingTrade(Consumer<Object> handler) implements BlockingTradeHandler {
+        @Override
+        public void handleBlocking(@NotNull Trade trade) {
+            handler.accept(trade);
+        }
+    }
+
+    @HandleAllTrades(tickers = {"CRH4", "BRG4", "SBER", "LKOH"}, afterEachTradesHandler = true)
+    record AfterEachTrade(Consumer<Object> handler) implements AsyncTradeHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
+            return completed(handler, trade);
+        }
+    }
+
+    @HandleAllOrderBooks(tickers = {"CRH4", "BRG4", "SBER", "LKOH"}, beforeEachOrderBookHandler = true)
+    record BeforeEachOrderBook(Consumer<Object> handler) implements AsyncOrderBookHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull OrderBook orderBook) {
+            return completed(handler, orderBook);
+        }
+    }
+
+    @HandleAllOrderBooks(tickers = {"CRH4", "BRG4", "SBER", "LKOH"})
+    record AsyncOrderBook(Consumer<Object> handler) implements AsyncOrderBookHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull OrderBook orderBook) {
+            return completed(handler, orderBook);
+        }
+    }
+
+    @HandleAllOrderBooks(tickers = {"CRH4", "BRG4", "SBER", "LKOH"})
+    record BlockingOrderBook(Consumer<Object> handler) implements BlockingOrderBookHandler {
+        @Override
+        public void handleBlocking(@NotNull OrderBook orderBook) {
+            handler.accept(orderBook);
+        }
+    }
+
+    @HandleAllOrderBooks(tickers = {"CRH4", "BRG4", "SBER", "LKOH"}, afterEachOrderBookHandler = true)
+    record AfterEachOrderBook(Consumer<Object> handler) implements AsyncOrderBookHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull OrderBook orderBook) {
+            return completed(handler, orderBook);
+        }
+    }
+
+    @HandleAllCandles(tickers = {"CRH4", "BRG4", "SBER", "LKOH"}, subscriptionInterval = SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE,
+            beforeEachCandleHandler = true)
+    record BeforeEachCandle(Consumer<Object> handler) implements AsyncCandleHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull Candle candle) {
+            return completed(handler, candle);
+        }
+    }
+
+    @HandleAllCandles(tickers = {"CRH4", "BRG4", "SBER", "LKOH"}, subscriptionInterval = SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+    record AsyncCandle(Consumer<Object> handler) implements AsyncCandleHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull Candle candle) {
+            return completed(handler, candle);
+        }
+    }
+
+    @HandleAllCandles(tickers = {"CRH4", "BRG4", "SBER", "LKOH"}, subscriptionInterval = SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+    record BlockingCandle(Consumer<Object> handler) implements BlockingCandleHandler {
+        @Override
+        public void handleBlocking(@NotNull Candle candle) {
+            handler.accept(candle);
+        }
+    }
+
+    @HandleAllCandles(tickers = {"CRH4", "BRG4", "SBER", "LKOH"}, subscriptionInterval = SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE,
+            afterEachCandleHandler = true)
+    record AfterEachCandle(Consumer<Object> handler) implements AsyncCandleHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull Candle candle) {
+            return completed(handler, candle);
+        }
+    }
+
+    @HandleAllLastPrices(tickers = {"CRH4", "BRG4", "SBER", "LKOH"}, beforeEachLastPriceHandler = true)
+    record BeforeEachLastPrice(Consumer<Object> handler) implements AsyncLastPriceHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull LastPrice lastPrice) {
+            return completed(handler, lastPrice);
+        }
+    }
+
+    @HandleAllLastPrices(tickers = {"CRH4", "BRG4", "SBER", "LKOH"})
+    record AsyncLastPrice(Consumer<Object> handler) implements AsyncLastPriceHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull LastPrice lastPrice) {
+            return completed(handler, lastPrice);
+        }
+    }
+
+    @HandleAllLastPrices(tickers = {"CRH4", "BRG4", "SBER", "LKOH"})
+    record BlockingLastPrice(Consumer<Object> handler) implements BlockingLastPriceHandler {
+        @Override
+        public void handleBlocking(@NotNull LastPrice lastPrice) {
+            handler.accept(lastPrice);
+        }
+    }
+
+    @HandleAllLastPrices(tickers = {"CRH4", "BRG4", "SBER", "LKOH"}, afterEachLastPriceHandler = true)
+    record AfterEachLastPrice(Consumer<Object> handler) implements AsyncLastPriceHandler {
+        @NotNull
+        @Override
+        public CompletableFuture<Void> handleAsync(@NotNull LastPrice lastPrice) {
+            return completed(handler, lastPrice);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package io.github.dankosik.investstarterdemojava;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Time-to-first-event: от запуска процесса до первого события replay, дошедшего до хендлера
+ * (строка "time-to-first-event" в логе приложения), приложение в отдельном процессе против in-process заглушки API.
+ * <ul>
+ *     <li>JVM - обычный запуск</li>
+ *     <li>JVM_CDS - с AppCDS архивом, записанным тренировочным запуском (-XX:ArchiveClassesAtExit, -Dspring.context.exit=onRefresh)</li>
+ *     <li>JVM_AOT - с AOT классами Spring (-Dspring.aot.enabled=true)</li>
+ *     <li>JVM_AOT_CDS - AOT и AppCDS вместе</li>
+ *     <li>NATIVE - native-image бинарник target/invest-starter-demo-java, только явно: -p launch=NATIVE</li>
+ * </ul>
+ * AOT и native режимы требуют сборки с профилем replay, условия бинов фиксируются при AOT обработке:
+ * mvn -Pnative -DskipTests package -Dspring-boot.aot.jvmArguments=-Dspring.profiles.active=replay (для NATIVE - native:compile).
+ * CDS не архивирует классы из каталогов, поэтому target/classes запускается упакованным в target/startup/app.jar.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="TimeToFirstEventBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TimeToFirstEventBenchmark {
+
+    private static final String FIRST_EVENT = "time-to-first-event: ";
+    private static final String AOT_INITIALIZER = "io/github/dankosik/investstarterdemojava/InvestStarterDemoJavaApplication__ApplicationContextInitializer.class";
+    private static final Path CLASSES = Path.of("target", "classes");
+    private static final Path NATIVE_IMAGE = Path.of("target", "invest-starter-demo-java");
+    private static final Path WORK = Path.of("target", "startup");
+    private static final List<String> APPLICATION_ARGS = List.of(
+            "--spring.profiles.active=replay",
+            "--server.port=0",
+            "--demo.replay.speed=0"
+    );
+
+    public enum Launch {JVM, JVM_CDS, JVM_AOT, JVM_AOT_CDS, NATIVE}
+
+    @Param({"JVM", "JVM_CDS", "JVM_AOT", "JVM_AOT_CDS"})
+    public Launch launch;
+
+    private List<String> command;
+    private Process process;
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException, InterruptedException {
+        Files.createDirectories(WORK);
+        if (launch == Launch.NATIVE) {
+            if (!Files.isExecutable(NATIVE_IMAGE)) {
+                throw new IllegalStateException(NATIVE_IMAGE + " не найден: mvn -Pnative -DskipTests native:compile "
+                        + "-Dspring-boot.aot.jvmArguments=-Dspring.profiles.active=replay (нужен GraalVM)");
+            }
+            command = concat(List.of(NATIVE_IMAGE.toString()), APPLICATION_ARGS);
+            return;
+        }
+        boolean aot = launch == Launch.JVM_AOT || launch == Launch.JVM_AOT_CDS;
+        if (aot && !Files.exists(CLASSES.resolve(AOT_INITIALIZER))) {
+            throw new IllegalStateException("нет AOT классов в " + CLASSES + ": mvn -Pnative -DskipTests package "
+                    + "-Dspring-boot.aot.jvmArguments=-Dspring.profiles.active=replay");
+        }
+        List<String> jvm = new ArrayList<>(List.of(javaExecutable(), "-cp", classpath()));
+        if (aot) {
+            jvm.add("-Dspring.aot.enabled=true");
+        }
+        if (launch == Launch.JVM_CDS || launch == Launch.JVM_AOT_CDS) {
+            Path archive = WORK.resolve(launch.name().toLowerCase() + ".jsa");
+            Files.deleteIfExists(archive);
+            List<String> training = new ArrayList<>(jvm);
+            training.add("-XX:ArchiveClassesAtExit=" + archive);
+            training.add("-Dspring.context.exit=onRefresh");
+            training.add(InvestStarterDemoJavaApplication.class.getName());
+            Process trainingRun = new ProcessBuilder(concat(training, APPLICATION_ARGS)).redirectErrorStream(true).start();
+            trainingRun.getInputStream().transferTo(OutputStream.nullOutputStream());
+            if (trainingRun.waitFor() != 0 || !Files.exists(archive)) {
+                throw new IllegalStateException("тренировочный запуск не записал " + archive);
+            }
+            jvm.add("-XX:SharedArchiveFile=" + archive);
+        }
+        jvm.add(InvestStarterDemoJavaApplication.class.getName());
+        command = concat(jvm, APPLICATION_ARGS);
+    }
+
+    @TearDown(Level.Invocation)
+    public void stop() throws InterruptedException {
+        process.destroyForcibly().waitFor();
+    }
+
+    @Benchmark
+    public String firstEvent() throws IOException {
+        process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        var output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+        Deque<String> tail = new ArrayDeque<>();
+        String line;
+        while ((line = output.readLine()) != null) {
+            if (line.contains(FIRST_EVENT)) {
+                return line;
+            }
+            tail.addLast(line);
+            if (tail.size() > 20) {
+                tail.removeFirst();
+            }
+        }
+        throw new IllegalStateException("приложение завершилось без первого события:\n" + String.join("\n", tail));
+    }
+
+    /**
+     * Каталог target/classes упаковывается в jar, остальные элементы classpath уже jar.
+     * Записи каталогов обязательны: без них сканирование компонентов Spring не находит классы приложения
+     */
+    private static String classpath() throws IOException {
+        Path jar = WORK.resolve("app.jar");
+        try (var out = new JarOutputStream(Files.newOutputStream(jar)); Stream<Path> files = Files.walk(CLASSES)) {
+            for (Path file : files.filter(file -> !file.equals(CLASSES)).sorted().toList()) {
+                String name = CLASSES.relativize(file).toString().replace(File.separatorChar, '/');
+                if (Files.isDirectory(file)) {
+                    out.putNextEntry(new JarEntry(name + "/"));
+                } else {
+                    out.putNextEntry(new JarEntry(name));
+                    Files.copy(file, out);
+                }
+                out.closeEntry();
+            }
+        }
+        String dependencies = Arrays.stream(System.getProperty("java.class.path").split(File.pathSeparator))
+                .filter(entry -> entry.endsWith(".jar"))
+                .collect(Collectors.joining(File.pathSeparator));
+        return jar + File.pathSeparator + dependencies;
+    }
+
+    private static String javaExecutable() {
+        return Path.of(System.getProperty("java.home"), "bin", "java").toString();
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        return Stream.concat(first.stream(), second.stream()).toList();
+    }
+}
@@ -0,0 +1,145 @@
+package io.github.dankosik.investstarterdemojava.account;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.MoneyValue;
+import ru.tinkoff.piapi.contract.v1.PortfolioPosition;
+import ru.tinkoff.piapi.contract.v1.PortfolioResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Счета по {@code positions} позиций из общего набора инструментов:
+ * <ul>
+ *     <li>tick - последняя цена через {@link AccountStateEngine}: переоценка только позиций с этим инструментом</li>
+ *     <li>tickFullRecompute - то же без состояния: пересчет сумм всех счетов по снимкам портфеля</li>
+ *     <li>snapshot - снимок портфеля, в котором изменилась одна позиция, сравнение с состоянием счета</li>
+ * </ul>
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="AccountStateEngineBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountStateEngineBenchmark {
+
+    private static final int INSTRUMENTS = 500;
+    private static final int TICKS = 4096;
+
+    @Param({"10"})
+    public int accounts;
+
+    @Param({"50", "200"})
+    public int positions;
+
+    private AccountStateEngine engine;
+    private PortfolioResponse[] portfolios;
+    private PortfolioResponse[] changedPortfolios;
+    private LastPrice[] ticks;
+    private long[] prices;
+    private final AccountTotals totals = new AccountTotals();
+    private int nextTick;
+    private int nextPortfolio;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        prices = new long[INSTRUMENTS];
+        for (int i = 0; i < INSTRUMENTS; i++) {
+            prices[i] = (10 + random.nextInt(1000)) * Prices.SCALE + random.nextInt(100) * 10_000_000L;
+        }
+        portfolios = new PortfolioResponse[accounts];
+        changedPortfolios = new PortfolioResponse[accounts];
+        for (int a = 0; a < accounts; a++) {
+            List<PortfolioPosition> list = new ArrayList<>();
+            int first = random.nextInt(INSTRUMENTS);
+            for (int p = 0; p < positions; p++) {
+                int instrument = (first + p) % INSTRUMENTS;
+                list.add(position(instrument, 1 + random.nextInt(100)));
+            }
+            portfolios[a] = PortfolioResponse.newBuilder().setAccountId("account" + a).addAllPositions(list).build();
+            int changed = random.nextInt(positions);
+            list.set(changed, position((first + changed) % INSTRUMENTS, 1000));
+            changedPortfolios[a] = PortfolioResponse.newBuilder().setAccountId("account" + a).addAllPositions(list).build();
+        }
+        ticks = new LastPrice[TICKS];
+        for (int i = 0; i < TICKS; i++) {
+            int instrument = random.nextInt(INSTRUMENTS);
+            ticks[i] = LastPrice.newBuilder()
+                    .setInstrumentUid(uid(instrument))
+                    .setPrice(Prices.toQuotation(prices[instrument] + random.nextInt(-100, 100) * 1_000_000L))
+                    .build();
+        }
+        engine = new AccountStateEngine(List.of(delta -> {
+        }), positions);
+        for (PortfolioResponse portfolio : portfolios) {
+            engine.onPortfolio(portfolio);
+        }
+    }
+
+    @Benchmark
+    public long tick() {
+        engine.onLastPrice(ticks[nextTick++ & (TICKS - 1)]);
+        engine.readTotals("account0", totals);
+        return totals.marketValue();
+    }
+
+    @Benchmark
+    public long tickFullRecompute() {
+        LastPrice tick = ticks[nextTick++ & (TICKS - 1)];
+        long price = Prices.toScaled(tick.getPrice());
+        long total = 0;
+        for (PortfolioResponse portfolio : portfolios) {
+            long value = 0;
+            for (PortfolioPosition position : portfolio.getPositionsList()) {
+                long mark = position.getInstrumentUid().equals(tick.getInstrumentUid())
+                        ? price : Prices.toScaled(position.getCurrentPrice());
+                value += Prices.multiply(Prices.toScaled(position.getQuantity()), mark);
+            }
+            total += value;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long snapshot() {
+        int index = nextPortfolio++;
+        PortfolioResponse[] source = (index / accounts & 1) == 0 ? changedPortfolios : portfolios;
+        engine.onPortfolio(source[index % accounts]);
+        return engine.deltaCount();
+    }
+
+    private PortfolioPosition position(int instrument, long quantity) {
+        MoneyValue price = MoneyValue.newBuilder()
+                .setCurrency("rub")
+                .setUnits(prices[instrument] / Prices.SCALE)
+                .setNano((int) (prices[instrument] % Prices.SCALE))
+                .build();
+        return PortfolioPosition.newBuilder()
+                .setInstrumentUid(uid(instrument))
+                .setQuantity(Prices.toQuotation(quantity * Prices.SCALE))
+                .setAveragePositionPrice(price)
+                .setCurrentPrice(price)
+                .build();
+    }
+
+    private static String uid(int instrument) {
+        return "instrument-" + instrument;
+    }
+}
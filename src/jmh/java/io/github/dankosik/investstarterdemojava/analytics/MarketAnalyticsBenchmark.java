@@ -0,0 +1,154 @@
+package io.github.dankosik.investstarterdemojava.analytics;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.contract.v1.TradeDirection;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одного события в {@link MarketAnalytics} на потоке всего рынка: 2000 инструментов, время идет вперед по 100µs
+ * (10 000 сделок в секунду), окно 5 минут заполнено заранее - в окне инструмента в среднем 1500 сделок.
+ * recompute - как это делают стратегии сейчас: список сделок за окно на инструмент и пересчет VWAP, дисбаланса и темпа
+ * по нему на каждой сделке. contended - один писатель и три читателя снимков тех же инструментов.
+ * С -prof gc видно что обновление и чтение не аллоцируют
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="MarketAnalyticsBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MarketAnalyticsBenchmark {
+
+    private static final int INSTRUMENTS = 2000;
+    private static final int EVENTS = 1 << 16;
+    private static final long STEP = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long WINDOW = TimeUnit.MINUTES.toNanos(5);
+
+    private String[] instrumentUids;
+    private String[] eventUids;
+    private long[] prices;
+    private long[] quantities;
+    private TradeDirection[] directions;
+    private long sequence;
+    private MarketAnalytics analytics;
+    private Map<String, ArrayDeque<Tick>> windows;
+
+    @State(Scope.Thread)
+    public static class Reader {
+        int cursor;
+        final AnalyticsSnapshot snapshot = new AnalyticsSnapshot();
+    }
+
+    @Setup
+    public void setUp() {
+        SyntheticMarketData data = new SyntheticMarketData(42, INSTRUMENTS);
+        instrumentUids = data.instrumentUids().toArray(String[]::new);
+        eventUids = new String[EVENTS];
+        prices = new long[EVENTS];
+        quantities = new long[EVENTS];
+        directions = new TradeDirection[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            Trade trade = data.trade(data.nextInstrument(), 0);
+            eventUids[i] = trade.getInstrumentUid();
+            prices[i] = Prices.toScaled(trade.getPrice());
+            quantities[i] = trade.getQuantity();
+            directions[i] = trade.getDirection();
+        }
+        analytics = new MarketAnalytics(Duration.ofNanos(WINDOW), 60);
+        windows = new HashMap<>();
+        for (long i = 0; i < WINDOW / STEP; i++) {
+            int index = (int) (sequence & (EVENTS - 1));
+            long time = sequence++ * STEP;
+            analytics.onTrade(eventUids[index], time, prices[index], quantities[index], directions[index]);
+            analytics.onLastPrice(eventUids[index], time, prices[index]);
+            windows.computeIfAbsent(eventUids[index], uid -> new ArrayDeque<>())
+                    .addLast(new Tick(time, prices[index], quantities[index], directions[index]));
+        }
+    }
+
+    @Benchmark
+    public void trade() {
+        int index = (int) (sequence & (EVENTS - 1));
+        analytics.onTrade(eventUids[index], sequence++ * STEP, prices[index], quantities[index], directions[index]);
+    }
+
+    @Benchmark
+    public void lastPrice() {
+        int index = (int) (sequence & (EVENTS - 1));
+        analytics.onLastPrice(eventUids[index], sequence++ * STEP, prices[index]);
+    }
+
+    @Benchmark
+    public long read(Reader reader) {
+        analytics.read(instrumentUids[reader.cursor++ % INSTRUMENTS], reader.snapshot);
+        return reader.snapshot.vwap();
+    }
+
+    /**
+     * Сделки за окно в списке на инструмент и пересчет статистики по списку на каждой сделке
+     */
+    @Benchmark
+    public void recompute(Blackhole blackhole) {
+        int index = (int) (sequence & (EVENTS - 1));
+        long time = sequence++ * STEP;
+        ArrayDeque<Tick> window = windows.computeIfAbsent(eventUids[index], uid -> new ArrayDeque<>());
+        window.addLast(new Tick(time, prices[index], quantities[index], directions[index]));
+        while (window.peekFirst().time() <= time - WINDOW) {
+            window.pollFirst();
+        }
+        double notional = 0;
+        long volume = 0;
+        long buyVolume = 0;
+        long sellVolume = 0;
+        for (Tick tick : window) {
+            notional += (double) tick.price() * tick.quantity();
+            volume += tick.quantity();
+            if (tick.direction() == TradeDirection.TRADE_DIRECTION_BUY) {
+                buyVolume += tick.quantity();
+            } else if (tick.direction() == TradeDirection.TRADE_DIRECTION_SELL) {
+                sellVolume += tick.quantity();
+            }
+        }
+        blackhole.consume(notional / volume);
+        blackhole.consume((double) (buyVolume - sellVolume) / Math.max(buyVolume + sellVolume, 1));
+        blackhole.consume(window.size() * 1e9 / WINDOW);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public void contendedTrade() {
+        trade();
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public long contendedRead(Reader reader) {
+        return read(reader);
+    }
+
+    private record Tick(long time, long price, long quantity, TradeDirection direction) {
+    }
+}
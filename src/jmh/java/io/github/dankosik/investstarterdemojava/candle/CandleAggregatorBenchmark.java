@@ -0,0 +1,67 @@
+package io.github.dankosik.investstarterdemojava.candle;
+
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость одного события в {@link CandleAggregator} по всем четырем таймфреймам, 500 инструментов,
+ * время событий идет вперед по 10ms так что бары регулярно закрываются.
+ * С -prof gc видно что обновление не аллоцирует
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="CandleAggregatorBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CandleAggregatorBenchmark {
+
+    private static final int EVENTS = 1 << 16;
+
+    private Trade[] trades;
+    private Candle[] candles;
+    private int cursor;
+    private CandleAggregator aggregator;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        SyntheticMarketData data = new SyntheticMarketData(42, 500);
+        trades = new Trade[EVENTS];
+        candles = new Candle[EVENTS];
+        long step = TimeUnit.MILLISECONDS.toNanos(10);
+        for (int i = 0; i < EVENTS; i++) {
+            trades[i] = data.trade(data.nextInstrument(), i * step);
+            candles[i] = data.candle(data.nextInstrument(), SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE, i * step);
+        }
+        aggregator = new CandleAggregator(List.of(Timeframe.values()), List.of(blackhole::consume),
+                Duration.ofSeconds(2), Duration.ofMinutes(5), 60);
+    }
+
+    @Benchmark
+    public void trade() {
+        aggregator.onTrade(trades[cursor++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public void minuteCandle() {
+        aggregator.onCandle(candles[cursor++ & (EVENTS - 1)]);
+    }
+}
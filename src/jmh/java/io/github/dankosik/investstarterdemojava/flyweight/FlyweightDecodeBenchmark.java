@@ -0,0 +1,143 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Разбор MarketDataResponse из байт, как они приходят из стрима, и чтение того что обычно нужно обработчику:
+ * <ul>
+ *     <li>generated* - MarketDataResponse.parseFrom, как в стартере, затем чтение через Quotation</li>
+ *     <li>flyweight* - {@link TradeView}/{@link OrderBookView} поверх тех же байт</li>
+ *     <li>*Trade - цена и объем сделки</li>
+ *     <li>*TopOfBook - спред по лучшим ценам, *FullBook - цены и объемы всех уровней</li>
+ * </ul>
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="FlyweightDecodeBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlyweightDecodeBenchmark {
+
+    private static final int MESSAGES = 1024;
+
+    @Param({"10", "50"})
+    public int depth;
+
+    private byte[][] trades;
+    private byte[][] orderBooks;
+    private InstrumentIndex instruments;
+    private final WireReader reader = new WireReader();
+    private final TradeView tradeView = new TradeView();
+    private final OrderBookView orderBookView = new OrderBookView();
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SyntheticMarketData data = new SyntheticMarketData(42, 100);
+        instruments = new InstrumentIndex(data.instrumentUids());
+        trades = new byte[MESSAGES][];
+        orderBooks = new byte[MESSAGES][];
+        for (int i = 0; i < MESSAGES; i++) {
+            int instrument = data.nextInstrument();
+            trades[i] = MarketDataResponse.newBuilder().setTrade(data.trade(instrument, i)).build().toByteArray();
+            orderBooks[i] = MarketDataResponse.newBuilder().setOrderbook(data.orderBook(instrument, depth, i)).build().toByteArray();
+        }
+    }
+
+    @Benchmark
+    public long generatedTrade() throws InvalidProtocolBufferException {
+        Trade trade = MarketDataResponse.parseFrom(trades[next++ & (MESSAGES - 1)]).getTrade();
+        return Prices.toScaled(trade.getPrice()) * trade.getQuantity() + trade.getInstrumentUid().length();
+    }
+
+    @Benchmark
+    public long flyweightTrade() {
+        TradeView trade = tradeView(trades[next++ & (MESSAGES - 1)]);
+        return trade.price() * trade.quantity() + trade.instrument();
+    }
+
+    @Benchmark
+    public long generatedTopOfBook() throws InvalidProtocolBufferException {
+        OrderBook orderBook = MarketDataResponse.parseFrom(orderBooks[next++ & (MESSAGES - 1)]).getOrderbook();
+        return Prices.toScaled(orderBook.getAsks(0).getPrice()) - Prices.toScaled(orderBook.getBids(0).getPrice());
+    }
+
+    @Benchmark
+    public long flyweightTopOfBook() {
+        OrderBookView orderBook = orderBookView(orderBooks[next++ & (MESSAGES - 1)]);
+        return orderBook.askPrice(0) - orderBook.bidPrice(0);
+    }
+
+    @Benchmark
+    public long generatedFullBook() throws InvalidProtocolBufferException {
+        OrderBook orderBook = MarketDataResponse.parseFrom(orderBooks[next++ & (MESSAGES - 1)]).getOrderbook();
+        long sum = 0;
+        for (int level = 0; level < orderBook.getBidsCount(); level++) {
+            sum += Prices.toScaled(orderBook.getBids(level).getPrice()) * orderBook.getBids(level).getQuantity();
+        }
+        for (int level = 0; level < orderBook.getAsksCount(); level++) {
+            sum += Prices.toScaled(orderBook.getAsks(level).getPrice()) * orderBook.getAsks(level).getQuantity();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long flyweightFullBook() {
+        OrderBookView orderBook = orderBookView(orderBooks[next++ & (MESSAGES - 1)]);
+        long sum = 0;
+        for (int level = 0; level < orderBook.bidCount(); level++) {
+            sum += orderBook.bidPrice(level) * orderBook.bidQuantity(level);
+        }
+        for (int level = 0; level < orderBook.askCount(); level++) {
+            sum += orderBook.askPrice(level) * orderBook.askQuantity(level);
+        }
+        return sum;
+    }
+
+    /**
+     * Тот же разбор верхнего уровня, что в {@link LightweightMarketDataStream}
+     */
+    private TradeView tradeView(byte[] message) {
+        reader.wrap(message, 0, message.length);
+        while (reader.nextField()) {
+            if (reader.fieldNumber() == MarketDataResponse.TRADE_FIELD_NUMBER) {
+                int offset = reader.readLengthDelimited();
+                return tradeView.wrap(message, offset, reader.length(), instruments);
+            }
+            reader.skipField();
+        }
+        throw new IllegalStateException("нет сделки");
+    }
+
+    private OrderBookView orderBookView(byte[] message) {
+        reader.wrap(message, 0, message.length);
+        while (reader.nextField()) {
+            if (reader.fieldNumber() == MarketDataResponse.ORDERBOOK_FIELD_NUMBER) {
+                int offset = reader.readLengthDelimited();
+                return orderBookView.wrap(message, offset, reader.length(), instruments);
+            }
+            reader.skipField();
+        }
+        throw new IllegalStateException("нет стакана");
+    }
+}
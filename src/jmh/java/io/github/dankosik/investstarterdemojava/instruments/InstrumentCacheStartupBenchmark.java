@@ -0,0 +1,102 @@
+package io.github.dankosik.investstarterdemojava.instruments;
+
+import io.github.dankosik.investstarterdemojava.InvestStarterDemoJavaApplication;
+import io.github.dankosik.investstarterdemojava.replay.FakeInvestApi;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время старта всего приложения в replay режиме, пока стартер ищет instrumentUid тикеров из аннотаций и фабрик адаптеров.
+ * Встроенный InstrumentsService отвечает с задержкой instrumentsLatency, как выгрузка списков инструментов из API.
+ * <ul>
+ *     <li>DISABLED - без кэша, каждый поиск тикера идет в API</li>
+ *     <li>COLD - кэш включен, снимка нет: одинаковые запросы объединяются, ответы пишутся в снимок</li>
+ *     <li>WARM - снимок есть и актуален: старт без обращения к InstrumentsService</li>
+ * </ul>
+ * instrumentRequests - сколько запросов дошло до InstrumentsService за один старт.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="InstrumentCacheStartupBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InstrumentCacheStartupBenchmark {
+
+    public enum Boot {DISABLED, COLD, WARM}
+
+    @Param({"DISABLED", "COLD", "WARM"})
+    public Boot boot;
+
+    @Param({"200ms"})
+    public String instrumentsLatency;
+
+    private Path file;
+    private ConfigurableApplicationContext context;
+
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Requests {
+
+        public long instrumentRequests;
+    }
+
+    @Setup(Level.Trial)
+    public void prepare() throws IOException {
+        file = Files.createTempDirectory("instrument-cache").resolve("instruments.cache");
+        if (boot == Boot.WARM) {
+            run().close();
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void deleteSnapshot() throws IOException {
+        if (boot == Boot.COLD) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        context.close();
+    }
+
+    @Benchmark
+    public ConfigurableApplicationContext start(Requests requests) {
+        context = run();
+        requests.instrumentRequests += context.getBean(FakeInvestApi.class).instruments().requestCount();
+        return context;
+    }
+
+    private ConfigurableApplicationContext run() {
+        return SpringApplication.run(InvestStarterDemoJavaApplication.class,
+                "--spring.profiles.active=replay",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                "--server.port=0",
+                "--demo.replay.events=1",
+                "--demo.replay.instrumentsLatency=" + instrumentsLatency,
+                "--demo.instruments.enabled=" + (boot != Boot.DISABLED),
+                "--demo.instruments.file=" + file);
+    }
+}
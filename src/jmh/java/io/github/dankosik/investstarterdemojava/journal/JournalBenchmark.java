@@ -0,0 +1,97 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Скорость записи в журнал и чтения из него в одном потоке: трейды и стаканы глубины depth по 500 инструментам.
+ * С -prof gc видно что запись не аллоцирует (gc.alloc.rate.norm около 0)
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="JournalBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+    private static final int EVENTS = 4096;
+
+    @Param({"10", "50"})
+    public int depth;
+
+    private Trade[] trades;
+    private OrderBook[] orderBooks;
+    private int cursor;
+    private Path directory;
+    private JournalWriter writer;
+    private JournalReader reader;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        SyntheticMarketData data = new SyntheticMarketData(42, 500);
+        trades = new Trade[EVENTS];
+        orderBooks = new OrderBook[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            trades[i] = data.trade(data.nextInstrument(), i);
+            orderBooks[i] = data.orderBook(data.nextInstrument(), depth, i);
+        }
+        directory = Files.createTempDirectory("journal-benchmark");
+        writer = new JournalWriter(directory, 256 * 1024 * 1024);
+        for (int i = 0; i < 200_000; i++) {
+            writer.append(orderBooks[i & (EVENTS - 1)]);
+        }
+        reader = new JournalReader(directory);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writer.close();
+        reader.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void appendTrade() {
+        writer.append(trades[cursor++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public void appendOrderBook() {
+        writer.append(orderBooks[cursor++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public long readOrderBook() {
+        if (!reader.next()) {
+            reader.close();
+            reader = new JournalReader(directory);
+            reader.next();
+        }
+        return reader.bidPrice(0) + reader.askQuantity(reader.askCount() - 1);
+    }
+}
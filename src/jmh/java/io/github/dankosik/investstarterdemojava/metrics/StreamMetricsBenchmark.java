@@ -0,0 +1,103 @@
+package io.github.dankosik.investstarterdemojava.metrics;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllTrades;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.BlockingTradeHandler;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стоимость метрик на одно событие, реестр - Prometheus с корзинами гистограмм:
+ * <ul>
+ *     <li>plainHandler - хендлер без метрик</li>
+ *     <li>meteredAsync / meteredBlocking - тот же хендлер в обертке {@link StreamMetrics}</li>
+ *     <li>streamReceived - учет события в стриме: счетчик по инструменту и задержка от биржи</li>
+ * </ul>
+ * gc.alloc.rate.norm у оберток должен совпадать с plainHandler.
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="StreamMetricsBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamMetricsBenchmark {
+
+    private static final int EVENTS = 1024;
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    @Param({"1", "16"})
+    public int sampleEvery;
+
+    private Trade[] trades;
+    private MarketDataResponse[] responses;
+    private AsyncTradeHandler plain;
+    private AsyncTradeHandler meteredAsync;
+    private BlockingTradeHandler meteredBlocking;
+    private StreamMetrics streamMetrics;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        SyntheticMarketData data = new SyntheticMarketData(42, 100);
+        trades = new Trade[EVENTS];
+        responses = new MarketDataResponse[EVENTS];
+        long now = EpochClock.nanos();
+        for (int i = 0; i < EVENTS; i++) {
+            trades[i] = data.trade(data.nextInstrument(), now);
+            responses[i] = MarketDataResponse.newBuilder().setTrade(trades[i]).build();
+        }
+        streamMetrics = new StreamMetrics(new PrometheusMeterRegistry(PrometheusConfig.DEFAULT), true, sampleEvery, true, 1000, true);
+        plain = trade -> DONE;
+        meteredAsync = streamMetrics.trades(Handler.class, plain);
+        meteredBlocking = streamMetrics.blockingTrades(Handler.class, trade -> {
+        });
+    }
+
+    @Benchmark
+    public CompletableFuture<Void> plainHandler() {
+        return plain.handleAsync(trades[next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public CompletableFuture<Void> meteredAsync() {
+        return meteredAsync.handleAsync(trades[next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public void meteredBlocking() {
+        meteredBlocking.handleBlocking(trades[next++ & (EVENTS - 1)]);
+    }
+
+    @Benchmark
+    public void streamReceived(Blackhole blackhole) {
+        MarketDataResponse response = responses[next++ & (EVENTS - 1)];
+        streamMetrics.received(response);
+        blackhole.consume(Prices.toEpochNanos(response.getTrade().getTime()));
+    }
+
+    @HandleAllTrades(beforeEachTradesHandler = true)
+    abstract static class Handler implements AsyncTradeHandler {
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.dankosik.investstarterdemojava.orderbook;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.tinkoff.piapi.contract.v1.Order;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Стаканы глубины 50 по сотням инструментов:
+ * <ul>
+ *     <li>update - наложение нового снимка на стакан в {@link OrderBookStore}</li>
+ *     <li>protobufSpread / protobufWeightedMid - то же что читают стратегии, но напрямую из OrderBook (перевод Quotation на каждый запрос)</li>
+ *     <li>storeSpread / storeWeightedMid - чтение из {@link OrderBookStore}</li>
+ *     <li>contended - 1 писатель и 3 читателя одновременно по одним и тем же стаканам</li>
+ * </ul>
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="OrderBookStoreBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderBookStoreBenchmark {
+
+    private static final int SNAPSHOTS = 8192;
+    private static final int DEPTH = 50;
+
+    @Param({"100", "500"})
+    public int instruments;
+
+    private OrderBook[] snapshots;
+    private String[] instrumentUids;
+    private OrderBookStore store;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        final TopOfBook top = new TopOfBook();
+    }
+
+    @Setup
+    public void setUp() {
+        SyntheticMarketData data = new SyntheticMarketData(42, instruments);
+        snapshots = new OrderBook[SNAPSHOTS];
+        for (int i = 0; i < SNAPSHOTS; i++) {
+            snapshots[i] = data.orderBook(data.nextInstrument(), DEPTH, i);
+        }
+        instrumentUids = data.instrumentUids().toArray(String[]::new);
+        store = new OrderBookStore(DEPTH);
+        for (OrderBook snapshot : snapshots) {
+            store.update(snapshot);
+        }
+    }
+
+    @Benchmark
+    public int update(Cursor cursor) {
+        return store.update(snapshots[cursor.next++ & (SNAPSHOTS - 1)]);
+    }
+
+    @Benchmark
+    public long protobufSpread(Cursor cursor) {
+        OrderBook orderBook = snapshots[cursor.next++ & (SNAPSHOTS - 1)];
+        return Prices.toScaled(orderBook.getAsks(0).getPrice()) - Prices.toScaled(orderBook.getBids(0).getPrice());
+    }
+
+    @Benchmark
+    public long protobufWeightedMid(Cursor cursor) {
+        OrderBook orderBook = snapshots[cursor.next++ & (SNAPSHOTS - 1)];
+        double notional = 0;
+        double quantity = 0;
+        for (Order order : orderBook.getBidsList()) {
+            notional += (double) Prices.toScaled(order.getPrice()) * order.getQuantity();
+            quantity += order.getQuantity();
+        }
+        for (Order order : orderBook.getAsksList()) {
+            notional += (double) Prices.toScaled(order.getPrice()) * order.getQuantity();
+            quantity += order.getQuantity();
+        }
+        return Math.round(notional / quantity);
+    }
+
+    @Benchmark
+    public long storeSpread(Cursor cursor) {
+        store.readTop(instrumentUids[cursor.next++ % instrumentUids.length], cursor.top);
+        return cursor.top.spread();
+    }
+
+    @Benchmark
+    public long storeWeightedMid(Cursor cursor) {
+        return store.book(instrumentUids[cursor.next++ % instrumentUids.length]).depthWeightedMid(DEPTH);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    public int contendedWriter(Cursor cursor) {
+        return store.update(snapshots[cursor.next++ & (SNAPSHOTS - 1)]);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    public long contendedReader(Cursor cursor) {
+        store.readTop(instrumentUids[cursor.next++ % instrumentUids.length], cursor.top);
+        return cursor.top.mid();
+    }
+}
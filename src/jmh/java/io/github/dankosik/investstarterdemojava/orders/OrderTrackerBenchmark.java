@@ -0,0 +1,164 @@
+package io.github.dankosik.investstarterdemojava.orders;
+
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.github.dankosik.investstarterdemojava.replay.FakeInvestApi;
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.tinkoff.piapi.contract.v1.OrderDirection;
+import ru.tinkoff.piapi.contract.v1.OrderTrades;
+import ru.tinkoff.piapi.core.InvestApi;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Сделки по {@code orders} активным поручениям:
+ * <ul>
+ *     <li>tracker - поиск поручения и вызов обработчика через {@link OrderTracker}</li>
+ *     <li>listScan - как раньше: перебор списка своих заявок по orderId</li>
+ *     <li>roundTrip - от отправки сделки из стрима встроенного gRPC сервера до вызова обработчика</li>
+ * </ul>
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="OrderTrackerBenchmark -prof gc"
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderTrackerBenchmark {
+
+    private static final String ACCOUNT = "account";
+    private static final int EVENTS = 4096;
+    private static final long NEVER_FILLED = 1L << 50;
+
+    @Param({"10", "1000"})
+    public int orders;
+
+    private OrderTracker tracker;
+    private List<PendingOrder> pendingOrders;
+    private OrderTrades[] events;
+    private int next;
+    private long sink;
+
+    @Setup
+    public void setUp() {
+        SyntheticMarketData data = new SyntheticMarketData(42, 100);
+        tracker = new OrderTracker(1024, Duration.ofSeconds(10));
+        pendingOrders = new ArrayList<>();
+        for (int i = 0; i < orders; i++) {
+            String orderId = "order-" + i;
+            tracker.track(orderId, ACCOUNT, SyntheticMarketData.instrumentUid(i % 100), OrderDirection.ORDER_DIRECTION_BUY,
+                    NEVER_FILLED, fill -> sink += fill.quantity());
+            pendingOrders.add(new PendingOrder(orderId, ACCOUNT));
+        }
+        events = new OrderTrades[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            int order = data.nextInstrument() * orders / 100;
+            events[i] = data.orderTrades("order-" + order, ACCOUNT, order % 100, OrderDirection.ORDER_DIRECTION_BUY, 1,
+                    EpochClock.nanos());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long tracker() {
+        tracker.onOrderTrades(events[next++ & (EVENTS - 1)]);
+        return sink;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long listScan() {
+        OrderTrades event = events[next++ & (EVENTS - 1)];
+        for (PendingOrder order : pendingOrders) {
+            if (order.orderId.equals(event.getOrderId()) && order.accountId.equals(event.getAccountId())) {
+                for (int i = 0; i < event.getTradesCount(); i++) {
+                    order.filled += event.getTrades(i).getQuantity();
+                }
+                sink += order.filled;
+                break;
+            }
+        }
+        return sink;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long roundTrip(Stream stream) {
+        return stream.roundTrip();
+    }
+
+    private static final class PendingOrder {
+
+        final String orderId;
+        final String accountId;
+        long filled;
+
+        PendingOrder(String orderId, String accountId) {
+            this.orderId = orderId;
+            this.accountId = accountId;
+        }
+    }
+
+    /**
+     * Встроенный gRPC сервер со стримом сделок по поручениям и клиент InvestApi подписанный на счет
+     */
+    @State(Scope.Thread)
+    public static class Stream {
+
+        private final AtomicLong handled = new AtomicLong();
+        private FakeInvestApi fake;
+        private InvestApi api;
+        private OrderTrades[] events;
+        private long sent;
+
+        @Setup(Level.Trial)
+        public void setUp(OrderTrackerBenchmark benchmark) throws InterruptedException {
+            fake = new FakeInvestApi(List.of(), 100, false);
+            api = InvestApi.create(fake.newChannel());
+            api.getOrdersStreamService().subscribeTrades(response -> {
+                if (response.hasOrderTrades()) {
+                    benchmark.tracker.onOrderTrades(response.getOrderTrades());
+                    handled.incrementAndGet();
+                }
+            }, List.of(ACCOUNT));
+            while (fake.orders().streamCount() == 0) {
+                Thread.sleep(1);
+            }
+            events = benchmark.events;
+        }
+
+        long roundTrip() {
+            fake.orders().publish(events[(int) (sent & (EVENTS - 1))]);
+            sent++;
+            while (handled.get() < sent) {
+                Blackhole.consumeCPU(1);
+            }
+            return sent;
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            api.destroy(0);
+            fake.close();
+        }
+    }
+}
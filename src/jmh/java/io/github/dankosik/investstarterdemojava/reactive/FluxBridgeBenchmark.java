@@ -0,0 +1,147 @@
+package io.github.dankosik.investstarterdemojava.reactive;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Стоимость доставки трейда в хендлер: пачка из 1024 трейдов так, как их отдает поток стрима.
+ * <ul>
+ *     <li>completableFutureCommonPool - AsyncTradeHandler с CompletableFuture.runAsync на каждое событие</li>
+ *     <li>completableFutureCompleted - AsyncTradeHandler в потоке стрима, completedFuture(null) на каждое событие</li>
+ *     <li>fluxBridge - {@link FluxBridge}, конвейер doOnNext в потоке стрима</li>
+ *     <li>fluxBridgePublishOn - {@link FluxBridge} с publishOn: обработка в другом потоке, backpressure по prefetch</li>
+ *     <li>fluxBridgeBufferTimeout - {@link FluxBridge} с bufferTimeout(64): обработка пачками</li>
+ * </ul>
+ * Аллокации на событие видны в -prof gc (gc.alloc.rate.norm).
+ * Запуск: mvn -Pjmh test-compile exec:exec -Djmh.args="FluxBridgeBenchmark -prof gc"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FluxBridgeBenchmark {
+
+    private static final int EVENTS = 1024;
+
+    private Trade[] trades;
+    private CompletableFuture<?>[] futures;
+    private Blackhole blackhole;
+    private FluxBridge bridge;
+    private Scheduler scheduler;
+    private AsyncTradeHandler inline;
+    private AsyncTradeHandler publishOn;
+    private AsyncTradeHandler bufferTimeout;
+    private final AtomicLong handled = new AtomicLong();
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        SyntheticMarketData data = new SyntheticMarketData(42, 100);
+        trades = new Trade[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            trades[i] = data.trade(data.nextInstrument(), i * 1_000_000L);
+        }
+        futures = new CompletableFuture<?>[EVENTS];
+        bridge = new FluxBridge(256);
+        scheduler = Schedulers.newSingle("flux-bridge-benchmark");
+        inline = bridge.trades(flux -> flux.doOnNext(this::handle));
+        publishOn = bridge.trades(flux -> flux.publishOn(scheduler).doOnNext(this::handleCounted));
+        bufferTimeout = bridge.trades(flux -> flux.bufferTimeout(64, Duration.ofMillis(10))
+                .doOnNext(batch -> {
+                    for (Trade trade : batch) {
+                        handle(trade);
+                    }
+                }));
+    }
+
+    @TearDown
+    public void tearDown() {
+        bridge.close();
+        scheduler.dispose();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void completableFutureCommonPool() {
+        for (int i = 0; i < EVENTS; i++) {
+            Trade trade = trades[i];
+            futures[i] = CompletableFuture.runAsync(() -> handle(trade));
+        }
+        CompletableFuture.allOf(futures).join();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void completableFutureCompleted() {
+        for (Trade trade : trades) {
+            handle(trade);
+            blackhole.consume(CompletableFuture.completedFuture(null));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void fluxBridge() {
+        for (Trade trade : trades) {
+            blackhole.consume(inline.handleAsync(trade));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void fluxBridgePublishOn() {
+        long target = handled.get() + EVENTS;
+        for (Trade trade : trades) {
+            blackhole.consume(publishOn.handleAsync(trade));
+        }
+        while (handled.get() < target) {
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public void fluxBridgeBufferTimeout() {
+        for (Trade trade : trades) {
+            blackhole.consume(bufferTimeout.handleAsync(trade));
+        }
+    }
+
+    private void handleCounted(Trade trade) {
+        handle(trade);
+        handled.incrementAndGet();
+    }
+
+    /**
+     * Минимальная работа хендлера: достать цену и инструмент из события
+     */
+    private void handle(Trade trade) {
+        blackhole.consume(trade.getInstrumentUid());
+        blackhole.consume(Prices.toScaled(trade.getPrice()));
+    }
+}
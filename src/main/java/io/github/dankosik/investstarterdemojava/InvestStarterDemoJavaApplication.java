@@ -1,5 +1,15 @@
 package io.github.dankosik.investstarterdemojava;
 
+import io.github.dankosik.investstarterdemojava.conflation.ConflatingDispatcher;
+import io.github.dankosik.investstarterdemojava.executor.ShardedExecutor;
+import io.github.dankosik.investstarterdemojava.journal.JournalAdapters;
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.metrics.HandlerPhase;
+import io.github.dankosik.investstarterdemojava.metrics.StreamMetrics;
+import io.github.dankosik.investstarterdemojava.metrics.StreamType;
+import io.github.dankosik.investstarterdemojava.orderbook.OrderBookStore;
+import io.github.dankosik.investstarterdemojava.reactive.FluxBridge;
+import io.github.dankosik.investstarterdemojava.sink.EventSink;
 import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllCandles;
 import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllLastPrices;
 import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllOrderBooks;
@@ -25,6 +35,7 @@ import io.github.dankosik.starter.invest.contract.marketdata.trade.BlockingTrade
 import io.github.dankosik.starter.invest.contract.operation.portfolio.AsyncPortfolioHandler;
 import io.github.dankosik.starter.invest.contract.operation.positions.AsyncPositionHandler;
 import io.github.dankosik.starter.invest.contract.orders.AsyncOrderHandler;
+import io.github.dankosik.starter.invest.processor.marketdata.AsyncOrderBookStreamProcessorAdapter;
 import io.github.dankosik.starter.invest.processor.marketdata.BlockingCandleStreamProcessorAdapter;
 import io.github.dankosik.starter.invest.processor.marketdata.BlockingLastPriceStreamProcessorAdapter;
 import io.github.dankosik.starter.invest.processor.marketdata.BlockingOrderBookStreamProcessorAdapter;
@@ -58,6 +69,7 @@ import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
 import ru.tinkoff.piapi.contract.v1.Trade;
 import ru.tinkoff.piapi.contract.v1.TradingStatus;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -76,13 +88,26 @@ public class InvestStarterDemoJavaApplication {
  * Если вы используете ticker при старте приложения будет выполнен запрос на поиск instrumentUid по переданному тикеру.
  * instrumentType нужен лишь для того чтобы сделать это за меньшее количество запросов к api, и с целью уменьшит трату лимитов
  * Блокирующие хендлеры рекомендуется юзать на jdk21+, исполнение будет на виртуальных потоках
+ * (demo.handler.blocking.calls{thread="virtual"} в /actuator/prometheus)
  */
 @HandleTrade(ticker = "SiH4")
 class BlockingDollarHandler implements BlockingTradeHandler {
 
+    private final EventSink eventSink;
+    private final BlockingTradeHandler metered;
+
+    BlockingDollarHandler(EventSink eventSink, StreamMetrics streamMetrics) {
+        this.eventSink = eventSink;
+        this.metered = streamMetrics.blockingTrades(getClass(), this::process);
+    }
+
     @Override
     public void handleBlocking(@NotNull Trade trade) {
-        System.out.println("BlockingDollarHandler: " + trade);
+        metered.handleBlocking(trade);
+    }
+
+    private void process(Trade trade) {
+        eventSink.publish("BlockingDollarHandler", trade);
     }
 }
 
@@ -95,10 +120,78 @@ class BlockingDollarHandler implements BlockingTradeHandler {
 @HandleTrade(ticker = "SiH4")
 class AsyncDollarHandler implements AsyncTradeHandler {
 
+    private final EventSink eventSink;
+    private final AsyncTradeHandler metered;
+
+    AsyncDollarHandler(EventSink eventSink, StreamMetrics streamMetrics) {
+        this.eventSink = eventSink;
+        this.metered = streamMetrics.trades(getClass(), this::process);
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
+        return metered.handleAsync(trade);
+    }
+
+    private CompletableFuture<Void> process(Trade trade) {
+        return eventSink.publishAsync("AsyncDollarHandler", trade);
+    }
+}
+
+/**
+ * Трейды одного инструмента обрабатываются строго по порядку, разных инструментов - параллельно в полосах ShardedExecutor.
+ * Хендлер оборачивается один раз, обертка кладет трейд в очередь полосы инструмента и сразу возвращает управление стриму
+ */
+@HandleAllTrades(tickers = {"CRH4", "BRG4", "SBER", "LKOH"})
+class ShardedTradesHandler implements AsyncTradeHandler {
+
+    private final EventSink eventSink;
+    private final AsyncTradeHandler sharded;
+
+    ShardedTradesHandler(EventSink eventSink, ShardedExecutor shardedExecutor) {
+        this.eventSink = eventSink;
+        this.sharded = shardedExecutor.trades(this::process);
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
-        return CompletableFuture.runAsync(() -> System.out.println("AsyncDollarHandler: " + trade));
+        return sharded.handleAsync(trade);
+    }
+
+    private CompletableFuture<Void> process(Trade trade) {
+        return eventSink.publishAsync("ShardedTradesHandler", trade);
+    }
+}
+
+/**
+ * Реактивный хендлер: трейды приходят одним Flux на подписку, обработка идет пачками по инструменту -
+ * до 64 трейдов или раз в 100 мс. Пока конвейер не запросит новые трейды, стрим ждет (backpressure через FluxBridge)
+ */
+@HandleAllTrades(tickers = {"CRH4", "BRG4", "SBER", "LKOH"})
+class ReactiveTradesHandler implements AsyncTradeHandler {
+
+    private final EventSink eventSink;
+    private final AsyncTradeHandler reactive;
+
+    ReactiveTradesHandler(EventSink eventSink, FluxBridge fluxBridge) {
+        this.eventSink = eventSink;
+        this.reactive = fluxBridge.trades(trades -> trades
+                .groupBy(Trade::getInstrumentUid)
+                .flatMap(instrument -> instrument.bufferTimeout(64, Duration.ofMillis(100)))
+                .doOnNext(this::process));
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
+        return reactive.handleAsync(trade);
+    }
+
+    private void process(List<Trade> batch) {
+        Trade last = batch.get(batch.size() - 1);
+        eventSink.publish("ReactiveTradesHandler", batch.size() + " trades " + last.getInstrumentUid() + " last " + Prices.toDouble(Prices.toScaled(last.getPrice())));
     }
 }
 
@@ -108,10 +201,22 @@ class AsyncDollarHandler implements AsyncTradeHandler {
 @HandleAllTrades(beforeEachTradesHandler = true)
 class CommonBeforeEachTradesHandler implements AsyncTradeHandler {
 
+    private final EventSink eventSink;
+    private final AsyncTradeHandler metered;
+
+    CommonBeforeEachTradesHandler(EventSink eventSink, StreamMetrics streamMetrics) {
+        this.eventSink = eventSink;
+        this.metered = streamMetrics.trades(getClass(), this::process);
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
-        return CompletableFuture.runAsync(() -> System.out.println("CommonBeforeEachTradesHandler: " + trade));
+        return metered.handleAsync(trade);
+    }
+
+    private CompletableFuture<Void> process(Trade trade) {
+        return eventSink.publishAsync("CommonBeforeEachTradesHandler", trade);
     }
 }
 
@@ -123,36 +228,75 @@ class CommonBeforeEachTradesHandler implements AsyncTradeHandler {
         afterEachTradesHandler = true
 )
 class CommonAfterEachTradesHandler implements AsyncTradeHandler {
+
+    private final EventSink eventSink;
+    private final AsyncTradeHandler metered;
+
+    CommonAfterEachTradesHandler(EventSink eventSink, StreamMetrics streamMetrics) {
+        this.eventSink = eventSink;
+        this.metered = streamMetrics.trades(getClass(), this::process);
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
-        return CompletableFuture.runAsync(() -> System.out.println("CommonAfterEachTradesHandler: " + trade));
+        return metered.handleAsync(trade);
+    }
+
+    private CompletableFuture<Void> process(Trade trade) {
+        return eventSink.publishAsync("CommonAfterEachTradesHandler", trade);
     }
 }
 
 /**
- * обработка изменения последней цены для выбранного тикера/figi/instrumentUid
+ * обработка изменения последней цены для выбранного тикера/figi/instrumentUid.
+ * При demo.conflation.enabled=true промежуточные цены, которые не успели обработать, пропускаются - хендлер видит только последнюю
  */
 @HandleLastPrice(ticker = "SiH4")
 class DollarLastPriceHandler implements AsyncLastPriceHandler {
 
+    private final EventSink eventSink;
+    private final AsyncLastPriceHandler conflated;
+
+    DollarLastPriceHandler(EventSink eventSink, ConflatingDispatcher conflatingDispatcher, StreamMetrics streamMetrics) {
+        this.eventSink = eventSink;
+        this.conflated = conflatingDispatcher.lastPrices(streamMetrics.lastPrices(getClass(), this::process));
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull LastPrice lastPrice) {
-        return CompletableFuture.runAsync(() -> System.out.println("DollarLastPriceHandler: " + lastPrice));
+        return conflated.handleAsync(lastPrice);
+    }
+
+    private CompletableFuture<Void> process(LastPrice lastPrice) {
+        return eventSink.publishAsync("DollarLastPriceHandler", lastPrice);
     }
 }
 
 /**
- * обработка изменения последней цены всех инструментов (опция beforeEachLastPriceHandler означает что выполнится этот handler перед всеми остальными)
+ * обработка изменения последней цены всех инструментов (опция beforeEachLastPriceHandler означает что выполнится этот handler перед всеми остальными).
+ * При demo.conflation.enabled=true промежуточные цены пропускаются, остальные хендлеры ждут пока обработана эта цена или более новая
  */
 @HandleAllLastPrices(beforeEachLastPriceHandler = true)
 class CommonBeforeEachLastPriceHandler implements AsyncLastPriceHandler {
 
+    private final EventSink eventSink;
+    private final AsyncLastPriceHandler conflated;
+
+    CommonBeforeEachLastPriceHandler(EventSink eventSink, ConflatingDispatcher conflatingDispatcher) {
+        this.eventSink = eventSink;
+        this.conflated = conflatingDispatcher.lastPrices(this::process);
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull LastPrice lastPrice) {
-        return CompletableFuture.runAsync(() -> System.out.println("CommonBeforeEachLastPriceHandler: " + lastPrice));
+        return conflated.handleAsync(lastPrice);
+    }
+
+    private CompletableFuture<Void> process(LastPrice lastPrice) {
+        return eventSink.publishAsync("CommonBeforeEachLastPriceHandler", lastPrice);
     }
 }
 
@@ -162,23 +306,47 @@ class CommonBeforeEachLastPriceHandler implements AsyncLastPriceHandler {
 @HandleAllLastPrices(afterEachLastPriceHandler = true)
 class CommonAfterEachLastPriceHandler implements AsyncLastPriceHandler {
 
+    private final EventSink eventSink;
+
+    CommonAfterEachLastPriceHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull LastPrice lastPrice) {
-        return CompletableFuture.runAsync(() -> System.out.println("CommonAfterEachLastPriceHandler: " + lastPrice));
+        return eventSink.publishAsync("CommonAfterEachLastPriceHandler", lastPrice);
     }
 }
 
 /**
- * обработка изменений сткана для выбранного тикера/figi/instrumentUid
+ * обработка изменений сткана для выбранного тикера/figi/instrumentUid.
+ * Стакан накладывается в OrderBookStore, откуда лучшие цены и агрегаты можно читать из любого потока.
+ * При demo.conflation.enabled=true устаревшие стаканы, которые не успели обработать, пропускаются
  */
 @HandleOrderBook(ticker = "SiH4")
 class DollarOrderBookHandler implements AsyncOrderBookHandler {
 
+    private final EventSink eventSink;
+    private final OrderBookStore orderBookStore;
+    private final AsyncOrderBookHandler conflated;
+
+    DollarOrderBookHandler(EventSink eventSink, OrderBookStore orderBookStore, ConflatingDispatcher conflatingDispatcher,
+                           StreamMetrics streamMetrics) {
+        this.eventSink = eventSink;
+        this.orderBookStore = orderBookStore;
+        this.conflated = conflatingDispatcher.orderBooks(streamMetrics.orderBooks(getClass(), this::process));
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull OrderBook orderBook) {
-        return CompletableFuture.runAsync(() -> System.out.println("DollarOrderBookHandler: " + orderBook));
+        return conflated.handleAsync(orderBook);
+    }
+
+    private CompletableFuture<Void> process(OrderBook orderBook) {
+        orderBookStore.update(orderBook);
+        return eventSink.publishAsync("DollarOrderBookHandler", orderBook);
     }
 }
 
@@ -188,10 +356,16 @@ class DollarOrderBookHandler implements AsyncOrderBookHandler {
 @HandleAllOrderBooks(beforeEachOrderBookHandler = true)
 class CommonBeforeEachOrderBookHandler implements AsyncOrderBookHandler {
 
+    private final EventSink eventSink;
+
+    CommonBeforeEachOrderBookHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull OrderBook orderBook) {
-        return CompletableFuture.runAsync(() -> System.out.println("CommonBeforeEachOrderBookHandler: " + orderBook));
+        return eventSink.publishAsync("CommonBeforeEachOrderBookHandler", orderBook);
     }
 }
 
@@ -201,10 +375,16 @@ class CommonBeforeEachOrderBookHandler implements AsyncOrderBookHandler {
 @HandleAllOrderBooks(afterEachOrderBookHandler = true)
 class CommonAfterEachOrderBookHandler implements AsyncOrderBookHandler {
 
+    private final EventSink eventSink;
+
+    CommonAfterEachOrderBookHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull OrderBook orderBook) {
-        return CompletableFuture.runAsync(() -> System.out.println("CommonAfterEachOrderBookHandler: " + orderBook));
+        return eventSink.publishAsync("CommonAfterEachOrderBookHandler", orderBook);
     }
 }
 
@@ -218,10 +398,16 @@ class CommonAfterEachOrderBookHandler implements AsyncOrderBookHandler {
 )
 class DollarCandleHandler implements AsyncCandleHandler {
 
+    private final EventSink eventSink;
+
+    DollarCandleHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull Candle candle) {
-        return CompletableFuture.runAsync(() -> System.out.println("DollarCandleHandler: " + candle));
+        return eventSink.publishAsync("DollarCandleHandler", candle);
     }
 }
 
@@ -235,10 +421,16 @@ class DollarCandleHandler implements AsyncCandleHandler {
 )
 class CommonBeforeEachCandleHandler implements AsyncCandleHandler {
 
+    private final EventSink eventSink;
+
+    CommonBeforeEachCandleHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull Candle candle) {
-        return CompletableFuture.runAsync(() -> System.out.println("CommonBeforeEachCandleHandler: " + candle));
+        return eventSink.publishAsync("CommonBeforeEachCandleHandler", candle);
     }
 }
 
@@ -252,10 +444,16 @@ class CommonBeforeEachCandleHandler implements AsyncCandleHandler {
 )
 class CommonAfterEachCandleHandler implements AsyncCandleHandler {
 
+    private final EventSink eventSink;
+
+    CommonAfterEachCandleHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull Candle candle) {
-        return CompletableFuture.runAsync(() -> System.out.println("CommonAfterEachCandleHandler: " + candle));
+        return eventSink.publishAsync("CommonAfterEachCandleHandler", candle);
     }
 }
 
@@ -265,10 +463,16 @@ class CommonAfterEachCandleHandler implements AsyncCandleHandler {
 @HandleTradingStatus(ticker = "SiH4")
 class DollarTradingStatusHandler implements AsyncTradingStatusHandler {
 
+    private final EventSink eventSink;
+
+    DollarTradingStatusHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull TradingStatus tradingStatus) {
-        return CompletableFuture.runAsync(() -> System.out.println("DollarTradingStatusHandler: " + tradingStatus));
+        return eventSink.publishAsync("DollarTradingStatusHandler", tradingStatus);
     }
 }
 
@@ -278,10 +482,16 @@ class DollarTradingStatusHandler implements AsyncTradingStatusHandler {
 @HandleAllTradingStatuses(beforeEachTradingStatusHandler = true)
 class CommonBeforeEachTradingStatusHandler implements AsyncTradingStatusHandler {
 
+    private final EventSink eventSink;
+
+    CommonBeforeEachTradingStatusHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull TradingStatus tradingStatus) {
-        return CompletableFuture.runAsync(() -> System.out.println("CommonBeforeEachTradingStatusHandler: " + tradingStatus));
+        return eventSink.publishAsync("CommonBeforeEachTradingStatusHandler", tradingStatus);
     }
 }
 
@@ -291,10 +501,16 @@ class CommonBeforeEachTradingStatusHandler implements AsyncTradingStatusHandler
 @HandleAllTradingStatuses(afterEachTradingStatusHandler = true)
 class CommonAfterEachTradingStatusHandler implements AsyncTradingStatusHandler {
 
+    private final EventSink eventSink;
+
+    CommonAfterEachTradingStatusHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull TradingStatus tradingStatus) {
-        return CompletableFuture.runAsync(() -> System.out.println("CommonAfterEachTradingStatusHandler: " + tradingStatus));
+        return eventSink.publishAsync("CommonAfterEachTradingStatusHandler", tradingStatus);
     }
 }
 
@@ -304,10 +520,16 @@ class CommonAfterEachTradingStatusHandler implements AsyncTradingStatusHandler {
 @HandlePortfolio(account = "accountId") //замените на ваш актуальный
 class PortfolioHandler implements AsyncPortfolioHandler {
 
+    private final EventSink eventSink;
+
+    PortfolioHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull PortfolioResponse portfolioResponse) {
-        return CompletableFuture.runAsync(() -> System.out.println("PortfolioHandler: " + portfolioResponse));
+        return eventSink.publishAsync("PortfolioHandler", portfolioResponse);
     }
 }
 
@@ -317,10 +539,16 @@ class PortfolioHandler implements AsyncPortfolioHandler {
 @HandleAllPortfolios(accounts = {"accountId", "accountId2"}) //замените на ваши актуальные
 class AllPortfolioHandler implements AsyncPortfolioHandler {
 
+    private final EventSink eventSink;
+
+    AllPortfolioHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull PortfolioResponse portfolioResponse) {
-        return CompletableFuture.runAsync(() -> System.out.println("AllPortfolioHandler: " + portfolioResponse));
+        return eventSink.publishAsync("AllPortfolioHandler", portfolioResponse);
     }
 }
 
@@ -330,10 +558,16 @@ class AllPortfolioHandler implements AsyncPortfolioHandler {
 @HandlePosition(account = "accountId") //замените на ваш актуальный
 class PositionHandler implements AsyncPositionHandler {
 
+    private final EventSink eventSink;
+
+    PositionHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull PositionData positionData) {
-        return CompletableFuture.runAsync(() -> System.out.println("PositionHandler: " + positionData));
+        return eventSink.publishAsync("PositionHandler", positionData);
     }
 }
 
@@ -343,10 +577,16 @@ class PositionHandler implements AsyncPositionHandler {
 @HandleAllPositions(accounts = {"accountId", "accountId2"}) //замените на ваши актуальные
 class AllPositionHandler implements AsyncPositionHandler {
 
+    private final EventSink eventSink;
+
+    AllPositionHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull PositionData positionData) {
-        return CompletableFuture.runAsync(() -> System.out.println("AllPositionHandler: " + positionData));
+        return eventSink.publishAsync("AllPositionHandler", positionData);
     }
 }
 
@@ -356,10 +596,16 @@ class AllPositionHandler implements AsyncPositionHandler {
 @HandleOrder(account = "accountId", ticker = "SiH4")
 class OrderHandler implements AsyncOrderHandler {
 
+    private final EventSink eventSink;
+
+    OrderHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull OrderTrades orderTrades) {
-        return CompletableFuture.runAsync(() -> System.out.println("OrderHandler: " + orderTrades));
+        return eventSink.publishAsync("OrderHandler", orderTrades);
     }
 }
 
@@ -368,10 +614,17 @@ class OrderHandler implements AsyncOrderHandler {
  */
 @HandleAllOrders(accounts = {"accountId", "accountId2"}) //замените на ваши актуальные
 class AllOrderHandler implements AsyncOrderHandler {
+
+    private final EventSink eventSink;
+
+    AllOrderHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
     @NotNull
     @Override
     public CompletableFuture<Void> handleAsync(@NotNull OrderTrades orderTrades) {
-        return CompletableFuture.runAsync(() -> System.out.println("AllOrderHandler: " + orderTrades));
+        return eventSink.publishAsync("AllOrderHandler", orderTrades);
     }
 }
 
@@ -382,11 +635,11 @@ class Config {
      * Можно обрабатывать все события marketData
      */
     @Bean
-    public AsyncMarketDataStreamProcessorAdapter marketDataStreamProcessorAdapter() {
+    public AsyncMarketDataStreamProcessorAdapter marketDataStreamProcessorAdapter(EventSink eventSink) {
         return MarketDataStreamProcessorAdapterFactory
                 .withTickers(List.of("CRH4", "BRG4", "SBER", "LKOH"))
                 .createAsyncHandler(marketDataResponse ->
-                        CompletableFuture.runAsync(() -> System.out.println("marketDataStreamProcessorAdapter:" + marketDataResponse))
+                        eventSink.publishAsync("marketDataStreamProcessorAdapter", marketDataResponse)
                 );
         //        .withFigies(listOf("BBG004730N88")) можно использовать вместо withTickers
 //        .withInstrumentUids(listOf("e6123145-9665-43e0-8413-cd61b8aa9b13")) можно использовать вместо withTickers
@@ -400,64 +653,87 @@ class Config {
      * Аналог HandleAllLastPrice
      */
     @Bean
-    public BlockingLastPriceStreamProcessorAdapter coroutineLastPriceStreamProcessorAdapter() {
+    public BlockingLastPriceStreamProcessorAdapter coroutineLastPriceStreamProcessorAdapter(EventSink eventSink, ConflatingDispatcher conflatingDispatcher,
+                                                                                     JournalAdapters journalAdapters) {
         return LastPriceStreamProcessorAdapterFactory
 //            .runAfterEachLastPriceHandler(true) опционально
 //            .runBeforeEachLastPriceHandler(true) опционально
                 .withTickers(List.of("CRH4", "BRG4", "SBER", "LKOH"))
-                .createBlockingHandler(lastPrice -> System.out.println("LastPriceStreamProcessorAdapterFactory" + lastPrice)); // для jdk 21+ BlockingHandler будет исполнен в виртуальном потоке
+                .createBlockingHandler(journalAdapters.lastPrices(conflatingDispatcher.blockingLastPrices(
+                        lastPrice -> eventSink.publish("LastPriceStreamProcessorAdapterFactory", lastPrice)))); // для jdk 21+ BlockingHandler будет исполнен в виртуальном потоке
     }
 
     /**
      * Аналог HandleAllTrades
      */
     @Bean
-    public BlockingTradeStreamProcessorAdapter coroutineTradeStreamProcessorAdapter() {
+    public BlockingTradeStreamProcessorAdapter coroutineTradeStreamProcessorAdapter(EventSink eventSink, StreamMetrics streamMetrics,
+                                                                           JournalAdapters journalAdapters) {
         return TradeStreamProcessorAdapterFactory
                 .withTickers(List.of("CRH4", "BRG4", "SBER", "LKOH"))
-                .createBlockingHandler(trade -> System.out.println("TradeStreamProcessorAdapterFactory" + trade)); // для jdk 21+ BlockingHandler будет исполнен в виртуальном потоке
+                .createBlockingHandler(journalAdapters.trades(streamMetrics.<Trade>blocking("TradeStreamProcessorAdapterFactory", HandlerPhase.HANDLER, StreamType.TRADES,
+                        trade -> Prices.toEpochNanos(trade.getTime()),
+                        trade -> eventSink.publish("TradeStreamProcessorAdapterFactory", trade)))); // для jdk 21+ BlockingHandler будет исполнен в виртуальном потоке
     }
 
     /**
      * Аналог HandleAllTradingStatuses
      */
     @Bean
-    public BlockingTradingStatusStreamProcessorAdapter coroutineTradingStatusStreamProcessorAdapter() {
+    public BlockingTradingStatusStreamProcessorAdapter coroutineTradingStatusStreamProcessorAdapter(EventSink eventSink) {
         return TradingStatusStreamProcessorAdapterFactory
                 .withTickers(List.of("CRH4", "BRG4", "SBER", "LKOH"))
-                .createBlockingHandler(tradingStatus -> System.out.println("TradingStatusStreamProcessorAdapterFactory: " + tradingStatus));
+                .createBlockingHandler(tradingStatus -> eventSink.publish("TradingStatusStreamProcessorAdapterFactory", tradingStatus));
     }
 
     /**
      * Аналог HandleAllCandles
      */
     @Bean
-    public BlockingCandleStreamProcessorAdapter coroutineCandleStreamProcessorAdapter() {
+    public BlockingCandleStreamProcessorAdapter coroutineCandleStreamProcessorAdapter(EventSink eventSink, JournalAdapters journalAdapters) {
         return CandleStreamProcessorAdapterFactory
                 .withSubscriptionInterval(SubscriptionInterval.SUBSCRIPTION_INTERVAL_2_MIN)
                 .waitClose(true)
                 .withTickers(List.of("CRH4", "BRG4", "SBER", "LKOH"))
-                .createBlockingHandler(candle -> System.out.println("BlockingCandleStreamProcessorAdapter" + candle));
+                .createBlockingHandler(journalAdapters.candles(candle -> eventSink.publish("BlockingCandleStreamProcessorAdapter", candle)));
     }
 
     /**
      * Аналог HandleAllOrderBooks
      */
     @Bean
-    public BlockingOrderBookStreamProcessorAdapter coroutineOrderBookStreamProcessorAdapter() {
+    public BlockingOrderBookStreamProcessorAdapter coroutineOrderBookStreamProcessorAdapter(EventSink eventSink, OrderBookStore orderBookStore,
+                                                                                   ConflatingDispatcher conflatingDispatcher,
+                                                                                   JournalAdapters journalAdapters) {
         return OrderBookStreamProcessorAdapterFactory
                 .withTickers(List.of("CRH4", "BRG4", "SBER", "LKOH"))
-                .createBlockingHandler(orderBook -> System.out.println("OrderBookStreamProcessorAdapterFactory" + orderBook));
+                .createBlockingHandler(journalAdapters.orderBooks(conflatingDispatcher.blockingOrderBooks(orderBook -> {
+                    orderBookStore.update(orderBook);
+                    eventSink.publish("OrderBookStreamProcessorAdapterFactory", orderBook);
+                })));
 
     }
 
+    /**
+     * Реактивный аналог HandleAllOrderBooks: стаканы пачками до 256 штук или раз в 50 мс.
+     * Для фабрик подходит только createAsyncHandler - его стартер вызывает в потоке стрима, и backpressure доходит до gRPC
+     */
+    @Bean
+    public AsyncOrderBookStreamProcessorAdapter reactiveOrderBookStreamProcessorAdapter(EventSink eventSink, FluxBridge fluxBridge) {
+        return OrderBookStreamProcessorAdapterFactory
+                .withTickers(List.of("CRH4", "BRG4", "SBER", "LKOH"))
+                .createAsyncHandler(fluxBridge.<OrderBook>flux("ReactiveOrderBookStreamProcessorAdapter", orderBooks -> orderBooks
+                        .bufferTimeout(256, Duration.ofMillis(50))
+                        .doOnNext(batch -> eventSink.publish("ReactiveOrderBookStreamProcessorAdapter", batch.size() + " order books"))));
+    }
+
     /**
      * Аналог HandleAllPortfolios
      */
     @Bean
-    public BlockingPortfolioStreamProcessorAdapter portfolioStreamProcessorAdapterFactory() {
+    public BlockingPortfolioStreamProcessorAdapter portfolioStreamProcessorAdapterFactory(EventSink eventSink) {
         return PortfolioStreamProcessorAdapterFactory.withAccounts(List.of("accountId", "accountId2")) //замените на ваши актуальные
-                .createBlockingHandler(portfolioStreamResponse -> System.out.println("BlockingPortfolioStreamProcessorAdapter" + portfolioStreamResponse));
+                .createBlockingHandler(portfolioStreamResponse -> eventSink.publish("BlockingPortfolioStreamProcessorAdapter", portfolioStreamResponse));
 
     }
 
@@ -465,9 +741,9 @@ class Config {
      * Аналог HandleAllPositions
      */
     @Bean
-    public BlockingPositionsStreamProcessorAdapter positionsStreamProcessorAdapterFactory() {
+    public BlockingPositionsStreamProcessorAdapter positionsStreamProcessorAdapterFactory(EventSink eventSink) {
         return PositionsStreamProcessorAdapterFactory.withAccounts(List.of("accountId", "accountId2")) //замените на ваши актуальные
-                .createBlockingHandler(portfolioStreamResponse -> System.out.println("BlockingPositionsStreamProcessorAdapter" + portfolioStreamResponse));
+                .createBlockingHandler(portfolioStreamResponse -> eventSink.publish("BlockingPositionsStreamProcessorAdapter", portfolioStreamResponse));
 
     }
 
@@ -475,11 +751,11 @@ class Config {
      * Аналог HandleAllPositions
      */
     @Bean
-    public BlockingOrdersStreamProcessorAdapter ordersStreamProcessorAdapterFactory() {
+    public BlockingOrdersStreamProcessorAdapter ordersStreamProcessorAdapterFactory(EventSink eventSink) {
         return OrdersStreamProcessorAdapterFactory
                 .withTickers(List.of("SBER"))
                 .withAccounts(List.of("accountId", "accountId2")) //замените на ваши актуальные
-                .createBlockingHandler(portfolioStreamResponse -> System.out.println("BlockingOrdersStreamProcessorAdapterFactory" + portfolioStreamResponse));
+                .createBlockingHandler(portfolioStreamResponse -> eventSink.publish("BlockingOrdersStreamProcessorAdapterFactory", portfolioStreamResponse));
 
     }
 }
\ No newline at end of file
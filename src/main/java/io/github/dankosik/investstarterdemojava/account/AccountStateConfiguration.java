@@ -0,0 +1,49 @@
+package io.github.dankosik.investstarterdemojava.account;
+
+import io.github.dankosik.starter.invest.processor.marketdata.BlockingLastPriceStreamProcessorAdapter;
+import io.github.dankosik.starter.invest.processor.marketdata.LastPriceStreamProcessorAdapterFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "demo.accounts", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(AccountStateProperties.class)
+class AccountStateConfiguration {
+
+    @Bean
+    public AccountStateEngine accountStateEngine(AccountStateProperties properties, ObjectProvider<PositionDeltaHandler> handlers) {
+        return new AccountStateEngine(handlers.orderedStream().toList(), properties.initialPositions());
+    }
+
+    /**
+     * Последние цены инструментов счетов из demo.accounts.tickers, по ним переоцениваются позиции
+     */
+    @Bean
+    public BlockingLastPriceStreamProcessorAdapter accountStateLastPriceFeed(AccountStateEngine engine, AccountStateProperties properties) {
+        return LastPriceStreamProcessorAdapterFactory
+                .withTickers(properties.tickers())
+                .createBlockingHandler(engine::onLastPrice);
+    }
+
+    /**
+     * Счета, позиции и пересчеты AccountStateEngine, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder accountStateMetrics(AccountStateEngine engine) {
+        return registry -> {
+            Gauge.builder("demo.accounts.count", engine, AccountStateEngine::accountCount).register(registry);
+            Gauge.builder("demo.accounts.positions", engine, AccountStateEngine::positionCount).register(registry);
+            FunctionCounter.builder("demo.accounts.snapshots", engine, AccountStateEngine::snapshotCount).register(registry);
+            FunctionCounter.builder("demo.accounts.position.updates", engine, AccountStateEngine::positionUpdateCount).register(registry);
+            FunctionCounter.builder("demo.accounts.ticks", engine, AccountStateEngine::tickCount).register(registry);
+            FunctionCounter.builder("demo.accounts.repriced", engine, AccountStateEngine::repricedCount).register(registry);
+            FunctionCounter.builder("demo.accounts.deltas", engine, AccountStateEngine::deltaCount).register(registry);
+        };
+    }
+}
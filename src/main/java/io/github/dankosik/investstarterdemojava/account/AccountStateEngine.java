@@ -0,0 +1,417 @@
+package io.github.dankosik.investstarterdemojava.account;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.PortfolioPosition;
+import ru.tinkoff.piapi.contract.v1.PortfolioResponse;
+import ru.tinkoff.piapi.contract.v1.PositionData;
+import ru.tinkoff.piapi.contract.v1.PositionsFutures;
+import ru.tinkoff.piapi.contract.v1.PositionsSecurities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Состояние счетов по стримам портфеля, позиций и последних цен.
+ * Позиции счета лежат в примитивных массивах, слот позиции ищется по id инструмента в {@link IntIntMap}.
+ * Снимок портфеля сравнивается с сохраненным состоянием, и в {@link PositionDeltaHandler} уходят только
+ * изменившиеся позиции: открытые, закрытые (нет в новом снимке), с новым количеством или средней ценой.
+ * Стрим позиций приносит только изменившиеся бумаги и фьючерсы, они применяются так же, средняя цена у них сохраняется.
+ * <p>
+ * Стоимость, экспозиция и нереализованный P&L счета считаются инкрементально: последняя цена инструмента
+ * обновляет только держащие его позиции (у инструмента список держателей), сумма счета меняется на разницу
+ * стоимостей позиции - O(1) на позицию, без обхода портфеля. Все суммы в fixed-point long, поэтому накопленной
+ * ошибки нет: сумма счета всегда точно равна сумме стоимостей позиций.
+ * Цена берется как цена одной штуки - верно для акций, фондов и валют; пункты фьючерсов и проценты облигаций
+ * в рубли не пересчитываются.
+ * <p>
+ * У каждого счета своя блокировка, разные счета обновляются параллельно. Тики одного инструмента идут по очереди,
+ * позиция переоценивается под блокировкой своего счета. Изменения позиций собираются под блокировкой,
+ * а {@link PositionDeltaHandler} вызываются после нее. Тики не аллоцируют после прогрева массивов
+ */
+public final class AccountStateEngine {
+
+    private static final Logger log = LoggerFactory.getLogger(AccountStateEngine.class);
+
+    private final List<PositionDeltaHandler> handlers;
+    private final int initialPositions;
+    private final ConcurrentHashMap<String, Account> accounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Instrument> instruments = new ConcurrentHashMap<>();
+    private final AtomicInteger instrumentIds = new AtomicInteger();
+    private final AtomicInteger positions = new AtomicInteger();
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder positionUpdates = new LongAdder();
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder repriced = new LongAdder();
+    private final LongAdder deltas = new LongAdder();
+
+    /**
+     * @param initialPositions начальный размер массивов позиций нового счета, при большем числе позиций массивы растут
+     */
+    public AccountStateEngine(@NotNull List<PositionDeltaHandler> handlers, int initialPositions) {
+        this.handlers = List.copyOf(handlers);
+        this.initialPositions = Math.max(initialPositions, 4);
+    }
+
+    /**
+     * Полный снимок портфеля счета: позиции, которых в нем нет, закрываются
+     */
+    public void onPortfolio(@NotNull PortfolioResponse portfolio) {
+        Account account = account(portfolio.getAccountId());
+        List<PositionDelta> changes = null;
+        synchronized (account) {
+            long epoch = ++account.epoch;
+            for (PortfolioPosition position : portfolio.getPositionsList()) {
+                Instrument instrument = instrument(position.getInstrumentUid());
+                changes = add(changes, update(account, instrument, Prices.toScaled(position.getQuantity()),
+                        Prices.toScaled(position.getAveragePositionPrice()), Prices.toScaled(position.getCurrentPrice()), epoch));
+            }
+            for (int slot = 0; slot < account.slotCount; slot++) {
+                Instrument instrument = account.instruments[slot];
+                if (instrument != null && account.seen[slot] != epoch) {
+                    changes = add(changes, update(account, instrument, 0, account.averages[slot], account.marks[slot], epoch));
+                }
+            }
+        }
+        snapshots.increment();
+        emit(changes);
+    }
+
+    /**
+     * Изменения позиций счета: количество в штуках = balance + blocked
+     */
+    public void onPositions(@NotNull PositionData positionData) {
+        Account account = account(positionData.getAccountId());
+        List<PositionDelta> changes = null;
+        synchronized (account) {
+            for (PositionsSecurities security : positionData.getSecuritiesList()) {
+                changes = add(changes, updateQuantity(account, security.getInstrumentUid(), security.getBalance() + security.getBlocked()));
+            }
+            for (PositionsFutures future : positionData.getFuturesList()) {
+                changes = add(changes, updateQuantity(account, future.getInstrumentUid(), future.getBalance() + future.getBlocked()));
+            }
+        }
+        positionUpdates.increment();
+        emit(changes);
+    }
+
+    /**
+     * Переоценивает позиции всех счетов, держащих инструмент
+     */
+    public void onLastPrice(@NotNull LastPrice lastPrice) {
+        long price = Prices.toScaled(lastPrice.getPrice());
+        Instrument instrument = instrument(lastPrice.getInstrumentUid());
+        int count = 0;
+        synchronized (instrument.ticks) {
+            // цена публикуется до чтения держателей: счет, открывший позицию позже, возьмет уже эту цену
+            instrument.price = price;
+            for (Account holder : instrument.holders) {
+                synchronized (holder) {
+                    int slot = holder.slots.get(instrument.id);
+                    if (slot != IntIntMap.MISSING) {
+                        holder.reprice(slot, price);
+                        count++;
+                    }
+                }
+            }
+        }
+        ticks.increment();
+        repriced.add(count);
+    }
+
+    /**
+     * Заполняет into суммами счета
+     *
+     * @return false если по счету еще не было данных
+     */
+    public boolean readTotals(@NotNull String accountId, @NotNull AccountTotals into) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            return false;
+        }
+        synchronized (account) {
+            into.set(account.positions, account.marketValue, account.grossExposure, account.marketValue - account.totalCost);
+            return true;
+        }
+    }
+
+    /**
+     * Количество инструмента на счете в штуках (fixed-point), 0 - позиции нет
+     */
+    public long quantity(@NotNull String accountId, @NotNull String instrumentUid) {
+        Account account = accounts.get(accountId);
+        Instrument instrument = instruments.get(instrumentUid);
+        if (account == null || instrument == null) {
+            return 0;
+        }
+        synchronized (account) {
+            int slot = account.slots.get(instrument.id);
+            return slot == IntIntMap.MISSING ? 0 : account.quantities[slot];
+        }
+    }
+
+    public int accountCount() {
+        return accounts.size();
+    }
+
+    /**
+     * Открытых позиций по всем счетам
+     */
+    public int positionCount() {
+        return positions.get();
+    }
+
+    public long snapshotCount() {
+        return snapshots.sum();
+    }
+
+    public long positionUpdateCount() {
+        return positionUpdates.sum();
+    }
+
+    public long tickCount() {
+        return ticks.sum();
+    }
+
+    /**
+     * Сколько раз позиции переоценены по последним ценам
+     */
+    public long repricedCount() {
+        return repriced.sum();
+    }
+
+    /**
+     * Сколько изменений позиций передано подписчикам
+     */
+    public long deltaCount() {
+        return deltas.sum();
+    }
+
+    private PositionDelta updateQuantity(Account account, String instrumentUid, long pieces) {
+        Instrument instrument = instrument(instrumentUid);
+        int slot = account.slots.get(instrument.id);
+        long average = slot == IntIntMap.MISSING ? 0 : account.averages[slot];
+        long mark = slot == IntIntMap.MISSING ? 0 : account.marks[slot];
+        return update(account, instrument, pieces * Prices.SCALE, average, mark, 0);
+    }
+
+    /**
+     * Вызывается под блокировкой счета
+     *
+     * @param mark цена позиции, если по инструменту еще не было последней цены
+     * @return изменение позиции или null если количество и средняя цена не поменялись
+     */
+    private PositionDelta update(Account account, Instrument instrument, long quantity, long average, long mark, long epoch) {
+        int slot = account.slots.get(instrument.id);
+        long previous = 0;
+        if (slot == IntIntMap.MISSING) {
+            if (quantity == 0) {
+                return null;
+            }
+            slot = account.open(instrument);
+            // счет становится держателем до чтения цены, см. onLastPrice
+            instrument.addHolder(account);
+            positions.incrementAndGet();
+        } else {
+            previous = account.quantities[slot];
+        }
+        long last = instrument.price;
+        long price = last == Instrument.NO_PRICE ? mark : last;
+        account.seen[slot] = epoch;
+        boolean changed = previous != quantity || account.averages[slot] != average;
+        account.set(slot, quantity, average, price);
+        PositionDelta delta = changed ? new PositionDelta(account.id, instrument.uid, previous, quantity, average, price) : null;
+        if (quantity == 0) {
+            instrument.removeHolder(account);
+            account.close(slot);
+            positions.decrementAndGet();
+        }
+        return delta;
+    }
+
+    private static List<PositionDelta> add(List<PositionDelta> changes, PositionDelta delta) {
+        if (delta == null) {
+            return changes;
+        }
+        if (changes == null) {
+            changes = new ArrayList<>();
+        }
+        changes.add(delta);
+        return changes;
+    }
+
+    private void emit(List<PositionDelta> changes) {
+        if (changes == null) {
+            return;
+        }
+        for (PositionDelta delta : changes) {
+            deltas.increment();
+            for (PositionDeltaHandler handler : handlers) {
+                try {
+                    handler.onPositionDelta(delta);
+                } catch (RuntimeException e) {
+                    log.error("ошибка в обработчике изменений позиций {}", handler, e);
+                }
+            }
+        }
+    }
+
+    private Account account(String accountId) {
+        Account account = accounts.get(accountId);
+        if (account == null) {
+            account = accounts.computeIfAbsent(accountId, id -> new Account(id, initialPositions));
+        }
+        return account;
+    }
+
+    private Instrument instrument(String instrumentUid) {
+        Instrument instrument = instruments.get(instrumentUid);
+        if (instrument == null) {
+            instrument = instruments.computeIfAbsent(instrumentUid, uid -> new Instrument(uid, instrumentIds.getAndIncrement()));
+        }
+        return instrument;
+    }
+
+    private static final class Instrument {
+
+        private static final Account[] NO_HOLDERS = new Account[0];
+        /**
+         * Последней цены еще не было: ноль и отрицательные цены - настоящие
+         */
+        static final long NO_PRICE = Long.MIN_VALUE;
+
+        final String uid;
+        final int id;
+        /**
+         * Тики инструмента идут по очереди, чтобы позиции не переоценились более старой ценой
+         */
+        final Object ticks = new Object();
+        volatile long price = NO_PRICE;
+        /**
+         * Счета с открытой позицией, копия при изменении: меняются только при открытии и закрытии позиций
+         */
+        volatile Account[] holders = NO_HOLDERS;
+
+        Instrument(String uid, int id) {
+            this.uid = uid;
+            this.id = id;
+        }
+
+        synchronized void addHolder(Account account) {
+            Account[] current = holders;
+            Account[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = account;
+            holders = next;
+        }
+
+        synchronized void removeHolder(Account account) {
+            Account[] current = holders;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == account) {
+                    Account[] next = Arrays.copyOf(current, current.length - 1);
+                    System.arraycopy(current, i + 1, next, i, current.length - i - 1);
+                    holders = next;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Позиции счета в параллельных массивах по слотам, слоты закрытых позиций переиспользуются
+     */
+    private static final class Account {
+
+        final String id;
+        final IntIntMap slots;
+        Instrument[] instruments;
+        long[] quantities;
+        long[] averages;
+        long[] marks;
+        long[] costs;
+        long[] values;
+        long[] seen;
+        int[] free;
+        int freeCount;
+        int slotCount;
+        int positions;
+        long marketValue;
+        long grossExposure;
+        long totalCost;
+        long epoch;
+
+        Account(String id, int capacity) {
+            this.id = id;
+            this.slots = new IntIntMap(capacity);
+            allocate(capacity);
+        }
+
+        int open(Instrument instrument) {
+            int slot;
+            if (freeCount > 0) {
+                slot = free[--freeCount];
+            } else {
+                if (slotCount == instruments.length) {
+                    allocate(slotCount * 2);
+                }
+                slot = slotCount++;
+            }
+            instruments[slot] = instrument;
+            slots.put(instrument.id, slot);
+            positions++;
+            return slot;
+        }
+
+        void close(int slot) {
+            slots.remove(instruments[slot].id);
+            instruments[slot] = null;
+            averages[slot] = 0;
+            marks[slot] = 0;
+            free[freeCount++] = slot;
+            positions--;
+        }
+
+        void set(int slot, long quantity, long average, long price) {
+            long cost = Prices.multiply(quantity, average);
+            long value = Prices.multiply(quantity, price);
+            totalCost += cost - costs[slot];
+            marketValue += value - values[slot];
+            grossExposure += Math.abs(value) - Math.abs(values[slot]);
+            quantities[slot] = quantity;
+            averages[slot] = average;
+            marks[slot] = price;
+            costs[slot] = cost;
+            values[slot] = value;
+        }
+
+        void reprice(int slot, long price) {
+            long value = Prices.multiply(quantities[slot], price);
+            marketValue += value - values[slot];
+            grossExposure += Math.abs(value) - Math.abs(values[slot]);
+            marks[slot] = price;
+            values[slot] = value;
+        }
+
+        private void allocate(int capacity) {
+            instruments = instruments == null ? new Instrument[capacity] : Arrays.copyOf(instruments, capacity);
+            quantities = grow(quantities, capacity);
+            averages = grow(averages, capacity);
+            marks = grow(marks, capacity);
+            costs = grow(costs, capacity);
+            values = grow(values, capacity);
+            seen = grow(seen, capacity);
+            free = free == null ? new int[capacity] : Arrays.copyOf(free, capacity);
+        }
+
+        private static long[] grow(long[] array, int capacity) {
+            return array == null ? new long[capacity] : Arrays.copyOf(array, capacity);
+        }
+    }
+}
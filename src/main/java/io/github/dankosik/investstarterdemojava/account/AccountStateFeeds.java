@@ -0,0 +1,77 @@
+package io.github.dankosik.investstarterdemojava.account;
+
+import io.github.dankosik.investstarterdemojava.sink.EventSink;
+import io.github.dankosik.starter.invest.annotation.operation.HandleAllPortfolios;
+import io.github.dankosik.starter.invest.annotation.operation.HandleAllPositions;
+import io.github.dankosik.starter.invest.contract.operation.portfolio.AsyncPortfolioHandler;
+import io.github.dankosik.starter.invest.contract.operation.positions.AsyncPositionHandler;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.tinkoff.piapi.contract.v1.PortfolioResponse;
+import ru.tinkoff.piapi.contract.v1.PositionData;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Хендлеры которые кормят AccountStateEngine, последние цены подключаются в AccountStateConfiguration
+ */
+
+@HandleAllPortfolios(accounts = {"accountId", "accountId2"}) //замените на ваши актуальные
+@ConditionalOnProperty(prefix = "demo.accounts", name = "enabled", havingValue = "true")
+class AccountStatePortfolioFeed implements AsyncPortfolioHandler {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final AccountStateEngine accountStateEngine;
+
+    AccountStatePortfolioFeed(AccountStateEngine accountStateEngine) {
+        this.accountStateEngine = accountStateEngine;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull PortfolioResponse portfolioResponse) {
+        accountStateEngine.onPortfolio(portfolioResponse);
+        return DONE;
+    }
+}
+
+@HandleAllPositions(accounts = {"accountId", "accountId2"}) //замените на ваши актуальные
+@ConditionalOnProperty(prefix = "demo.accounts", name = "enabled", havingValue = "true")
+class AccountStatePositionFeed implements AsyncPositionHandler {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final AccountStateEngine accountStateEngine;
+
+    AccountStatePositionFeed(AccountStateEngine accountStateEngine) {
+        this.accountStateEngine = accountStateEngine;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull PositionData positionData) {
+        accountStateEngine.onPositions(positionData);
+        return DONE;
+    }
+}
+
+/**
+ * Пример обработчика изменений позиций: выводит только изменившиеся позиции вместо всего портфеля
+ */
+@Component
+@ConditionalOnProperty(prefix = "demo.accounts", name = "enabled", havingValue = "true")
+class EventSinkPositionDeltaHandler implements PositionDeltaHandler {
+
+    private final EventSink eventSink;
+
+    EventSinkPositionDeltaHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
+    @Override
+    public void onPositionDelta(@NotNull PositionDelta delta) {
+        eventSink.publish("PositionDelta", delta.toString());
+    }
+}
@@ -0,0 +1,21 @@
+package io.github.dankosik.investstarterdemojava.account;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Настройки {@link AccountStateEngine}
+ *
+ * @param enabled          включает состояние счетов по стримам портфеля, позиций и последних цен
+ * @param initialPositions на сколько позиций сразу выделяются массивы счета
+ * @param tickers          инструменты счетов, по последним ценам которых переоцениваются позиции
+ */
+@ConfigurationProperties(prefix = "demo.accounts")
+public record AccountStateProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("64") int initialPositions,
+        @DefaultValue({"CRH4", "BRG4", "SBER", "LKOH"}) List<String> tickers
+) {
+}
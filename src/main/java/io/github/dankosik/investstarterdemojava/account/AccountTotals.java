@@ -0,0 +1,47 @@
+package io.github.dankosik.investstarterdemojava.account;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+
+/**
+ * Переиспользуемый контейнер для {@link AccountStateEngine#readTotals}: читатель заводит один экземпляр и читает в него
+ * без аллокаций. Суммы в fixed-point, см. {@link Prices#SCALE}
+ */
+public final class AccountTotals {
+
+    private int positions;
+    private long marketValue;
+    private long grossExposure;
+    private long unrealizedPnl;
+
+    void set(int positions, long marketValue, long grossExposure, long unrealizedPnl) {
+        this.positions = positions;
+        this.marketValue = marketValue;
+        this.grossExposure = grossExposure;
+        this.unrealizedPnl = unrealizedPnl;
+    }
+
+    public int positions() {
+        return positions;
+    }
+
+    /**
+     * Сумма стоимостей позиций с учетом знака (шорты отрицательные)
+     */
+    public long marketValue() {
+        return marketValue;
+    }
+
+    /**
+     * Сумма модулей стоимостей позиций
+     */
+    public long grossExposure() {
+        return grossExposure;
+    }
+
+    /**
+     * Стоимость позиций минус их стоимость по средним ценам
+     */
+    public long unrealizedPnl() {
+        return unrealizedPnl;
+    }
+}
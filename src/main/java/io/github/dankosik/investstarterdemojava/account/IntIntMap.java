@@ -0,0 +1,114 @@
+package io.github.dankosik.investstarterdemojava.account;
+
+import java.util.Arrays;
+
+/**
+ * int -> int хеш-таблица с открытой адресацией и линейным пробированием, ключи неотрицательные.
+ * Удаление сдвигает следующие элементы цепочки назад, поэтому надгробий нет и поиск не деградирует.
+ * Не потокобезопасна
+ */
+final class IntIntMap {
+
+    static final int MISSING = -1;
+
+    private static final int EMPTY = -1;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    IntIntMap(int expectedSize) {
+        int capacity = Math.max(Integer.highestOneBit(Math.max(expectedSize, 2) * 2 - 1) << 1, 4);
+        allocate(capacity);
+    }
+
+    int get(int key) {
+        int index = index(key);
+        while (true) {
+            int current = keys[index];
+            if (current == key) {
+                return values[index];
+            }
+            if (current == EMPTY) {
+                return MISSING;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    void put(int key, int value) {
+        int index = index(key);
+        while (true) {
+            int current = keys[index];
+            if (current == key) {
+                values[index] = value;
+                return;
+            }
+            if (current == EMPTY) {
+                keys[index] = key;
+                values[index] = value;
+                if (++size * 2 > keys.length) {
+                    grow();
+                }
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+    }
+
+    void remove(int key) {
+        int index = index(key);
+        while (keys[index] != key) {
+            if (keys[index] == EMPTY) {
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+        size--;
+        int hole = index;
+        while (true) {
+            index = (index + 1) & mask;
+            int current = keys[index];
+            if (current == EMPTY) {
+                break;
+            }
+            int home = index(current);
+            // элемент можно перенести в дыру, если его домашняя позиция не лежит между дырой и ним
+            if (((index - home) & mask) >= ((index - hole) & mask)) {
+                keys[hole] = current;
+                values[hole] = values[index];
+                hole = index;
+            }
+        }
+        keys[hole] = EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int index(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & mask;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        mask = capacity - 1;
+        size = 0;
+    }
+}
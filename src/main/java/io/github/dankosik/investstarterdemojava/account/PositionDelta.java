@@ -0,0 +1,74 @@
+package io.github.dankosik.investstarterdemojava.account;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+
+/**
+ * Изменение одной позиции счета, которое {@link AccountStateEngine} передает в {@link PositionDeltaHandler}.
+ * Неизменяемый, его можно сохранять и передавать в другие потоки.
+ * Количество и цены в fixed-point, см. {@link Prices#SCALE}
+ */
+public final class PositionDelta {
+
+    private final String accountId;
+    private final String instrumentUid;
+    private final long previousQuantity;
+    private final long quantity;
+    private final long averagePrice;
+    private final long price;
+
+    PositionDelta(String accountId, String instrumentUid, long previousQuantity, long quantity, long averagePrice, long price) {
+        this.accountId = accountId;
+        this.instrumentUid = instrumentUid;
+        this.previousQuantity = previousQuantity;
+        this.quantity = quantity;
+        this.averagePrice = averagePrice;
+        this.price = price;
+    }
+
+    public String accountId() {
+        return accountId;
+    }
+
+    public String instrumentUid() {
+        return instrumentUid;
+    }
+
+    /**
+     * Количество в штуках до изменения, 0 - позиция открылась
+     */
+    public long previousQuantity() {
+        return previousQuantity;
+    }
+
+    /**
+     * Количество в штуках после изменения, 0 - позиция закрылась
+     */
+    public long quantity() {
+        return quantity;
+    }
+
+    public long averagePrice() {
+        return averagePrice;
+    }
+
+    /**
+     * Текущая цена, по которой считается стоимость позиции
+     */
+    public long price() {
+        return price;
+    }
+
+    public boolean opened() {
+        return previousQuantity == 0 && quantity != 0;
+    }
+
+    public boolean closed() {
+        return quantity == 0;
+    }
+
+    @Override
+    public String toString() {
+        return accountId + " " + instrumentUid + " " + Prices.toDouble(previousQuantity) + " -> " + Prices.toDouble(quantity)
+                + " avg " + Prices.toDouble(averagePrice) + " price " + Prices.toDouble(price);
+    }
+}
@@ -0,0 +1,15 @@
+package io.github.dankosik.investstarterdemojava.account;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Подписчик на изменения позиций: вместо полного снимка портфеля получает только позиции, у которых поменялось
+ * количество или средняя цена. Бины с этим интерфейсом подключаются к {@link AccountStateEngine} автоматически.
+ * Вызывается после снятия блокировки счета в потоке, который принес обновление. Изменения одного обновления приходят
+ * по порядку, но обновления одного счета из разных потоков могут прийти в обработчик в другом порядке
+ */
+@FunctionalInterface
+public interface PositionDeltaHandler {
+
+    void onPositionDelta(@NotNull PositionDelta delta);
+}
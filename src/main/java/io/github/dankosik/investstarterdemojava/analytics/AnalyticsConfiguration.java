@@ -0,0 +1,33 @@
+package io.github.dankosik.investstarterdemojava.analytics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "demo.analytics", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(AnalyticsProperties.class)
+class AnalyticsConfiguration {
+
+    @Bean
+    public MarketAnalytics marketAnalytics(AnalyticsProperties properties) {
+        return new MarketAnalytics(properties.window(), properties.buckets());
+    }
+
+    /**
+     * События MarketAnalytics, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder analyticsMetrics(MarketAnalytics analytics) {
+        return registry -> {
+            Gauge.builder("demo.analytics.instruments", analytics, MarketAnalytics::size).register(registry);
+            FunctionCounter.builder("demo.analytics.trades", analytics, MarketAnalytics::tradeCount).register(registry);
+            FunctionCounter.builder("demo.analytics.lastprices", analytics, MarketAnalytics::lastPriceCount).register(registry);
+            FunctionCounter.builder("demo.analytics.late", analytics, MarketAnalytics::lateCount).register(registry);
+        };
+    }
+}
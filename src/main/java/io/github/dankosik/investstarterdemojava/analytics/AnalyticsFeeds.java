@@ -0,0 +1,57 @@
+package io.github.dankosik.investstarterdemojava.analytics;
+
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllLastPrices;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllTrades;
+import io.github.dankosik.starter.invest.contract.marketdata.lastprice.AsyncLastPriceHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Хендлеры которые кормят MarketAnalytics: регистрируются только при demo.analytics.enabled=true
+ * и выполняются перед остальными хендлерами, чтобы те видели статистику уже с текущим событием
+ */
+
+@HandleAllTrades(beforeEachTradesHandler = true)
+@ConditionalOnProperty(prefix = "demo.analytics", name = "enabled", havingValue = "true")
+class AnalyticsTradeFeed implements AsyncTradeHandler {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final MarketAnalytics marketAnalytics;
+
+    AnalyticsTradeFeed(MarketAnalytics marketAnalytics) {
+        this.marketAnalytics = marketAnalytics;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
+        marketAnalytics.onTrade(trade);
+        return DONE;
+    }
+}
+
+@HandleAllLastPrices(beforeEachLastPriceHandler = true)
+@ConditionalOnProperty(prefix = "demo.analytics", name = "enabled", havingValue = "true")
+class AnalyticsLastPriceFeed implements AsyncLastPriceHandler {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final MarketAnalytics marketAnalytics;
+
+    AnalyticsLastPriceFeed(MarketAnalytics marketAnalytics) {
+        this.marketAnalytics = marketAnalytics;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull LastPrice lastPrice) {
+        marketAnalytics.onLastPrice(lastPrice);
+        return DONE;
+    }
+}
@@ -0,0 +1,21 @@
+package io.github.dankosik.investstarterdemojava.analytics;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки {@link MarketAnalytics}
+ *
+ * @param enabled включает скользящую статистику по всем трейдам и последним ценам
+ * @param window  окно статистики по времени событий
+ * @param buckets на сколько корзин делится окно (точность сдвига окна)
+ */
+@ConfigurationProperties(prefix = "demo.analytics")
+public record AnalyticsProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("5m") Duration window,
+        @DefaultValue("60") int buckets
+) {
+}
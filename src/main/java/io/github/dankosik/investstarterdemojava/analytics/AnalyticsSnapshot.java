@@ -0,0 +1,123 @@
+package io.github.dankosik.investstarterdemojava.analytics;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+
+/**
+ * Переиспользуемый контейнер для {@link InstrumentAnalytics#read}: читатель заводит один экземпляр и читает в него без аллокаций.
+ * Все значения относятся к одной версии статистики инструмента. Цены в fixed-point, см. {@link Prices#SCALE}
+ */
+public final class AnalyticsSnapshot {
+
+    private String instrumentUid;
+    private long windowNanos;
+    private long vwap;
+    private long volume;
+    private long buyVolume;
+    private long sellVolume;
+    private long tradeCount;
+    private long returnCount;
+    private double volatility;
+    private long lastPrice;
+    private long timeNanos;
+    private long version;
+
+    void set(String instrumentUid, long windowNanos, long vwap, long volume, long buyVolume, long sellVolume, long tradeCount,
+             long returnCount, double volatility, long lastPrice, long timeNanos, long version) {
+        this.instrumentUid = instrumentUid;
+        this.windowNanos = windowNanos;
+        this.vwap = vwap;
+        this.volume = volume;
+        this.buyVolume = buyVolume;
+        this.sellVolume = sellVolume;
+        this.tradeCount = tradeCount;
+        this.returnCount = returnCount;
+        this.volatility = volatility;
+        this.lastPrice = lastPrice;
+        this.timeNanos = timeNanos;
+        this.version = version;
+    }
+
+    public String instrumentUid() {
+        return instrumentUid;
+    }
+
+    /**
+     * @return VWAP за окно или 0 если в окне не было сделок
+     */
+    public long vwap() {
+        return vwap;
+    }
+
+    /**
+     * @return объем в лотах за окно, включая сделки без направления
+     */
+    public long volume() {
+        return volume;
+    }
+
+    public long buyVolume() {
+        return buyVolume;
+    }
+
+    public long sellVolume() {
+        return sellVolume;
+    }
+
+    /**
+     * @return дисбаланс покупок и продаж от -1 (только продажи) до 1 (только покупки), 0 если сделок с направлением не было
+     */
+    public double imbalance() {
+        long total = buyVolume + sellVolume;
+        return total > 0 ? (double) (buyVolume - sellVolume) / total : 0;
+    }
+
+    public long tradeCount() {
+        return tradeCount;
+    }
+
+    /**
+     * @return сделок в секунду в среднем по окну
+     */
+    public double tradeRate() {
+        return windowNanos > 0 ? tradeCount * 1e9 / windowNanos : 0;
+    }
+
+    /**
+     * @return реализованная волатильность за окно - корень из суммы квадратов логарифмических доходностей последних цен, без годового пересчета
+     */
+    public double volatility() {
+        return volatility;
+    }
+
+    /**
+     * @return сколько доходностей вошло в волатильность
+     */
+    public long returnCount() {
+        return returnCount;
+    }
+
+    public long lastPrice() {
+        return lastPrice;
+    }
+
+    /**
+     * @return время самого нового учтенного события, по нему сдвигается окно
+     */
+    public long timeNanos() {
+        return timeNanos;
+    }
+
+    /**
+     * Номер версии статистики из которой прочитаны значения
+     */
+    public long version() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "AnalyticsSnapshot{" + instrumentUid + ", vwap=" + Prices.toDouble(vwap) + ", volume=" + volume
+                + ", imbalance=" + imbalance() + ", tradeRate=" + tradeRate() + ", volatility=" + volatility
+                + ", version=" + version + '}';
+    }
+}
@@ -0,0 +1,297 @@
+package io.github.dankosik.investstarterdemojava.analytics;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.TradeDirection;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Скользящая статистика одного инструмента за окно по времени событий: VWAP, объем покупок и продаж, число сделок
+ * и реализованная волатильность по логарифмическим доходностям последних цен.
+ * Окно разбито на корзины в примитивных массивах, суммы по окну ведутся на ходу: устаревшие корзины вычитаются
+ * при продвижении времени, поэтому событие стоит O(1) независимо от числа сделок в окне.
+ * Окно двигается только событиями инструмента, поэтому для затихшего инструмента статистику нужно читать
+ * через {@link #read(long, AnalyticsSnapshot)} с текущим временем.
+ * Чтение без блокировок через seqlock как в {@link io.github.dankosik.investstarterdemojava.orderbook.PriceLevelBook}:
+ * читатель получает суммы одной версии, писатели сериализуются на счетчике версии
+ */
+public final class InstrumentAnalytics {
+
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(InstrumentAnalytics.class, "sequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String instrumentUid;
+    private final long windowNanos;
+    private final long bucketNanos;
+    private final int buckets;
+    private final double[] notionals;
+    private final long[] volumes;
+    private final long[] buyVolumes;
+    private final long[] sellVolumes;
+    private final long[] trades;
+    private final double[] squaredReturns;
+    private final long[] returns;
+    @SuppressWarnings("unused")
+    private long sequence;
+    private long headBucket = Long.MIN_VALUE;
+    private double notional;
+    private long volume;
+    private long buyVolume;
+    private long sellVolume;
+    private long tradeCount;
+    private double squaredReturn;
+    private long returnCount;
+    private long lastPrice;
+    private long lastPriceNanos = Long.MIN_VALUE;
+    private long timeNanos;
+
+    public InstrumentAnalytics(@NotNull String instrumentUid, long windowNanos, int buckets) {
+        this.instrumentUid = instrumentUid;
+        this.windowNanos = windowNanos;
+        this.bucketNanos = Math.max(1, windowNanos / buckets);
+        this.buckets = buckets;
+        this.notionals = new double[buckets];
+        this.volumes = new long[buckets];
+        this.buyVolumes = new long[buckets];
+        this.sellVolumes = new long[buckets];
+        this.trades = new long[buckets];
+        this.squaredReturns = new double[buckets];
+        this.returns = new long[buckets];
+    }
+
+    @NotNull
+    public String instrumentUid() {
+        return instrumentUid;
+    }
+
+    /**
+     * @param price    цена сделки в fixed-point
+     * @param quantity объем в лотах
+     * @return false если сделка старше окна и не учтена
+     */
+    public boolean trade(long timeNanos, long price, long quantity, @NotNull TradeDirection direction) {
+        long sequence = beginWrite();
+        try {
+            int index = bucket(timeNanos);
+            if (index < 0) {
+                return false;
+            }
+            double tradeNotional = (double) price * quantity;
+            notionals[index] += tradeNotional;
+            notional += tradeNotional;
+            volumes[index] += quantity;
+            volume += quantity;
+            trades[index]++;
+            tradeCount++;
+            if (direction == TradeDirection.TRADE_DIRECTION_BUY) {
+                buyVolumes[index] += quantity;
+                buyVolume += quantity;
+            } else if (direction == TradeDirection.TRADE_DIRECTION_SELL) {
+                sellVolumes[index] += quantity;
+                sellVolume += quantity;
+            }
+            return true;
+        } finally {
+            SEQUENCE.setRelease(this, sequence + 2);
+        }
+    }
+
+    /**
+     * Доходность считается к предыдущей последней цене, цены пришедшие позже более новых пропускаются
+     *
+     * @param price последняя цена в fixed-point
+     * @return false если цена старше окна или предыдущей цены и не учтена
+     */
+    public boolean lastPrice(long timeNanos, long price) {
+        long sequence = beginWrite();
+        try {
+            if (price <= 0 || timeNanos < lastPriceNanos) {
+                return false;
+            }
+            int index = bucket(timeNanos);
+            if (index < 0) {
+                return false;
+            }
+            if (lastPrice > 0) {
+                double logReturn = Math.log((double) price / lastPrice);
+                double squared = logReturn * logReturn;
+                squaredReturns[index] += squared;
+                squaredReturn += squared;
+                returns[index]++;
+                returnCount++;
+            }
+            lastPrice = price;
+            lastPriceNanos = timeNanos;
+            return true;
+        } finally {
+            SEQUENCE.setRelease(this, sequence + 2);
+        }
+    }
+
+    /**
+     * Заполняет into суммами окна одной версии на время последнего события
+     */
+    public void read(@NotNull AnalyticsSnapshot into) {
+        read(Long.MIN_VALUE, into);
+    }
+
+    /**
+     * Заполняет into суммами окна одной версии на момент nowNanos: корзины, вышедшие из окна к этому моменту,
+     * вычитаются из копии сумм, состояние не меняется. Если событий не было дольше окна - статистика пустая
+     *
+     * @param nowNanos текущее время, наносекунды от эпохи
+     */
+    public void read(long nowNanos, @NotNull AnalyticsSnapshot into) {
+        long nowBucket = nowNanos == Long.MIN_VALUE ? Long.MIN_VALUE : Math.floorDiv(nowNanos, bucketNanos);
+        double notional, squaredReturn;
+        long volume, buyVolume, sellVolume, tradeCount, returnCount, lastPrice, time;
+        long sequence;
+        do {
+            sequence = beginRead();
+            notional = this.notional;
+            volume = this.volume;
+            buyVolume = this.buyVolume;
+            sellVolume = this.sellVolume;
+            tradeCount = this.tradeCount;
+            squaredReturn = this.squaredReturn;
+            returnCount = this.returnCount;
+            lastPrice = this.lastPrice;
+            time = this.timeNanos;
+            long head = this.headBucket;
+            if (head != Long.MIN_VALUE && nowBucket > head) {
+                if (nowBucket - head >= buckets) {
+                    notional = 0;
+                    volume = 0;
+                    buyVolume = 0;
+                    sellVolume = 0;
+                    tradeCount = 0;
+                    squaredReturn = 0;
+                    returnCount = 0;
+                } else {
+                    for (long b = head - buckets + 1; b <= nowBucket - buckets; b++) {
+                        int index = (int) Math.floorMod(b, buckets);
+                        notional -= notionals[index];
+                        volume -= volumes[index];
+                        buyVolume -= buyVolumes[index];
+                        sellVolume -= sellVolumes[index];
+                        tradeCount -= trades[index];
+                        squaredReturn -= squaredReturns[index];
+                        returnCount -= returns[index];
+                    }
+                    if (volume == 0) {
+                        notional = 0;
+                    }
+                    if (returnCount == 0) {
+                        squaredReturn = 0;
+                    }
+                }
+            }
+        } while (!validate(sequence));
+        into.set(instrumentUid, windowNanos, volume > 0 ? Math.round(notional / volume) : 0, volume, buyVolume, sellVolume,
+                tradeCount, returnCount, Math.sqrt(Math.max(squaredReturn, 0)), lastPrice, time, sequence >>> 1);
+    }
+
+    /**
+     * @return номер последней записанной версии
+     */
+    public long version() {
+        return (long) SEQUENCE.getAcquire(this) >>> 1;
+    }
+
+    /**
+     * Продвигает окно до timeNanos
+     *
+     * @return индекс корзины события или -1 если событие старше окна
+     */
+    private int bucket(long timeNanos) {
+        long bucket = Math.floorDiv(timeNanos, bucketNanos);
+        if (bucket > headBucket) {
+            advance(bucket);
+            this.timeNanos = timeNanos;
+        } else if (bucket <= headBucket - buckets) {
+            return -1;
+        } else if (timeNanos > this.timeNanos) {
+            this.timeNanos = timeNanos;
+        }
+        return (int) Math.floorMod(bucket, buckets);
+    }
+
+    private void advance(long bucket) {
+        if (headBucket == Long.MIN_VALUE || bucket - headBucket >= buckets) {
+            Arrays.fill(notionals, 0);
+            Arrays.fill(volumes, 0);
+            Arrays.fill(buyVolumes, 0);
+            Arrays.fill(sellVolumes, 0);
+            Arrays.fill(trades, 0);
+            Arrays.fill(squaredReturns, 0);
+            Arrays.fill(returns, 0);
+            notional = 0;
+            volume = 0;
+            buyVolume = 0;
+            sellVolume = 0;
+            tradeCount = 0;
+            squaredReturn = 0;
+            returnCount = 0;
+        } else {
+            for (long b = headBucket + 1; b <= bucket; b++) {
+                int index = (int) Math.floorMod(b, buckets);
+                notional -= notionals[index];
+                volume -= volumes[index];
+                buyVolume -= buyVolumes[index];
+                sellVolume -= sellVolumes[index];
+                tradeCount -= trades[index];
+                squaredReturn -= squaredReturns[index];
+                returnCount -= returns[index];
+                notionals[index] = 0;
+                volumes[index] = 0;
+                buyVolumes[index] = 0;
+                sellVolumes[index] = 0;
+                trades[index] = 0;
+                squaredReturns[index] = 0;
+                returns[index] = 0;
+            }
+            // не копим ошибку округления double когда окно опустело
+            if (volume == 0) {
+                notional = 0;
+            }
+            if (returnCount == 0) {
+                squaredReturn = 0;
+            }
+        }
+        headBucket = bucket;
+    }
+
+    private long beginWrite() {
+        while (true) {
+            long sequence = (long) SEQUENCE.getAcquire(this);
+            if ((sequence & 1) == 0 && SEQUENCE.compareAndSet(this, sequence, sequence + 1)) {
+                return sequence;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private long beginRead() {
+        while (true) {
+            long sequence = (long) SEQUENCE.getAcquire(this);
+            if ((sequence & 1) == 0) {
+                return sequence;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private boolean validate(long sequence) {
+        VarHandle.loadLoadFence();
+        return (long) SEQUENCE.getAcquire(this) == sequence;
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.dankosik.investstarterdemojava.analytics;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.contract.v1.TradeDirection;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Скользящая статистика всех инструментов по instrumentUid: VWAP, реализованная волатильность, дисбаланс покупок
+ * и продаж и темп сделок. Хендлеры трейдов и последних цен обновляют ее на каждом событии за O(1),
+ * стратегии читают готовые значения из любых потоков без блокировок вместо пересчета по спискам сделок
+ */
+public final class MarketAnalytics {
+
+    private final ConcurrentHashMap<String, InstrumentAnalytics> instruments = new ConcurrentHashMap<>();
+    private final long windowNanos;
+    private final int buckets;
+    private final LongAdder trades = new LongAdder();
+    private final LongAdder lastPrices = new LongAdder();
+    private final LongAdder late = new LongAdder();
+
+    /**
+     * @param window  длина скользящего окна по времени событий
+     * @param buckets на сколько корзин делится окно (точность сдвига окна)
+     */
+    public MarketAnalytics(@NotNull Duration window, int buckets) {
+        this.windowNanos = window.toNanos();
+        this.buckets = buckets;
+    }
+
+    public void onTrade(@NotNull Trade trade) {
+        onTrade(trade.getInstrumentUid(), Prices.toEpochNanos(trade.getTime()), Prices.toScaled(trade.getPrice()), trade.getQuantity(),
+                trade.getDirection());
+    }
+
+    /**
+     * То же что {@link #onTrade(Trade)} для уже разобранной сделки, например из облегченных обработчиков
+     *
+     * @param price    цена в fixed-point
+     * @param quantity объем в лотах
+     */
+    public void onTrade(@NotNull String instrumentUid, long timeNanos, long price, long quantity, @NotNull TradeDirection direction) {
+        trades.increment();
+        if (!analytics(instrumentUid).trade(timeNanos, price, quantity, direction)) {
+            late.increment();
+        }
+    }
+
+    public void onLastPrice(@NotNull LastPrice lastPrice) {
+        onLastPrice(lastPrice.getInstrumentUid(), Prices.toEpochNanos(lastPrice.getTime()), Prices.toScaled(lastPrice.getPrice()));
+    }
+
+    /**
+     * @param price последняя цена в fixed-point
+     */
+    public void onLastPrice(@NotNull String instrumentUid, long timeNanos, long price) {
+        lastPrices.increment();
+        if (!analytics(instrumentUid).lastPrice(timeNanos, price)) {
+            late.increment();
+        }
+    }
+
+    /**
+     * Заполняет into статистикой инструмента на время его последнего события
+     *
+     * @return false если по инструменту еще не было событий
+     */
+    public boolean read(@NotNull String instrumentUid, @NotNull AnalyticsSnapshot into) {
+        InstrumentAnalytics analytics = instruments.get(instrumentUid);
+        if (analytics == null) {
+            return false;
+        }
+        analytics.read(into);
+        return true;
+    }
+
+    /**
+     * Заполняет into статистикой инструмента на момент nowNanos: у инструмента без событий дольше окна она пустая
+     *
+     * @param nowNanos текущее время, наносекунды от эпохи
+     * @return false если по инструменту еще не было событий
+     */
+    public boolean read(@NotNull String instrumentUid, long nowNanos, @NotNull AnalyticsSnapshot into) {
+        InstrumentAnalytics analytics = instruments.get(instrumentUid);
+        if (analytics == null) {
+            return false;
+        }
+        analytics.read(nowNanos, into);
+        return true;
+    }
+
+    @Nullable
+    public InstrumentAnalytics instrument(@NotNull String instrumentUid) {
+        return instruments.get(instrumentUid);
+    }
+
+    public Collection<InstrumentAnalytics> instruments() {
+        return Collections.unmodifiableCollection(instruments.values());
+    }
+
+    public int size() {
+        return instruments.size();
+    }
+
+    public long tradeCount() {
+        return trades.sum();
+    }
+
+    public long lastPriceCount() {
+        return lastPrices.sum();
+    }
+
+    /**
+     * @return сколько событий не учтено: старше окна или последняя цена старше уже учтенной
+     */
+    public long lateCount() {
+        return late.sum();
+    }
+
+    private InstrumentAnalytics analytics(String instrumentUid) {
+        InstrumentAnalytics analytics = instruments.get(instrumentUid);
+        if (analytics == null) {
+            analytics = instruments.computeIfAbsent(instrumentUid, uid -> new InstrumentAnalytics(uid, windowNanos, buckets));
+        }
+        return analytics;
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.dankosik.investstarterdemojava.aot;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Reflection подсказки native-image для protobuf контракта Invest API.
+ * GeneratedMessageV3 находит аксессоры полей по имени через reflection (toString, TextFormat, JsonFormat, разбор enum полей),
+ * поэтому все сообщения, билдеры и enum из ru.tinkoff.piapi.contract.v1 регистрируются с публичными методами.
+ * Список классов берется с classpath во время AOT обработки, при обновлении SDK ничего не нужно дописывать руками
+ */
+class ContractRuntimeHints implements RuntimeHintsRegistrar {
+
+    static final String CONTRACT_PACKAGE = "ru.tinkoff.piapi.contract.v1";
+
+    @Override
+    public void registerHints(@NotNull RuntimeHints hints, ClassLoader classLoader) {
+        var resolver = new PathMatchingResourcePatternResolver(classLoader);
+        try {
+            for (Resource resource : resolver.getResources("classpath*:" + CONTRACT_PACKAGE.replace('.', '/') + "/*.class")) {
+                String file = resource.getFilename();
+                if (file == null || file.endsWith("Grpc.class") || file.contains("Grpc$")) {
+                    continue;
+                }
+                String className = CONTRACT_PACKAGE + "." + file.substring(0, file.length() - ".class".length());
+                hints.reflection().registerType(TypeReference.of(className), MemberCategory.INVOKE_PUBLIC_METHODS);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
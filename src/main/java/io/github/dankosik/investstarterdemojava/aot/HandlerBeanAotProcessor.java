@@ -0,0 +1,50 @@
+package io.github.dankosik.investstarterdemojava.aot;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.beans.factory.aot.BeanRegistrationAotContribution;
+import org.springframework.beans.factory.aot.BeanRegistrationAotProcessor;
+import org.springframework.beans.factory.support.RegisteredBean;
+
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * AOT обработка хендлеров: стартер регистрирует хендлеры в рантайме через getBeansWithAnnotation и
+ * bean.getClass().getAnnotation(...), а {@link io.github.dankosik.investstarterdemojava.metrics.HandlerPhase} читает
+ * атрибуты beforeEach/afterEach через reflection. Для каждого бина с @Handle* аннотацией стартера в native-image
+ * регистрируются сам класс и типы его аннотаций с публичными методами.
+ * Определения бинов хендлеров при этом генерирует обычная AOT обработка Spring, сканирования classpath в рантайме нет
+ */
+class HandlerBeanAotProcessor implements BeanRegistrationAotProcessor {
+
+    static final String ANNOTATION_PACKAGE = "io.github.dankosik.starter.invest.annotation";
+
+    @Nullable
+    @Override
+    public BeanRegistrationAotContribution processAheadOfTime(@NotNull RegisteredBean registeredBean) {
+        Class<?> beanClass = registeredBean.getBeanClass();
+        List<Class<? extends Annotation>> annotations = handlerAnnotations(beanClass);
+        if (annotations.isEmpty()) {
+            return null;
+        }
+        return (generationContext, beanRegistrationCode) -> registerHints(generationContext.getRuntimeHints(), beanClass, annotations);
+    }
+
+    static List<Class<? extends Annotation>> handlerAnnotations(Class<?> beanClass) {
+        return Arrays.stream(beanClass.getAnnotations())
+                .<Class<? extends Annotation>>map(Annotation::annotationType)
+                .filter(type -> type.getPackageName().startsWith(ANNOTATION_PACKAGE))
+                .toList();
+    }
+
+    static void registerHints(RuntimeHints hints, Class<?> beanClass, List<Class<? extends Annotation>> annotations) {
+        hints.reflection().registerType(beanClass, MemberCategory.INVOKE_PUBLIC_METHODS);
+        for (Class<? extends Annotation> annotation : annotations) {
+            hints.reflection().registerType(annotation, MemberCategory.INVOKE_PUBLIC_METHODS);
+        }
+    }
+}
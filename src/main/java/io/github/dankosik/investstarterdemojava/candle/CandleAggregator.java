@@ -0,0 +1,325 @@
+package io.github.dankosik.investstarterdemojava.candle;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Собирает свечи старших таймфреймов и скользящий VWAP по каждому инструменту из трейдов или минутных свечей,
+ * вместо отдельной подписки на каждый интервал.
+ * На событие - O(1) на таймфрейм, состояние в примитивных массивах, без боксинга.
+ * Бар закрывается (передается в {@link ClosedBarHandler}) когда приходит событие следующего бара
+ * или когда {@link #closeExpired} видит что бар закончился больше closeDelay назад - как waitClose у стартера.
+ * Закрытый бар больше не открывается: опоздавшие трейды и свечи за уже закрытый интервал пропускаются
+ * и считаются в {@link #lateUpdateCount()}. Закрытые бары собираются под блокировкой инструмента, а обработчики
+ * вызываются уже после нее, так что медленный обработчик не держит следующие события инструмента.
+ * <p>
+ * Минутные свечи в стриме приходят много раз за минуту с нарастающим объемом, поэтому объем текущей минуты
+ * не суммируется, а заменяется. Источник надо выбрать один: трейды и свечи одного инструмента вместе посчитают объем дважды
+ */
+public final class CandleAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(CandleAggregator.class);
+
+    private final Timeframe[] timeframes;
+    private final List<ClosedBarHandler> handlers;
+    private final long closeDelayNanos;
+    private final long vwapWindowNanos;
+    private final int vwapBuckets;
+    private final ConcurrentHashMap<String, InstrumentBars> instruments = new ConcurrentHashMap<>();
+    private final LongAdder closedBars = new LongAdder();
+    private final LongAdder lateUpdates = new LongAdder();
+
+    public CandleAggregator(@NotNull List<Timeframe> timeframes, @NotNull List<ClosedBarHandler> handlers,
+                            @NotNull Duration closeDelay, @NotNull Duration vwapWindow, int vwapBuckets) {
+        this.timeframes = timeframes.toArray(Timeframe[]::new);
+        this.handlers = List.copyOf(handlers);
+        this.closeDelayNanos = closeDelay.toNanos();
+        this.vwapWindowNanos = vwapWindow.toNanos();
+        this.vwapBuckets = vwapBuckets;
+    }
+
+    public void onTrade(@NotNull Trade trade) {
+        InstrumentBars bars = bars(trade.getInstrumentUid());
+        long time = Prices.toEpochNanos(trade.getTime());
+        long price = Prices.toScaled(trade.getPrice());
+        long quantity = trade.getQuantity();
+        ClosedBar[] closed;
+        synchronized (bars) {
+            boolean late = false;
+            for (int i = 0; i < timeframes.length; i++) {
+                if (bars.isClosed(i, time)) {
+                    late = true;
+                    continue;
+                }
+                bars.rollIfNeeded(i, time);
+                bars.trade(i, time, price, quantity);
+            }
+            if (late) {
+                lateUpdates.increment();
+            }
+            bars.vwap.add(time, price, quantity);
+            closed = bars.takeClosed();
+        }
+        deliver(closed);
+    }
+
+    /**
+     * Свечи других интервалов кроме минутных пропускаются
+     */
+    public void onCandle(@NotNull Candle candle) {
+        if (candle.getInterval() != SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE) {
+            return;
+        }
+        InstrumentBars bars = bars(candle.getInstrumentUid());
+        long minute = Prices.toEpochNanos(candle.getTime());
+        long open = Prices.toScaled(candle.getOpen());
+        long high = Prices.toScaled(candle.getHigh());
+        long low = Prices.toScaled(candle.getLow());
+        long close = Prices.toScaled(candle.getClose());
+        long volume = candle.getVolume();
+        long lastTrade = candle.hasLastTradeTs() ? Prices.toEpochNanos(candle.getLastTradeTs()) : minute;
+        ClosedBar[] closed;
+        synchronized (bars) {
+            if (minute < bars.minuteStart) {
+                // обновление уже прошедшей минуты
+                return;
+            }
+            boolean newMinute = minute != bars.minuteStart;
+            long volumeDelta = newMinute ? volume : volume - bars.minuteVolume;
+            boolean late = false;
+            for (int i = 0; i < timeframes.length; i++) {
+                if (bars.isClosed(i, minute)) {
+                    // closeExpired уже закрыл бар этой минуты
+                    late = true;
+                    continue;
+                }
+                if (newMinute || bars.start[i] == Long.MIN_VALUE) {
+                    bars.rollIfNeeded(i, minute);
+                    bars.volumeBeforeMinute[i] = bars.volume[i];
+                }
+                bars.minuteCandle(i, open, high, low, close, volume, lastTrade);
+            }
+            if (late) {
+                lateUpdates.increment();
+            }
+            bars.minuteStart = minute;
+            bars.minuteVolume = volume;
+            if (volumeDelta > 0) {
+                bars.vwap.add(lastTrade, close, volumeDelta);
+            }
+            closed = bars.takeClosed();
+        }
+        deliver(closed);
+    }
+
+    /**
+     * Закрывает бары которые закончились больше closeDelay назад, для инструментов по которым давно не было событий
+     *
+     * @param nowNanos текущее время, наносекунды от эпохи
+     */
+    public void closeExpired(long nowNanos) {
+        for (InstrumentBars bars : instruments.values()) {
+            ClosedBar[] closed;
+            synchronized (bars) {
+                for (int i = 0; i < timeframes.length; i++) {
+                    if (bars.start[i] != Long.MIN_VALUE && bars.start[i] + timeframes[i].nanos() + closeDelayNanos <= nowNanos) {
+                        bars.close(i);
+                    }
+                }
+                closed = bars.takeClosed();
+            }
+            deliver(closed);
+        }
+    }
+
+    /**
+     * @return скользящий VWAP в fixed-point или 0 если в окне не было сделок
+     */
+    public long vwap(@NotNull String instrumentUid) {
+        InstrumentBars bars = instruments.get(instrumentUid);
+        if (bars == null) {
+            return 0;
+        }
+        synchronized (bars) {
+            return bars.vwap.vwap();
+        }
+    }
+
+    /**
+     * @return объем в лотах за скользящее окно
+     */
+    public long rollingVolume(@NotNull String instrumentUid) {
+        InstrumentBars bars = instruments.get(instrumentUid);
+        if (bars == null) {
+            return 0;
+        }
+        synchronized (bars) {
+            return bars.vwap.volume();
+        }
+    }
+
+    public long closedBarCount() {
+        return closedBars.sum();
+    }
+
+    /**
+     * Трейдов и минутных свечей, пришедших после закрытия их бара хотя бы на одном таймфрейме
+     */
+    public long lateUpdateCount() {
+        return lateUpdates.sum();
+    }
+
+    public int instrumentCount() {
+        return instruments.size();
+    }
+
+    private void deliver(ClosedBar[] closed) {
+        if (closed == null) {
+            return;
+        }
+        for (ClosedBar bar : closed) {
+            if (bar == null) {
+                continue;
+            }
+            for (ClosedBarHandler handler : handlers) {
+                try {
+                    handler.onClosedBar(bar);
+                } catch (RuntimeException e) {
+                    log.error("ошибка в обработчике закрытого бара {}", handler, e);
+                }
+            }
+        }
+    }
+
+    private InstrumentBars bars(String instrumentUid) {
+        InstrumentBars bars = instruments.get(instrumentUid);
+        if (bars == null) {
+            bars = instruments.computeIfAbsent(instrumentUid, InstrumentBars::new);
+        }
+        return bars;
+    }
+
+    /**
+     * Текущие бары одного инструмента по всем таймфреймам, индекс массива - индекс таймфрейма.
+     * Long.MIN_VALUE в start - бар еще не начат. closedThrough - конец последнего закрытого бара,
+     * события раньше него в бар уже не попадут. closed - бары закрытые под текущей блокировкой, по одному на таймфрейм
+     */
+    private final class InstrumentBars {
+
+        final String instrumentUid;
+        final long[] start;
+        final long[] open;
+        final long[] high;
+        final long[] low;
+        final long[] close;
+        final long[] volume;
+        final long[] lastTrade;
+        final long[] volumeBeforeMinute;
+        final long[] closedThrough;
+        final RollingVwap vwap = new RollingVwap(vwapWindowNanos, vwapBuckets);
+        ClosedBar[] closed;
+        long minuteStart = Long.MIN_VALUE;
+        long minuteVolume;
+
+        InstrumentBars(String instrumentUid) {
+            this.instrumentUid = instrumentUid;
+            int count = timeframes.length;
+            this.start = new long[count];
+            this.open = new long[count];
+            this.high = new long[count];
+            this.low = new long[count];
+            this.close = new long[count];
+            this.volume = new long[count];
+            this.lastTrade = new long[count];
+            this.volumeBeforeMinute = new long[count];
+            this.closedThrough = new long[count];
+            Arrays.fill(start, Long.MIN_VALUE);
+            Arrays.fill(closedThrough, Long.MIN_VALUE);
+        }
+
+        boolean isClosed(int i, long time) {
+            return time < closedThrough[i];
+        }
+
+        void rollIfNeeded(int i, long time) {
+            long barStart = timeframes[i].barStart(time);
+            if (start[i] != Long.MIN_VALUE && barStart > start[i]) {
+                close(i);
+            }
+            if (start[i] == Long.MIN_VALUE) {
+                start[i] = barStart;
+            }
+        }
+
+        void trade(int i, long time, long price, long quantity) {
+            if (open[i] == 0) {
+                open[i] = price;
+                high[i] = price;
+                low[i] = price;
+            } else {
+                high[i] = Math.max(high[i], price);
+                low[i] = Math.min(low[i], price);
+            }
+            close[i] = price;
+            volume[i] += quantity;
+            lastTrade[i] = Math.max(lastTrade[i], time);
+        }
+
+        void minuteCandle(int i, long o, long h, long l, long c, long v, long lastTradeNanos) {
+            if (open[i] == 0) {
+                open[i] = o;
+                high[i] = h;
+                low[i] = l;
+            } else {
+                high[i] = Math.max(high[i], h);
+                low[i] = Math.min(low[i], l);
+            }
+            close[i] = c;
+            volume[i] = volumeBeforeMinute[i] + v;
+            lastTrade[i] = Math.max(lastTrade[i], lastTradeNanos);
+        }
+
+        void close(int i) {
+            if (start[i] != Long.MIN_VALUE) {
+                closedThrough[i] = Math.max(closedThrough[i], start[i] + timeframes[i].nanos());
+            }
+            if (open[i] != 0) {
+                if (closed == null) {
+                    closed = new ClosedBar[timeframes.length];
+                }
+                ClosedBar bar = new ClosedBar();
+                bar.set(instrumentUid, timeframes[i], start[i], open[i], high[i], low[i], close[i], volume[i], lastTrade[i]);
+                closed[i] = bar;
+                closedBars.increment();
+            }
+            start[i] = Long.MIN_VALUE;
+            open[i] = 0;
+            high[i] = 0;
+            low[i] = 0;
+            close[i] = 0;
+            volume[i] = 0;
+            lastTrade[i] = 0;
+            volumeBeforeMinute[i] = 0;
+        }
+
+        /**
+         * @return бары закрытые с прошлого вызова или null
+         */
+        ClosedBar[] takeClosed() {
+            ClosedBar[] taken = closed;
+            closed = null;
+            return taken;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.dankosik.investstarterdemojava.candle;
+
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@ConditionalOnProperty(prefix = "demo.candles", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(CandleAggregatorProperties.class)
+class CandleAggregatorConfiguration {
+
+    @Bean
+    public CandleAggregator candleAggregator(CandleAggregatorProperties properties, ObjectProvider<ClosedBarHandler> handlers) {
+        return new CandleAggregator(
+                properties.timeframes(),
+                handlers.orderedStream().toList(),
+                properties.closeDelay(),
+                properties.vwapWindow(),
+                properties.vwapBuckets()
+        );
+    }
+
+    /**
+     * Закрывает бары инструментов по которым перестали приходить события
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService candleAggregatorTimer(CandleAggregator candleAggregator, CandleAggregatorProperties properties) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("candle-aggregator-timer").daemon().factory());
+        long interval = properties.closeCheckInterval().toMillis();
+        timer.scheduleAtFixedRate(() -> candleAggregator.closeExpired(EpochClock.nanos()), interval, interval, TimeUnit.MILLISECONDS);
+        return timer;
+    }
+}
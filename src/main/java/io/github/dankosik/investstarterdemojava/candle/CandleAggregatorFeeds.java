@@ -0,0 +1,79 @@
+package io.github.dankosik.investstarterdemojava.candle;
+
+import io.github.dankosik.investstarterdemojava.sink.EventSink;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllCandles;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllTrades;
+import io.github.dankosik.starter.invest.contract.marketdata.candle.AsyncCandleHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Хендлеры которые кормят CandleAggregator, регистрируется только один в зависимости от demo.candles.source
+ */
+
+@HandleAllTrades
+@ConditionalOnExpression("${demo.candles.enabled:false} and '${demo.candles.source:TRADES}' == 'TRADES'")
+class CandleAggregatorTradeFeed implements AsyncTradeHandler {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final CandleAggregator candleAggregator;
+
+    CandleAggregatorTradeFeed(CandleAggregator candleAggregator) {
+        this.candleAggregator = candleAggregator;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
+        candleAggregator.onTrade(trade);
+        return DONE;
+    }
+}
+
+@HandleAllCandles(subscriptionInterval = SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+@ConditionalOnExpression("${demo.candles.enabled:false} and '${demo.candles.source:TRADES}' == 'CANDLES'")
+class CandleAggregatorCandleFeed implements AsyncCandleHandler {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final CandleAggregator candleAggregator;
+
+    CandleAggregatorCandleFeed(CandleAggregator candleAggregator) {
+        this.candleAggregator = candleAggregator;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Candle candle) {
+        candleAggregator.onCandle(candle);
+        return DONE;
+    }
+}
+
+/**
+ * Пример обработчика закрытых баров: выводит их как свечи нужного интервала
+ */
+@Component
+@ConditionalOnProperty(prefix = "demo.candles", name = "enabled", havingValue = "true")
+class EventSinkClosedBarHandler implements ClosedBarHandler {
+
+    private final EventSink eventSink;
+
+    EventSinkClosedBarHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
+    @Override
+    public void onClosedBar(@NotNull ClosedBar bar) {
+        eventSink.publish("ClosedBar", bar.toCandle());
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.dankosik.investstarterdemojava.candle;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Настройки {@link CandleAggregator}
+ *
+ * @param enabled            включает локальную сборку свечей
+ * @param source             из чего собирать свечи
+ * @param timeframes         какие таймфреймы собирать
+ * @param closeDelay         сколько ждать опоздавшие события после конца бара прежде чем закрыть его по таймеру
+ * @param closeCheckInterval как часто проверять бары по таймеру
+ * @param vwapWindow         окно скользящего VWAP и объема
+ * @param vwapBuckets        на сколько корзин делится окно VWAP (точность сдвига окна)
+ */
+@ConfigurationProperties(prefix = "demo.candles")
+public record CandleAggregatorProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("TRADES") Source source,
+        @DefaultValue({"TWO_MINUTES", "FIVE_MINUTES", "FIFTEEN_MINUTES", "ONE_HOUR"}) List<Timeframe> timeframes,
+        @DefaultValue("2s") Duration closeDelay,
+        @DefaultValue("1s") Duration closeCheckInterval,
+        @DefaultValue("5m") Duration vwapWindow,
+        @DefaultValue("60") int vwapBuckets
+) {
+
+    public enum Source {
+        /**
+         * из всех трейдов (@HandleAllTrades)
+         */
+        TRADES,
+        /**
+         * из минутных свечей (@HandleAllCandles с SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+         */
+        CANDLES
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.dankosik.investstarterdemojava.candle;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import ru.tinkoff.piapi.contract.v1.Candle;
+
+/**
+ * Закрытый бар который {@link CandleAggregator} передает в {@link ClosedBarHandler}.
+ * На каждый закрытый бар свой объект, обработчики его не меняют, поэтому ссылку можно сохранить.
+ * Цены в fixed-point, см. {@link Prices#SCALE}
+ */
+public final class ClosedBar {
+
+    private String instrumentUid;
+    private Timeframe timeframe;
+    private long startNanos;
+    private long open;
+    private long high;
+    private long low;
+    private long close;
+    private long volume;
+    private long lastTradeNanos;
+
+    void set(String instrumentUid, Timeframe timeframe, long startNanos, long open, long high, long low, long close,
+             long volume, long lastTradeNanos) {
+        this.instrumentUid = instrumentUid;
+        this.timeframe = timeframe;
+        this.startNanos = startNanos;
+        this.open = open;
+        this.high = high;
+        this.low = low;
+        this.close = close;
+        this.volume = volume;
+        this.lastTradeNanos = lastTradeNanos;
+    }
+
+    public String instrumentUid() {
+        return instrumentUid;
+    }
+
+    public Timeframe timeframe() {
+        return timeframe;
+    }
+
+    public long startNanos() {
+        return startNanos;
+    }
+
+    public long open() {
+        return open;
+    }
+
+    public long high() {
+        return high;
+    }
+
+    public long low() {
+        return low;
+    }
+
+    public long close() {
+        return close;
+    }
+
+    /**
+     * Объем в лотах
+     */
+    public long volume() {
+        return volume;
+    }
+
+    public long lastTradeNanos() {
+        return lastTradeNanos;
+    }
+
+    /**
+     * Бар в виде свечи из стрима, с таким же interval как при подписке на {@link Timeframe#subscriptionInterval()}
+     */
+    public Candle toCandle() {
+        return Candle.newBuilder()
+                .setInstrumentUid(instrumentUid)
+                .setInterval(timeframe.subscriptionInterval())
+                .setOpen(Prices.toQuotation(open))
+                .setHigh(Prices.toQuotation(high))
+                .setLow(Prices.toQuotation(low))
+                .setClose(Prices.toQuotation(close))
+                .setVolume(volume)
+                .setTime(Prices.toTimestamp(startNanos))
+                .setLastTradeTs(Prices.toTimestamp(lastTradeNanos))
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return "ClosedBar{" + instrumentUid + " " + timeframe + " start=" + startNanos + " o=" + open + " h=" + high
+                + " l=" + low + " c=" + close + " v=" + volume + '}';
+    }
+}
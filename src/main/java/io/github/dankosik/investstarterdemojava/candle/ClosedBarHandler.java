@@ -0,0 +1,15 @@
+package io.github.dankosik.investstarterdemojava.candle;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Обработчик закрытых баров, аналог хендлера свечей с waitClose: бар передается один раз, когда он закончился.
+ * Бины с этим интерфейсом подключаются к {@link CandleAggregator} автоматически.
+ * Вызывается в потоке события, закрывшего бар, уже после блокировки инструмента. Бары одного инструмента
+ * из разных потоков могут прийти не по порядку времени
+ */
+@FunctionalInterface
+public interface ClosedBarHandler {
+
+    void onClosedBar(@NotNull ClosedBar bar);
+}
@@ -0,0 +1,78 @@
+package io.github.dankosik.investstarterdemojava.candle;
+
+import java.util.Arrays;
+
+/**
+ * Скользящие VWAP и объем за окно по времени событий.
+ * Окно разбито на buckets корзин, устаревшие корзины вычитаются из сумм при продвижении времени, поэтому добавление O(1).
+ * Не потокобезопасен
+ */
+final class RollingVwap {
+
+    private final long bucketNanos;
+    private final int buckets;
+    private final long[] volumes;
+    private final double[] notionals;
+    private long headBucket = Long.MIN_VALUE;
+    private long volume;
+    private double notional;
+
+    RollingVwap(long windowNanos, int buckets) {
+        this.bucketNanos = Math.max(1, windowNanos / buckets);
+        this.buckets = buckets;
+        this.volumes = new long[buckets];
+        this.notionals = new double[buckets];
+    }
+
+    /**
+     * @param price    цена в fixed-point
+     * @param quantity объем в лотах
+     */
+    void add(long timeNanos, long price, long quantity) {
+        long bucket = Math.floorDiv(timeNanos, bucketNanos);
+        if (bucket > headBucket) {
+            advance(bucket);
+        } else if (bucket <= headBucket - buckets) {
+            // старше окна
+            return;
+        }
+        int index = (int) Math.floorMod(bucket, buckets);
+        volumes[index] += quantity;
+        notionals[index] += (double) price * quantity;
+        volume += quantity;
+        notional += (double) price * quantity;
+    }
+
+    /**
+     * @return VWAP в fixed-point или 0 если в окне нет объема
+     */
+    long vwap() {
+        return volume > 0 ? Math.round(notional / volume) : 0;
+    }
+
+    long volume() {
+        return volume;
+    }
+
+    private void advance(long bucket) {
+        if (headBucket == Long.MIN_VALUE || bucket - headBucket >= buckets) {
+            Arrays.fill(volumes, 0);
+            Arrays.fill(notionals, 0);
+            volume = 0;
+            notional = 0;
+        } else {
+            for (long b = headBucket + 1; b <= bucket; b++) {
+                int index = (int) Math.floorMod(b, buckets);
+                volume -= volumes[index];
+                notional -= notionals[index];
+                volumes[index] = 0;
+                notionals[index] = 0;
+            }
+            if (volume == 0) {
+                // не копим ошибку округления double когда окно опустело
+                notional = 0;
+            }
+        }
+        headBucket = bucket;
+    }
+}
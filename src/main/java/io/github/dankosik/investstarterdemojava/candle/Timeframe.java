@@ -0,0 +1,41 @@
+package io.github.dankosik.investstarterdemojava.candle;
+
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Таймфреймы которые {@link CandleAggregator} собирает локально, без отдельной подписки на каждый интервал
+ */
+public enum Timeframe {
+    TWO_MINUTES(TimeUnit.MINUTES.toNanos(2), SubscriptionInterval.SUBSCRIPTION_INTERVAL_2_MIN),
+    FIVE_MINUTES(TimeUnit.MINUTES.toNanos(5), SubscriptionInterval.SUBSCRIPTION_INTERVAL_FIVE_MINUTES),
+    FIFTEEN_MINUTES(TimeUnit.MINUTES.toNanos(15), SubscriptionInterval.SUBSCRIPTION_INTERVAL_FIFTEEN_MINUTES),
+    ONE_HOUR(TimeUnit.HOURS.toNanos(1), SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_HOUR);
+
+    private final long nanos;
+    private final SubscriptionInterval subscriptionInterval;
+
+    Timeframe(long nanos, SubscriptionInterval subscriptionInterval) {
+        this.nanos = nanos;
+        this.subscriptionInterval = subscriptionInterval;
+    }
+
+    public long nanos() {
+        return nanos;
+    }
+
+    /**
+     * Интервал которым помечаются собранные свечи, такой же как у свечей из стрима
+     */
+    public SubscriptionInterval subscriptionInterval() {
+        return subscriptionInterval;
+    }
+
+    /**
+     * Начало бара в который попадает время epochNanos
+     */
+    public long barStart(long epochNanos) {
+        return Math.floorDiv(epochNanos, nanos) * nanos;
+    }
+}
@@ -0,0 +1,119 @@
+package io.github.dankosik.investstarterdemojava.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+
+/**
+ * Слот последнего события одного ключа (обычно инструмента) для слияния обновлений: новое событие атомарно заменяет
+ * необработанное, а сам слот лежит в очереди не больше одного раза.
+ * Писатель вызывает {@link #set} и кладет слот в очередь если {@link #markQueued} вернул true.
+ * Если слот разбирают несколько потоков - {@link #begin}/{@link #finish}, тогда один слот не обрабатывается
+ * двумя потоками одновременно. Если один поток - {@link #take}, слот снова можно класть в очередь еще до обработки.
+ * Состояния: IDLE - не в очереди, QUEUED - в очереди, RUNNING - обрабатывается,
+ * RUNNING_DIRTY - обрабатывается и за это время пришло новое событие
+ */
+public final class ConflationSlot<T> {
+
+    private static final int IDLE = 0;
+    private static final int QUEUED = 1;
+    private static final int RUNNING = 2;
+    private static final int RUNNING_DIRTY = 3;
+
+    private final Consumer<T> handler;
+    private final AtomicReference<T> latest = new AtomicReference<>();
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+
+    public ConflationSlot(@NotNull Consumer<T> handler) {
+        this.handler = handler;
+    }
+
+    @NotNull
+    public Consumer<T> handler() {
+        return handler;
+    }
+
+    /**
+     * @return true если событие заменило еще не обработанное
+     */
+    public boolean set(@NotNull T event) {
+        return latest.getAndSet(event) != null;
+    }
+
+    /**
+     * Как {@link #set}, но новое событие объединяется с еще не обработанным: merge(необработанное или null, новое)
+     *
+     * @return событие которое теперь лежит в слоте
+     */
+    @NotNull
+    public T accumulate(@NotNull T event, @NotNull BinaryOperator<T> merge) {
+        return latest.accumulateAndGet(event, merge);
+    }
+
+    /**
+     * @return true если слот надо положить в очередь: его там нет и он не обрабатывается
+     */
+    public boolean markQueued() {
+        while (true) {
+            int current = state.get();
+            if (current == IDLE) {
+                if (state.compareAndSet(IDLE, QUEUED)) {
+                    return true;
+                }
+            } else if (current == RUNNING) {
+                if (state.compareAndSet(RUNNING, RUNNING_DIRTY)) {
+                    return false;
+                }
+            } else {
+                // QUEUED или RUNNING_DIRTY: слот и так будет обработан еще раз
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Начало обработки слота взятого из очереди, пока не вызван {@link #finish} писатели не кладут его в очередь
+     *
+     * @return последнее событие или null если его уже забрали
+     */
+    @Nullable
+    public T begin() {
+        state.set(RUNNING);
+        return latest.getAndSet(null);
+    }
+
+    /**
+     * @return true если пока шла обработка пришло новое событие и слот надо снова положить в очередь
+     */
+    public boolean finish() {
+        if (state.compareAndSet(RUNNING, IDLE)) {
+            return false;
+        }
+        state.set(QUEUED);
+        return true;
+    }
+
+    /**
+     * Забирает последнее событие слота взятого из очереди, когда слоты разбирает один поток.
+     * Следующее событие снова положит слот в очередь, даже если это еще не обработано
+     *
+     * @return последнее событие или null если его уже забрали
+     */
+    @Nullable
+    public T take() {
+        state.set(IDLE);
+        return latest.getAndSet(null);
+    }
+
+    /**
+     * Выбрасывает событие слота, который не удалось положить в очередь
+     */
+    public void discard() {
+        latest.set(null);
+        state.set(IDLE);
+    }
+}
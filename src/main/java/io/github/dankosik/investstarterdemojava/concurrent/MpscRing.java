@@ -0,0 +1,109 @@
+package io.github.dankosik.investstarterdemojava.concurrent;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded MPSC очередь на кольцевом буфере (схема Вьюкова): писать могут любые потоки без блокировок,
+ * читать - только один поток. Не создает объектов на offer/poll
+ */
+public final class MpscRing<E> {
+
+    private final int mask;
+    private final Object[] elements;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity округляется вверх до степени двойки
+     */
+    public MpscRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity должна быть положительной");
+        }
+        int size = Math.max(Integer.highestOneBit(capacity - 1) << 1, 2);
+        this.mask = size - 1;
+        this.elements = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return false если очередь заполнена
+     */
+    public boolean offer(@NotNull E element) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long diff = sequences.getAcquire(index) - position;
+            if (diff == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements[index] = element;
+                    sequences.setRelease(index, position + 1);
+                    return true;
+                }
+                position = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Только для потока-читателя
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public E poll() {
+        long position = head.getPlain();
+        int index = (int) (position & mask);
+        if (sequences.getAcquire(index) != position + 1) {
+            return null;
+        }
+        E element = (E) elements[index];
+        elements[index] = null;
+        sequences.setRelease(index, position + mask + 1);
+        head.setRelease(position + 1);
+        return element;
+    }
+
+    /**
+     * Забирает до limit элементов подряд. Только для потока-читателя
+     *
+     * @return сколько элементов передано в consumer
+     */
+    public int drain(@NotNull Consumer<? super E> consumer, int limit) {
+        int count = 0;
+        E element;
+        while (count < limit && (element = poll()) != null) {
+            consumer.accept(element);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Примерный размер, можно вызывать из любого потока
+     */
+    public int size() {
+        long size = tail.get() - head.getAcquire();
+        return (int) Math.max(0, Math.min(size, mask + 1));
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+}
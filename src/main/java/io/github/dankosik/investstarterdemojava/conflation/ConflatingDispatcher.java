@@ -0,0 +1,305 @@
+package io.github.dankosik.investstarterdemojava.conflation;
+
+import io.github.dankosik.investstarterdemojava.concurrent.ConflationSlot;
+import io.github.dankosik.investstarterdemojava.concurrent.MpmcRing;
+import io.github.dankosik.investstarterdemojava.executor.LaneThreads;
+import io.github.dankosik.starter.invest.contract.marketdata.lastprice.AsyncLastPriceHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.AsyncOrderBookHandler;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Слияние обновлений для хендлеров которым нужно только последнее состояние инструмента (последние цены, стаканы).
+ * Для каждого обработчика и инструмента есть один слот, новое событие атомарно заменяет в нем предыдущее.
+ * Слот попадает в очередь грязных слотов только один раз, пока его не разобрали, поэтому память и задержка
+ * не растут с размером всплеска: в худшем случае в очереди по одному слоту на инструмент.
+ * Один слот никогда не обрабатывается двумя потоками одновременно, порядок обновлений инструмента сохраняется.
+ * Хендлер оборачивается один раз, например в конструкторе:
+ * <pre>{@code
+ * this.conflated = conflatingDispatcher.lastPrices(this::process);
+ * }</pre>
+ * Future async обертки завершается когда исходный хендлер обработал это событие или заменившее его более новое,
+ * поэтому стартер запускает afterEach хендлеры только после обработки. Blocking обертки для createBlockingHandler
+ * возвращаются сразу, не дожидаясь обработки.
+ * После {@link #close()} события передаются исходному хендлеру напрямую
+ */
+public final class ConflatingDispatcher implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ConflatingDispatcher.class);
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+    private static final long FULL_PARK_NANOS = 1_000;
+
+    private final boolean enabled;
+    private final MpmcRing<ConflationSlot<?>> dirty;
+    private final Worker[] workers;
+    private final LongAdder received = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dispatched = new LongAdder();
+    private volatile boolean running = true;
+
+    public ConflatingDispatcher(boolean enabled, int workers, @NotNull LaneThreads threads, int maxInstruments) {
+        this.enabled = enabled;
+        this.dirty = new MpmcRing<>(maxInstruments);
+        this.workers = new Worker[enabled ? workers : 0];
+        for (int i = 0; i < this.workers.length; i++) {
+            Worker worker = new Worker();
+            Thread.Builder builder = threads == LaneThreads.VIRTUAL ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+            worker.thread = builder.name("conflation-worker-" + i).unstarted(worker);
+            this.workers[i] = worker;
+        }
+    }
+
+    public static ConflatingDispatcher create(@NotNull ConflationProperties properties) {
+        return new ConflatingDispatcher(properties.enabled(), properties.workers(), properties.threads(), properties.maxInstruments());
+    }
+
+    public ConflatingDispatcher start() {
+        for (Worker worker : workers) {
+            worker.thread.start();
+        }
+        return this;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public AsyncLastPriceHandler lastPrices(@NotNull AsyncLastPriceHandler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        AsyncTarget<LastPrice> target = new AsyncTarget<>(LastPrice::getInstrumentUid, handler::handleAsync);
+        return target::offer;
+    }
+
+    public AsyncOrderBookHandler orderBooks(@NotNull AsyncOrderBookHandler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        AsyncTarget<OrderBook> target = new AsyncTarget<>(OrderBook::getInstrumentUid, handler::handleAsync);
+        return target::offer;
+    }
+
+    /**
+     * Для createBlockingHandler у LastPriceStreamProcessorAdapterFactory
+     */
+    public Consumer<LastPrice> blockingLastPrices(@NotNull Consumer<LastPrice> handler) {
+        return conflating(LastPrice::getInstrumentUid, handler);
+    }
+
+    /**
+     * Для createBlockingHandler у OrderBookStreamProcessorAdapterFactory
+     */
+    public Consumer<OrderBook> blockingOrderBooks(@NotNull Consumer<OrderBook> handler) {
+        return conflating(OrderBook::getInstrumentUid, handler);
+    }
+
+    /**
+     * Слияние для любых снимков по ключу key
+     */
+    public <T> Consumer<T> conflating(@NotNull Function<T, String> key, @NotNull Consumer<T> handler) {
+        if (!enabled) {
+            return handler;
+        }
+        Target<T> target = new Target<>(key, handler);
+        return target::offer;
+    }
+
+    /**
+     * Сколько событий пришло в обернутые хендлеры
+     */
+    public long receivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * Сколько событий заменено более новыми до того как их успели обработать
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Сколько раз вызваны исходные хендлеры
+     */
+    public long dispatchedCount() {
+        return dispatched.sum();
+    }
+
+    /**
+     * Сколько слотов ждут обработки сейчас
+     */
+    public int dirtyCount() {
+        return dirty.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (Worker worker : workers) {
+            LockSupport.unpark(worker.thread);
+        }
+        for (Worker worker : workers) {
+            try {
+                worker.thread.join(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void markDirty(ConflationSlot<?> slot) {
+        while (!dirty.offer(slot)) {
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+        for (Worker worker : workers) {
+            if (worker.sleeping) {
+                LockSupport.unpark(worker.thread);
+                return;
+            }
+        }
+    }
+
+    private final class Target<T> {
+
+        final Function<T, String> key;
+        final Consumer<T> handler;
+        final ConcurrentHashMap<String, ConflationSlot<T>> slots = new ConcurrentHashMap<>();
+
+        Target(Function<T, String> key, Consumer<T> handler) {
+            this.key = key;
+            this.handler = handler;
+        }
+
+        void offer(T event) {
+            received.increment();
+            if (!running) {
+                handler.accept(event);
+                return;
+            }
+            String instrument = key.apply(event);
+            ConflationSlot<T> slot = slots.get(instrument);
+            if (slot == null) {
+                slot = slots.computeIfAbsent(instrument, k -> new ConflationSlot<>(handler));
+            }
+            if (slot.set(event)) {
+                coalesced.increment();
+            }
+            if (slot.markQueued()) {
+                markDirty(slot);
+            }
+        }
+    }
+
+    /**
+     * Async хендлер: в слоте лежит событие вместе с future, которую получили все события слитые в него
+     */
+    private final class AsyncTarget<T> {
+
+        final Function<T, String> key;
+        final Function<T, CompletableFuture<Void>> handler;
+        final Consumer<Pending<T>> delivery;
+        final ConcurrentHashMap<String, ConflationSlot<Pending<T>>> slots = new ConcurrentHashMap<>();
+
+        AsyncTarget(Function<T, String> key, Function<T, CompletableFuture<Void>> handler) {
+            this.key = key;
+            this.handler = handler;
+            this.delivery = this::deliver;
+        }
+
+        CompletableFuture<Void> offer(T event) {
+            received.increment();
+            if (!running) {
+                return handler.apply(event);
+            }
+            String instrument = key.apply(event);
+            ConflationSlot<Pending<T>> slot = slots.get(instrument);
+            if (slot == null) {
+                slot = slots.computeIfAbsent(instrument, k -> new ConflationSlot<>(delivery));
+            }
+            Pending<T> next = new Pending<>(event, new CompletableFuture<>());
+            Pending<T> current = slot.accumulate(next, Pending::merge);
+            if (current.done() != next.done()) {
+                coalesced.increment();
+            }
+            if (slot.markQueued()) {
+                markDirty(slot);
+            }
+            return current.done();
+        }
+
+        private void deliver(Pending<T> pending) {
+            try {
+                handler.apply(pending.event()).join();
+                pending.done().complete(null);
+            } catch (RuntimeException e) {
+                pending.done().completeExceptionally(e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Необработанное событие слота и future всех событий, которые оно заменило
+     */
+    private record Pending<T>(T event, CompletableFuture<Void> done) {
+
+        static <T> Pending<T> merge(Pending<T> previous, Pending<T> next) {
+            return previous == null ? next : new Pending<>(next.event(), previous.done());
+        }
+    }
+
+    private final class Worker implements Runnable {
+
+        volatile boolean sleeping;
+        Thread thread;
+
+        @Override
+        public void run() {
+            while (running) {
+                ConflationSlot<?> slot = dirty.poll();
+                if (slot == null) {
+                    sleeping = true;
+                    if (dirty.isEmpty() && running) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    sleeping = false;
+                    continue;
+                }
+                process(slot);
+            }
+            ConflationSlot<?> slot;
+            while ((slot = dirty.poll()) != null) {
+                process(slot);
+            }
+        }
+
+        private <T> void process(ConflationSlot<T> slot) {
+            T event = slot.begin();
+            if (event != null) {
+                try {
+                    slot.handler().accept(event);
+                } catch (RuntimeException e) {
+                    log.error("ошибка в хендлере с слиянием обновлений", e);
+                }
+                dispatched.increment();
+            }
+            if (slot.finish()) {
+                // пока обрабатывали пришло новое событие
+                markDirty(slot);
+            }
+        }
+    }
+}
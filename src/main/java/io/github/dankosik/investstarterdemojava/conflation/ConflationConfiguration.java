@@ -0,0 +1,31 @@
+package io.github.dankosik.investstarterdemojava.conflation;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ConflationProperties.class)
+class ConflationConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ConflatingDispatcher conflatingDispatcher(ConflationProperties properties) {
+        return ConflatingDispatcher.create(properties).start();
+    }
+
+    /**
+     * Слияние обновлений ConflatingDispatcher, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder conflationMetrics(ConflatingDispatcher dispatcher) {
+        return registry -> {
+            FunctionCounter.builder("demo.conflation.received", dispatcher, ConflatingDispatcher::receivedCount).register(registry);
+            FunctionCounter.builder("demo.conflation.coalesced", dispatcher, ConflatingDispatcher::coalescedCount).register(registry);
+            FunctionCounter.builder("demo.conflation.dispatched", dispatcher, ConflatingDispatcher::dispatchedCount).register(registry);
+            Gauge.builder("demo.conflation.dirty", dispatcher, ConflatingDispatcher::dirtyCount).register(registry);
+        };
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.dankosik.investstarterdemojava.conflation;
+
+import io.github.dankosik.investstarterdemojava.executor.LaneThreads;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки {@link ConflatingDispatcher}
+ *
+ * @param enabled        включает слияние: хендлеры обернутые диспетчером получают только последнее состояние инструмента.
+ *                       Если выключено - обертки вызывают хендлер напрямую, как без диспетчера
+ * @param workers        сколько потоков разбирают грязные инструменты
+ * @param threads        платформенные или виртуальные потоки
+ * @param maxInstruments сколько слотов (обработчик x инструмент) может ждать обработки одновременно
+ */
+@ConfigurationProperties(prefix = "demo.conflation")
+public record ConflationProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("2") int workers,
+        @DefaultValue("VIRTUAL") LaneThreads threads,
+        @DefaultValue("65536") int maxInstruments
+) {
+}
@@ -0,0 +1,20 @@
+package io.github.dankosik.investstarterdemojava.executor;
+
+/**
+ * Что делать с событием когда очередь полосы {@link ShardedExecutor} заполнена
+ */
+public enum LaneOverflowPolicy {
+    /**
+     * ждать пока полоса освободит место (backpressure на поток стрима)
+     */
+    BLOCK,
+    /**
+     * выбросить самое старое событие этого хендлера в полосе и положить новое, события других хендлеров не трогаются
+     */
+    DROP_OLDEST,
+    /**
+     * для каждого инструмента в очереди не больше одного события - последнего. Подходит для снимков (стаканы, последние цены),
+     * промежуточные снимки пропускаются всегда, а не только при переполнении
+     */
+    CONFLATE
+}
@@ -0,0 +1,25 @@
+package io.github.dankosik.investstarterdemojava.executor;
+
+/**
+ * Состояние одной полосы {@link ShardedExecutor}
+ *
+ * @param lane      номер полосы
+ * @param depth     сколько событий ждет в очереди сейчас
+ * @param maxDepth  максимальная глубина очереди с прошлого {@link ShardedExecutor#stats(boolean)} со сбросом
+ * @param capacity  суммарный размер очередей хендлеров в полосе
+ * @param processed сколько событий обработано
+ * @param dropped   сколько событий выброшено при {@link LaneOverflowPolicy#DROP_OLDEST}
+ * @param conflated сколько снимков заменено более новыми при {@link LaneOverflowPolicy#CONFLATE}
+ * @param failed    сколько обработчиков завершились ошибкой
+ */
+public record LaneStats(
+        int lane,
+        int depth,
+        int maxDepth,
+        int capacity,
+        long processed,
+        long dropped,
+        long conflated,
+        long failed
+) {
+}
@@ -0,0 +1,40 @@
+package io.github.dankosik.investstarterdemojava.executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Раз в interval пишет в лог {@link LaneStats} всех полос, максимальная глубина - за прошедший интервал
+ */
+final class LaneStatsReporter implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LaneStatsReporter.class);
+
+    private final ScheduledExecutorService timer;
+
+    LaneStatsReporter(ShardedExecutor shardedExecutor, Duration interval) {
+        if (interval.isZero() || interval.isNegative()) {
+            timer = null;
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("sharded-executor-stats").daemon().factory());
+        long millis = interval.toMillis();
+        timer.scheduleAtFixedRate(() -> {
+            for (LaneStats stats : shardedExecutor.stats(true)) {
+                log.info("{}", stats);
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package io.github.dankosik.investstarterdemojava.executor;
+
+/**
+ * На каких потоках работают полосы {@link ShardedExecutor}
+ */
+public enum LaneThreads {
+    PLATFORM,
+    VIRTUAL
+}
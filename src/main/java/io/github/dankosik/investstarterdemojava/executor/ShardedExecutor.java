@@ -0,0 +1,404 @@
+package io.github.dankosik.investstarterdemojava.executor;
+
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.AsyncOrderBookHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.BlockingOrderBookHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.BlockingTradeHandler;
+import io.github.dankosik.investstarterdemojava.concurrent.ConflationSlot;
+import io.github.dankosik.investstarterdemojava.concurrent.MpmcRing;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Исполнитель хендлеров с порядком внутри инструмента и параллельностью между инструментами.
+ * instrumentUid хешируется на одну из N полос, у каждой полосы один поток-обработчик (платформенный или виртуальный),
+ * поэтому события одного инструмента обрабатываются строго по очереди. Очереди - {@link MpmcRing}, у каждого
+ * обернутого хендлера в каждой полосе своя, полоса разбирает их по очереди пачками до batchSize.
+ * Хендлер оборачивается один раз, например в конструкторе:
+ * <pre>{@code
+ * this.sharded = shardedExecutor.trades(this::process);
+ * ...
+ * public CompletableFuture<Void> handleAsync(Trade trade) {
+ *     return sharded.handleAsync(trade);
+ * }
+ * }</pre>
+ * Обертка сразу возвращает завершенный future, а CompletableFuture исходного async хендлера полоса дожидается
+ * перед следующим событием - иначе порядок бы терялся.
+ * Поэтому при {@link LaneOverflowPolicy#DROP_OLDEST} выбрасываются только события этого хендлера, а слияние
+ * при {@link LaneOverflowPolicy#CONFLATE} - через {@link ConflationSlot}, как в ConflatingDispatcher.
+ * После {@link #close()} новые события не принимаются и считаются выброшенными
+ */
+public final class ShardedExecutor implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedExecutor.class);
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+    private static final long BLOCK_PARK_NANOS = 1_000;
+    private static final long IDLE_PARK_NANOS = 1_000_000;
+
+    private final Lane[] lanes;
+    private final int capacity;
+    private final LaneOverflowPolicy defaultPolicy;
+    private final int batchSize;
+    private volatile boolean running = true;
+
+    public ShardedExecutor(int lanes, int capacity, int batchSize, @NotNull LaneOverflowPolicy defaultPolicy,
+                           @NotNull LaneThreads threads, @NotNull String name) {
+        if (lanes <= 0) {
+            throw new IllegalArgumentException("lanes должно быть положительным");
+        }
+        this.capacity = capacity;
+        this.defaultPolicy = defaultPolicy;
+        this.batchSize = batchSize;
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane(i);
+            Thread.Builder builder = threads == LaneThreads.VIRTUAL ? Thread.ofVirtual() : Thread.ofPlatform().daemon();
+            this.lanes[i].thread = builder.name(name + "-" + i).unstarted(this.lanes[i]);
+        }
+    }
+
+    public static ShardedExecutor create(@NotNull ShardedExecutorProperties properties) {
+        int lanes = properties.lanes() > 0 ? properties.lanes() : Runtime.getRuntime().availableProcessors();
+        return new ShardedExecutor(lanes, properties.capacity(), properties.batchSize(), properties.overflowPolicy(),
+                properties.threads(), "sharded-lane");
+    }
+
+    public ShardedExecutor start() {
+        for (Lane lane : lanes) {
+            lane.thread.start();
+        }
+        return this;
+    }
+
+    public AsyncTradeHandler trades(@NotNull AsyncTradeHandler handler) {
+        return trades(handler, defaultPolicy);
+    }
+
+    public AsyncTradeHandler trades(@NotNull AsyncTradeHandler handler, @NotNull LaneOverflowPolicy policy) {
+        Target<Trade> target = target(policy, Trade::getInstrumentUid, trade -> await(handler.handleAsync(trade)));
+        return trade -> {
+            submit(target, trade);
+            return DONE;
+        };
+    }
+
+    public BlockingTradeHandler blockingTrades(@NotNull BlockingTradeHandler handler) {
+        return blockingTrades(handler, defaultPolicy);
+    }
+
+    public BlockingTradeHandler blockingTrades(@NotNull BlockingTradeHandler handler, @NotNull LaneOverflowPolicy policy) {
+        Target<Trade> target = target(policy, Trade::getInstrumentUid, handler::handleBlocking);
+        return trade -> submit(target, trade);
+    }
+
+    public AsyncOrderBookHandler orderBooks(@NotNull AsyncOrderBookHandler handler) {
+        return orderBooks(handler, defaultPolicy);
+    }
+
+    public AsyncOrderBookHandler orderBooks(@NotNull AsyncOrderBookHandler handler, @NotNull LaneOverflowPolicy policy) {
+        Target<OrderBook> target = target(policy, OrderBook::getInstrumentUid, orderBook -> await(handler.handleAsync(orderBook)));
+        return orderBook -> {
+            submit(target, orderBook);
+            return DONE;
+        };
+    }
+
+    public BlockingOrderBookHandler blockingOrderBooks(@NotNull BlockingOrderBookHandler handler) {
+        return blockingOrderBooks(handler, defaultPolicy);
+    }
+
+    public BlockingOrderBookHandler blockingOrderBooks(@NotNull BlockingOrderBookHandler handler, @NotNull LaneOverflowPolicy policy) {
+        Target<OrderBook> target = target(policy, OrderBook::getInstrumentUid, handler::handleBlocking);
+        return orderBook -> submit(target, orderBook);
+    }
+
+    /**
+     * Обертка для любого типа событий: key - ключ порядка (обычно instrumentUid), handler выполняется в полосе ключа
+     */
+    public <T> Consumer<T> sharded(@NotNull Function<T, String> key, @NotNull Consumer<T> handler, @NotNull LaneOverflowPolicy policy) {
+        Target<T> target = target(policy, key, handler);
+        return event -> submit(target, event);
+    }
+
+    private <T> Target<T> target(LaneOverflowPolicy policy, Function<T, String> key, Consumer<T> handler) {
+        Target<T> target = new Target<>(policy, key, handler);
+        for (Lane lane : lanes) {
+            lane.register(target);
+        }
+        return target;
+    }
+
+    /**
+     * Номер полосы для ключа
+     */
+    public int laneOf(@NotNull String key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return Math.floorMod(hash * 0x9E3779B9, lanes.length);
+    }
+
+    public int laneCount() {
+        return lanes.length;
+    }
+
+    /**
+     * Глубина очереди полосы сейчас, дешево для частого опроса (gauge)
+     */
+    public int depth(int lane) {
+        return lanes[lane].size();
+    }
+
+    /**
+     * @param resetMax сбросить максимальную глубину, чтобы следующий вызов показал максимум за интервал
+     */
+    public List<LaneStats> stats(boolean resetMax) {
+        List<LaneStats> stats = new ArrayList<>(lanes.length);
+        for (Lane lane : lanes) {
+            int maxDepth = resetMax ? lane.maxDepth.getAndSet(0) : lane.maxDepth.get();
+            stats.add(new LaneStats(lane.index, lane.size(), maxDepth, lane.capacity(), processedCount(lane.index),
+                    droppedCount(lane.index), conflatedCount(lane.index), failedCount(lane.index)));
+        }
+        return stats;
+    }
+
+    /**
+     * Сколько событий обработала полоса, без сборки {@link #stats}: для частого опроса (счетчики метрик)
+     */
+    public long processedCount(int lane) {
+        return lanes[lane].processed.get();
+    }
+
+    public long droppedCount(int lane) {
+        return lanes[lane].dropped.sum();
+    }
+
+    public long conflatedCount(int lane) {
+        return lanes[lane].conflated.sum();
+    }
+
+    public long failedCount(int lane) {
+        return lanes[lane].failed.get();
+    }
+
+    private <T> void submit(Target<T> target, T event) {
+        String key = target.key.apply(event);
+        Lane lane = lanes[laneOf(key)];
+        if (!running) {
+            // полоса уже не разбирает очереди
+            lane.dropped.increment();
+            return;
+        }
+        MpmcRing<Object> queue = target.queues[lane.index];
+        if (target.policy == LaneOverflowPolicy.CONFLATE) {
+            ConflationSlot<T> slot = target.slots.get(key);
+            if (slot == null) {
+                slot = target.slots.computeIfAbsent(key, k -> new ConflationSlot<>(target.handler));
+            }
+            if (slot.set(event)) {
+                lane.conflated.increment();
+            }
+            if (!slot.markQueued()) {
+                // слот уже в очереди, полоса возьмет этот снимок вместо предыдущего
+                return;
+            }
+            if (!enqueueBlocking(lane, queue, slot)) {
+                slot.discard();
+                return;
+            }
+        } else if (target.policy == LaneOverflowPolicy.DROP_OLDEST) {
+            while (!queue.offer(event)) {
+                if (queue.poll() != null) {
+                    lane.dropped.increment();
+                }
+            }
+        } else if (!enqueueBlocking(lane, queue, event)) {
+            return;
+        }
+        lane.enqueued();
+    }
+
+    /**
+     * @return false если исполнитель остановлен, событие посчитано выброшенным
+     */
+    private boolean enqueueBlocking(Lane lane, MpmcRing<Object> queue, Object element) {
+        while (!queue.offer(element)) {
+            if (!running) {
+                lane.dropped.increment();
+                return false;
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        return true;
+    }
+
+    private static void await(CompletableFuture<Void> future) {
+        future.join();
+    }
+
+    /**
+     * Останавливает полосы, события оставшиеся в очередях обрабатываются до остановки
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Lane lane : lanes) {
+            LockSupport.unpark(lane.thread);
+        }
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Обернутый хендлер: политика переполнения, ключ порядка, очереди по полосам и слоты последних снимков для CONFLATE.
+     * При CONFLATE в очереди лежат слоты, иначе сами события
+     */
+    private final class Target<T> {
+
+        final LaneOverflowPolicy policy;
+        final Function<T, String> key;
+        final Consumer<T> handler;
+        final MpmcRing<Object>[] queues;
+        final ConcurrentHashMap<String, ConflationSlot<T>> slots = new ConcurrentHashMap<>();
+
+        @SuppressWarnings("unchecked")
+        Target(LaneOverflowPolicy policy, Function<T, String> key, Consumer<T> handler) {
+            this.policy = policy;
+            this.key = key;
+            this.handler = handler;
+            this.queues = new MpmcRing[lanes.length];
+            for (int i = 0; i < queues.length; i++) {
+                queues[i] = new MpmcRing<>(capacity);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        int drain(Lane lane) {
+            MpmcRing<Object> queue = queues[lane.index];
+            int count = 0;
+            Object element;
+            while (count < batchSize && (element = queue.poll()) != null) {
+                count++;
+                // полоса единственный читатель своих очередей, слот можно снова ставить в очередь до обработки
+                T event = policy == LaneOverflowPolicy.CONFLATE ? ((ConflationSlot<T>) element).take() : (T) element;
+                if (event != null) {
+                    lane.handle(handler, event);
+                }
+            }
+            return count;
+        }
+    }
+
+    private final class Lane implements Runnable {
+
+        final int index;
+        volatile Target<?>[] targets = new Target<?>[0];
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder conflated = new LongAdder();
+        final AtomicInteger maxDepth = new AtomicInteger();
+        volatile boolean sleeping;
+        Thread thread;
+
+        Lane(int index) {
+            this.index = index;
+        }
+
+        synchronized void register(Target<?> target) {
+            Target<?>[] registered = Arrays.copyOf(targets, targets.length + 1);
+            registered[registered.length - 1] = target;
+            targets = registered;
+        }
+
+        int size() {
+            int size = 0;
+            for (Target<?> target : targets) {
+                size += target.queues[index].size();
+            }
+            return size;
+        }
+
+        int capacity() {
+            int capacity = 0;
+            for (Target<?> target : targets) {
+                capacity += target.queues[index].capacity();
+            }
+            return capacity;
+        }
+
+        boolean isEmpty() {
+            for (Target<?> target : targets) {
+                if (!target.queues[index].isEmpty()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int drain() {
+            int count = 0;
+            for (Target<?> target : targets) {
+                count += target.drain(this);
+            }
+            return count;
+        }
+
+        void enqueued() {
+            int depth = size();
+            if (depth > maxDepth.getPlain()) {
+                maxDepth.accumulateAndGet(depth, Math::max);
+            }
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                if (drain() == 0) {
+                    sleeping = true;
+                    if (isEmpty() && running) {
+                        LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    }
+                    sleeping = false;
+                }
+            }
+            while (drain() > 0) {
+                // дорабатываем то что осталось в очереди
+            }
+        }
+
+        <T> void handle(Consumer<T> handler, T event) {
+            try {
+                handler.accept(event);
+            } catch (RuntimeException e) {
+                failed.incrementAndGet();
+                log.error("ошибка в хендлере полосы {}", index, e);
+            }
+            processed.lazySet(processed.getPlain() + 1);
+        }
+    }
+}
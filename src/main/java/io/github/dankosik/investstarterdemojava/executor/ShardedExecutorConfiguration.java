@@ -0,0 +1,45 @@
+package io.github.dankosik.investstarterdemojava.executor;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ShardedExecutorProperties.class)
+class ShardedExecutorConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public ShardedExecutor shardedExecutor(ShardedExecutorProperties properties) {
+        return ShardedExecutor.create(properties).start();
+    }
+
+    @Bean(destroyMethod = "close")
+    LaneStatsReporter laneStatsReporter(ShardedExecutor shardedExecutor, ShardedExecutorProperties properties) {
+        return new LaneStatsReporter(shardedExecutor, properties.statsInterval());
+    }
+
+    /**
+     * Глубина и счетчики полос ShardedExecutor, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder shardedExecutorMetrics(ShardedExecutor executor) {
+        return registry -> {
+            for (int lane = 0; lane < executor.laneCount(); lane++) {
+                int index = lane;
+                String tag = Integer.toString(lane);
+                Gauge.builder("demo.executor.lane.depth", executor, e -> e.depth(index)).tag("lane", tag).register(registry);
+                FunctionCounter.builder("demo.executor.lane.processed", executor, e -> e.processedCount(index))
+                        .tag("lane", tag).register(registry);
+                FunctionCounter.builder("demo.executor.lane.dropped", executor, e -> e.droppedCount(index))
+                        .tag("lane", tag).register(registry);
+                FunctionCounter.builder("demo.executor.lane.conflated", executor, e -> e.conflatedCount(index))
+                        .tag("lane", tag).register(registry);
+                FunctionCounter.builder("demo.executor.lane.failed", executor, e -> e.failedCount(index))
+                        .tag("lane", tag).register(registry);
+            }
+        };
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.dankosik.investstarterdemojava.executor;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки {@link ShardedExecutor}
+ *
+ * @param lanes          количество полос, 0 - по количеству процессоров
+ * @param capacity       размер очереди каждого хендлера в полосе, округляется вверх до степени двойки
+ * @param batchSize      сколько событий полоса забирает из очереди за раз
+ * @param overflowPolicy политика переполнения по умолчанию, можно переопределить при оборачивании хендлера
+ * @param threads        платформенные или виртуальные потоки полос
+ * @param statsInterval  как часто писать в лог глубину очередей полос, 0 - не писать
+ */
+@ConfigurationProperties(prefix = "demo.executor")
+public record ShardedExecutorProperties(
+        @DefaultValue("0") int lanes,
+        @DefaultValue("4096") int capacity,
+        @DefaultValue("256") int batchSize,
+        @DefaultValue("BLOCK") LaneOverflowPolicy overflowPolicy,
+        @DefaultValue("PLATFORM") LaneThreads threads,
+        @DefaultValue("0s") Duration statsInterval
+) {
+}
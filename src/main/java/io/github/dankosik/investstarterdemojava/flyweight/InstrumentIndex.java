@@ -0,0 +1,77 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Поиск instrumentUid прямо по байтам из сообщения: номер инструмента находится без создания String.
+ * Неизменяемый, читается из любых потоков
+ */
+public final class InstrumentIndex {
+
+    public static final int UNKNOWN = -1;
+
+    private final List<String> instrumentUids;
+    private final byte[][] keys;
+    private final int[] slots;
+    private final int mask;
+
+    public InstrumentIndex(@NotNull List<String> instrumentUids) {
+        this.instrumentUids = List.copyOf(instrumentUids);
+        this.keys = new byte[this.instrumentUids.size()][];
+        int capacity = Integer.highestOneBit(Math.max(this.instrumentUids.size(), 2) * 4 - 1);
+        this.slots = new int[capacity];
+        this.mask = capacity - 1;
+        Arrays.fill(slots, UNKNOWN);
+        for (int i = 0; i < keys.length; i++) {
+            byte[] key = this.instrumentUids.get(i).getBytes(StandardCharsets.UTF_8);
+            keys[i] = key;
+            int slot = hash(key, 0, key.length) & mask;
+            while (slots[slot] != UNKNOWN) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i;
+        }
+    }
+
+    /**
+     * @return номер инструмента в {@link #instrumentUids()} или {@link #UNKNOWN}
+     */
+    public int find(byte[] buffer, int offset, int length) {
+        int slot = hash(buffer, offset, length) & mask;
+        while (true) {
+            int index = slots[slot];
+            if (index == UNKNOWN) {
+                return UNKNOWN;
+            }
+            byte[] key = keys[index];
+            if (Arrays.equals(key, 0, key.length, buffer, offset, offset + length)) {
+                return index;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public String instrumentUid(int index) {
+        return instrumentUids.get(index);
+    }
+
+    public List<String> instrumentUids() {
+        return instrumentUids;
+    }
+
+    public int size() {
+        return instrumentUids.size();
+    }
+
+    private static int hash(byte[] buffer, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        return hash ^ hash >>> 16;
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import io.github.dankosik.investstarterdemojava.subscription.TickerResolver;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.tinkoff.piapi.core.InvestApi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Облегченные обработчики сделок и стаканов поверх байт сообщений: demo.lightweight.enabled=true
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "demo.lightweight", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(LightweightProperties.class)
+class LightweightConfiguration {
+
+    private static final Logger log = LoggerFactory.getLogger(LightweightConfiguration.class);
+
+    @Bean(destroyMethod = "close")
+    public LightweightMarketDataStream lightweightMarketDataStream(ObjectProvider<InvestApi> investApi,
+                                                                   ObjectProvider<LightweightTradeHandler> tradeHandlers,
+                                                                   ObjectProvider<LightweightOrderBookHandler> orderBookHandlers,
+                                                                   LightweightProperties properties) {
+        InvestApi api = investApi.orderedStream().findFirst()
+                .orElseThrow(() -> new IllegalStateException("нет бина InvestApi для облегченного стрима"));
+        TickerResolver tickerResolver = new TickerResolver(api.getInstrumentsService());
+        List<String> instrumentUids = new ArrayList<>();
+        for (String ticker : properties.tickers()) {
+            String instrumentUid = tickerResolver.resolve(ticker);
+            if (instrumentUid == null) {
+                log.warn("тикер {} не найден, облегченный стрим его пропускает", ticker);
+            } else {
+                instrumentUids.add(instrumentUid);
+            }
+        }
+        return LightweightMarketDataStream.create(api.getChannel(), instrumentUids, properties.orderBookDepth(),
+                        tradeHandlers.orderedStream().toList(), orderBookHandlers.orderedStream().toList())
+                .start();
+    }
+
+    /**
+     * Сообщения облегченного стрима, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder lightweightMetrics(LightweightMarketDataStream stream) {
+        return registry -> {
+            FunctionCounter.builder("demo.lightweight.messages", stream, LightweightMarketDataStream::messageCount).register(registry);
+            FunctionCounter.builder("demo.lightweight.bytes", stream, LightweightMarketDataStream::byteCount)
+                    .baseUnit("bytes").register(registry);
+            FunctionCounter.builder("demo.lightweight.trades", stream, LightweightMarketDataStream::tradeCount).register(registry);
+            FunctionCounter.builder("demo.lightweight.orderbooks", stream, LightweightMarketDataStream::orderBookCount).register(registry);
+            FunctionCounter.builder("demo.lightweight.rejected", stream, LightweightMarketDataStream::rejectedCount).register(registry);
+            FunctionCounter.builder("demo.lightweight.reconnects", stream, LightweightMarketDataStream::reconnectCount).register(registry);
+        };
+    }
+}
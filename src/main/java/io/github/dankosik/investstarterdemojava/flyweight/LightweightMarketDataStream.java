@@ -0,0 +1,280 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.MarketDataRequest;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.MarketDataStreamServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.OrderBookInstrument;
+import ru.tinkoff.piapi.contract.v1.OrderBookSubscription;
+import ru.tinkoff.piapi.contract.v1.SubscribeOrderBookRequest;
+import ru.tinkoff.piapi.contract.v1.SubscribeTradesRequest;
+import ru.tinkoff.piapi.contract.v1.SubscriptionAction;
+import ru.tinkoff.piapi.contract.v1.SubscriptionStatus;
+import ru.tinkoff.piapi.contract.v1.TradeInstrument;
+import ru.tinkoff.piapi.contract.v1.TradeSubscription;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Стрим рыночных данных для облегченных обработчиков, в обход стартера и генерированных сообщений.
+ * Открывает MarketDataStream с маршаллером, который отдает ответ как InputStream без разбора: байты ответа копируются
+ * в переиспользуемый буфер стрима, сделки и стаканы передаются обработчикам как {@link TradeView}/{@link OrderBookView}
+ * поверх этого буфера. Служебные ответы о подписке редкие и разбираются обычным путем.
+ * Сообщения запрашиваются по одному после обработки предыдущего, поэтому медленный обработчик тормозит сервер через
+ * flow control gRPC, а не копит ответы в памяти. При обрыве стрим открывается заново через секунду
+ */
+public final class LightweightMarketDataStream implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LightweightMarketDataStream.class);
+    private static final long RECONNECT_DELAY_MILLIS = 1_000;
+
+    static final MethodDescriptor<MarketDataRequest, InputStream> RAW_MARKET_DATA_STREAM =
+            MarketDataStreamServiceGrpc.getMarketDataStreamMethod().toBuilder(
+                            MarketDataStreamServiceGrpc.getMarketDataStreamMethod().getRequestMarshaller(),
+                            new RawMarshaller())
+                    .build();
+
+    private final Channel channel;
+    private final InstrumentIndex instruments;
+    private final int orderBookDepth;
+    private final LightweightTradeHandler[] tradeHandlers;
+    private final LightweightOrderBookHandler[] orderBookHandlers;
+    private final WireReader reader = new WireReader();
+    private final TradeView trade = new TradeView();
+    private final OrderBookView orderBook = new OrderBookView();
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder trades = new LongAdder();
+    private final LongAdder orderBooks = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private byte[] buffer = new byte[16 * 1024];
+    private volatile ClientCall<MarketDataRequest, InputStream> call;
+    private volatile boolean closed;
+
+    private LightweightMarketDataStream(Channel channel, List<String> instrumentUids, int orderBookDepth,
+                                        List<LightweightTradeHandler> tradeHandlers,
+                                        List<LightweightOrderBookHandler> orderBookHandlers) {
+        this.channel = channel;
+        this.instruments = new InstrumentIndex(instrumentUids);
+        this.orderBookDepth = orderBookDepth;
+        this.tradeHandlers = tradeHandlers.toArray(LightweightTradeHandler[]::new);
+        this.orderBookHandlers = orderBookHandlers.toArray(LightweightOrderBookHandler[]::new);
+    }
+
+    /**
+     * @param channel канал InvestApi, заголовки авторизации добавляются его интерцепторами
+     */
+    public static LightweightMarketDataStream create(@NotNull Channel channel, @NotNull List<String> instrumentUids,
+                                                     int orderBookDepth,
+                                                     @NotNull List<LightweightTradeHandler> tradeHandlers,
+                                                     @NotNull List<LightweightOrderBookHandler> orderBookHandlers) {
+        return new LightweightMarketDataStream(channel, instrumentUids, orderBookDepth, tradeHandlers, orderBookHandlers);
+    }
+
+    public LightweightMarketDataStream start() {
+        open();
+        return this;
+    }
+
+    public InstrumentIndex instruments() {
+        return instruments;
+    }
+
+    public long messageCount() {
+        return messages.sum();
+    }
+
+    public long byteCount() {
+        return bytes.sum();
+    }
+
+    public long tradeCount() {
+        return trades.sum();
+    }
+
+    public long orderBookCount() {
+        return orderBooks.sum();
+    }
+
+    /**
+     * Подписок, которые сервер не принял
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public long reconnectCount() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        ClientCall<MarketDataRequest, InputStream> current = call;
+        if (current != null) {
+            current.cancel("stream closed", null);
+        }
+    }
+
+    private void open() {
+        if (closed || instruments.size() == 0) {
+            return;
+        }
+        ClientCall<MarketDataRequest, InputStream> newCall = channel.newCall(RAW_MARKET_DATA_STREAM, CallOptions.DEFAULT);
+        call = newCall;
+        newCall.start(new Listener(newCall), new Metadata());
+        if (tradeHandlers.length > 0) {
+            SubscribeTradesRequest.Builder request = SubscribeTradesRequest.newBuilder()
+                    .setSubscriptionAction(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE);
+            for (String instrumentUid : instruments.instrumentUids()) {
+                request.addInstruments(TradeInstrument.newBuilder().setInstrumentId(instrumentUid));
+            }
+            newCall.sendMessage(MarketDataRequest.newBuilder().setSubscribeTradesRequest(request).build());
+        }
+        if (orderBookHandlers.length > 0) {
+            SubscribeOrderBookRequest.Builder request = SubscribeOrderBookRequest.newBuilder()
+                    .setSubscriptionAction(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE);
+            for (String instrumentUid : instruments.instrumentUids()) {
+                request.addInstruments(OrderBookInstrument.newBuilder().setInstrumentId(instrumentUid).setDepth(orderBookDepth));
+            }
+            newCall.sendMessage(MarketDataRequest.newBuilder().setSubscribeOrderBookRequest(request).build());
+        }
+        newCall.request(1);
+    }
+
+    /**
+     * Копирует ответ в буфер стрима и разбирает верхний уровень MarketDataResponse
+     */
+    private void onMessage(InputStream message) throws IOException {
+        int length = 0;
+        while (true) {
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int read = message.read(buffer, length, buffer.length - length);
+            if (read < 0) {
+                break;
+            }
+            length += read;
+        }
+        messages.increment();
+        bytes.add(length);
+        reader.wrap(buffer, 0, length);
+        while (reader.nextField()) {
+            switch (reader.fieldNumber()) {
+                case MarketDataResponse.TRADE_FIELD_NUMBER -> {
+                    int offset = reader.readLengthDelimited();
+                    trades.increment();
+                    trade.wrap(buffer, offset, reader.length(), instruments);
+                    for (LightweightTradeHandler handler : tradeHandlers) {
+                        try {
+                            handler.handle(trade);
+                        } catch (RuntimeException e) {
+                            log.error("ошибка в облегченном обработчике сделок", e);
+                        }
+                    }
+                }
+                case MarketDataResponse.ORDERBOOK_FIELD_NUMBER -> {
+                    int offset = reader.readLengthDelimited();
+                    orderBooks.increment();
+                    orderBook.wrap(buffer, offset, reader.length(), instruments);
+                    for (LightweightOrderBookHandler handler : orderBookHandlers) {
+                        try {
+                            handler.handle(orderBook);
+                        } catch (RuntimeException e) {
+                            log.error("ошибка в облегченном обработчике стаканов", e);
+                        }
+                    }
+                }
+                case MarketDataResponse.SUBSCRIBE_TRADES_RESPONSE_FIELD_NUMBER,
+                     MarketDataResponse.SUBSCRIBE_ORDER_BOOK_RESPONSE_FIELD_NUMBER -> {
+                    checkSubscriptions(length);
+                    return;
+                }
+                default -> reader.skipField();
+            }
+        }
+    }
+
+    private void checkSubscriptions(int length) throws InvalidProtocolBufferException {
+        MarketDataResponse response = MarketDataResponse.parser().parseFrom(buffer, 0, length);
+        for (TradeSubscription subscription : response.getSubscribeTradesResponse().getTradeSubscriptionsList()) {
+            checkStatus("trades", subscription.getInstrumentUid(), subscription.getSubscriptionStatus());
+        }
+        for (OrderBookSubscription subscription : response.getSubscribeOrderBookResponse().getOrderBookSubscriptionsList()) {
+            checkStatus("order book", subscription.getInstrumentUid(), subscription.getSubscriptionStatus());
+        }
+    }
+
+    private void checkStatus(String type, String instrumentUid, SubscriptionStatus status) {
+        if (status != SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS) {
+            rejected.increment();
+            log.warn("подписка {} на {} не принята: {}", type, instrumentUid, status);
+        }
+    }
+
+    private void reconnect() {
+        reconnects.increment();
+        CompletableFuture.delayedExecutor(RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS).execute(this::open);
+    }
+
+    private final class Listener extends ClientCall.Listener<InputStream> {
+
+        private final ClientCall<MarketDataRequest, InputStream> owner;
+
+        private Listener(ClientCall<MarketDataRequest, InputStream> owner) {
+            this.owner = owner;
+        }
+
+        @Override
+        public void onMessage(InputStream message) {
+            try {
+                LightweightMarketDataStream.this.onMessage(message);
+            } catch (IOException | RuntimeException e) {
+                log.error("не удалось разобрать ответ облегченного стрима", e);
+            }
+            owner.request(1);
+        }
+
+        @Override
+        public void onClose(Status status, Metadata trailers) {
+            if (closed) {
+                return;
+            }
+            log.warn("облегченный стрим рыночных данных закрыт: {}, переподключение", status);
+            reconnect();
+        }
+    }
+
+    /**
+     * Отдает ответ как есть: поток читается в {@link Listener#onMessage}, до того как gRPC его закроет
+     */
+    private static final class RawMarshaller implements MethodDescriptor.Marshaller<InputStream> {
+
+        @Override
+        public InputStream stream(InputStream value) {
+            return value;
+        }
+
+        @Override
+        public InputStream parse(InputStream stream) {
+            return stream;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Облегченный обработчик стаканов: получает {@link OrderBookView} поверх байт сообщения вместо разобранного OrderBook.
+ * Бины подключаются к {@link LightweightMarketDataStream}, вызываются в потоке стрима. View нельзя сохранять после вызова
+ */
+public interface LightweightOrderBookHandler {
+
+    void handle(@NotNull OrderBookView orderBook);
+}
@@ -0,0 +1,21 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * Настройки {@link LightweightMarketDataStream}
+ *
+ * @param enabled        включает облегченные обработчики сделок и стаканов
+ * @param tickers        инструменты на которые подписывается стрим
+ * @param orderBookDepth глубина стаканов
+ */
+@ConfigurationProperties(prefix = "demo.lightweight")
+public record LightweightProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue({"CRH4", "BRG4", "SBER", "LKOH"}) List<String> tickers,
+        @DefaultValue("50") int orderBookDepth
+) {
+}
@@ -0,0 +1,12 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Облегченный обработчик сделок: получает {@link TradeView} поверх байт сообщения вместо разобранного Trade.
+ * Бины подключаются к {@link LightweightMarketDataStream}, вызываются в потоке стрима. View нельзя сохранять после вызова
+ */
+public interface LightweightTradeHandler {
+
+    void handle(@NotNull TradeView trade);
+}
@@ -0,0 +1,175 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.Order;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Стакан прямо поверх байт сообщения OrderBook. При {@link #wrap} запоминаются только смещения уровней,
+ * цена и объем уровня разбираются при обращении, поэтому чтение лучших цен не платит за всю глубину.
+ * Один экземпляр переиспользуется для всех стаканов стрима и действителен только внутри вызова обработчика
+ */
+public final class OrderBookView {
+
+    private final WireReader reader = new WireReader();
+    private final WireReader levelReader = new WireReader();
+    private byte[] buffer;
+    private InstrumentIndex instruments;
+    private int instrumentUidOffset;
+    private int instrumentUidLength;
+    private int instrument;
+    private int depth;
+    private boolean consistent;
+    private long timeNanos;
+    private long limitUp;
+    private long limitDown;
+    private int[] bidOffsets = new int[50];
+    private int[] bidLengths = new int[50];
+    private int bidCount;
+    private int[] askOffsets = new int[50];
+    private int[] askLengths = new int[50];
+    private int askCount;
+
+    public OrderBookView wrap(byte[] buffer, int offset, int length, @NotNull InstrumentIndex instruments) {
+        this.buffer = buffer;
+        this.instruments = instruments;
+        instrumentUidLength = 0;
+        instrument = Integer.MIN_VALUE;
+        depth = 0;
+        consistent = false;
+        timeNanos = 0;
+        limitUp = 0;
+        limitDown = 0;
+        bidCount = 0;
+        askCount = 0;
+        reader.wrap(buffer, offset, length);
+        while (reader.nextField()) {
+            switch (reader.fieldNumber()) {
+                case OrderBook.DEPTH_FIELD_NUMBER -> depth = (int) reader.readVarint();
+                case OrderBook.IS_CONSISTENT_FIELD_NUMBER -> consistent = reader.readVarint() != 0;
+                case OrderBook.BIDS_FIELD_NUMBER -> {
+                    if (bidCount == bidOffsets.length) {
+                        bidOffsets = Arrays.copyOf(bidOffsets, bidCount * 2);
+                        bidLengths = Arrays.copyOf(bidLengths, bidCount * 2);
+                    }
+                    bidOffsets[bidCount] = reader.readLengthDelimited();
+                    bidLengths[bidCount++] = reader.length();
+                }
+                case OrderBook.ASKS_FIELD_NUMBER -> {
+                    if (askCount == askOffsets.length) {
+                        askOffsets = Arrays.copyOf(askOffsets, askCount * 2);
+                        askLengths = Arrays.copyOf(askLengths, askCount * 2);
+                    }
+                    askOffsets[askCount] = reader.readLengthDelimited();
+                    askLengths[askCount++] = reader.length();
+                }
+                case OrderBook.TIME_FIELD_NUMBER -> timeNanos = reader.readTimestamp();
+                case OrderBook.LIMIT_UP_FIELD_NUMBER -> limitUp = reader.readQuotation();
+                case OrderBook.LIMIT_DOWN_FIELD_NUMBER -> limitDown = reader.readQuotation();
+                case OrderBook.INSTRUMENT_UID_FIELD_NUMBER -> {
+                    instrumentUidOffset = reader.readLengthDelimited();
+                    instrumentUidLength = reader.length();
+                }
+                default -> reader.skipField();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Номер инструмента в {@link InstrumentIndex} стрима или {@link InstrumentIndex#UNKNOWN}
+     */
+    public int instrument() {
+        if (instrument == Integer.MIN_VALUE) {
+            instrument = instruments.find(buffer, instrumentUidOffset, instrumentUidLength);
+        }
+        return instrument;
+    }
+
+    /**
+     * Для инструментов стрима возвращает уже существующую строку, иначе создает новую
+     */
+    public String instrumentUid() {
+        int index = instrument();
+        return index != InstrumentIndex.UNKNOWN
+                ? instruments.instrumentUid(index)
+                : new String(buffer, instrumentUidOffset, instrumentUidLength, StandardCharsets.UTF_8);
+    }
+
+    public int depth() {
+        return depth;
+    }
+
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    public long timeNanos() {
+        return timeNanos;
+    }
+
+    public long limitUp() {
+        return limitUp;
+    }
+
+    public long limitDown() {
+        return limitDown;
+    }
+
+    public int bidCount() {
+        return bidCount;
+    }
+
+    public int askCount() {
+        return askCount;
+    }
+
+    /**
+     * Цена уровня в fixed-point, 0 - лучший уровень
+     */
+    public long bidPrice(int level) {
+        return price(bidOffsets[checkLevel(level, bidCount)], bidLengths[level]);
+    }
+
+    public long bidQuantity(int level) {
+        return quantity(bidOffsets[checkLevel(level, bidCount)], bidLengths[level]);
+    }
+
+    public long askPrice(int level) {
+        return price(askOffsets[checkLevel(level, askCount)], askLengths[level]);
+    }
+
+    public long askQuantity(int level) {
+        return quantity(askOffsets[checkLevel(level, askCount)], askLengths[level]);
+    }
+
+    private long price(int offset, int length) {
+        levelReader.wrap(buffer, offset, length);
+        while (levelReader.nextField()) {
+            if (levelReader.fieldNumber() == Order.PRICE_FIELD_NUMBER) {
+                return levelReader.readQuotation();
+            }
+            levelReader.skipField();
+        }
+        return 0;
+    }
+
+    private long quantity(int offset, int length) {
+        levelReader.wrap(buffer, offset, length);
+        while (levelReader.nextField()) {
+            if (levelReader.fieldNumber() == Order.QUANTITY_FIELD_NUMBER) {
+                return levelReader.readVarint();
+            }
+            levelReader.skipField();
+        }
+        return 0;
+    }
+
+    private static int checkLevel(int level, int count) {
+        return Objects.checkIndex(level, count);
+    }
+}
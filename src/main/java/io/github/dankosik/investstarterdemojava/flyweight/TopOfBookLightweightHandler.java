@@ -0,0 +1,45 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.sink.EventSink;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+/**
+ * Пример облегченного обработчика: выводит лучшие цены только когда они изменились.
+ * Уровни глубже первого не разбираются вовсе, на стакан без изменений ничего не создается
+ */
+@Component
+@ConditionalOnProperty(prefix = "demo.lightweight", name = "enabled", havingValue = "true")
+class TopOfBookLightweightHandler implements LightweightOrderBookHandler {
+
+    private final EventSink eventSink;
+    private long[] bids = new long[0];
+    private long[] asks = new long[0];
+
+    TopOfBookLightweightHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
+    @Override
+    public void handle(@NotNull OrderBookView orderBook) {
+        int instrument = orderBook.instrument();
+        if (instrument == InstrumentIndex.UNKNOWN || orderBook.bidCount() == 0 || orderBook.askCount() == 0) {
+            return;
+        }
+        if (instrument >= bids.length) {
+            bids = Arrays.copyOf(bids, instrument + 1);
+            asks = Arrays.copyOf(asks, instrument + 1);
+        }
+        long bid = orderBook.bidPrice(0);
+        long ask = orderBook.askPrice(0);
+        if (bids[instrument] != bid || asks[instrument] != ask) {
+            bids[instrument] = bid;
+            asks[instrument] = ask;
+            eventSink.publish("TopOfBook", orderBook.instrumentUid() + " " + Prices.toDouble(bid) + " / " + Prices.toDouble(ask));
+        }
+    }
+}
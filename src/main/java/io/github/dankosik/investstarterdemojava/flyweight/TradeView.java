@@ -0,0 +1,103 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.contract.v1.TradeDirection;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Сделка прямо поверх байт сообщения Trade, без Trade/Quotation/Timestamp объектов.
+ * Числовые поля разбираются одним проходом при {@link #wrap}, строки - только по запросу.
+ * Один экземпляр переиспользуется для всех сделок стрима и действителен только внутри вызова обработчика
+ */
+public final class TradeView {
+
+    private final WireReader reader = new WireReader();
+    private byte[] buffer;
+    private InstrumentIndex instruments;
+    private int instrumentUidOffset;
+    private int instrumentUidLength;
+    private int figiOffset;
+    private int figiLength;
+    private int instrument;
+    private int direction;
+    private long price;
+    private long quantity;
+    private long timeNanos;
+
+    public TradeView wrap(byte[] buffer, int offset, int length, @NotNull InstrumentIndex instruments) {
+        this.buffer = buffer;
+        this.instruments = instruments;
+        instrumentUidLength = 0;
+        figiLength = 0;
+        instrument = Integer.MIN_VALUE;
+        direction = 0;
+        price = 0;
+        quantity = 0;
+        timeNanos = 0;
+        reader.wrap(buffer, offset, length);
+        while (reader.nextField()) {
+            switch (reader.fieldNumber()) {
+                case Trade.FIGI_FIELD_NUMBER -> {
+                    figiOffset = reader.readLengthDelimited();
+                    figiLength = reader.length();
+                }
+                case Trade.DIRECTION_FIELD_NUMBER -> direction = (int) reader.readVarint();
+                case Trade.PRICE_FIELD_NUMBER -> price = reader.readQuotation();
+                case Trade.QUANTITY_FIELD_NUMBER -> quantity = reader.readVarint();
+                case Trade.TIME_FIELD_NUMBER -> timeNanos = reader.readTimestamp();
+                case Trade.INSTRUMENT_UID_FIELD_NUMBER -> {
+                    instrumentUidOffset = reader.readLengthDelimited();
+                    instrumentUidLength = reader.length();
+                }
+                default -> reader.skipField();
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Номер инструмента в {@link InstrumentIndex} стрима или {@link InstrumentIndex#UNKNOWN}
+     */
+    public int instrument() {
+        if (instrument == Integer.MIN_VALUE) {
+            instrument = instruments.find(buffer, instrumentUidOffset, instrumentUidLength);
+        }
+        return instrument;
+    }
+
+    /**
+     * Для инструментов стрима возвращает уже существующую строку, иначе создает новую
+     */
+    public String instrumentUid() {
+        int index = instrument();
+        return index != InstrumentIndex.UNKNOWN
+                ? instruments.instrumentUid(index)
+                : new String(buffer, instrumentUidOffset, instrumentUidLength, StandardCharsets.UTF_8);
+    }
+
+    public String figi() {
+        return new String(buffer, figiOffset, figiLength, StandardCharsets.UTF_8);
+    }
+
+    public TradeDirection direction() {
+        TradeDirection value = TradeDirection.forNumber(direction);
+        return value != null ? value : TradeDirection.UNRECOGNIZED;
+    }
+
+    /**
+     * Цена в fixed-point, см. {@link io.github.dankosik.investstarterdemojava.marketdata.Prices}
+     */
+    public long price() {
+        return price;
+    }
+
+    public long quantity() {
+        return quantity;
+    }
+
+    public long timeNanos() {
+        return timeNanos;
+    }
+}
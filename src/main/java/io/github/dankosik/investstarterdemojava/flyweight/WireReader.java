@@ -0,0 +1,160 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+/**
+ * Чтение protobuf wire format прямо из массива байт, без CodedInputStream и без аллокаций.
+ * Переиспользуется: {@link #wrap} переключает читатель на другое сообщение. Не потокобезопасен
+ */
+final class WireReader {
+
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+    static final int FIXED32 = 5;
+
+    private static final int TIMESTAMP_SECONDS = com.google.protobuf.Timestamp.SECONDS_FIELD_NUMBER;
+    private static final int TIMESTAMP_NANOS = com.google.protobuf.Timestamp.NANOS_FIELD_NUMBER;
+
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private int tag;
+    private int length;
+
+    WireReader wrap(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+        return this;
+    }
+
+    /**
+     * Читает тег следующего поля
+     *
+     * @return false если сообщение закончилось
+     */
+    boolean nextField() {
+        if (position >= limit) {
+            return false;
+        }
+        tag = (int) readVarint();
+        return true;
+    }
+
+    int fieldNumber() {
+        return tag >>> 3;
+    }
+
+    int wireType() {
+        return tag & 7;
+    }
+
+    long readVarint() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= limit) {
+                throw malformed();
+            }
+            byte b = buffer[position++];
+            result |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return result;
+            }
+        }
+        throw malformed();
+    }
+
+    /**
+     * Пропускает значение length-delimited поля (строки или вложенного сообщения)
+     *
+     * @return смещение значения в буфере, длина - {@link #length()}
+     */
+    int readLengthDelimited() {
+        int valueLength = (int) readVarint();
+        if (valueLength < 0 || valueLength > limit - position) {
+            throw malformed();
+        }
+        int offset = position;
+        position += valueLength;
+        length = valueLength;
+        return offset;
+    }
+
+    /**
+     * Длина значения последнего {@link #readLengthDelimited}
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Читает вложенный Quotation в fixed-point, см. {@link Prices}
+     */
+    long readQuotation() {
+        int offset = readLengthDelimited();
+        int end = offset + length;
+        int outerPosition = position;
+        int outerLimit = limit;
+        position = offset;
+        limit = end;
+        long units = 0;
+        int nano = 0;
+        while (nextField()) {
+            switch (fieldNumber()) {
+                case Quotation.UNITS_FIELD_NUMBER -> units = readVarint();
+                case Quotation.NANO_FIELD_NUMBER -> nano = (int) readVarint();
+                default -> skipField();
+            }
+        }
+        position = outerPosition;
+        limit = outerLimit;
+        return units * Prices.SCALE + nano;
+    }
+
+    /**
+     * Читает вложенный Timestamp в наносекундах от эпохи
+     */
+    long readTimestamp() {
+        int offset = readLengthDelimited();
+        int end = offset + length;
+        int outerPosition = position;
+        int outerLimit = limit;
+        position = offset;
+        limit = end;
+        long seconds = 0;
+        int nanos = 0;
+        while (nextField()) {
+            switch (fieldNumber()) {
+                case TIMESTAMP_SECONDS -> seconds = readVarint();
+                case TIMESTAMP_NANOS -> nanos = (int) readVarint();
+                default -> skipField();
+            }
+        }
+        position = outerPosition;
+        limit = outerLimit;
+        return seconds * 1_000_000_000L + nanos;
+    }
+
+    void skipField() {
+        switch (wireType()) {
+            case VARINT -> readVarint();
+            case FIXED64 -> skip(8);
+            case LENGTH_DELIMITED -> readLengthDelimited();
+            case FIXED32 -> skip(4);
+            default -> throw malformed();
+        }
+    }
+
+    private void skip(int bytes) {
+        if (bytes > limit - position) {
+            throw malformed();
+        }
+        position += bytes;
+    }
+
+    private static IllegalArgumentException malformed() {
+        return new IllegalArgumentException("некорректное protobuf сообщение");
+    }
+}
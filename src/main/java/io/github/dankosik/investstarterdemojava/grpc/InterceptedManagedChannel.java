@@ -0,0 +1,65 @@
+package io.github.dankosik.investstarterdemojava.grpc;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ManagedChannel с перехватчиком для пост-процессоров InvestApi.
+ * InvestApi.destroy закрывает канал как ManagedChannel, поэтому жизненный цикл остается у исходного канала,
+ * а вызовы идут через перехватчик
+ */
+public final class InterceptedManagedChannel extends ManagedChannel {
+
+    private final ManagedChannel delegate;
+    private final Channel intercepted;
+
+    public InterceptedManagedChannel(@NotNull ManagedChannel delegate, @NotNull ClientInterceptor interceptor) {
+        this.delegate = delegate;
+        this.intercepted = ClientInterceptors.intercept(delegate, interceptor);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+        return intercepted.newCall(methodDescriptor, callOptions);
+    }
+
+    @Override
+    public String authority() {
+        return delegate.authority();
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+        delegate.shutdown();
+        return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return delegate.isTerminated();
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+        delegate.shutdownNow();
+        return this;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return delegate.awaitTermination(timeout, unit);
+    }
+}
@@ -0,0 +1,437 @@
+package io.github.dankosik.investstarterdemojava.instruments;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientInterceptors;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.StreamObserver;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.InstrumentsServiceGrpc;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Кэш ответов InstrumentsService на уровне gRPC канала.
+ * Стартер ищет instrumentUid каждого тикера из аннотаций и фабрик адаптеров выгрузкой полного списка инструментов
+ * (getFutures, getShares, ...), поэтому без кэша каждый тикер - это отдельная выгрузка при каждом старте.
+ * <ul>
+ *     <li>одинаковые запросы в полете объединяются в один запрос к API, ответ затем отдается из памяти</li>
+ *     <li>ответы сохраняются в {@link InstrumentSnapshot} и при следующем старте читаются через mmap без обращения к API</li>
+ *     <li>ответ старше ttl запрашивается заново, все устаревшие ответы снимка запрашиваются параллельно сразу при подключении канала</li>
+ *     <li>раз в refreshInterval все ответы обновляются в фоне и снимок перезаписывается</li>
+ * </ul>
+ * Подключается к InvestApi через {@link #attach}, хендлеры и стартер при этом не меняются
+ */
+public final class InstrumentCache implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(InstrumentCache.class);
+    private static final long FLUSH_DELAY_MILLIS = 1000;
+
+    private final Path file;
+    private final long ttlMillis;
+    private final long refreshIntervalMillis;
+    private final long requestTimeoutMillis;
+    private final Map<String, MethodDescriptor<?, ?>> methods;
+    private final LongSupplier clock;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Key, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+    private final ClientInterceptor interceptor = new CachingInterceptor();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("instrument-cache").daemon().factory());
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private volatile boolean dirty;
+    private volatile Channel upstream;
+
+    InstrumentCache(@NotNull Path file, @NotNull Duration ttl, @NotNull Duration refreshInterval, @NotNull Duration requestTimeout,
+                    @NotNull List<String> methods, @NotNull LongSupplier clock) {
+        if (refreshInterval.compareTo(ttl) >= 0) {
+            throw new IllegalArgumentException("refreshInterval " + refreshInterval + " должен быть меньше ttl " + ttl);
+        }
+        Map<String, MethodDescriptor<?, ?>> known = InstrumentsServiceGrpc.getServiceDescriptor().getMethods().stream()
+                .collect(Collectors.toMap(MethodDescriptor::getBareMethodName, method -> method));
+        this.methods = methods.stream()
+                .map(name -> Objects.requireNonNull(known.get(name), () -> "в InstrumentsService нет метода " + name))
+                .filter(method -> method.getType() == MethodDescriptor.MethodType.UNARY)
+                .collect(Collectors.toUnmodifiableMap(MethodDescriptor::getFullMethodName, method -> method));
+        this.file = file;
+        this.ttlMillis = ttl.toMillis();
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+        this.requestTimeoutMillis = requestTimeout.toMillis();
+        this.clock = clock;
+    }
+
+    public static InstrumentCache create(@NotNull InstrumentCacheProperties properties) {
+        return new InstrumentCache(Path.of(properties.file()), properties.ttl(), properties.refreshInterval(),
+                properties.requestTimeout(), properties.methods(), System::currentTimeMillis);
+    }
+
+    /**
+     * Читает снимок и запускает фоновое обновление
+     */
+    public InstrumentCache start() {
+        long now = clock.getAsLong();
+        try {
+            for (InstrumentSnapshot.Record record : InstrumentSnapshot.read(file)) {
+                if (methods.containsKey(record.method())) {
+                    entries.put(new Key(record.method(), record.request()), new Entry(record.response(), record.fetchedAtMillis()));
+                }
+            }
+        } catch (IOException e) {
+            log.warn("снимок кэша инструментов не прочитан, все ответы будут запрошены у API", e);
+        }
+        long oldest = entries.values().stream().mapToLong(Entry::fetchedAtMillis).min().orElse(now);
+        long fresh = entries.values().stream().filter(entry -> isFresh(entry, now)).count();
+        log.info("кэш инструментов {}: {} ответов, актуальных {}", file, entries.size(), fresh);
+
+        long firstRefresh = Math.max(0, refreshIntervalMillis - (now - oldest));
+        scheduler.scheduleWithFixedDelay(this::refreshAll, firstRefresh, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Оборачивает канал InvestApi: кэшируемые методы InstrumentsService отвечают из кэша, остальные вызовы идут в канал напрямую.
+     * Первый подключенный канал используется для фонового обновления
+     */
+    public Channel attach(@NotNull Channel channel) {
+        return ClientInterceptors.intercept(channel, interceptor(channel));
+    }
+
+    /**
+     * То же что {@link #attach}, но возвращает сам перехватчик для обертки ManagedChannel
+     */
+    public ClientInterceptor interceptor(@NotNull Channel channel) {
+        if (upstream == null) {
+            upstream = channel;
+            refresh(entry -> !isFresh(entry, clock.getAsLong()));
+        }
+        return interceptor;
+    }
+
+    /**
+     * Запросы отданные из памяти или снимка без обращения к API
+     */
+    public long hitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Запросы к API, включая фоновое обновление
+     */
+    public long missCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Запросы которые дождались уже отправленного одинакового запроса вместо своего
+     */
+    public long coalescedCount() {
+        return coalesced.sum();
+    }
+
+    /**
+     * Устаревшие ответы отданные потому что API не ответило
+     */
+    public long staleCount() {
+        return stale.sum();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Записывает снимок если с прошлой записи появились новые ответы
+     */
+    public synchronized void flush() {
+        flushScheduled.set(false);
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        List<InstrumentSnapshot.Record> records = new ArrayList<>(entries.size());
+        entries.forEach((key, entry) -> records.add(new InstrumentSnapshot.Record(key.method(), key.request(), entry.payload(), entry.fetchedAtMillis())));
+        try {
+            InstrumentSnapshot.write(file, records);
+        } catch (IOException e) {
+            dirty = true;
+            log.warn("не удалось записать снимок кэша инструментов {}", file, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    <ReqT, RespT> CompletableFuture<RespT> get(MethodDescriptor<ReqT, RespT> method, ReqT request, Channel channel) {
+        Key key = Key.of(method, request);
+        Entry cached = entries.get(key);
+        if (cached != null && isFresh(cached, clock.getAsLong())) {
+            hits.increment();
+            return CompletableFuture.completedFuture(cached.response(method));
+        }
+        CompletableFuture<Entry> fetched = fetch(key, method, request, channel);
+        if (cached != null) {
+            fetched = fetched.exceptionally(e -> {
+                stale.increment();
+                log.warn("{} недоступен, отдается ответ из снимка от {}", method.getBareMethodName(), Instant.ofEpochMilli(cached.fetchedAtMillis()), e);
+                return cached;
+            });
+        }
+        return fetched.thenApply(entry -> entry.response(method));
+    }
+
+    private <ReqT, RespT> CompletableFuture<Entry> fetch(Key key, MethodDescriptor<ReqT, RespT> method, ReqT request, Channel channel) {
+        CompletableFuture<Entry> pending = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+        misses.increment();
+        long started = System.nanoTime();
+        CallOptions options = CallOptions.DEFAULT.withDeadlineAfter(requestTimeoutMillis, TimeUnit.MILLISECONDS);
+        ClientCalls.asyncUnaryCall(channel.newCall(method, options), request, new StreamObserver<>() {
+
+            private RespT response;
+
+            @Override
+            public void onNext(RespT value) {
+                response = value;
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                inFlight.remove(key, pending);
+                pending.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+                Entry entry;
+                try {
+                    entry = new Entry(ByteBuffer.wrap(method.streamResponse(response).readAllBytes()), clock.getAsLong());
+                } catch (IOException e) {
+                    onError(new UncheckedIOException(e));
+                    return;
+                }
+                entry.message = response;
+                entries.put(key, entry);
+                inFlight.remove(key, pending);
+                dirty = true;
+                scheduleFlush();
+                log.info("{}: ответ {} KB получен от API за {} ms", method.getBareMethodName(),
+                        entry.payload().remaining() / 1024, (System.nanoTime() - started) / 1_000_000);
+                pending.complete(entry);
+            }
+        });
+        return pending;
+    }
+
+    private void refreshAll() {
+        try {
+            refresh(entry -> true).join();
+        } catch (RuntimeException e) {
+            log.warn("фоновое обновление кэша инструментов не удалось", e);
+        }
+    }
+
+    private CompletableFuture<Void> refresh(Predicate<Entry> filter) {
+        Channel channel = upstream;
+        if (channel == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        List<CompletableFuture<Entry>> refreshed = new ArrayList<>();
+        entries.forEach((key, entry) -> {
+            if (filter.test(entry)) {
+                refreshed.add(refresh(key, methods.get(key.method()), channel));
+            }
+        });
+        return CompletableFuture.allOf(refreshed.toArray(CompletableFuture[]::new));
+    }
+
+    private <ReqT, RespT> CompletableFuture<Entry> refresh(Key key, MethodDescriptor<ReqT, RespT> method, Channel channel) {
+        return fetch(key, method, method.parseRequest(InstrumentSnapshot.stream(key.request())), channel);
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(this::flush, FLUSH_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+            }
+        }
+    }
+
+    private boolean isFresh(Entry entry, long now) {
+        return now - entry.fetchedAtMillis() < ttlMillis;
+    }
+
+    /**
+     * Полное имя метода и request в protobuf
+     */
+    record Key(String method, ByteBuffer request) {
+
+        static <ReqT> Key of(MethodDescriptor<ReqT, ?> method, ReqT request) {
+            try {
+                return new Key(method.getFullMethodName(), ByteBuffer.wrap(method.streamRequest(request).readAllBytes()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Ответ в protobuf (из API или срез снимка) и разобранное сообщение, которое создается при первом обращении
+     */
+    private static final class Entry {
+
+        private final ByteBuffer payload;
+        private final long fetchedAtMillis;
+        private volatile Object message;
+
+        Entry(ByteBuffer payload, long fetchedAtMillis) {
+            this.payload = payload;
+            this.fetchedAtMillis = fetchedAtMillis;
+        }
+
+        ByteBuffer payload() {
+            return payload;
+        }
+
+        long fetchedAtMillis() {
+            return fetchedAtMillis;
+        }
+
+        @SuppressWarnings("unchecked")
+        <RespT> RespT response(MethodDescriptor<?, RespT> method) {
+            Object parsed = message;
+            if (parsed == null) {
+                parsed = method.parseResponse(InstrumentSnapshot.stream(payload));
+                message = parsed;
+            }
+            return (RespT) parsed;
+        }
+    }
+
+    private final class CachingInterceptor implements ClientInterceptor {
+
+        @Override
+        public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+            if (!methods.containsKey(method.getFullMethodName())) {
+                return next.newCall(method, callOptions);
+            }
+            return new CachedCall<>(method, callOptions, next);
+        }
+    }
+
+    /**
+     * Unary вызов, который вместо отправки в канал берет ответ из {@link #get}.
+     * Колбэки слушателя выполняются в executor вызова, как у обычного ClientCall - на этом построены блокирующие стабы
+     */
+    private final class CachedCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+
+        private final MethodDescriptor<ReqT, RespT> method;
+        private final Executor executor;
+        private final Channel next;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private Listener<RespT> listener;
+        private ReqT request;
+
+        CachedCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+            this.method = method;
+            this.executor = callOptions.getExecutor() != null ? callOptions.getExecutor() : ForkJoinPool.commonPool();
+            this.next = next;
+        }
+
+        @Override
+        public void start(@NotNull Listener<RespT> responseListener, @NotNull Metadata headers) {
+            this.listener = responseListener;
+        }
+
+        @Override
+        public void request(int numMessages) {
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            this.request = message;
+        }
+
+        @Override
+        public void halfClose() {
+            if (request == null) {
+                close(Status.INTERNAL.withDescription("halfClose без запроса"), null);
+                return;
+            }
+            get(method, request, next).whenComplete((response, error) -> {
+                if (error != null) {
+                    Metadata trailers = Status.trailersFromThrowable(error);
+                    close(Status.fromThrowable(error), trailers);
+                } else {
+                    executor.execute(() -> {
+                        if (closed.compareAndSet(false, true)) {
+                            listener.onHeaders(new Metadata());
+                            listener.onMessage(response);
+                            listener.onClose(Status.OK, new Metadata());
+                        }
+                    });
+                }
+            });
+        }
+
+        @Override
+        public void cancel(@Nullable String message, @Nullable Throwable cause) {
+            close(Status.CANCELLED.withDescription(message).withCause(cause), null);
+        }
+
+        private void close(Status status, @Nullable Metadata trailers) {
+            executor.execute(() -> {
+                if (listener != null && closed.compareAndSet(false, true)) {
+                    listener.onClose(status, trailers != null ? trailers : new Metadata());
+                }
+            });
+        }
+    }
+}
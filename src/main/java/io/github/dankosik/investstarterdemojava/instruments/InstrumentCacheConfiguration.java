@@ -0,0 +1,43 @@
+package io.github.dankosik.investstarterdemojava.instruments;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Кэш поиска инструментов: demo.instruments.enabled=true
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "demo.instruments", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(InstrumentCacheProperties.class)
+class InstrumentCacheConfiguration {
+
+    @Bean
+    static InstrumentCachePostProcessor instrumentCachePostProcessor(ObjectProvider<InstrumentCache> instrumentCache) {
+        return new InstrumentCachePostProcessor(instrumentCache);
+    }
+
+    @Bean(destroyMethod = "close")
+    public InstrumentCache instrumentCache(InstrumentCacheProperties properties) {
+        return InstrumentCache.create(properties).start();
+    }
+
+    /**
+     * Попадания и промахи InstrumentCache, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder instrumentCacheMetrics(InstrumentCache cache) {
+        return registry -> {
+            Gauge.builder("demo.instruments.cache.size", cache, InstrumentCache::size).register(registry);
+            FunctionCounter.builder("demo.instruments.cache.hits", cache, InstrumentCache::hitCount).register(registry);
+            FunctionCounter.builder("demo.instruments.cache.misses", cache, InstrumentCache::missCount).register(registry);
+            FunctionCounter.builder("demo.instruments.cache.coalesced", cache, InstrumentCache::coalescedCount).register(registry);
+            FunctionCounter.builder("demo.instruments.cache.stale", cache, InstrumentCache::staleCount).register(registry);
+        };
+    }
+}
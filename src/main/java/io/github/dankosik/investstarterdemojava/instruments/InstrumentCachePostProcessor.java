@@ -0,0 +1,43 @@
+package io.github.dankosik.investstarterdemojava.instruments;
+
+import io.github.dankosik.investstarterdemojava.grpc.InterceptedManagedChannel;
+import io.grpc.ManagedChannel;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import ru.tinkoff.piapi.core.InvestApi;
+
+/**
+ * Пересоздает каждый InvestApi стартера поверх канала с {@link InstrumentCache}.
+ * InstrumentsService стартера создается из InvestApi, поэтому все поиски тикеров из аннотаций и фабрик адаптеров идут через кэш.
+ * Выполняется последним среди пост-процессоров InvestApi, в replay режиме оборачивает уже подмененный канал
+ */
+class InstrumentCachePostProcessor implements BeanPostProcessor, Ordered {
+
+    private final ObjectProvider<InstrumentCache> instrumentCache;
+
+    InstrumentCachePostProcessor(ObjectProvider<InstrumentCache> instrumentCache) {
+        this.instrumentCache = instrumentCache;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(@NotNull Object bean, @NotNull String beanName) {
+        if (!(bean instanceof InvestApi original) || !(original.getChannel() instanceof ManagedChannel channel)) {
+            return bean;
+        }
+        var cached = new InterceptedManagedChannel(channel, instrumentCache.getObject().interceptor(channel));
+        if (original.isSandboxMode()) {
+            return InvestApi.createSandbox(cached);
+        }
+        if (original.isReadonlyMode()) {
+            return InvestApi.createReadonly(cached);
+        }
+        return InvestApi.create(cached);
+    }
+}
@@ -0,0 +1,30 @@
+package io.github.dankosik.investstarterdemojava.instruments;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Настройки {@link InstrumentCache}
+ *
+ * @param enabled         включает кэш ответов InstrumentsService
+ * @param file            файл снимка, переживает перезапуск приложения
+ * @param ttl             сколько ответ из снимка считается актуальным, устаревший запрашивается заново
+ *                        (если API недоступно - отдается устаревший)
+ * @param refreshInterval как часто обновлять все закэшированные ответы в фоне, должен быть меньше ttl
+ * @param requestTimeout  дедлайн одного запроса к API
+ * @param methods         какие методы InstrumentsService кэшировать
+ */
+@ConfigurationProperties(prefix = "demo.instruments")
+public record InstrumentCacheProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("instruments.cache") String file,
+        @DefaultValue("24h") Duration ttl,
+        @DefaultValue("6h") Duration refreshInterval,
+        @DefaultValue("30s") Duration requestTimeout,
+        @DefaultValue({"Shares", "Futures", "Bonds", "Etfs", "Currencies", "Options", "FindInstrument", "GetInstrumentBy"})
+        List<String> methods
+) {
+}
@@ -0,0 +1,163 @@
+package io.github.dankosik.investstarterdemojava.instruments;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Файл снимка ответов InstrumentsService (little endian).
+ * <pre>
+ * заголовок, 16 байт:
+ *   0  int   magic            MAGIC
+ *   4  int   version          VERSION
+ *   8  int   records          количество записей
+ *   12 int   reserved
+ * запись:
+ *   long  fetchedAtMillis     когда ответ получен от API
+ *   short methodLength, int requestLength, int responseLength
+ *   utf8 полное имя метода, request и response в protobuf
+ * </pre>
+ * Читается через mmap: request и response остаются срезами отображенного файла и разбираются только когда понадобятся.
+ * Пишется во временный файл, который затем атомарно заменяет старый, уже отображенный старый файл при этом остается валидным
+ */
+final class InstrumentSnapshot {
+
+    static final int MAGIC = 0x49434831; // ICH1
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 18;
+
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private InstrumentSnapshot() {
+    }
+
+    record Record(String method, ByteBuffer request, ByteBuffer response, long fetchedAtMillis) {
+    }
+
+    /**
+     * @return записи снимка или пустой список если файла нет
+     * @throws IOException если файл поврежден или записан другой версией
+     */
+    static List<Record> read(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ORDER);
+        } catch (NoSuchFileException e) {
+            return List.of();
+        }
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file + " не снимок кэша инструментов");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException(file + ": версия снимка " + version + ", ожидается " + VERSION);
+            }
+            int count = buffer.getInt();
+            buffer.getInt();
+            List<Record> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                long fetchedAtMillis = buffer.getLong();
+                int methodLength = buffer.getShort();
+                int requestLength = buffer.getInt();
+                int responseLength = buffer.getInt();
+                String method = StandardCharsets.UTF_8.decode(slice(buffer, methodLength)).toString();
+                records.add(new Record(method, slice(buffer, requestLength), slice(buffer, responseLength), fetchedAtMillis));
+            }
+            return records;
+        } catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException e) {
+            throw new IOException(file + " обрезан или поврежден", e);
+        }
+    }
+
+    static void write(Path file, Collection<Record> records) throws IOException {
+        int size = HEADER_SIZE;
+        for (Record record : records) {
+            size += RECORD_HEADER_SIZE + record.method().length() * 3 + record.request().remaining() + record.response().remaining();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ORDER)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(records.size())
+                .putInt(0);
+        for (Record record : records) {
+            byte[] method = record.method().getBytes(StandardCharsets.UTF_8);
+            buffer.putLong(record.fetchedAtMillis())
+                    .putShort((short) method.length)
+                    .putInt(record.request().remaining())
+                    .putInt(record.response().remaining())
+                    .put(method)
+                    .put(record.request().duplicate())
+                    .put(record.response().duplicate());
+        }
+        buffer.flip();
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Поток поверх среза снимка, без копирования в кучу, для разбора protobuf маршаллерами gRPC
+     */
+    static InputStream stream(ByteBuffer buffer) {
+        ByteBuffer source = buffer.duplicate();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return source.hasRemaining() ? source.get() & 0xFF : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                if (!source.hasRemaining()) {
+                    return -1;
+                }
+                int read = Math.min(length, source.remaining());
+                source.get(bytes, offset, read);
+                return read;
+            }
+
+            @Override
+            public int available() {
+                return source.remaining();
+            }
+        };
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int length) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length " + length);
+        }
+        ByteBuffer slice = buffer.slice(buffer.position(), length);
+        buffer.position(buffer.position() + length);
+        return slice;
+    }
+}
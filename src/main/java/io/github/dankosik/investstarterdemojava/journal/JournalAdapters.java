@@ -0,0 +1,60 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Журнал для createBlockingHandler адаптеров: обертка вызывает хендлер и затем кладет событие в {@link TickJournal}.
+ * Оборачивать нужно снаружи слияния обновлений, чтобы в журнал попадало каждое событие:
+ * <pre>{@code
+ * .createBlockingHandler(journalAdapters.lastPrices(conflatingDispatcher.blockingLastPrices(this::process)))
+ * }</pre>
+ * Если журнал выключен или его пишут хендлеры ({@link JournalSource#HANDLERS}), хендлер возвращается как есть
+ */
+public final class JournalAdapters {
+
+    @Nullable
+    private final TickJournal tickJournal;
+
+    public JournalAdapters(@Nullable TickJournal tickJournal) {
+        this.tickJournal = tickJournal;
+    }
+
+    public boolean isEnabled() {
+        return tickJournal != null;
+    }
+
+    public Consumer<Trade> trades(@NotNull Consumer<Trade> handler) {
+        return journaled(handler, TickJournal::append);
+    }
+
+    public Consumer<OrderBook> orderBooks(@NotNull Consumer<OrderBook> handler) {
+        return journaled(handler, TickJournal::append);
+    }
+
+    public Consumer<Candle> candles(@NotNull Consumer<Candle> handler) {
+        return journaled(handler, TickJournal::append);
+    }
+
+    public Consumer<LastPrice> lastPrices(@NotNull Consumer<LastPrice> handler) {
+        return journaled(handler, TickJournal::append);
+    }
+
+    private <T> Consumer<T> journaled(Consumer<T> handler, BiConsumer<TickJournal, T> append) {
+        TickJournal journal = tickJournal;
+        if (journal == null) {
+            return handler;
+        }
+        return event -> {
+            handler.accept(event);
+            append.accept(journal, event);
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(JournalProperties.class)
+class JournalConfiguration {
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "demo.journal", name = "enabled", havingValue = "true")
+    public TickJournal tickJournal(JournalProperties properties) {
+        return TickJournal.create(properties).start();
+    }
+
+    /**
+     * Есть всегда, пишет в журнал только при demo.journal.enabled=true и demo.journal.source=ADAPTERS
+     */
+    @Bean
+    public JournalAdapters journalAdapters(JournalProperties properties, ObjectProvider<TickJournal> tickJournal) {
+        return new JournalAdapters(properties.source() == JournalSource.ADAPTERS ? tickJournal.getIfAvailable() : null);
+    }
+}
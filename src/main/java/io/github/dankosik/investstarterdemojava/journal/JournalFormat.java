@@ -0,0 +1,85 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.file.Path;
+
+/**
+ * Бинарный формат сегментов журнала (little endian, каждая запись выровнена на 8 байт).
+ * <pre>
+ * заголовок записи, 24 байта:
+ *   0  int   length      полная длина записи с выравниванием, пишется последней (release)
+ *   4  byte  type        RECORD_*
+ *   5  byte  flags       направление трейда / интервал свечи / isConsistent стакана
+ *   6  short reserved
+ *   8  long  timeNanos   время события, наносекунды от эпохи
+ *   16 int   instrument  номер инструмента внутри сегмента (см. RECORD_INSTRUMENT)
+ *   20 int   reserved
+ * тела записей (цены и объемы - long с {@link io.github.dankosik.investstarterdemojava.marketdata.Prices#SCALE}):
+ *   INSTRUMENT  short utf8Length, utf8 instrumentUid
+ *   TRADE       long price, long quantity
+ *   LAST_PRICE  long price
+ *   CANDLE      long open, long high, long low, long close, long volume, long lastTradeNanos
+ *   ORDER_BOOK  short bids, short asks, int depth, long limitUp, long limitDown, (long price, long quantity) x (bids + asks)
+ * </pre>
+ * length == 0 - дальше пока ничего не записано, length == -1 - конец сегмента, продолжение в следующем файле.
+ * Номера инструментов действуют только внутри сегмента, поэтому каждый сегмент читается независимо
+ */
+final class JournalFormat {
+
+    static final int HEADER_SIZE = 24;
+    static final int ALIGNMENT = 8;
+    static final int END_OF_SEGMENT = -1;
+
+    static final byte RECORD_INSTRUMENT = 1;
+    static final byte RECORD_TRADE = 2;
+    static final byte RECORD_ORDER_BOOK = 3;
+    static final byte RECORD_CANDLE = 4;
+    static final byte RECORD_LAST_PRICE = 5;
+
+    static final int TYPE_OFFSET = 4;
+    static final int FLAGS_OFFSET = 5;
+    static final int TIME_OFFSET = 8;
+    static final int INSTRUMENT_OFFSET = 16;
+    static final int BODY_OFFSET = HEADER_SIZE;
+
+    static final int ORDER_BOOK_LEVELS_OFFSET = BODY_OFFSET + 24;
+    static final int LEVEL_SIZE = 16;
+
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    /**
+     * length записи публикуется читателям через release/acquire, остальные поля записи пишутся обычными put
+     */
+    static final VarHandle LENGTH = MethodHandles.byteBufferViewVarHandle(int[].class, ORDER);
+
+    private static final String PREFIX = "ticks-";
+    private static final String SUFFIX = ".journal";
+
+    private JournalFormat() {
+    }
+
+    static int align(int length) {
+        return (length + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    static Path segmentPath(Path directory, long index) {
+        return directory.resolve(PREFIX + "%09d".formatted(index) + SUFFIX);
+    }
+
+    /**
+     * @return номер сегмента или -1 если файл не сегмент журнала
+     */
+    static long segmentIndex(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name, PREFIX.length(), name.length() - SUFFIX.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
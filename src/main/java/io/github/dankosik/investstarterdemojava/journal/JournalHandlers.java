@@ -0,0 +1,105 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllCandles;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllLastPrices;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllOrderBooks;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllTrades;
+import io.github.dankosik.starter.invest.contract.marketdata.candle.AsyncCandleHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.lastprice.AsyncLastPriceHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.AsyncOrderBookHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Хендлеры журнала: регистрируются только при demo.journal.enabled=true и demo.journal.source=HANDLERS (по умолчанию)
+ * и выполняются после всех остальных хендлеров. При source=ADAPTERS журнал пишут адаптеры через JournalAdapters
+ */
+
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+@ConditionalOnExpression("${demo.journal.enabled:false} and '${demo.journal.source:HANDLERS}' == 'HANDLERS'")
+@interface ConditionalOnJournalHandlers {
+}
+
+@HandleAllTrades(afterEachTradesHandler = true)
+@ConditionalOnJournalHandlers
+class JournalTradeHandler implements AsyncTradeHandler {
+
+    private final TickJournal tickJournal;
+
+    JournalTradeHandler(TickJournal tickJournal) {
+        this.tickJournal = tickJournal;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
+        return tickJournal.appendAsync(trade);
+    }
+}
+
+@HandleAllOrderBooks(afterEachOrderBookHandler = true)
+@ConditionalOnJournalHandlers
+class JournalOrderBookHandler implements AsyncOrderBookHandler {
+
+    private final TickJournal tickJournal;
+
+    JournalOrderBookHandler(TickJournal tickJournal) {
+        this.tickJournal = tickJournal;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull OrderBook orderBook) {
+        return tickJournal.appendAsync(orderBook);
+    }
+}
+
+@HandleAllLastPrices(afterEachLastPriceHandler = true)
+@ConditionalOnJournalHandlers
+class JournalLastPriceHandler implements AsyncLastPriceHandler {
+
+    private final TickJournal tickJournal;
+
+    JournalLastPriceHandler(TickJournal tickJournal) {
+        this.tickJournal = tickJournal;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull LastPrice lastPrice) {
+        return tickJournal.appendAsync(lastPrice);
+    }
+}
+
+@HandleAllCandles(
+        afterEachCandleHandler = true,
+        subscriptionInterval = SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE
+)
+@ConditionalOnJournalHandlers
+class JournalCandleHandler implements AsyncCandleHandler {
+
+    private final TickJournal tickJournal;
+
+    JournalCandleHandler(TickJournal tickJournal) {
+        this.tickJournal = tickJournal;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Candle candle) {
+        return tickJournal.appendAsync(candle);
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+import io.github.dankosik.investstarterdemojava.sink.OverflowPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Настройки {@link TickJournal}
+ *
+ * @param enabled        включает запись журнала
+ * @param source         кто пишет события в журнал: хендлеры журнала или createBlockingHandler адаптеры
+ * @param directory      каталог сегментов
+ * @param segmentSize    размер одного сегмента, не больше 2GB
+ * @param capacity       размер очереди между хендлерами и писателем, округляется вверх до степени двойки
+ * @param batchSize      сколько событий писатель забирает из очереди за раз
+ * @param overflowPolicy что делать когда очередь заполнена
+ * @param idleInterval   сколько писатель спит когда очередь пуста
+ * @param flushInterval  как часто сбрасывать текущий сегмент на диск (force), 0 - только при смене сегмента и остановке
+ */
+@ConfigurationProperties(prefix = "demo.journal")
+public record JournalProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("HANDLERS") JournalSource source,
+        @DefaultValue("journal") String directory,
+        @DefaultValue("256MB") DataSize segmentSize,
+        @DefaultValue("65536") int capacity,
+        @DefaultValue("1024") int batchSize,
+        @DefaultValue("BLOCK") OverflowPolicy overflowPolicy,
+        @DefaultValue("1ms") Duration idleInterval,
+        @DefaultValue("0s") Duration flushInterval
+) {
+}
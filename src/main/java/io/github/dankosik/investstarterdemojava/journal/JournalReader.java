@@ -0,0 +1,240 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.TradeDirection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static io.github.dankosik.investstarterdemojava.journal.JournalFormat.*;
+
+/**
+ * Последовательное чтение журнала с первого сегмента для бэктестов.
+ * Курсор-flyweight: {@link #next()} переходит к следующему событию, а геттеры читают поля прямо из отображенного файла,
+ * поэтому чтение не создает объектов (кроме строки instrumentUid один раз на инструмент в сегменте).
+ * Можно читать журнал пока в него пишут: next() вернет false когда догонит писателя, позже можно вызвать снова.
+ * Отображение прочитанного сегмента снимается сразу при переходе к следующему и в {@link #close()}.
+ * Не потокобезопасен
+ */
+public final class JournalReader implements AutoCloseable {
+
+    private static final TickType[] TYPES = {null, null, TickType.TRADE, TickType.ORDER_BOOK, TickType.CANDLE, TickType.LAST_PRICE};
+
+    private final Path directory;
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+    private int position;
+    private int record = -1;
+    private String[] instruments = new String[64];
+
+    public JournalReader(@NotNull Path directory) {
+        this.directory = directory;
+        try (Stream<Path> files = Files.list(directory)) {
+            this.segmentIndex = files.mapToLong(JournalFormat::segmentIndex).filter(i -> i >= 0).min().orElse(-1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (segmentIndex >= 0) {
+            openSegment(segmentIndex);
+        }
+    }
+
+    /**
+     * Переходит к следующему событию
+     *
+     * @return false если прочитано все что записано на текущий момент
+     */
+    public boolean next() {
+        if (segment == null && !openSegment(Math.max(segmentIndex, 0))) {
+            return false;
+        }
+        while (true) {
+            if (position + HEADER_SIZE > segment.capacity()) {
+                if (!openSegment(segmentIndex + 1)) {
+                    return false;
+                }
+                continue;
+            }
+            int length = (int) LENGTH.getAcquire(segment, position);
+            if (length == 0) {
+                return false;
+            }
+            if (length == END_OF_SEGMENT) {
+                if (!openSegment(segmentIndex + 1)) {
+                    return false;
+                }
+                continue;
+            }
+            int offset = position;
+            position += length;
+            if (segment.get(offset + TYPE_OFFSET) == RECORD_INSTRUMENT) {
+                define(offset);
+                continue;
+            }
+            record = offset;
+            return true;
+        }
+    }
+
+    @NotNull
+    public TickType type() {
+        return TYPES[segment.get(record + TYPE_OFFSET)];
+    }
+
+    public long timeNanos() {
+        return segment.getLong(record + TIME_OFFSET);
+    }
+
+    @NotNull
+    public String instrumentUid() {
+        return instruments[segment.getInt(record + INSTRUMENT_OFFSET)];
+    }
+
+    /**
+     * Цена трейда или последняя цена
+     */
+    public long price() {
+        return segment.getLong(record + BODY_OFFSET);
+    }
+
+    public long quantity() {
+        return segment.getLong(record + BODY_OFFSET + 8);
+    }
+
+    public TradeDirection direction() {
+        return TradeDirection.forNumber(segment.get(record + FLAGS_OFFSET));
+    }
+
+    public SubscriptionInterval interval() {
+        return SubscriptionInterval.forNumber(segment.get(record + FLAGS_OFFSET));
+    }
+
+    public long openPrice() {
+        return segment.getLong(record + BODY_OFFSET);
+    }
+
+    public long highPrice() {
+        return segment.getLong(record + BODY_OFFSET + 8);
+    }
+
+    public long lowPrice() {
+        return segment.getLong(record + BODY_OFFSET + 16);
+    }
+
+    public long closePrice() {
+        return segment.getLong(record + BODY_OFFSET + 24);
+    }
+
+    public long volume() {
+        return segment.getLong(record + BODY_OFFSET + 32);
+    }
+
+    public long lastTradeNanos() {
+        return segment.getLong(record + BODY_OFFSET + 40);
+    }
+
+    public boolean isConsistent() {
+        return segment.get(record + FLAGS_OFFSET) != 0;
+    }
+
+    public int bidCount() {
+        return segment.getShort(record + BODY_OFFSET);
+    }
+
+    public int askCount() {
+        return segment.getShort(record + BODY_OFFSET + 2);
+    }
+
+    public int depth() {
+        return segment.getInt(record + BODY_OFFSET + 4);
+    }
+
+    public long limitUp() {
+        return segment.getLong(record + BODY_OFFSET + 8);
+    }
+
+    public long limitDown() {
+        return segment.getLong(record + BODY_OFFSET + 16);
+    }
+
+    public long bidPrice(int level) {
+        return segment.getLong(level(level));
+    }
+
+    public long bidQuantity(int level) {
+        return segment.getLong(level(level) + 8);
+    }
+
+    public long askPrice(int level) {
+        return segment.getLong(level(bidCount() + level));
+    }
+
+    public long askQuantity(int level) {
+        return segment.getLong(level(bidCount() + level) + 8);
+    }
+
+    public long segmentIndex() {
+        return segmentIndex;
+    }
+
+    @Override
+    public void close() {
+        MappedByteBuffer last = segment;
+        segment = null;
+        SegmentUnmapper.unmap(last);
+    }
+
+    private int level(int index) {
+        return record + ORDER_BOOK_LEVELS_OFFSET + index * LEVEL_SIZE;
+    }
+
+    private void define(int offset) {
+        int id = segment.getInt(offset + INSTRUMENT_OFFSET);
+        int length = segment.getShort(offset + BODY_OFFSET);
+        byte[] utf8 = new byte[length];
+        segment.get(offset + BODY_OFFSET + 2, utf8);
+        if (id >= instruments.length) {
+            instruments = Arrays.copyOf(instruments, Math.max(id + 1, instruments.length * 2));
+        }
+        instruments[id] = new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private boolean openSegment(long index) {
+        Path path = segmentPath(directory, index);
+        try {
+            // файл размером 0 - писатель его только создал и еще не отобразил, прочитаем в следующий раз
+            if (!Files.exists(path) || Files.size(path) == 0) {
+                return false;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        MappedByteBuffer previous = segment;
+        segment = map(index);
+        SegmentUnmapper.unmap(previous);
+        segmentIndex = index;
+        position = 0;
+        record = -1;
+        Arrays.fill(instruments, null);
+        return true;
+    }
+
+    private MappedByteBuffer map(long index) {
+        try (FileChannel channel = FileChannel.open(segmentPath(directory, index), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ORDER);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+/**
+ * Откуда в {@link TickJournal} попадают события
+ */
+public enum JournalSource {
+
+    /**
+     * Хендлеры журнала с @HandleAll* аннотациями после всех остальных хендлеров, все подписанные инструменты
+     */
+    HANDLERS,
+
+    /**
+     * createBlockingHandler адаптеры через {@link JournalAdapters}, только их тикеры
+     */
+    ADAPTERS
+}
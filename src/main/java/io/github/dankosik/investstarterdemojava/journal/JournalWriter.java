@@ -0,0 +1,228 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.Order;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static io.github.dankosik.investstarterdemojava.journal.JournalFormat.*;
+
+/**
+ * Пишет события в memory-mapped сегменты журнала (формат см. {@link JournalFormat}).
+ * Однопоточный: все append вызываются из одного потока, поэтому блокировок и CAS нет.
+ * Сегмент целиком отображается в память при создании, когда запись не влезает - пишется маркер конца и открывается следующий.
+ * При старте продолжает нумерацию после последнего существующего сегмента.
+ * Отображение закрытого сегмента снимается сразу при смене сегмента и в {@link #close()}, канал файла закрывается
+ * сразу после map, поэтому дескрипторы не копятся.
+ * На горячем пути нет аллокаций кроме первой записи нового инструмента в сегменте
+ */
+public final class JournalWriter implements AutoCloseable {
+
+    private final Path directory;
+    private final int segmentSize;
+    private final Map<String, Integer> instruments = new HashMap<>();
+    private MappedByteBuffer segment;
+    private long segmentIndex;
+    private int position;
+    private long records;
+
+    public JournalWriter(@NotNull Path directory, int segmentSize) {
+        if (segmentSize < 64 * 1024 || segmentSize % ALIGNMENT != 0) {
+            throw new IllegalArgumentException("segmentSize должен быть не меньше 64KB и кратен " + ALIGNMENT);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                this.segmentIndex = files.mapToLong(JournalFormat::segmentIndex).max().orElse(-1) + 1;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.segment = map(segmentIndex);
+    }
+
+    public void append(@NotNull Trade trade) {
+        int instrument = prepare(trade.getInstrumentUid(), BODY_OFFSET + 16);
+        int offset = position;
+        header(offset, RECORD_TRADE, trade.getDirectionValue(), Prices.toEpochNanos(trade.getTime()), instrument);
+        segment.putLong(offset + BODY_OFFSET, Prices.toScaled(trade.getPrice()));
+        segment.putLong(offset + BODY_OFFSET + 8, trade.getQuantity());
+        commit(offset, BODY_OFFSET + 16);
+        records++;
+    }
+
+    public void append(@NotNull LastPrice lastPrice) {
+        int instrument = prepare(lastPrice.getInstrumentUid(), BODY_OFFSET + 8);
+        int offset = position;
+        header(offset, RECORD_LAST_PRICE, 0, Prices.toEpochNanos(lastPrice.getTime()), instrument);
+        segment.putLong(offset + BODY_OFFSET, Prices.toScaled(lastPrice.getPrice()));
+        commit(offset, BODY_OFFSET + 8);
+        records++;
+    }
+
+    public void append(@NotNull Candle candle) {
+        int instrument = prepare(candle.getInstrumentUid(), BODY_OFFSET + 48);
+        int offset = position;
+        header(offset, RECORD_CANDLE, candle.getIntervalValue(), Prices.toEpochNanos(candle.getTime()), instrument);
+        int body = offset + BODY_OFFSET;
+        segment.putLong(body, Prices.toScaled(candle.getOpen()));
+        segment.putLong(body + 8, Prices.toScaled(candle.getHigh()));
+        segment.putLong(body + 16, Prices.toScaled(candle.getLow()));
+        segment.putLong(body + 24, Prices.toScaled(candle.getClose()));
+        segment.putLong(body + 32, candle.getVolume());
+        segment.putLong(body + 40, candle.hasLastTradeTs() ? Prices.toEpochNanos(candle.getLastTradeTs()) : 0);
+        commit(offset, BODY_OFFSET + 48);
+        records++;
+    }
+
+    public void append(@NotNull OrderBook orderBook) {
+        int bids = orderBook.getBidsCount();
+        int asks = orderBook.getAsksCount();
+        int length = ORDER_BOOK_LEVELS_OFFSET + (bids + asks) * LEVEL_SIZE;
+        int instrument = prepare(orderBook.getInstrumentUid(), length);
+        int offset = position;
+        header(offset, RECORD_ORDER_BOOK, orderBook.getIsConsistent() ? 1 : 0, Prices.toEpochNanos(orderBook.getTime()), instrument);
+        int body = offset + BODY_OFFSET;
+        segment.putShort(body, (short) bids);
+        segment.putShort(body + 2, (short) asks);
+        segment.putInt(body + 4, orderBook.getDepth());
+        segment.putLong(body + 8, Prices.toScaled(orderBook.getLimitUp()));
+        segment.putLong(body + 16, Prices.toScaled(orderBook.getLimitDown()));
+        int level = offset + ORDER_BOOK_LEVELS_OFFSET;
+        level = putLevels(orderBook.getBidsList(), level);
+        putLevels(orderBook.getAsksList(), level);
+        commit(offset, length);
+        records++;
+    }
+
+    /**
+     * Сбрасывает текущий сегмент на диск
+     */
+    public void flush() {
+        segment.force();
+    }
+
+    public long segmentIndex() {
+        return segmentIndex;
+    }
+
+    public int position() {
+        return position;
+    }
+
+    public long recordCount() {
+        return records;
+    }
+
+    /**
+     * Сбрасывает текущий сегмент на диск и снимает его отображение, после этого append использовать нельзя
+     */
+    @Override
+    public void close() {
+        MappedByteBuffer last = segment;
+        if (last == null) {
+            return;
+        }
+        last.force();
+        segment = null;
+        SegmentUnmapper.unmap(last);
+    }
+
+    private int putLevels(List<Order> orders, int offset) {
+        for (int i = 0, size = orders.size(); i < size; i++) {
+            Order order = orders.get(i);
+            segment.putLong(offset, Prices.toScaled(order.getPrice()));
+            segment.putLong(offset + 8, order.getQuantity());
+            offset += LEVEL_SIZE;
+        }
+        return offset;
+    }
+
+    /**
+     * Гарантирует что в текущем сегменте поместится запись длиной length вместе с определением инструмента
+     * (если его еще нет в сегменте), при необходимости переходит в следующий сегмент.
+     * Запись события после этого пишется с {@link #position}
+     *
+     * @return номер инструмента в текущем сегменте
+     */
+    private int prepare(String instrumentUid, int length) {
+        int aligned = align(length);
+        Integer id = instruments.get(instrumentUid);
+        if (id != null) {
+            if (position + aligned <= segmentSize) {
+                return id;
+            }
+            roll();
+        }
+        byte[] utf8 = instrumentUid.getBytes(StandardCharsets.UTF_8);
+        int definition = align(BODY_OFFSET + 2 + utf8.length);
+        if (definition + aligned > segmentSize) {
+            throw new IllegalArgumentException("запись длиной " + length + " не помещается в сегмент " + segmentSize);
+        }
+        if (position + definition + aligned > segmentSize) {
+            roll();
+        }
+        int newId = instruments.size();
+        int offset = position;
+        header(offset, RECORD_INSTRUMENT, 0, 0, newId);
+        segment.putShort(offset + BODY_OFFSET, (short) utf8.length);
+        segment.put(offset + BODY_OFFSET + 2, utf8);
+        commit(offset, BODY_OFFSET + 2 + utf8.length);
+        instruments.put(instrumentUid, newId);
+        return newId;
+    }
+
+    private void header(int offset, byte type, int flags, long timeNanos, int instrument) {
+        segment.put(offset + TYPE_OFFSET, type);
+        segment.put(offset + FLAGS_OFFSET, (byte) flags);
+        segment.putLong(offset + TIME_OFFSET, timeNanos);
+        segment.putInt(offset + INSTRUMENT_OFFSET, instrument);
+    }
+
+    private void commit(int offset, int length) {
+        int aligned = align(length);
+        LENGTH.setRelease(segment, offset, aligned);
+        position = offset + aligned;
+    }
+
+    private void roll() {
+        if (position < segmentSize) {
+            LENGTH.setRelease(segment, position, END_OF_SEGMENT);
+        }
+        MappedByteBuffer closed = segment;
+        closed.force();
+        segment = map(++segmentIndex);
+        SegmentUnmapper.unmap(closed);
+        position = 0;
+        instruments.clear();
+    }
+
+    private MappedByteBuffer map(long index) {
+        try (FileChannel channel = FileChannel.open(segmentPath(directory, index),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            buffer.order(ORDER);
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
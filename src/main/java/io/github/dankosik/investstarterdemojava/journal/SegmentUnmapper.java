@@ -0,0 +1,51 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * Снимает отображение сегмента сразу, не дожидаясь пока GC соберет MappedByteBuffer: без этого каждый пройденный
+ * сегмент держит адресное пространство до ближайшей сборки.
+ * В Java 21 публичного API для этого нет (FileChannel.map в Arena - preview), поэтому используется
+ * sun.misc.Unsafe#invokeCleaner. Если Unsafe недоступен (например в native image), отображение освободит GC.
+ * После вызова буфер трогать нельзя - обращение к нему роняет JVM, поэтому владелец сначала забывает ссылку
+ */
+final class SegmentUnmapper {
+
+    @Nullable
+    private static final MethodHandle INVOKE_CLEANER = invokeCleaner();
+
+    private SegmentUnmapper() {
+    }
+
+    static void unmap(@Nullable MappedByteBuffer segment) {
+        if (segment == null || INVOKE_CLEANER == null) {
+            return;
+        }
+        try {
+            INVOKE_CLEANER.invokeExact((ByteBuffer) segment);
+        } catch (Throwable e) {
+            // отображение останется до сборки буфера
+        }
+    }
+
+    @Nullable
+    private static MethodHandle invokeCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(theUnsafe.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+import io.github.dankosik.investstarterdemojava.concurrent.MpscRing;
+import io.github.dankosik.investstarterdemojava.sink.OverflowPolicy;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Журнал всех рыночных событий для хендлеров.
+ * Хендлеры из любых потоков кладут ссылку на событие в {@link MpscRing}, единственный поток писателя
+ * кодирует события в {@link JournalWriter}. Методы append подходят для createBlockingHandler, например
+ * {@code TradeStreamProcessorAdapterFactory.createBlockingHandler(tickJournal::append)}.
+ * Событие которое не удалось записать (например не помещается в сегмент) пишется в лог и считается отброшенным.
+ * Ошибка ввода-вывода останавливает журнал: дальше все события отбрасываются, BLOCK продюсеры не ждут места
+ */
+public final class TickJournal implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(TickJournal.class);
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+    private static final long BLOCK_PARK_NANOS = 1_000;
+
+    private final MpscRing<Object> ring;
+    private final JournalWriter journalWriter;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final long idleNanos;
+    private final long flushIntervalNanos;
+
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean failed;
+    private volatile long written;
+
+    public TickJournal(@NotNull JournalWriter journalWriter, int capacity, int batchSize, @NotNull OverflowPolicy overflowPolicy,
+                       @NotNull Duration idleInterval, @NotNull Duration flushInterval) {
+        this.ring = new MpscRing<>(capacity);
+        this.journalWriter = journalWriter;
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.idleNanos = idleInterval.toNanos();
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.writer = Thread.ofPlatform().name("tick-journal-writer").daemon().unstarted(this::runWriter);
+    }
+
+    public static TickJournal create(@NotNull JournalProperties properties) {
+        long segmentSize = properties.segmentSize().toBytes();
+        if (segmentSize < 1 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("demo.journal.segment-size должен быть от 64KB до 2GB, задан " + properties.segmentSize());
+        }
+        return new TickJournal(
+                new JournalWriter(Path.of(properties.directory()), (int) segmentSize),
+                properties.capacity(),
+                properties.batchSize(),
+                properties.overflowPolicy(),
+                properties.idleInterval(),
+                properties.flushInterval()
+        );
+    }
+
+    public TickJournal start() {
+        writer.start();
+        return this;
+    }
+
+    public void append(@NotNull Trade trade) {
+        offer(trade);
+    }
+
+    public void append(@NotNull OrderBook orderBook) {
+        offer(orderBook);
+    }
+
+    public void append(@NotNull Candle candle) {
+        offer(candle);
+    }
+
+    public void append(@NotNull LastPrice lastPrice) {
+        offer(lastPrice);
+    }
+
+    public CompletableFuture<Void> appendAsync(@NotNull Trade trade) {
+        offer(trade);
+        return DONE;
+    }
+
+    public CompletableFuture<Void> appendAsync(@NotNull OrderBook orderBook) {
+        offer(orderBook);
+        return DONE;
+    }
+
+    public CompletableFuture<Void> appendAsync(@NotNull Candle candle) {
+        offer(candle);
+        return DONE;
+    }
+
+    public CompletableFuture<Void> appendAsync(@NotNull LastPrice lastPrice) {
+        offer(lastPrice);
+        return DONE;
+    }
+
+    public long writtenCount() {
+        return written;
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    public int backlog() {
+        return ring.size();
+    }
+
+    private void offer(Object event) {
+        if (!running) {
+            dropped.increment();
+            return;
+        }
+        while (!ring.offer(event)) {
+            if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+    }
+
+    private void runWriter() {
+        long lastFlush = System.nanoTime();
+        while (running) {
+            if (ring.drain(this::write, batchSize) == 0) {
+                LockSupport.parkNanos(idleNanos);
+            }
+            long now = System.nanoTime();
+            if (flushIntervalNanos > 0 && now - lastFlush >= flushIntervalNanos) {
+                flush();
+                lastFlush = now;
+            }
+        }
+        while (ring.drain(this::write, batchSize) > 0) {
+            // дописываем то что осталось в буфере после остановки
+        }
+    }
+
+    private void write(Object event) {
+        if (failed) {
+            dropped.increment();
+            return;
+        }
+        try {
+            switch (event) {
+                case Trade trade -> journalWriter.append(trade);
+                case OrderBook orderBook -> journalWriter.append(orderBook);
+                case Candle candle -> journalWriter.append(candle);
+                case LastPrice lastPrice -> journalWriter.append(lastPrice);
+                default -> throw new IllegalArgumentException("неизвестное событие " + event.getClass());
+            }
+            written = journalWriter.recordCount();
+        } catch (UncheckedIOException e) {
+            dropped.increment();
+            fail(e);
+        } catch (RuntimeException e) {
+            dropped.increment();
+            log.warn("tick journal: событие {} не записано", event.getClass().getSimpleName(), e);
+        }
+    }
+
+    private void flush() {
+        try {
+            journalWriter.flush();
+        } catch (UncheckedIOException e) {
+            fail(e);
+        }
+    }
+
+    private void fail(UncheckedIOException e) {
+        if (!failed) {
+            failed = true;
+            running = false;
+            log.error("tick journal: ошибка записи, журнал остановлен, дальше события отбрасываются", e);
+        }
+    }
+
+    /**
+     * Останавливает писателя, дописывает все что уже попало в буфер и сбрасывает сегмент на диск
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        if (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            while (ring.drain(this::write, batchSize) > 0) {
+                // писатель не запускался, дописываем в текущем потоке
+            }
+        }
+        if (!failed) {
+            try {
+                journalWriter.close();
+            } catch (UncheckedIOException e) {
+                fail(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+/**
+ * Типы событий в журнале
+ */
+public enum TickType {
+    TRADE,
+    ORDER_BOOK,
+    CANDLE,
+    LAST_PRICE
+}
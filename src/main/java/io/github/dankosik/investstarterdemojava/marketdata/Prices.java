@@ -0,0 +1,67 @@
+package io.github.dankosik.investstarterdemojava.marketdata;
+
+import com.google.protobuf.Timestamp;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.MoneyValue;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+/**
+ * Перевод Quotation/MoneyValue/Timestamp в примитивы и обратно.
+ * Цена хранится как long с фиксированной точкой: units * 10^9 + nano, т.е. в тех же единицах что и поле nano
+ */
+public final class Prices {
+
+    public static final long SCALE = 1_000_000_000L;
+
+    private Prices() {
+    }
+
+    public static long toScaled(@NotNull Quotation quotation) {
+        return quotation.getUnits() * SCALE + quotation.getNano();
+    }
+
+    public static long toScaled(@NotNull MoneyValue moneyValue) {
+        return moneyValue.getUnits() * SCALE + moneyValue.getNano();
+    }
+
+    public static Quotation toQuotation(long scaled) {
+        return Quotation.newBuilder()
+                .setUnits(scaled / SCALE)
+                .setNano((int) (scaled % SCALE))
+                .build();
+    }
+
+    /**
+     * Произведение двух чисел с фиксированной точкой (например количество на цену), дробная часть меньше 10^-9
+     * отбрасывается. Если 128-битное произведение не помещается в long, оно считается по частям
+     *
+     * @throws ArithmeticException если не помещается в long сам результат
+     */
+    public static long multiply(long scaledA, long scaledB) {
+        long high = Math.multiplyHigh(scaledA, scaledB);
+        long low = scaledA * scaledB;
+        if ((high == 0 && low >= 0) || (high == -1 && low < 0)) {
+            return low / SCALE;
+        }
+        long aUnits = scaledA / SCALE;
+        long aNanos = scaledA % SCALE;
+        long units = Math.multiplyExact(aUnits, scaledB);
+        long nanos = Math.addExact(Math.multiplyExact(aNanos, scaledB / SCALE), aNanos * (scaledB % SCALE) / SCALE);
+        return Math.addExact(units, nanos);
+    }
+
+    public static double toDouble(long scaled) {
+        return scaled / (double) SCALE;
+    }
+
+    public static long toEpochNanos(@NotNull Timestamp timestamp) {
+        return timestamp.getSeconds() * 1_000_000_000L + timestamp.getNanos();
+    }
+
+    public static Timestamp toTimestamp(long epochNanos) {
+        return Timestamp.newBuilder()
+                .setSeconds(Math.floorDiv(epochNanos, 1_000_000_000L))
+                .setNanos((int) Math.floorMod(epochNanos, 1_000_000_000L))
+                .build();
+    }
+}
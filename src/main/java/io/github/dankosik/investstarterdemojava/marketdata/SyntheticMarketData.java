@@ -0,0 +1,204 @@
+package io.github.dankosik.investstarterdemojava.marketdata;
+
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.MoneyValue;
+import ru.tinkoff.piapi.contract.v1.Order;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.OrderDirection;
+import ru.tinkoff.piapi.contract.v1.OrderTrade;
+import ru.tinkoff.piapi.contract.v1.OrderTrades;
+import ru.tinkoff.piapi.contract.v1.PortfolioPosition;
+import ru.tinkoff.piapi.contract.v1.PortfolioResponse;
+import ru.tinkoff.piapi.contract.v1.PositionData;
+import ru.tinkoff.piapi.contract.v1.PositionsSecurities;
+import ru.tinkoff.piapi.contract.v1.SecurityTradingStatus;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.contract.v1.TradeDirection;
+import ru.tinkoff.piapi.contract.v1.TradingStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Детерминированный генератор рыночных данных для бенчмарков, replay и нагрузочных тестов.
+ * Цена каждого инструмента - случайное блуждание с шагом в один тик, одинаковый seed дает одинаковую последовательность.
+ * Не потокобезопасен, каждому потоку нужен свой экземпляр
+ */
+public final class SyntheticMarketData {
+
+    private static final long TICK = Prices.SCALE / 100;
+    private static final long MIN_PRICE = 10 * Prices.SCALE;
+
+    private final SplittableRandom random;
+    private final List<String> instrumentUids;
+    private final long[] prices;
+
+    public SyntheticMarketData(long seed, int instruments) {
+        this.random = new SplittableRandom(seed);
+        List<String> uids = new ArrayList<>(instruments);
+        this.prices = new long[instruments];
+        for (int i = 0; i < instruments; i++) {
+            uids.add(instrumentUid(i));
+            prices[i] = (50 + random.nextInt(5_000)) * Prices.SCALE;
+        }
+        this.instrumentUids = Collections.unmodifiableList(uids);
+    }
+
+    public static String instrumentUid(int instrument) {
+        return "synthetic-%08d".formatted(instrument);
+    }
+
+    public List<String> instrumentUids() {
+        return instrumentUids;
+    }
+
+    public int instruments() {
+        return prices.length;
+    }
+
+    public int nextInstrument() {
+        return random.nextInt(prices.length);
+    }
+
+    public Trade trade(int instrument, long epochNanos) {
+        long price = step(instrument);
+        return Trade.newBuilder()
+                .setFigi(instrumentUids.get(instrument))
+                .setInstrumentUid(instrumentUids.get(instrument))
+                .setDirection(random.nextBoolean() ? TradeDirection.TRADE_DIRECTION_BUY : TradeDirection.TRADE_DIRECTION_SELL)
+                .setPrice(Prices.toQuotation(price))
+                .setQuantity(1 + random.nextInt(100))
+                .setTime(Prices.toTimestamp(epochNanos))
+                .build();
+    }
+
+    public OrderBook orderBook(int instrument, int depth, long epochNanos) {
+        long mid = step(instrument);
+        OrderBook.Builder builder = OrderBook.newBuilder()
+                .setFigi(instrumentUids.get(instrument))
+                .setInstrumentUid(instrumentUids.get(instrument))
+                .setDepth(depth)
+                .setIsConsistent(true)
+                .setTime(Prices.toTimestamp(epochNanos));
+        for (int level = 1; level <= depth; level++) {
+            builder.addBids(Order.newBuilder()
+                    .setPrice(Prices.toQuotation(mid - level * TICK))
+                    .setQuantity(1 + random.nextInt(1_000)));
+            builder.addAsks(Order.newBuilder()
+                    .setPrice(Prices.toQuotation(mid + level * TICK))
+                    .setQuantity(1 + random.nextInt(1_000)));
+        }
+        return builder.build();
+    }
+
+    public Candle candle(int instrument, SubscriptionInterval interval, long epochNanos) {
+        long open = prices[instrument];
+        long close = step(instrument);
+        long high = Math.max(open, close) + random.nextInt(5) * TICK;
+        long low = Math.max(MIN_PRICE, Math.min(open, close) - random.nextInt(5) * TICK);
+        return Candle.newBuilder()
+                .setFigi(instrumentUids.get(instrument))
+                .setInstrumentUid(instrumentUids.get(instrument))
+                .setInterval(interval)
+                .setOpen(Prices.toQuotation(open))
+                .setHigh(Prices.toQuotation(high))
+                .setLow(Prices.toQuotation(low))
+                .setClose(Prices.toQuotation(close))
+                .setVolume(1 + random.nextInt(10_000))
+                .setTime(Prices.toTimestamp(epochNanos))
+                .setLastTradeTs(Prices.toTimestamp(epochNanos))
+                .build();
+    }
+
+    public LastPrice lastPrice(int instrument, long epochNanos) {
+        return LastPrice.newBuilder()
+                .setFigi(instrumentUids.get(instrument))
+                .setInstrumentUid(instrumentUids.get(instrument))
+                .setPrice(Prices.toQuotation(step(instrument)))
+                .setTime(Prices.toTimestamp(epochNanos))
+                .build();
+    }
+
+    public TradingStatus tradingStatus(int instrument, long epochNanos) {
+        boolean open = random.nextInt(10) > 0;
+        return TradingStatus.newBuilder()
+                .setFigi(instrumentUids.get(instrument))
+                .setInstrumentUid(instrumentUids.get(instrument))
+                .setTradingStatus(open
+                        ? SecurityTradingStatus.SECURITY_TRADING_STATUS_NORMAL_TRADING
+                        : SecurityTradingStatus.SECURITY_TRADING_STATUS_BREAK_IN_TRADING)
+                .setLimitOrderAvailableFlag(open)
+                .setMarketOrderAvailableFlag(open)
+                .setTime(Prices.toTimestamp(epochNanos))
+                .build();
+    }
+
+    /**
+     * Сделка по поручению orderId на quantity штук по текущей цене инструмента, как из стрима сделок по поручениям
+     */
+    public OrderTrades orderTrades(String orderId, String accountId, int instrument, OrderDirection direction, long quantity,
+                                   long epochNanos) {
+        return OrderTrades.newBuilder()
+                .setOrderId(orderId)
+                .setAccountId(accountId)
+                .setFigi(instrumentUids.get(instrument))
+                .setInstrumentUid(instrumentUids.get(instrument))
+                .setDirection(direction)
+                .setCreatedAt(Prices.toTimestamp(epochNanos))
+                .addTrades(OrderTrade.newBuilder()
+                        .setTradeId(Long.toString(random.nextLong() & Long.MAX_VALUE))
+                        .setPrice(Prices.toQuotation(step(instrument)))
+                        .setQuantity(quantity)
+                        .setDateTime(Prices.toTimestamp(epochNanos)))
+                .build();
+    }
+
+    /**
+     * Портфель счета из positions случайных инструментов по текущим ценам
+     */
+    public PortfolioResponse portfolio(String accountId, int positions) {
+        PortfolioResponse.Builder portfolio = PortfolioResponse.newBuilder().setAccountId(accountId);
+        for (int i = 0; i < positions; i++) {
+            int instrument = nextInstrument();
+            long price = step(instrument);
+            MoneyValue currentPrice = MoneyValue.newBuilder()
+                    .setCurrency("rub")
+                    .setUnits(price / Prices.SCALE)
+                    .setNano((int) (price % Prices.SCALE))
+                    .build();
+            portfolio.addPositions(PortfolioPosition.newBuilder()
+                    .setFigi(instrumentUids.get(instrument))
+                    .setInstrumentUid(instrumentUids.get(instrument))
+                    .setQuantity(Prices.toQuotation((1 + random.nextInt(1_000)) * Prices.SCALE))
+                    .setCurrentPrice(currentPrice)
+                    .setAveragePositionPrice(currentPrice));
+        }
+        return portfolio.build();
+    }
+
+    /**
+     * Изменение позиции по инструменту, как из стрима позиций: время изменения в date
+     */
+    public PositionData position(String accountId, int instrument, long epochNanos) {
+        return PositionData.newBuilder()
+                .setAccountId(accountId)
+                .addSecurities(PositionsSecurities.newBuilder()
+                        .setFigi(instrumentUids.get(instrument))
+                        .setInstrumentUid(instrumentUids.get(instrument))
+                        .setBalance(random.nextInt(1_000))
+                        .setBlocked(random.nextInt(10)))
+                .setDate(Prices.toTimestamp(epochNanos))
+                .build();
+    }
+
+    private long step(int instrument) {
+        long price = prices[instrument] + (random.nextInt(3) - 1) * TICK;
+        price = Math.max(price, MIN_PRICE);
+        prices[instrument] = price;
+        return price;
+    }
+}
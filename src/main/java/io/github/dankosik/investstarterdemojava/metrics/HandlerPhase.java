@@ -0,0 +1,55 @@
+package io.github.dankosik.investstarterdemojava.metrics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * Место хендлера в цепочке стартера, значение тега phase у метрик
+ */
+public enum HandlerPhase {
+
+    BEFORE_EACH("before_each"),
+    HANDLER("handler"),
+    AFTER_EACH("after_each");
+
+    private final String tag;
+
+    HandlerPhase(String tag) {
+        this.tag = tag;
+    }
+
+    public String tag() {
+        return tag;
+    }
+
+    /**
+     * Фаза по аннотации хендлера: beforeEach*Handler = true, afterEach*Handler = true или обычный хендлер
+     */
+    public static HandlerPhase of(@NotNull Class<?> handlerClass) {
+        for (Annotation annotation : handlerClass.getAnnotations()) {
+            for (Method attribute : annotation.annotationType().getDeclaredMethods()) {
+                if (attribute.getReturnType() != boolean.class || !attribute.getName().endsWith("Handler")) {
+                    continue;
+                }
+                if (attribute.getName().startsWith("beforeEach") && isSet(annotation, attribute)) {
+                    return BEFORE_EACH;
+                }
+                if (attribute.getName().startsWith("afterEach") && isSet(annotation, attribute)) {
+                    return AFTER_EACH;
+                }
+            }
+        }
+        return HANDLER;
+    }
+
+    private static boolean isSet(Annotation annotation, Method attribute) {
+        try {
+            return (boolean) attribute.invoke(annotation);
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("не удалось прочитать " + attribute, e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.dankosik.investstarterdemojava.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Метрики в MeterRegistry из actuator, выгрузка для Prometheus - /actuator/prometheus.
+ * Счетчики компонентов регистрируют MeterBinder бины в *Configuration их пакетов
+ */
+@Configuration
+@EnableConfigurationProperties(MetricsProperties.class)
+class MetricsConfiguration {
+
+    /**
+     * При demo.metrics.enabled=false процессоры стримов не оборачиваются
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "demo.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static StreamMetricsPostProcessor streamMetricsPostProcessor(ObjectProvider<StreamMetrics> streamMetrics) {
+        return new StreamMetricsPostProcessor(streamMetrics);
+    }
+
+    @Bean
+    public StreamMetrics streamMetrics(MeterRegistry meterRegistry, MetricsProperties properties) {
+        return StreamMetrics.create(meterRegistry, properties);
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.dankosik.investstarterdemojava.metrics;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки {@link StreamMetrics}
+ *
+ * @param enabled             если выключено - обертки вызывают хендлеры напрямую и ничего не пишут
+ * @param sampleEvery         задержки пишутся в среднем для каждого N-го события, 1 - для всех. Счетчики событий всегда точные
+ * @param instrumentTags      писать тег instrument у счетчиков событий
+ * @param maxInstruments      сколько разных instrument тегов на стрим, остальные события попадают в instrument=other
+ * @param percentileHistogram публиковать корзины гистограмм для histogram_quantile в Prometheus
+ */
+@ConfigurationProperties(prefix = "demo.metrics")
+public record MetricsProperties(
+        @DefaultValue("true") boolean enabled,
+        @DefaultValue("1") int sampleEvery,
+        @DefaultValue("true") boolean instrumentTags,
+        @DefaultValue("1000") int maxInstruments,
+        @DefaultValue("true") boolean percentileHistogram
+) {
+}
@@ -0,0 +1,351 @@
+package io.github.dankosik.investstarterdemojava.metrics;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import io.github.dankosik.starter.invest.contract.marketdata.lastprice.AsyncLastPriceHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.AsyncOrderBookHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.BlockingTradeHandler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.PortfolioStreamResponse;
+import ru.tinkoff.piapi.contract.v1.PositionsStreamResponse;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.contract.v1.TradesStreamResponse;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+/**
+ * Micrometer метрики стримов и цепочек хендлеров:
+ * <ul>
+ *     <li>demo.stream.events - события по стримам и инструментам</li>
+ *     <li>demo.stream.lag - от времени события на бирже до получения из стрима</li>
+ *     <li>demo.handler.lag - от времени события на бирже до начала хендлера, по хендлерам и фазам цепочки</li>
+ *     <li>demo.handler.latency - время исполнения хендлера, для async - до завершения future</li>
+ *     <li>demo.handler.in.flight - незавершенные future хендлера</li>
+ *     <li>demo.handler.blocking.active, demo.handler.blocking.calls - блокирующие вызовы на виртуальных и платформенных потоках</li>
+ * </ul>
+ * Все метры создаются один раз при оборачивании хендлера или на первое событие инструмента, запись не аллоцирует.
+ * Исключение - незавершенная future async хендлера: колбэк на завершение аллоцирует сама CompletableFuture.
+ * Хендлер оборачивается один раз, например в конструкторе:
+ * <pre>{@code
+ * this.metered = streamMetrics.trades(getClass(), this::process);
+ * }</pre>
+ */
+public final class StreamMetrics {
+
+    private static final Duration MIN_EXPECTED = Duration.ofNanos(1_000);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(30);
+
+    private final MeterRegistry registry;
+    private final boolean enabled;
+    private final int sampleEvery;
+    private final boolean instrumentTags;
+    private final int maxInstruments;
+    private final boolean percentileHistogram;
+    private final StreamMeters[] streams;
+    private final ConcurrentHashMap<String, HandlerMeters> handlers = new ConcurrentHashMap<>();
+
+    public StreamMetrics(@NotNull MeterRegistry registry, boolean enabled, int sampleEvery, boolean instrumentTags,
+                         int maxInstruments, boolean percentileHistogram) {
+        this.registry = registry;
+        this.enabled = enabled;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.instrumentTags = instrumentTags;
+        this.maxInstruments = maxInstruments;
+        this.percentileHistogram = percentileHistogram;
+        this.streams = new StreamMeters[StreamType.values().length];
+        if (enabled) {
+            for (StreamType type : StreamType.values()) {
+                streams[type.ordinal()] = new StreamMeters(type);
+            }
+        }
+    }
+
+    public static StreamMetrics create(@NotNull MeterRegistry registry, @NotNull MetricsProperties properties) {
+        return new StreamMetrics(registry, properties.enabled(), properties.sampleEvery(), properties.instrumentTags(),
+                properties.maxInstruments(), properties.percentileHistogram());
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Событие получено из стрима: MarketDataResponse, PortfolioStreamResponse, PositionsStreamResponse или TradesStreamResponse.
+     * Для портфелей и позиций тег instrument - номер счета
+     */
+    public void received(@NotNull Object response) {
+        if (!enabled) {
+            return;
+        }
+        if (response instanceof MarketDataResponse marketData) {
+            switch (marketData.getPayloadCase()) {
+                case TRADE -> received(StreamType.TRADES, marketData.getTrade().getInstrumentUid(),
+                        Prices.toEpochNanos(marketData.getTrade().getTime()));
+                case ORDERBOOK -> received(StreamType.ORDER_BOOKS, marketData.getOrderbook().getInstrumentUid(),
+                        Prices.toEpochNanos(marketData.getOrderbook().getTime()));
+                case LAST_PRICE -> received(StreamType.LAST_PRICES, marketData.getLastPrice().getInstrumentUid(),
+                        Prices.toEpochNanos(marketData.getLastPrice().getTime()));
+                case CANDLE -> received(StreamType.CANDLES, marketData.getCandle().getInstrumentUid(),
+                        Prices.toEpochNanos(marketData.getCandle().getLastTradeTs()));
+                case TRADING_STATUS -> received(StreamType.TRADING_STATUSES, marketData.getTradingStatus().getInstrumentUid(),
+                        Prices.toEpochNanos(marketData.getTradingStatus().getTime()));
+                default -> {
+                    // ответы на подписки и ping
+                }
+            }
+        } else if (response instanceof PortfolioStreamResponse portfolio) {
+            if (portfolio.hasPortfolio()) {
+                received(StreamType.PORTFOLIOS, portfolio.getPortfolio().getAccountId(), 0);
+            }
+        } else if (response instanceof PositionsStreamResponse positions) {
+            if (positions.hasPosition()) {
+                received(StreamType.POSITIONS, positions.getPosition().getAccountId(), Prices.toEpochNanos(positions.getPosition().getDate()));
+            }
+        } else if (response instanceof TradesStreamResponse orders) {
+            if (orders.hasOrderTrades()) {
+                received(StreamType.ORDERS, orders.getOrderTrades().getInstrumentUid(), Prices.toEpochNanos(orders.getOrderTrades().getCreatedAt()));
+            }
+        }
+    }
+
+    /**
+     * @param exchangeEpochNanos время события на бирже, 0 - неизвестно
+     */
+    public void received(@NotNull StreamType type, @NotNull String instrument, long exchangeEpochNanos) {
+        if (!enabled) {
+            return;
+        }
+        StreamMeters meters = streams[type.ordinal()];
+        meters.counter(instrument).increment();
+        if (exchangeEpochNanos > 0 && sampled()) {
+            meters.lag.record(EpochClock.nanos() - exchangeEpochNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public AsyncTradeHandler trades(@NotNull Class<?> handlerClass, @NotNull AsyncTradeHandler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        HandlerMeters meters = handler(handlerClass.getSimpleName(), HandlerPhase.of(handlerClass), StreamType.TRADES, false);
+        Function<Trade, CompletableFuture<Void>> delegate = handler::handleAsync;
+        return trade -> meters.async(trade, Prices.toEpochNanos(trade.getTime()), delegate);
+    }
+
+    public BlockingTradeHandler blockingTrades(@NotNull Class<?> handlerClass, @NotNull BlockingTradeHandler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        HandlerMeters meters = handler(handlerClass.getSimpleName(), HandlerPhase.of(handlerClass), StreamType.TRADES, true);
+        Consumer<Trade> delegate = handler::handleBlocking;
+        return trade -> meters.blocking(trade, Prices.toEpochNanos(trade.getTime()), delegate);
+    }
+
+    public AsyncOrderBookHandler orderBooks(@NotNull Class<?> handlerClass, @NotNull AsyncOrderBookHandler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        HandlerMeters meters = handler(handlerClass.getSimpleName(), HandlerPhase.of(handlerClass), StreamType.ORDER_BOOKS, false);
+        Function<OrderBook, CompletableFuture<Void>> delegate = handler::handleAsync;
+        return orderBook -> meters.async(orderBook, Prices.toEpochNanos(orderBook.getTime()), delegate);
+    }
+
+    public AsyncLastPriceHandler lastPrices(@NotNull Class<?> handlerClass, @NotNull AsyncLastPriceHandler handler) {
+        if (!enabled) {
+            return handler;
+        }
+        HandlerMeters meters = handler(handlerClass.getSimpleName(), HandlerPhase.of(handlerClass), StreamType.LAST_PRICES, false);
+        Function<LastPrice, CompletableFuture<Void>> delegate = handler::handleAsync;
+        return lastPrice -> meters.async(lastPrice, Prices.toEpochNanos(lastPrice.getTime()), delegate);
+    }
+
+    /**
+     * Для createBlockingHandler у фабрик стартера и любых других блокирующих обработчиков
+     *
+     * @param exchangeTime время события на бирже в наносекундах от эпохи, 0 - неизвестно
+     */
+    public <T> Consumer<T> blocking(@NotNull String handlerName, @NotNull HandlerPhase phase, @NotNull StreamType type,
+                                    @NotNull ToLongFunction<T> exchangeTime, @NotNull Consumer<T> handler) {
+        if (!enabled) {
+            return handler;
+        }
+        HandlerMeters meters = handler(handlerName, phase, type, true);
+        return event -> meters.blocking(event, exchangeTime.applyAsLong(event), handler);
+    }
+
+    /**
+     * Для любых async обработчиков
+     *
+     * @param exchangeTime время события на бирже в наносекундах от эпохи, 0 - неизвестно
+     */
+    public <T> Function<T, CompletableFuture<Void>> async(@NotNull String handlerName, @NotNull HandlerPhase phase, @NotNull StreamType type,
+                                                          @NotNull ToLongFunction<T> exchangeTime,
+                                                          @NotNull Function<T, CompletableFuture<Void>> handler) {
+        if (!enabled) {
+            return handler;
+        }
+        HandlerMeters meters = handler(handlerName, phase, type, false);
+        return event -> meters.async(event, exchangeTime.applyAsLong(event), handler);
+    }
+
+    private boolean sampled() {
+        return sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+    }
+
+    private HandlerMeters handler(String name, HandlerPhase phase, StreamType type, boolean blocking) {
+        HandlerMeters meters = handlers.computeIfAbsent(name + '/' + phase.tag() + '/' + type.tag(), key -> new HandlerMeters(name, phase, type));
+        if (blocking) {
+            meters.registerBlocking();
+        } else {
+            meters.registerInFlight();
+        }
+        return meters;
+    }
+
+    private Timer timer(String name, Tags tags) {
+        return Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram(percentileHistogram)
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(registry);
+    }
+
+    private final class StreamMeters {
+
+        final StreamType type;
+        final Counter total;
+        final Counter other;
+        final ConcurrentHashMap<String, Counter> byInstrument = new ConcurrentHashMap<>();
+        final Timer lag;
+
+        StreamMeters(StreamType type) {
+            this.type = type;
+            this.total = instrumentTags ? null : Counter.builder("demo.stream.events").tag("stream", type.tag()).register(registry);
+            this.other = instrumentTags ? register("other") : null;
+            this.lag = timer("demo.stream.lag", Tags.of("stream", type.tag()));
+        }
+
+        Counter counter(String instrument) {
+            if (!instrumentTags) {
+                return total;
+            }
+            Counter counter = byInstrument.get(instrument);
+            if (counter != null) {
+                return counter;
+            }
+            if (byInstrument.size() >= maxInstruments) {
+                return other;
+            }
+            return byInstrument.computeIfAbsent(instrument, this::register);
+        }
+
+        private Counter register(String instrument) {
+            return Counter.builder("demo.stream.events")
+                    .tag("stream", type.tag())
+                    .tag("instrument", instrument)
+                    .register(registry);
+        }
+    }
+
+    private final class HandlerMeters {
+
+        final Tags tags;
+        final Timer latency;
+        final Timer lag;
+        final AtomicLong inFlight = new AtomicLong();
+        final AtomicLong activeVirtual = new AtomicLong();
+        final AtomicLong activePlatform = new AtomicLong();
+        final BiConsumer<Object, Throwable> completed = (result, error) -> inFlight.decrementAndGet();
+        volatile Counter virtualCalls;
+        volatile Counter platformCalls;
+
+        HandlerMeters(String name, HandlerPhase phase, StreamType type) {
+            this.tags = Tags.of("handler", name, "phase", phase.tag(), "stream", type.tag());
+            this.latency = timer("demo.handler.latency", tags);
+            this.lag = timer("demo.handler.lag", tags);
+        }
+
+        void registerInFlight() {
+            Gauge.builder("demo.handler.in.flight", inFlight, AtomicLong::get).tags(tags).strongReference(true).register(registry);
+        }
+
+        void registerBlocking() {
+            Gauge.builder("demo.handler.blocking.active", activeVirtual, AtomicLong::get).tags(tags).tag("thread", "virtual")
+                    .strongReference(true).register(registry);
+            Gauge.builder("demo.handler.blocking.active", activePlatform, AtomicLong::get).tags(tags).tag("thread", "platform")
+                    .strongReference(true).register(registry);
+            virtualCalls = Counter.builder("demo.handler.blocking.calls").tags(tags).tag("thread", "virtual").register(registry);
+            platformCalls = Counter.builder("demo.handler.blocking.calls").tags(tags).tag("thread", "platform").register(registry);
+        }
+
+        <T> CompletableFuture<Void> async(T event, long exchangeEpochNanos, Function<T, CompletableFuture<Void>> handler) {
+            boolean sampled = sampled();
+            long start = sampled ? start(exchangeEpochNanos) : 0;
+            inFlight.incrementAndGet();
+            CompletableFuture<Void> future;
+            try {
+                future = handler.apply(event);
+            } catch (RuntimeException e) {
+                inFlight.decrementAndGet();
+                throw e;
+            }
+            if (future.isDone()) {
+                inFlight.decrementAndGet();
+                if (sampled) {
+                    latency.record(EpochClock.nanos() - start, TimeUnit.NANOSECONDS);
+                }
+            } else if (sampled) {
+                future.whenComplete((result, error) -> {
+                    inFlight.decrementAndGet();
+                    latency.record(EpochClock.nanos() - start, TimeUnit.NANOSECONDS);
+                });
+            } else {
+                future.whenComplete(completed);
+            }
+            return future;
+        }
+
+        <T> void blocking(T event, long exchangeEpochNanos, Consumer<T> handler) {
+            boolean sampled = sampled();
+            long start = sampled ? start(exchangeEpochNanos) : 0;
+            boolean virtual = Thread.currentThread().isVirtual();
+            AtomicLong active = virtual ? activeVirtual : activePlatform;
+            (virtual ? virtualCalls : platformCalls).increment();
+            active.incrementAndGet();
+            try {
+                handler.accept(event);
+            } finally {
+                active.decrementAndGet();
+                if (sampled) {
+                    latency.record(EpochClock.nanos() - start, TimeUnit.NANOSECONDS);
+                }
+            }
+        }
+
+        private long start(long exchangeEpochNanos) {
+            long now = EpochClock.nanos();
+            if (exchangeEpochNanos > 0) {
+                lag.record(now - exchangeEpochNanos, TimeUnit.NANOSECONDS);
+            }
+            return now;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.dankosik.investstarterdemojava.metrics;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.core.stream.StreamProcessor;
+
+/**
+ * Оборачивает StreamProcessor бины стартера, которые подписаны на стримы, и считает события до того как они попадут в цепочки хендлеров.
+ * Рыночные данные идут через один общий commonMarketDataStreamProcessor, процессоры отдельных типов (трейды, стаканы...) вызываются из него,
+ * поэтому для рыночных данных учитывается только общий процессор
+ */
+class StreamMetricsPostProcessor implements BeanPostProcessor {
+
+    static final String COMMON_MARKET_DATA_PROCESSOR = "commonMarketDataStreamProcessor";
+
+    private final ObjectProvider<StreamMetrics> streamMetrics;
+
+    StreamMetricsPostProcessor(ObjectProvider<StreamMetrics> streamMetrics) {
+        this.streamMetrics = streamMetrics;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(@NotNull Object bean, @NotNull String beanName) {
+        if (!(bean instanceof StreamProcessor<?> processor)) {
+            return bean;
+        }
+        return new MeteredStreamProcessor<>(processor, streamMetrics, COMMON_MARKET_DATA_PROCESSOR.equals(beanName));
+    }
+
+    private static final class MeteredStreamProcessor<T> implements StreamProcessor<T> {
+
+        private final StreamProcessor<T> delegate;
+        private final ObjectProvider<StreamMetrics> streamMetricsProvider;
+        private final boolean marketData;
+        private StreamMetrics streamMetrics;
+
+        MeteredStreamProcessor(StreamProcessor<T> delegate, ObjectProvider<StreamMetrics> streamMetricsProvider, boolean marketData) {
+            this.delegate = delegate;
+            this.streamMetricsProvider = streamMetricsProvider;
+            this.marketData = marketData;
+        }
+
+        @Override
+        public void process(T response) {
+            if (marketData || !(response instanceof MarketDataResponse)) {
+                metrics().received(response);
+            }
+            delegate.process(response);
+        }
+
+        private StreamMetrics metrics() {
+            StreamMetrics metrics = streamMetrics;
+            if (metrics == null) {
+                metrics = streamMetricsProvider.getObject();
+                streamMetrics = metrics;
+            }
+            return metrics;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.dankosik.investstarterdemojava.metrics;
+
+/**
+ * Тип стрима, значение тега stream у метрик
+ */
+public enum StreamType {
+
+    TRADES("trades"),
+    ORDER_BOOKS("order_books"),
+    LAST_PRICES("last_prices"),
+    CANDLES("candles"),
+    TRADING_STATUSES("trading_statuses"),
+    PORTFOLIOS("portfolios"),
+    POSITIONS("positions"),
+    ORDERS("orders");
+
+    private final String tag;
+
+    StreamType(String tag) {
+        this.tag = tag;
+    }
+
+    public String tag() {
+        return tag;
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.dankosik.investstarterdemojava.orderbook;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+class OrderBookConfiguration {
+
+    /**
+     * 50 - максимальная глубина стакана в Invest API, массивы уровней сразу такого размера и не растут
+     */
+    @Bean
+    public OrderBookStore orderBookStore() {
+        return new OrderBookStore(50);
+    }
+
+    /**
+     * Обновления стаканов OrderBookStore, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder orderBookMetrics(OrderBookStore store) {
+        return registry -> {
+            Gauge.builder("demo.orderbook.instruments", store, OrderBookStore::size).register(registry);
+            FunctionCounter.builder("demo.orderbook.updates", store, OrderBookStore::updateCount).register(registry);
+            FunctionCounter.builder("demo.orderbook.changed.levels", store, OrderBookStore::changedLevelCount).register(registry);
+        };
+    }
+}
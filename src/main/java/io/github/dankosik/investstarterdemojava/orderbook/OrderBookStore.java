@@ -0,0 +1,81 @@
+package io.github.dankosik.investstarterdemojava.orderbook;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Стаканы всех инструментов по instrumentUid. Хендлеры стаканов кладут сюда снимки через {@link #update},
+ * стратегии читают лучшие цены и агрегаты по уровням из любых потоков без блокировок
+ */
+public final class OrderBookStore {
+
+    private final ConcurrentHashMap<String, PriceLevelBook> books = new ConcurrentHashMap<>();
+    private final int initialDepth;
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder changedLevels = new LongAdder();
+
+    /**
+     * @param initialDepth начальный размер массивов уровней нового стакана, при более глубоком снимке массивы растут
+     */
+    public OrderBookStore(int initialDepth) {
+        this.initialDepth = initialDepth;
+    }
+
+    /**
+     * Накладывает снимок на стакан инструмента, создает стакан при первом снимке
+     *
+     * @return сколько уровней изменилось
+     */
+    public int update(@NotNull OrderBook orderBook) {
+        String instrumentUid = orderBook.getInstrumentUid();
+        PriceLevelBook book = books.get(instrumentUid);
+        if (book == null) {
+            book = books.computeIfAbsent(instrumentUid, uid -> new PriceLevelBook(uid, Math.max(initialDepth, orderBook.getDepth())));
+        }
+        int changed = book.apply(orderBook);
+        updates.increment();
+        changedLevels.add(changed);
+        return changed;
+    }
+
+    @Nullable
+    public PriceLevelBook book(@NotNull String instrumentUid) {
+        return books.get(instrumentUid);
+    }
+
+    /**
+     * Заполняет into лучшими ценами инструмента
+     *
+     * @return false если по инструменту еще не было стаканов
+     */
+    public boolean readTop(@NotNull String instrumentUid, @NotNull TopOfBook into) {
+        PriceLevelBook book = books.get(instrumentUid);
+        if (book == null) {
+            return false;
+        }
+        book.readTop(into);
+        return true;
+    }
+
+    public Collection<PriceLevelBook> books() {
+        return Collections.unmodifiableCollection(books.values());
+    }
+
+    public int size() {
+        return books.size();
+    }
+
+    public long updateCount() {
+        return updates.sum();
+    }
+
+    public long changedLevelCount() {
+        return changedLevels.sum();
+    }
+}
@@ -0,0 +1,306 @@
+package io.github.dankosik.investstarterdemojava.orderbook;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.Order;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Стакан одного инструмента в примитивных массивах (цены в fixed-point long, см. {@link Prices#SCALE}).
+ * Новый снимок накладывается на старый на месте: переписываются только изменившиеся уровни.
+ * Чтение без блокировок через seqlock: читатель повторяет чтение если во время него шла запись.
+ * Писать могут несколько потоков, они сериализуются на том же счетчике версии.
+ * Все цены и объемы возвращаются в fixed-point. Цена может быть нулевой или отрицательной (спреды, календарные
+ * фьючерсы), поэтому отсутствие уровня определяется по количеству уровней, а наружу отдается как {@link #NO_PRICE}
+ */
+public final class PriceLevelBook {
+
+    /**
+     * Цены нет: у стороны стакана нет уровней
+     */
+    public static final long NO_PRICE = Long.MIN_VALUE;
+
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(PriceLevelBook.class, "sequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String instrumentUid;
+    @SuppressWarnings("unused")
+    private long sequence;
+    private long[] bidPrices;
+    private long[] bidQuantities;
+    private long[] askPrices;
+    private long[] askQuantities;
+    private int bidCount;
+    private int askCount;
+    private long timeNanos;
+
+    public PriceLevelBook(@NotNull String instrumentUid, int initialDepth) {
+        this.instrumentUid = instrumentUid;
+        int depth = Math.max(initialDepth, 1);
+        this.bidPrices = new long[depth];
+        this.bidQuantities = new long[depth];
+        this.askPrices = new long[depth];
+        this.askQuantities = new long[depth];
+    }
+
+    @NotNull
+    public String instrumentUid() {
+        return instrumentUid;
+    }
+
+    /**
+     * Накладывает снимок на текущее состояние
+     *
+     * @return сколько уровней изменилось (добавились, удалились или поменяли цену/объем)
+     */
+    public int apply(@NotNull OrderBook orderBook) {
+        long sequence = beginWrite();
+        try {
+            List<Order> bids = orderBook.getBidsList();
+            List<Order> asks = orderBook.getAsksList();
+            ensureCapacity(Math.max(bids.size(), asks.size()));
+            int changed = applySide(bids, bidPrices, bidQuantities, bidCount);
+            changed += applySide(asks, askPrices, askQuantities, askCount);
+            bidCount = bids.size();
+            askCount = asks.size();
+            timeNanos = Prices.toEpochNanos(orderBook.getTime());
+            return changed;
+        } finally {
+            SEQUENCE.setRelease(this, sequence + 2);
+        }
+    }
+
+    /**
+     * Лучшие цены обеих сторон одной версии стакана
+     */
+    public void readTop(@NotNull TopOfBook into) {
+        long bidPrice, bidQuantity, askPrice, askQuantity, time;
+        boolean hasBid, hasAsk;
+        long sequence;
+        do {
+            sequence = beginRead();
+            hasBid = bidCount > 0;
+            hasAsk = askCount > 0;
+            bidPrice = hasBid ? bidPrices[0] : NO_PRICE;
+            bidQuantity = hasBid ? bidQuantities[0] : 0;
+            askPrice = hasAsk ? askPrices[0] : NO_PRICE;
+            askQuantity = hasAsk ? askQuantities[0] : 0;
+            time = timeNanos;
+        } while (!validate(sequence));
+        into.set(hasBid, bidPrice, bidQuantity, hasAsk, askPrice, askQuantity, time, sequence >>> 1);
+    }
+
+    /**
+     * @return лучший бид или {@link #NO_PRICE} если бидов нет
+     */
+    public long bestBid() {
+        long price;
+        long sequence;
+        do {
+            sequence = beginRead();
+            price = bidCount > 0 ? bidPrices[0] : NO_PRICE;
+        } while (!validate(sequence));
+        return price;
+    }
+
+    /**
+     * @return лучший аск или {@link #NO_PRICE} если асков нет
+     */
+    public long bestAsk() {
+        long price;
+        long sequence;
+        do {
+            sequence = beginRead();
+            price = askCount > 0 ? askPrices[0] : NO_PRICE;
+        } while (!validate(sequence));
+        return price;
+    }
+
+    /**
+     * @return ask - bid или {@link #NO_PRICE} если одной из сторон нет
+     */
+    public long spread() {
+        long bid, ask;
+        boolean both;
+        long sequence;
+        do {
+            sequence = beginRead();
+            both = bidCount > 0 && askCount > 0;
+            bid = bidPrices[0];
+            ask = askPrices[0];
+        } while (!validate(sequence));
+        return both ? ask - bid : NO_PRICE;
+    }
+
+    /**
+     * @return (bid + ask) / 2 или {@link #NO_PRICE} если одной из сторон нет
+     */
+    public long mid() {
+        long bid, ask;
+        boolean both;
+        long sequence;
+        do {
+            sequence = beginRead();
+            both = bidCount > 0 && askCount > 0;
+            bid = bidPrices[0];
+            ask = askPrices[0];
+        } while (!validate(sequence));
+        return both ? bid + (ask - bid) / 2 : NO_PRICE;
+    }
+
+    /**
+     * Средняя цена первых levels уровней обеих сторон, взвешенная по объему: sum(price * quantity) / sum(quantity)
+     *
+     * @return {@link #NO_PRICE} если стакан пуст
+     */
+    public long depthWeightedMid(int levels) {
+        double notional, quantity;
+        long sequence;
+        do {
+            sequence = beginRead();
+            notional = 0;
+            quantity = 0;
+            int bids = Math.min(levels, bidCount);
+            long[] prices = bidPrices;
+            long[] quantities = bidQuantities;
+            for (int i = 0; i < bids && i < prices.length; i++) {
+                notional += (double) prices[i] * quantities[i];
+                quantity += quantities[i];
+            }
+            int asks = Math.min(levels, askCount);
+            prices = askPrices;
+            quantities = askQuantities;
+            for (int i = 0; i < asks && i < prices.length; i++) {
+                notional += (double) prices[i] * quantities[i];
+                quantity += quantities[i];
+            }
+        } while (!validate(sequence));
+        return quantity > 0 ? Math.round(notional / quantity) : NO_PRICE;
+    }
+
+    /**
+     * Суммарный объем первых levels уровней бидов
+     */
+    public long bidVolume(int levels) {
+        long volume;
+        long sequence;
+        do {
+            sequence = beginRead();
+            volume = sum(bidQuantities, Math.min(levels, bidCount));
+        } while (!validate(sequence));
+        return volume;
+    }
+
+    /**
+     * Суммарный объем первых levels уровней асков
+     */
+    public long askVolume(int levels) {
+        long volume;
+        long sequence;
+        do {
+            sequence = beginRead();
+            volume = sum(askQuantities, Math.min(levels, askCount));
+        } while (!validate(sequence));
+        return volume;
+    }
+
+    /**
+     * Копирует первые уровни в массивы вызывающего, сколько влезет
+     *
+     * @return количество скопированных уровней бидов и асков: bids в старших 32 битах, asks в младших
+     */
+    public long copyLevels(long[] bidPricesOut, long[] bidQuantitiesOut, long[] askPricesOut, long[] askQuantitiesOut) {
+        int bids, asks;
+        long sequence;
+        do {
+            sequence = beginRead();
+            long[] bp = bidPrices, bq = bidQuantities, ap = askPrices, aq = askQuantities;
+            bids = Math.min(Math.min(bidCount, bp.length), Math.min(bidPricesOut.length, bidQuantitiesOut.length));
+            asks = Math.min(Math.min(askCount, ap.length), Math.min(askPricesOut.length, askQuantitiesOut.length));
+            System.arraycopy(bp, 0, bidPricesOut, 0, bids);
+            System.arraycopy(bq, 0, bidQuantitiesOut, 0, bids);
+            System.arraycopy(ap, 0, askPricesOut, 0, asks);
+            System.arraycopy(aq, 0, askQuantitiesOut, 0, asks);
+        } while (!validate(sequence));
+        return ((long) bids << 32) | asks;
+    }
+
+    /**
+     * Сколько снимков наложено на стакан
+     */
+    public long updates() {
+        return (long) SEQUENCE.getAcquire(this) >>> 1;
+    }
+
+    private static long sum(long[] values, int count) {
+        long sum = 0;
+        for (int i = 0; i < count && i < values.length; i++) {
+            sum += values[i];
+        }
+        return sum;
+    }
+
+    private static int applySide(List<Order> orders, long[] prices, long[] quantities, int previousCount) {
+        int changed = 0;
+        int count = orders.size();
+        for (int i = 0; i < count; i++) {
+            Order order = orders.get(i);
+            long price = Prices.toScaled(order.getPrice());
+            long quantity = order.getQuantity();
+            if (i >= previousCount || prices[i] != price || quantities[i] != quantity) {
+                prices[i] = price;
+                quantities[i] = quantity;
+                changed++;
+            }
+        }
+        return changed + Math.max(0, previousCount - count);
+    }
+
+    private void ensureCapacity(int depth) {
+        if (depth <= bidPrices.length) {
+            return;
+        }
+        int capacity = Math.max(depth, bidPrices.length * 2);
+        bidPrices = Arrays.copyOf(bidPrices, capacity);
+        bidQuantities = Arrays.copyOf(bidQuantities, capacity);
+        askPrices = Arrays.copyOf(askPrices, capacity);
+        askQuantities = Arrays.copyOf(askQuantities, capacity);
+    }
+
+    private long beginWrite() {
+        while (true) {
+            long sequence = (long) SEQUENCE.getAcquire(this);
+            if ((sequence & 1) == 0 && SEQUENCE.compareAndSet(this, sequence, sequence + 1)) {
+                return sequence;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private long beginRead() {
+        while (true) {
+            long sequence = (long) SEQUENCE.getAcquire(this);
+            if ((sequence & 1) == 0) {
+                return sequence;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private boolean validate(long sequence) {
+        VarHandle.loadLoadFence();
+        return (long) SEQUENCE.getAcquire(this) == sequence;
+    }
+}
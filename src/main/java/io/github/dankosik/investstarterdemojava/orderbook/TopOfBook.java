@@ -0,0 +1,87 @@
+package io.github.dankosik.investstarterdemojava.orderbook;
+
+/**
+ * Переиспользуемый контейнер для {@link PriceLevelBook#readTop}: читатель заводит один экземпляр и читает в него без аллокаций.
+ * Цены и объемы в fixed-point. Есть ли сторона - {@link #hasBid()}/{@link #hasAsk()}, цена отсутствующей стороны
+ * {@link PriceLevelBook#NO_PRICE}, объем 0
+ */
+public final class TopOfBook {
+
+    private boolean hasBid;
+    private boolean hasAsk;
+    private long bidPrice;
+    private long bidQuantity;
+    private long askPrice;
+    private long askQuantity;
+    private long timeNanos;
+    private long version;
+
+    void set(boolean hasBid, long bidPrice, long bidQuantity, boolean hasAsk, long askPrice, long askQuantity, long timeNanos, long version) {
+        this.hasBid = hasBid;
+        this.hasAsk = hasAsk;
+        this.bidPrice = bidPrice;
+        this.bidQuantity = bidQuantity;
+        this.askPrice = askPrice;
+        this.askQuantity = askQuantity;
+        this.timeNanos = timeNanos;
+        this.version = version;
+    }
+
+    public long bidPrice() {
+        return bidPrice;
+    }
+
+    public long bidQuantity() {
+        return bidQuantity;
+    }
+
+    public long askPrice() {
+        return askPrice;
+    }
+
+    public long askQuantity() {
+        return askQuantity;
+    }
+
+    public long timeNanos() {
+        return timeNanos;
+    }
+
+    /**
+     * Номер снимка стакана из которого прочитаны значения
+     */
+    public long version() {
+        return version;
+    }
+
+    public boolean hasBid() {
+        return hasBid;
+    }
+
+    public boolean hasAsk() {
+        return hasAsk;
+    }
+
+    public boolean hasBoth() {
+        return hasBid && hasAsk;
+    }
+
+    /**
+     * @return ask - bid или {@link PriceLevelBook#NO_PRICE} если одной из сторон нет
+     */
+    public long spread() {
+        return hasBoth() ? askPrice - bidPrice : PriceLevelBook.NO_PRICE;
+    }
+
+    /**
+     * @return (bid + ask) / 2 или {@link PriceLevelBook#NO_PRICE} если одной из сторон нет
+     */
+    public long mid() {
+        return hasBoth() ? bidPrice + (askPrice - bidPrice) / 2 : PriceLevelBook.NO_PRICE;
+    }
+
+    @Override
+    public String toString() {
+        return "TopOfBook{bid=" + bidPrice + "x" + bidQuantity + ", ask=" + askPrice + "x" + askQuantity + ", version=" + version + '}';
+    }
+}
@@ -0,0 +1,78 @@
+package io.github.dankosik.investstarterdemojava.orders;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Сделка по отслеживаемому поручению, которую {@link OrderTracker} передает в {@link OrderFillHandler}.
+ * Объект переиспользуется и действителен только внутри вызова обработчика: сохранять нужно значения.
+ * Цена в fixed-point, см. {@link Prices#SCALE}
+ */
+public final class OrderFill {
+
+    private TrackedOrder order;
+    private String tradeId;
+    private long price;
+    private long quantity;
+    private long filledQuantity;
+    private OrderStatus status;
+    private long tradeTimeNanos;
+
+    void set(TrackedOrder order, String tradeId, long price, long quantity, long state, long tradeTimeNanos) {
+        this.order = order;
+        this.tradeId = tradeId;
+        this.price = price;
+        this.quantity = quantity;
+        this.filledQuantity = TrackedOrder.filled(state);
+        this.status = TrackedOrder.status(state);
+        this.tradeTimeNanos = tradeTimeNanos;
+    }
+
+    @NotNull
+    public TrackedOrder order() {
+        return order;
+    }
+
+    public String tradeId() {
+        return tradeId;
+    }
+
+    public long price() {
+        return price;
+    }
+
+    /**
+     * Количество в штуках в этой сделке
+     */
+    public long quantity() {
+        return quantity;
+    }
+
+    /**
+     * Исполнено по поручению вместе с этой сделкой
+     */
+    public long filledQuantity() {
+        return filledQuantity;
+    }
+
+    /**
+     * Статус поручения сразу после этой сделки
+     */
+    @NotNull
+    public OrderStatus status() {
+        return status;
+    }
+
+    /**
+     * Время сделки на бирже, наносекунды от эпохи
+     */
+    public long tradeTimeNanos() {
+        return tradeTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return order.orderId() + " " + order.accountId() + " " + order.instrumentUid() + " " + order.direction() + " "
+                + quantity + " x " + Prices.toDouble(price) + " " + filledQuantity + "/" + order.quantity() + " " + status;
+    }
+}
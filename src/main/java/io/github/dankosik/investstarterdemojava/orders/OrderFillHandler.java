@@ -0,0 +1,13 @@
+package io.github.dankosik.investstarterdemojava.orders;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Обработчик сделок по поручению, регистрируется вместе с поручением в {@link OrderTracker#track}.
+ * Вызывается в потоке стрима сделок по поручениям, поэтому должен быть быстрым
+ */
+@FunctionalInterface
+public interface OrderFillHandler {
+
+    void onFill(@NotNull OrderFill fill);
+}
@@ -0,0 +1,28 @@
+package io.github.dankosik.investstarterdemojava.orders;
+
+/**
+ * Состояние отслеживаемого поручения. Переходы только вперед:
+ * PENDING -> PARTIALLY_FILLED -> FILLED, PENDING/PARTIALLY_FILLED -> CANCELLED
+ */
+public enum OrderStatus {
+    /**
+     * поручение выставлено, сделок еще не было
+     */
+    PENDING,
+    /**
+     * исполнено частично
+     */
+    PARTIALLY_FILLED,
+    /**
+     * исполнено полностью
+     */
+    FILLED,
+    /**
+     * отменено, исполненная часть остается в filledQuantity
+     */
+    CANCELLED;
+
+    public boolean isDone() {
+        return this == FILLED || this == CANCELLED;
+    }
+}
@@ -0,0 +1,371 @@
+package io.github.dankosik.investstarterdemojava.orders;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import io.github.dankosik.investstarterdemojava.stats.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.OrderDirection;
+import ru.tinkoff.piapi.contract.v1.OrderTrade;
+import ru.tinkoff.piapi.contract.v1.OrderTrades;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Отслеживание своих поручений по стриму сделок по поручениям (@HandleOrder / @HandleAllOrders).
+ * После выставления поручение регистрируется через {@link #track} вместе с обработчиком сделок, дальше каждая сделка
+ * из стрима находится по orderId одним поиском в хеш-таблице вместо перебора списка своих заявок.
+ * <p>
+ * Индексы:
+ * <ul>
+ *     <li>orderId -> поручение, сделки другого счета с тем же orderId игнорируются</li>
+ *     <li>счет -> активные поручения</li>
+ *     <li>инструмент -> числовой id ({@link #instrumentId}), по нему без хеширования читается открытое количество
+ *     ({@link #openQuantity})</li>
+ * </ul>
+ * Статус поручения меняется CAS в {@link TrackedOrder}, сам трекер блокировок не берет. Сделки, пришедшие раньше чем
+ * поручение зарегистрировано (ответ на postOrder еще в пути), откладываются и применяются в {@link #track}.
+ * <p>
+ * Задержки: {@link #dispatchLatency()} - от получения сделок из стрима до вызова обработчика,
+ * {@link #eventLatency()} - от времени сделки на бирже до вызова обработчика
+ */
+public final class OrderTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderTracker.class);
+
+    private final int maxPending;
+    private final long retentionNanos;
+    private final ConcurrentHashMap<String, TrackedOrder> orders = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Set<TrackedOrder>> accounts = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Integer> instrumentIds = new ConcurrentHashMap<>();
+    private final Object instrumentsLock = new Object();
+    private volatile InstrumentOrders[] instruments = new InstrumentOrders[64];
+    private final ConcurrentHashMap<String, Deferred> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicInteger activeCount = new AtomicInteger();
+    private final ThreadLocal<OrderFill> fills = ThreadLocal.withInitial(OrderFill::new);
+    private final LatencyHistogram dispatchLatency = new LatencyHistogram();
+    private final LatencyHistogram eventLatency = new LatencyHistogram();
+    private final LongAdder tracked = new LongAdder();
+    private final LongAdder fillCount = new LongAdder();
+    private final LongAdder filled = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder unknown = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param maxPending сколько поручений со сделками до регистрации держать, сделки сверх лимита отбрасываются
+     * @param retention  сколько ждать регистрации поручения для отложенных сделок и сколько держать отмененное
+     *                   поручение для сделок, совершенных до отмены
+     */
+    public OrderTracker(int maxPending, @NotNull Duration retention) {
+        this.maxPending = maxPending;
+        this.retentionNanos = retention.toNanos();
+    }
+
+    /**
+     * Регистрирует выставленное поручение
+     *
+     * @param quantity количество в штуках (лоты * лотность), как в сделках стрима
+     * @throws IllegalStateException если поручение с таким orderId уже отслеживается
+     */
+    @NotNull
+    public TrackedOrder track(@NotNull String orderId, @NotNull String accountId, @NotNull String instrumentUid,
+                              @NotNull OrderDirection direction, long quantity, @NotNull OrderFillHandler handler) {
+        if (quantity <= 0) {
+            throw new IllegalArgumentException("quantity должно быть больше 0: " + quantity);
+        }
+        TrackedOrder order = new TrackedOrder(orderId, accountId, instrumentUid, instrumentId(instrumentUid), direction,
+                quantity, handler);
+        if (orders.putIfAbsent(orderId, order) != null) {
+            throw new IllegalStateException("поручение уже отслеживается: " + orderId);
+        }
+        accounts.computeIfAbsent(accountId, key -> ConcurrentHashMap.newKeySet()).add(order);
+        activeCount.incrementAndGet();
+        instruments[order.instrumentId()].open(order, quantity);
+        tracked.increment();
+        applyDeferred(order);
+        return order;
+    }
+
+    /**
+     * Сделки по поручению из стрима
+     */
+    public void onOrderTrades(@NotNull OrderTrades orderTrades) {
+        long receivedNanos = EpochClock.nanos();
+        TrackedOrder order = orders.get(orderTrades.getOrderId());
+        if (order == null) {
+            defer(orderTrades, receivedNanos);
+            return;
+        }
+        apply(order, orderTrades, receivedNanos);
+    }
+
+    /**
+     * Отмена подтверждена брокером: поручение убирается из активных, сделки совершенные до отмены еще
+     * retention доходят до обработчика
+     *
+     * @return false если поручение не отслеживается или уже исполнено
+     */
+    public boolean cancel(@NotNull String orderId) {
+        TrackedOrder order = orders.get(orderId);
+        if (order == null) {
+            return false;
+        }
+        long state = order.cancel();
+        if (state < 0) {
+            return false;
+        }
+        deactivate(order, Math.max(order.quantity() - TrackedOrder.filled(state), 0));
+        cancelled.increment();
+        return true;
+    }
+
+    /**
+     * Забывает отложенные сделки и отмененные поручения старше retention, вызывается по таймеру
+     */
+    public void expire(long nowNanos) {
+        for (Map.Entry<String, Deferred> entry : pending.entrySet()) {
+            if (nowNanos - entry.getValue().receivedNanos() > retentionNanos && pending.remove(entry.getKey(), entry.getValue())) {
+                pendingCount.decrementAndGet();
+                unknown.increment();
+            }
+        }
+        for (TrackedOrder order : orders.values()) {
+            if (order.status() == OrderStatus.CANCELLED && order.cancelledNanos() != 0
+                    && nowNanos - order.cancelledNanos() > retentionNanos) {
+                orders.remove(order.orderId(), order);
+            }
+        }
+    }
+
+    @Nullable
+    public TrackedOrder order(@NotNull String orderId) {
+        return orders.get(orderId);
+    }
+
+    /**
+     * Активные поручения счета
+     */
+    @NotNull
+    public List<TrackedOrder> activeOrders(@NotNull String accountId) {
+        Set<TrackedOrder> active = accounts.get(accountId);
+        return active == null ? List.of() : List.copyOf(active);
+    }
+
+    /**
+     * Числовой id инструмента, постоянный для экземпляра трекера: его стоит получить один раз и дальше читать
+     * {@link #openQuantity(int, OrderDirection)} без поиска по строке
+     */
+    public int instrumentId(@NotNull String instrumentUid) {
+        Integer id = instrumentIds.get(instrumentUid);
+        if (id != null) {
+            return id;
+        }
+        synchronized (instrumentsLock) {
+            return instrumentIds.computeIfAbsent(instrumentUid, key -> {
+                int next = instrumentIds.size();
+                InstrumentOrders[] current = instruments;
+                if (next == current.length) {
+                    InstrumentOrders[] grown = new InstrumentOrders[next * 2];
+                    System.arraycopy(current, 0, grown, 0, next);
+                    current = grown;
+                }
+                current[next] = new InstrumentOrders();
+                instruments = current;
+                return next;
+            });
+        }
+    }
+
+    /**
+     * Неисполненный остаток активных поручений по инструменту в штуках
+     */
+    public long openQuantity(int instrumentId, @NotNull OrderDirection direction) {
+        InstrumentOrders[] current = instruments;
+        if (instrumentId < 0 || instrumentId >= current.length || current[instrumentId] == null) {
+            return 0;
+        }
+        InstrumentOrders orders = current[instrumentId];
+        return direction == OrderDirection.ORDER_DIRECTION_SELL ? orders.openSell.sum() : orders.openBuy.sum();
+    }
+
+    /**
+     * Поручения которые еще ждут сделок
+     */
+    public int activeCount() {
+        return activeCount.get();
+    }
+
+    public int pendingCount() {
+        return pendingCount.get();
+    }
+
+    public long trackedCount() {
+        return tracked.sum();
+    }
+
+    public long fillCount() {
+        return fillCount.sum();
+    }
+
+    public long filledCount() {
+        return filled.sum();
+    }
+
+    public long cancelledCount() {
+        return cancelled.sum();
+    }
+
+    /**
+     * Сделки по поручениям, которые так и не были зарегистрированы (чужие или выставленные не через трекер)
+     */
+    public long unknownCount() {
+        return unknown.sum();
+    }
+
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    public LatencyHistogram dispatchLatency() {
+        return dispatchLatency;
+    }
+
+    public LatencyHistogram eventLatency() {
+        return eventLatency;
+    }
+
+    /**
+     * @param receivedNanos время получения из стрима, -1 - сделки были отложены до регистрации
+     */
+    private void apply(TrackedOrder order, OrderTrades orderTrades, long receivedNanos) {
+        if (!order.accountId().equals(orderTrades.getAccountId())) {
+            unknown.increment();
+            return;
+        }
+        OrderFill fill = fills.get();
+        for (int i = 0; i < orderTrades.getTradesCount(); i++) {
+            OrderTrade trade = orderTrades.getTrades(i);
+            long state = order.fill(trade.getQuantity());
+            OrderStatus status = TrackedOrder.status(state);
+            long filledAfter = Math.min(TrackedOrder.filled(state), order.quantity());
+            long filledBefore = Math.min(TrackedOrder.filled(state) - trade.getQuantity(), order.quantity());
+            if (status != OrderStatus.CANCELLED) {
+                instruments[order.instrumentId()].fill(order, filledAfter - filledBefore);
+            }
+            long tradeTimeNanos = Prices.toEpochNanos(trade.getDateTime());
+            fill.set(order, trade.getTradeId(), Prices.toScaled(trade.getPrice()), trade.getQuantity(), state, tradeTimeNanos);
+            fillCount.increment();
+            long now = EpochClock.nanos();
+            if (receivedNanos >= 0) {
+                dispatchLatency.record(now - receivedNanos);
+            }
+            eventLatency.record(now - tradeTimeNanos);
+            try {
+                order.handler().onFill(fill);
+            } catch (RuntimeException e) {
+                log.error("ошибка в обработчике сделок по поручению {}", order.orderId(), e);
+            }
+            if (status == OrderStatus.FILLED && filledBefore < order.quantity()) {
+                deactivate(order, 0);
+                orders.remove(order.orderId(), order);
+                filled.increment();
+            }
+        }
+    }
+
+    /**
+     * Откладывает сделки до регистрации поручения. Если поручение зарегистрировали между поиском и записью,
+     * сделки забирает тот, кто первым удалит их из pending
+     */
+    private void defer(OrderTrades orderTrades, long receivedNanos) {
+        String orderId = orderTrades.getOrderId();
+        while (true) {
+            Deferred previous = pending.get(orderId);
+            if (previous == null) {
+                if (pendingCount.get() >= maxPending) {
+                    dropped.increment();
+                    unknown.increment();
+                    return;
+                }
+                if (pending.putIfAbsent(orderId, new Deferred(orderTrades, receivedNanos)) == null) {
+                    pendingCount.incrementAndGet();
+                    break;
+                }
+            } else if (pending.replace(orderId, previous, previous.merge(orderTrades))) {
+                break;
+            }
+        }
+        TrackedOrder order = orders.get(orderId);
+        if (order != null) {
+            applyDeferred(order);
+        }
+    }
+
+    private void applyDeferred(TrackedOrder order) {
+        Deferred deferred = pending.remove(order.orderId());
+        if (deferred != null) {
+            pendingCount.decrementAndGet();
+            apply(order, deferred.orderTrades(), -1);
+        }
+    }
+
+    /**
+     * Убирает поручение из активных поручений счета, остаток снимается с открытого количества инструмента
+     */
+    private void deactivate(TrackedOrder order, long remaining) {
+        Set<TrackedOrder> active = accounts.get(order.accountId());
+        if (active != null) {
+            active.remove(order);
+        }
+        instruments[order.instrumentId()].close(order, remaining);
+        activeCount.decrementAndGet();
+    }
+
+    private record Deferred(OrderTrades orderTrades, long receivedNanos) {
+
+        Deferred merge(OrderTrades next) {
+            return new Deferred(orderTrades.toBuilder().addAllTrades(next.getTradesList()).build(), receivedNanos);
+        }
+    }
+
+    /**
+     * Открытое количество поручений по инструменту
+     */
+    private static final class InstrumentOrders {
+
+        private final LongAdder openBuy = new LongAdder();
+        private final LongAdder openSell = new LongAdder();
+
+        void open(TrackedOrder order, long quantity) {
+            side(order).add(quantity);
+        }
+
+        void fill(TrackedOrder order, long quantity) {
+            side(order).add(-quantity);
+        }
+
+        void close(TrackedOrder order, long remaining) {
+            side(order).add(-remaining);
+        }
+
+        private LongAdder side(TrackedOrder order) {
+            return order.direction() == OrderDirection.ORDER_DIRECTION_SELL ? openSell : openBuy;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "orders active=" + activeCount() + " pending=" + pendingCount() + " fills=" + fillCount()
+                + " dispatch " + dispatchLatency.snapshot() + " event " + eventLatency.snapshot();
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.dankosik.investstarterdemojava.orders;
+
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+@ConditionalOnProperty(prefix = "demo.orders", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(OrderTrackerProperties.class)
+class OrderTrackerConfiguration {
+
+    @Bean
+    public OrderTracker orderTracker(OrderTrackerProperties properties) {
+        return new OrderTracker(properties.maxPending(), properties.retention());
+    }
+
+    /**
+     * Забывает сделки так и не зарегистрированных поручений и отмененные поручения
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService orderTrackerTimer(OrderTracker orderTracker, OrderTrackerProperties properties) {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("order-tracker-timer").daemon().factory());
+        long interval = properties.expireInterval().toMillis();
+        timer.scheduleAtFixedRate(() -> orderTracker.expire(EpochClock.nanos()), interval, interval, TimeUnit.MILLISECONDS);
+        return timer;
+    }
+
+    /**
+     * Поручения и задержки OrderTracker, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder orderTrackerMetrics(OrderTracker tracker) {
+        return registry -> {
+            Gauge.builder("demo.orders.active", tracker, OrderTracker::activeCount).register(registry);
+            Gauge.builder("demo.orders.pending", tracker, OrderTracker::pendingCount).register(registry);
+            FunctionCounter.builder("demo.orders.tracked", tracker, OrderTracker::trackedCount).register(registry);
+            FunctionCounter.builder("demo.orders.fills", tracker, OrderTracker::fillCount).register(registry);
+            FunctionCounter.builder("demo.orders.filled", tracker, OrderTracker::filledCount).register(registry);
+            FunctionCounter.builder("demo.orders.cancelled", tracker, OrderTracker::cancelledCount).register(registry);
+            FunctionCounter.builder("demo.orders.unknown", tracker, OrderTracker::unknownCount).register(registry);
+            FunctionCounter.builder("demo.orders.dropped", tracker, OrderTracker::droppedCount).register(registry);
+            Gauge.builder("demo.orders.dispatch.latency.p99", tracker, t -> t.dispatchLatency().percentile(99) / 1e9)
+                    .baseUnit("seconds").register(registry);
+            Gauge.builder("demo.orders.event.latency.p99", tracker, t -> t.eventLatency().percentile(99) / 1e9)
+                    .baseUnit("seconds").register(registry);
+        };
+    }
+}
@@ -0,0 +1,32 @@
+package io.github.dankosik.investstarterdemojava.orders;
+
+import io.github.dankosik.starter.invest.annotation.order.HandleAllOrders;
+import io.github.dankosik.starter.invest.contract.orders.AsyncOrderHandler;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import ru.tinkoff.piapi.contract.v1.OrderTrades;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Кормит OrderTracker сделками по поручениям. Обработчики сделок вызываются прямо в потоке стрима
+ */
+@HandleAllOrders(accounts = {"accountId", "accountId2"}) //замените на ваши актуальные
+@ConditionalOnProperty(prefix = "demo.orders", name = "enabled", havingValue = "true")
+class OrderTrackerFeed implements AsyncOrderHandler {
+
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+    private final OrderTracker orderTracker;
+
+    OrderTrackerFeed(OrderTracker orderTracker) {
+        this.orderTracker = orderTracker;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull OrderTrades orderTrades) {
+        orderTracker.onOrderTrades(orderTrades);
+        return DONE;
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.dankosik.investstarterdemojava.orders;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки {@link OrderTracker}
+ *
+ * @param enabled        включает отслеживание поручений по стриму сделок по поручениям
+ * @param maxPending     сколько поручений со сделками, пришедшими до регистрации, держать одновременно
+ * @param retention      сколько ждать регистрации для таких сделок и сколько держать отмененное поручение
+ * @param expireInterval как часто забывать устаревшие сделки и поручения
+ */
+@ConfigurationProperties(prefix = "demo.orders")
+public record OrderTrackerProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("1024") int maxPending,
+        @DefaultValue("10s") Duration retention,
+        @DefaultValue("1s") Duration expireInterval
+) {
+}
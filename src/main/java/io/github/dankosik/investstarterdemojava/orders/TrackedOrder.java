@@ -0,0 +1,158 @@
+package io.github.dankosik.investstarterdemojava.orders;
+
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.OrderDirection;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Поручение в {@link OrderTracker}. Статус и исполненное количество упакованы в один long и меняются CAS,
+ * поэтому сделки из стрима и отмена из потока стратегии не блокируют друг друга и не видят промежуточных состояний
+ */
+public final class TrackedOrder {
+
+    private static final int STATUS_SHIFT = 60;
+    private static final long FILLED_MASK = (1L << STATUS_SHIFT) - 1;
+    private static final OrderStatus[] STATUSES = OrderStatus.values();
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(TrackedOrder.class, "state", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final String orderId;
+    private final String accountId;
+    private final String instrumentUid;
+    private final int instrumentId;
+    private final OrderDirection direction;
+    private final long quantity;
+    private final OrderFillHandler handler;
+    @SuppressWarnings("unused")
+    private volatile long state;
+    private volatile long cancelledNanos;
+
+    TrackedOrder(String orderId, String accountId, String instrumentUid, int instrumentId, OrderDirection direction,
+                 long quantity, OrderFillHandler handler) {
+        this.orderId = orderId;
+        this.accountId = accountId;
+        this.instrumentUid = instrumentUid;
+        this.instrumentId = instrumentId;
+        this.direction = direction;
+        this.quantity = quantity;
+        this.handler = handler;
+    }
+
+    public String orderId() {
+        return orderId;
+    }
+
+    public String accountId() {
+        return accountId;
+    }
+
+    public String instrumentUid() {
+        return instrumentUid;
+    }
+
+    /**
+     * Числовой id инструмента в {@link OrderTracker}, см. {@link OrderTracker#openQuantity(int, OrderDirection)}
+     */
+    public int instrumentId() {
+        return instrumentId;
+    }
+
+    public OrderDirection direction() {
+        return direction;
+    }
+
+    /**
+     * Количество в штуках
+     */
+    public long quantity() {
+        return quantity;
+    }
+
+    @NotNull
+    public OrderStatus status() {
+        return status(state);
+    }
+
+    public long filledQuantity() {
+        return filled(state);
+    }
+
+    public long remainingQuantity() {
+        return Math.max(quantity - filled(state), 0);
+    }
+
+    OrderFillHandler handler() {
+        return handler;
+    }
+
+    long cancelledNanos() {
+        return cancelledNanos;
+    }
+
+    /**
+     * Добавляет исполненное количество
+     *
+     * @return состояние после сделки, см. {@link #status(long)} и {@link #filled(long)}
+     */
+    long fill(long pieces) {
+        long current;
+        long next;
+        do {
+            current = state;
+            long filled = Math.min(filled(current) + pieces, FILLED_MASK);
+            OrderStatus status = status(current);
+            // сделка до отмены может прийти после нее: количество учитывается, статус остается CANCELLED
+            if (status != OrderStatus.CANCELLED) {
+                status = filled >= quantity ? OrderStatus.FILLED : OrderStatus.PARTIALLY_FILLED;
+            }
+            next = pack(status, filled);
+        } while (!STATE.compareAndSet(this, current, next));
+        return next;
+    }
+
+    /**
+     * @return состояние после отмены или -1 если поручение уже исполнено или отменено
+     */
+    long cancel() {
+        long current;
+        long next;
+        do {
+            current = state;
+            if (status(current).isDone()) {
+                return -1;
+            }
+            next = pack(OrderStatus.CANCELLED, filled(current));
+        } while (!STATE.compareAndSet(this, current, next));
+        cancelledNanos = EpochClock.nanos();
+        return next;
+    }
+
+    static OrderStatus status(long state) {
+        return STATUSES[(int) (state >>> STATUS_SHIFT)];
+    }
+
+    static long filled(long state) {
+        return state & FILLED_MASK;
+    }
+
+    private static long pack(OrderStatus status, long filled) {
+        return (long) status.ordinal() << STATUS_SHIFT | filled;
+    }
+
+    @Override
+    public String toString() {
+        long current = state;
+        return orderId + " " + accountId + " " + instrumentUid + " " + direction + " " + filled(current) + "/" + quantity
+                + " " + status(current);
+    }
+}
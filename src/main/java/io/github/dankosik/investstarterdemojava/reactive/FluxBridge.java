@@ -0,0 +1,272 @@
+package io.github.dankosik.investstarterdemojava.reactive;
+
+import io.github.dankosik.investstarterdemojava.concurrent.MpscRing;
+import io.github.dankosik.starter.invest.contract.marketdata.candle.AsyncCandleHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.AsyncOrderBookHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import org.jetbrains.annotations.NotNull;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Реактивные хендлеры: вместо вызова на каждое событие хендлер описывает конвейер над Flux всех событий подписки,
+ * в нем доступны window, bufferTimeout, groupBy(instrumentUid) и остальные операторы Reactor.
+ * Хендлер оборачивается один раз, например в конструкторе хендлера с @Handle* аннотацией:
+ * <pre>{@code
+ * this.reactive = fluxBridge.trades(trades -> trades
+ *         .groupBy(Trade::getInstrumentUid)
+ *         .flatMap(instrument -> instrument.bufferTimeout(64, Duration.ofMillis(100)))
+ *         .doOnNext(this::processBatch));
+ * }</pre>
+ * или для *StreamProcessorAdapterFactory: {@code .createAsyncHandler(fluxBridge.flux("name", pipeline))}.
+ * <p>
+ * Backpressure сквозной: у каждой подписки bounded буфер, события из него отдаются конвейеру только по request(n).
+ * Когда буфер заполнен, обертка ждет в потоке стрима - стартер вызывает Async хендлеры прямо из потока gRPC стрима,
+ * поэтому следующее сообщение у gRPC не запрашивается, а после заполнения окна HTTP/2 сервер перестает слать данные.
+ * Blocking адаптеры фабрик исполняются в отдельных виртуальных потоках, до стрима их ожидание не доходит - поэтому
+ * для фабрик только createAsyncHandler.
+ * <p>
+ * На событие обертка не создает объектов: кольцевой буфер без аллокаций, события отдаются в onNext в потоке
+ * который их положил или запросил (publishOn в конвейере переносит обработку в другой поток),
+ * стриму возвращается один и тот же завершенный future. Если конвейер завершился с ошибкой, она пишется в лог,
+ * а следующие события подписки отбрасываются
+ */
+public final class FluxBridge implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(FluxBridge.class);
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+    private static final long BLOCK_PARK_NANOS = 1_000;
+
+    private final int bufferSize;
+    private final List<Source<?>> sources = new CopyOnWriteArrayList<>();
+    private final LongAdder received = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder backpressured = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+
+    public FluxBridge(int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize должен быть положительным");
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    public static FluxBridge create(@NotNull ReactiveProperties properties) {
+        return new FluxBridge(properties.bufferSize());
+    }
+
+    public AsyncTradeHandler trades(@NotNull Function<Flux<Trade>, ? extends Publisher<?>> pipeline) {
+        Function<Trade, CompletableFuture<Void>> handler = flux("trades", pipeline);
+        return handler::apply;
+    }
+
+    public AsyncOrderBookHandler orderBooks(@NotNull Function<Flux<OrderBook>, ? extends Publisher<?>> pipeline) {
+        Function<OrderBook, CompletableFuture<Void>> handler = flux("orderBooks", pipeline);
+        return handler::apply;
+    }
+
+    public AsyncCandleHandler candles(@NotNull Function<Flux<Candle>, ? extends Publisher<?>> pipeline) {
+        Function<Candle, CompletableFuture<Void>> handler = flux("candles", pipeline);
+        return handler::apply;
+    }
+
+    /**
+     * Конвейер для любых событий, результат подходит для createAsyncHandler у *StreamProcessorAdapterFactory.
+     * На результат конвейера bridge подписывается сразу
+     *
+     * @param name имя для логов
+     */
+    public <T> Function<T, CompletableFuture<Void>> flux(@NotNull String name, @NotNull Function<Flux<T>, ? extends Publisher<?>> pipeline) {
+        Source<T> source = new Source<>(name);
+        sources.add(source);
+        source.subscription = Flux.from(pipeline.apply(source)).subscribe(null,
+                error -> log.error("{}: реактивный конвейер завершился с ошибкой, новые события отбрасываются", name, error));
+        return source::offer;
+    }
+
+    /**
+     * Сколько событий пришло в обертки
+     */
+    public long receivedCount() {
+        return received.sum();
+    }
+
+    /**
+     * Сколько событий отдано конвейерам
+     */
+    public long deliveredCount() {
+        return delivered.sum();
+    }
+
+    /**
+     * Сколько раз поток стрима ждал место в заполненном буфере
+     */
+    public long backpressuredCount() {
+        return backpressured.sum();
+    }
+
+    /**
+     * Сколько событий отброшено: конвейер отменил подписку, завершился с ошибкой или bridge закрыт
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Сколько событий ждут запроса от конвейеров сейчас
+     */
+    public int bufferedCount() {
+        int buffered = 0;
+        for (Source<?> source : sources) {
+            buffered += source.buffer.size();
+        }
+        return buffered;
+    }
+
+    /**
+     * Завершает источники (onComplete, конвейеры успевают отдать неполные окна и буферы) и отменяет подписки
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (Source<?> source : sources) {
+            source.complete();
+            source.subscription.dispose();
+        }
+    }
+
+    /**
+     * Unicast Flux одной подписки поверх MPSC буфера. onNext вызывается в цикле drain, который в каждый момент
+     * исполняет только один поток (счетчик wip) - он же единственный читатель буфера
+     */
+    private final class Source<T> extends Flux<T> implements Subscription {
+
+        final String name;
+        final MpscRing<T> buffer;
+        final AtomicInteger wip = new AtomicInteger();
+        final AtomicLong requested = new AtomicLong();
+        final AtomicBoolean subscribed = new AtomicBoolean();
+        volatile CoreSubscriber<? super T> actual;
+        volatile boolean cancelled;
+        volatile boolean done;
+        Disposable subscription;
+
+        Source(String name) {
+            this.name = name;
+            this.buffer = new MpscRing<>(bufferSize);
+        }
+
+        @Override
+        public void subscribe(@NotNull CoreSubscriber<? super T> subscriber) {
+            if (!subscribed.compareAndSet(false, true)) {
+                Operators.error(subscriber, new IllegalStateException(name + ": у реактивного источника может быть только один подписчик"));
+                return;
+            }
+            subscriber.onSubscribe(this);
+            actual = subscriber;
+            drain();
+        }
+
+        CompletableFuture<Void> offer(T event) {
+            received.increment();
+            if (cancelled || done) {
+                dropped.increment();
+                return DONE;
+            }
+            if (!buffer.offer(event)) {
+                backpressured.increment();
+                do {
+                    if (cancelled || done || !running) {
+                        dropped.increment();
+                        return DONE;
+                    }
+                    LockSupport.parkNanos(BLOCK_PARK_NANOS);
+                } while (!buffer.offer(event));
+            }
+            drain();
+            return DONE;
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                requested.accumulateAndGet(n, Operators::addCap);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            if (wip.getAndIncrement() == 0) {
+                clear();
+            }
+        }
+
+        void complete() {
+            done = true;
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                CoreSubscriber<? super T> subscriber = actual;
+                if (subscriber != null) {
+                    long demand = requested.get();
+                    long emitted = 0;
+                    T event;
+                    while (emitted != demand && !cancelled && (event = buffer.poll()) != null) {
+                        subscriber.onNext(event);
+                        emitted++;
+                    }
+                    if (cancelled) {
+                        clear();
+                        return;
+                    }
+                    if (emitted != 0) {
+                        delivered.add(emitted);
+                        if (demand != Long.MAX_VALUE) {
+                            requested.addAndGet(-emitted);
+                        }
+                    }
+                    if (done && buffer.isEmpty()) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void clear() {
+            while (buffer.poll() != null) {
+                dropped.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package io.github.dankosik.investstarterdemojava.reactive;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ReactiveProperties.class)
+class ReactiveConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public FluxBridge fluxBridge(ReactiveProperties properties) {
+        return FluxBridge.create(properties);
+    }
+
+    /**
+     * Доставка и backpressure FluxBridge, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder fluxBridgeMetrics(FluxBridge bridge) {
+        return registry -> {
+            FunctionCounter.builder("demo.reactive.received", bridge, FluxBridge::receivedCount).register(registry);
+            FunctionCounter.builder("demo.reactive.delivered", bridge, FluxBridge::deliveredCount).register(registry);
+            FunctionCounter.builder("demo.reactive.backpressured", bridge, FluxBridge::backpressuredCount).register(registry);
+            FunctionCounter.builder("demo.reactive.dropped", bridge, FluxBridge::droppedCount).register(registry);
+            Gauge.builder("demo.reactive.buffered", bridge, FluxBridge::bufferedCount).register(registry);
+        };
+    }
+}
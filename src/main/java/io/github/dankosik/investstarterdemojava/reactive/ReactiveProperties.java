@@ -0,0 +1,16 @@
+package io.github.dankosik.investstarterdemojava.reactive;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Настройки {@link FluxBridge}
+ *
+ * @param bufferSize сколько событий каждой подписки может ждать запроса (request(n)) от реактивного конвейера.
+ *                   Когда буфер заполнен, поток стрима ждет, пока конвейер не запросит еще
+ */
+@ConfigurationProperties(prefix = "demo.reactive")
+public record ReactiveProperties(
+        @DefaultValue("256") int bufferSize
+) {
+}
@@ -0,0 +1,170 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.grpc.Status;
+import io.grpc.stub.StreamObserver;
+import ru.tinkoff.piapi.contract.v1.BondsResponse;
+import ru.tinkoff.piapi.contract.v1.CurrenciesResponse;
+import ru.tinkoff.piapi.contract.v1.EtfsResponse;
+import ru.tinkoff.piapi.contract.v1.Future;
+import ru.tinkoff.piapi.contract.v1.FuturesResponse;
+import ru.tinkoff.piapi.contract.v1.Instrument;
+import ru.tinkoff.piapi.contract.v1.InstrumentRequest;
+import ru.tinkoff.piapi.contract.v1.InstrumentResponse;
+import ru.tinkoff.piapi.contract.v1.InstrumentsRequest;
+import ru.tinkoff.piapi.contract.v1.InstrumentsServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.OptionsResponse;
+import ru.tinkoff.piapi.contract.v1.Share;
+import ru.tinkoff.piapi.contract.v1.SharesResponse;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+/**
+ * InstrumentsService для replay: по тикеру отдает instrumentUid синтетического инструмента.
+ * i-й тикер из настроек соответствует i-му синтетическому инструменту, остальные инструменты получают тикеры SYN00000005...
+ * Тикеры вида SiH4/BRG4 считаются фьючерсами, остальные акциями. GetInstrumentBy ищет по figi, uid и тикеру.
+ * latency имитирует время ответа настоящего API на выгрузку списка инструментов
+ */
+public final class FakeInstrumentsService extends InstrumentsServiceGrpc.InstrumentsServiceImplBase {
+
+    private static final Pattern FUTURES_TICKER = Pattern.compile("^[A-Za-z]{2}[FGHJKMNQUVXZ]\\d$");
+
+    private final SharesResponse shares;
+    private final FuturesResponse futures;
+    private final Map<String, Instrument> byFigi = new HashMap<>();
+    private final Map<String, Instrument> byUid = new HashMap<>();
+    private final Map<String, Instrument> byTicker = new HashMap<>();
+    private final long latencyNanos;
+    private final LongAdder requests = new LongAdder();
+
+    public FakeInstrumentsService(List<String> tickers, int instruments) {
+        this(tickers, instruments, Duration.ZERO);
+    }
+
+    public FakeInstrumentsService(List<String> tickers, int instruments, Duration latency) {
+        this.latencyNanos = latency.toNanos();
+        SharesResponse.Builder sharesBuilder = SharesResponse.newBuilder();
+        FuturesResponse.Builder futuresBuilder = FuturesResponse.newBuilder();
+        int total = Math.max(instruments, tickers.size());
+        for (int i = 0; i < total; i++) {
+            String ticker = i < tickers.size() ? tickers.get(i) : tickerOf(i);
+            String uid = SyntheticMarketData.instrumentUid(i);
+            if (FUTURES_TICKER.matcher(ticker).matches()) {
+                futuresBuilder.addInstruments(Future.newBuilder()
+                        .setTicker(ticker)
+                        .setUid(uid)
+                        .setFigi(uid)
+                        .setClassCode("SPBFUT")
+                        .setName(ticker)
+                        .setLot(1)
+                        .setApiTradeAvailableFlag(true));
+            } else {
+                sharesBuilder.addInstruments(Share.newBuilder()
+                        .setTicker(ticker)
+                        .setUid(uid)
+                        .setFigi(uid)
+                        .setClassCode("TQBR")
+                        .setName(ticker)
+                        .setLot(1)
+                        .setApiTradeAvailableFlag(true));
+            }
+        }
+        this.shares = sharesBuilder.build();
+        this.futures = futuresBuilder.build();
+        shares.getInstrumentsList().forEach(share -> index(Instrument.newBuilder().setUid(share.getUid()).setFigi(share.getFigi())
+                .setTicker(share.getTicker()).setClassCode(share.getClassCode()).setName(share.getName()).setLot(share.getLot())
+                .setInstrumentType("share").build()));
+        futures.getInstrumentsList().forEach(future -> index(Instrument.newBuilder().setUid(future.getUid()).setFigi(future.getFigi())
+                .setTicker(future.getTicker()).setClassCode(future.getClassCode()).setName(future.getName()).setLot(future.getLot())
+                .setInstrumentType("futures").build()));
+    }
+
+    public static String tickerOf(int instrument) {
+        return "SYN%08d".formatted(instrument);
+    }
+
+    /**
+     * Сколько запросов пришло в сервис с момента создания
+     */
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    @Override
+    public void shares(InstrumentsRequest request, StreamObserver<SharesResponse> responseObserver) {
+        received();
+        responseObserver.onNext(shares);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void futures(InstrumentsRequest request, StreamObserver<FuturesResponse> responseObserver) {
+        received();
+        responseObserver.onNext(futures);
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void bonds(InstrumentsRequest request, StreamObserver<BondsResponse> responseObserver) {
+        received();
+        responseObserver.onNext(BondsResponse.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void etfs(InstrumentsRequest request, StreamObserver<EtfsResponse> responseObserver) {
+        received();
+        responseObserver.onNext(EtfsResponse.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void currencies(InstrumentsRequest request, StreamObserver<CurrenciesResponse> responseObserver) {
+        received();
+        responseObserver.onNext(CurrenciesResponse.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void options(InstrumentsRequest request, StreamObserver<OptionsResponse> responseObserver) {
+        received();
+        responseObserver.onNext(OptionsResponse.getDefaultInstance());
+        responseObserver.onCompleted();
+    }
+
+    @Override
+    public void getInstrumentBy(InstrumentRequest request, StreamObserver<InstrumentResponse> responseObserver) {
+        received();
+        Instrument instrument = switch (request.getIdType()) {
+            case INSTRUMENT_ID_TYPE_FIGI -> byFigi.get(request.getId());
+            case INSTRUMENT_ID_TYPE_UID -> byUid.get(request.getId());
+            case INSTRUMENT_ID_TYPE_TICKER -> byTicker.get(request.getId());
+            default -> null;
+        };
+        if (instrument == null) {
+            responseObserver.onError(Status.NOT_FOUND.withDescription("инструмент " + request.getId() + " не найден").asRuntimeException());
+            return;
+        }
+        responseObserver.onNext(InstrumentResponse.newBuilder().setInstrument(instrument).build());
+        responseObserver.onCompleted();
+    }
+
+    private void index(Instrument instrument) {
+        byFigi.put(instrument.getFigi(), instrument);
+        byUid.put(instrument.getUid(), instrument);
+        byTicker.put(instrument.getTicker(), instrument);
+    }
+
+    private void received() {
+        requests.increment();
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * gRPC сервер внутри процесса с подменой Invest API: инструменты, стрим рыночных данных, стримы портфеля/позиций/ордеров.
+ * InvestApi стартера переключается на него через {@link ReplayInvestApiPostProcessor}
+ */
+public final class FakeInvestApi implements AutoCloseable {
+
+    private final String name = "fake-invest-api-" + UUID.randomUUID();
+    private final FakeInstrumentsService instruments;
+    private final FakeMarketDataStreamService marketData;
+    private final FakeOperationsStreamService operations = new FakeOperationsStreamService();
+    private final FakeOrdersStreamService orders = new FakeOrdersStreamService();
+    private final Server server;
+
+    public FakeInvestApi(List<String> tickers, int instruments, boolean broadcast) {
+        this(tickers, instruments, broadcast, Duration.ZERO);
+    }
+
+    public FakeInvestApi(List<String> tickers, int instruments, boolean broadcast, Duration instrumentsLatency) {
+        this.instruments = new FakeInstrumentsService(tickers, instruments, instrumentsLatency);
+        this.marketData = new FakeMarketDataStreamService(broadcast);
+        try {
+            this.server = InProcessServerBuilder.forName(name)
+                    .addService(this.instruments)
+                    .addService(marketData)
+                    .addService(operations)
+                    .addService(orders)
+                    .build()
+                    .start();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public ManagedChannel newChannel() {
+        return InProcessChannelBuilder.forName(name).build();
+    }
+
+    public FakeInstrumentsService instruments() {
+        return instruments;
+    }
+
+    public FakeMarketDataStreamService marketData() {
+        return marketData;
+    }
+
+    public FakeOperationsStreamService operations() {
+        return operations;
+    }
+
+    public FakeOrdersStreamService orders() {
+        return orders;
+    }
+
+    @Override
+    public void close() {
+        server.shutdownNow();
+    }
+}
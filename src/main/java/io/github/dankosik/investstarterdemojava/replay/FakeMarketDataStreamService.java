@@ -0,0 +1,323 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.CandleInstrument;
+import ru.tinkoff.piapi.contract.v1.CandleSubscription;
+import ru.tinkoff.piapi.contract.v1.InfoInstrument;
+import ru.tinkoff.piapi.contract.v1.InfoSubscription;
+import ru.tinkoff.piapi.contract.v1.LastPriceInstrument;
+import ru.tinkoff.piapi.contract.v1.LastPriceSubscription;
+import ru.tinkoff.piapi.contract.v1.MarketDataRequest;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.MarketDataStreamServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.OrderBookInstrument;
+import ru.tinkoff.piapi.contract.v1.OrderBookSubscription;
+import ru.tinkoff.piapi.contract.v1.SubscribeCandlesResponse;
+import ru.tinkoff.piapi.contract.v1.SubscribeInfoResponse;
+import ru.tinkoff.piapi.contract.v1.SubscribeLastPriceResponse;
+import ru.tinkoff.piapi.contract.v1.SubscribeOrderBookResponse;
+import ru.tinkoff.piapi.contract.v1.SubscribeTradesResponse;
+import ru.tinkoff.piapi.contract.v1.SubscriptionAction;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.SubscriptionStatus;
+import ru.tinkoff.piapi.contract.v1.TradeInstrument;
+import ru.tinkoff.piapi.contract.v1.TradeSubscription;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * MarketDataStreamService для replay: запоминает подписки каждого стрима и отдает в него только подходящие события.
+ * Отправка уважает flow control gRPC: если клиент не успевает, {@link #publish} ждет вместо накопления в памяти
+ */
+public final class FakeMarketDataStreamService extends MarketDataStreamServiceGrpc.MarketDataStreamServiceImplBase {
+
+    private static final long NOT_READY_PARK_NANOS = 20_000;
+    private static final Consumer<MarketDataResponse> NO_SEND_LISTENER = response -> {};
+
+    private final CopyOnWriteArrayList<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final boolean broadcast;
+
+    public FakeMarketDataStreamService(boolean broadcast) {
+        this.broadcast = broadcast;
+    }
+
+    @Override
+    public StreamObserver<MarketDataRequest> marketDataStream(StreamObserver<MarketDataResponse> responseObserver) {
+        Subscriber subscriber = new Subscriber((ServerCallStreamObserver<MarketDataResponse>) responseObserver);
+        subscriber.call.setOnCancelHandler(() -> {
+            subscriber.cancelled = true;
+            subscribers.remove(subscriber);
+        });
+        subscribers.add(subscriber);
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(MarketDataRequest request) {
+                subscriber.apply(request);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                subscriber.cancelled = true;
+                subscribers.remove(subscriber);
+            }
+
+            @Override
+            public void onCompleted() {
+                subscribers.remove(subscriber);
+                subscriber.complete();
+            }
+        };
+    }
+
+    /**
+     * Завершает все стримы со статусом OK, как сервер при обновлении или плановом закрытии соединения
+     */
+    public void completeAll() {
+        for (Subscriber subscriber : subscribers) {
+            subscribers.remove(subscriber);
+            subscriber.cancelled = true;
+            subscriber.complete();
+        }
+    }
+
+    public int streamCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Количество инструментов на которые подписаны все стримы, по всем типам данных
+     */
+    public int subscriptionCount() {
+        int count = 0;
+        for (Subscriber subscriber : subscribers) {
+            count += subscriber.trades.size() + subscriber.orderBooks.size() + subscriber.lastPrices.size()
+                    + subscriber.infos.size() + subscriber.candles.size();
+        }
+        return count;
+    }
+
+    /**
+     * Отдает событие во все стримы подписанные на его инструмент и тип
+     *
+     * @return во сколько стримов событие было отправлено
+     */
+    public int publish(@NotNull MarketDataResponse response) {
+        return publish(response, NO_SEND_LISTENER);
+    }
+
+    /**
+     * То же что {@link #publish(MarketDataResponse)}, onSend вызывается в потоке публикации прямо перед отправкой
+     * каждого ответа, в том числе свечей пересобранных под другой интервал
+     */
+    public int publish(@NotNull MarketDataResponse response, @NotNull Consumer<MarketDataResponse> onSend) {
+        int delivered = 0;
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.deliver(response, broadcast, onSend)) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    private static final class Subscriber {
+
+        private final ServerCallStreamObserver<MarketDataResponse> call;
+        private final Set<String> trades = ConcurrentHashMap.newKeySet();
+        private final Set<String> orderBooks = ConcurrentHashMap.newKeySet();
+        private final Set<String> lastPrices = ConcurrentHashMap.newKeySet();
+        private final Set<String> infos = ConcurrentHashMap.newKeySet();
+        private final Map<String, Set<SubscriptionInterval>> candles = new ConcurrentHashMap<>();
+        private volatile boolean cancelled;
+
+        private Subscriber(ServerCallStreamObserver<MarketDataResponse> call) {
+            this.call = call;
+        }
+
+        private void apply(MarketDataRequest request) {
+            String trackingId = UUID.randomUUID().toString();
+            switch (request.getPayloadCase()) {
+                case SUBSCRIBE_TRADES_REQUEST -> {
+                    boolean subscribe = isSubscribe(request.getSubscribeTradesRequest().getSubscriptionAction());
+                    SubscribeTradesResponse.Builder ack = SubscribeTradesResponse.newBuilder().setTrackingId(trackingId);
+                    for (TradeInstrument instrument : request.getSubscribeTradesRequest().getInstrumentsList()) {
+                        String id = id(instrument.getInstrumentId(), instrument.getFigi());
+                        update(trades, id, subscribe);
+                        ack.addTradeSubscriptions(TradeSubscription.newBuilder()
+                                .setFigi(instrument.getFigi())
+                                .setInstrumentUid(id)
+                                .setSubscriptionStatus(SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS));
+                    }
+                    send(MarketDataResponse.newBuilder().setSubscribeTradesResponse(ack).build());
+                }
+                case SUBSCRIBE_ORDER_BOOK_REQUEST -> {
+                    boolean subscribe = isSubscribe(request.getSubscribeOrderBookRequest().getSubscriptionAction());
+                    SubscribeOrderBookResponse.Builder ack = SubscribeOrderBookResponse.newBuilder().setTrackingId(trackingId);
+                    for (OrderBookInstrument instrument : request.getSubscribeOrderBookRequest().getInstrumentsList()) {
+                        String id = id(instrument.getInstrumentId(), instrument.getFigi());
+                        update(orderBooks, id, subscribe);
+                        ack.addOrderBookSubscriptions(OrderBookSubscription.newBuilder()
+                                .setFigi(instrument.getFigi())
+                                .setInstrumentUid(id)
+                                .setDepth(instrument.getDepth())
+                                .setSubscriptionStatus(SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS));
+                    }
+                    send(MarketDataResponse.newBuilder().setSubscribeOrderBookResponse(ack).build());
+                }
+                case SUBSCRIBE_LAST_PRICE_REQUEST -> {
+                    boolean subscribe = isSubscribe(request.getSubscribeLastPriceRequest().getSubscriptionAction());
+                    SubscribeLastPriceResponse.Builder ack = SubscribeLastPriceResponse.newBuilder().setTrackingId(trackingId);
+                    for (LastPriceInstrument instrument : request.getSubscribeLastPriceRequest().getInstrumentsList()) {
+                        String id = id(instrument.getInstrumentId(), instrument.getFigi());
+                        update(lastPrices, id, subscribe);
+                        ack.addLastPriceSubscriptions(LastPriceSubscription.newBuilder()
+                                .setFigi(instrument.getFigi())
+                                .setInstrumentUid(id)
+                                .setSubscriptionStatus(SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS));
+                    }
+                    send(MarketDataResponse.newBuilder().setSubscribeLastPriceResponse(ack).build());
+                }
+                case SUBSCRIBE_INFO_REQUEST -> {
+                    boolean subscribe = isSubscribe(request.getSubscribeInfoRequest().getSubscriptionAction());
+                    SubscribeInfoResponse.Builder ack = SubscribeInfoResponse.newBuilder().setTrackingId(trackingId);
+                    for (InfoInstrument instrument : request.getSubscribeInfoRequest().getInstrumentsList()) {
+                        String id = id(instrument.getInstrumentId(), instrument.getFigi());
+                        update(infos, id, subscribe);
+                        ack.addInfoSubscriptions(InfoSubscription.newBuilder()
+                                .setFigi(instrument.getFigi())
+                                .setInstrumentUid(id)
+                                .setSubscriptionStatus(SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS));
+                    }
+                    send(MarketDataResponse.newBuilder().setSubscribeInfoResponse(ack).build());
+                }
+                case SUBSCRIBE_CANDLES_REQUEST -> {
+                    boolean subscribe = isSubscribe(request.getSubscribeCandlesRequest().getSubscriptionAction());
+                    SubscribeCandlesResponse.Builder ack = SubscribeCandlesResponse.newBuilder().setTrackingId(trackingId);
+                    for (CandleInstrument instrument : request.getSubscribeCandlesRequest().getInstrumentsList()) {
+                        String id = id(instrument.getInstrumentId(), instrument.getFigi());
+                        Set<SubscriptionInterval> intervals = candles.computeIfAbsent(id, key -> ConcurrentHashMap.newKeySet());
+                        if (subscribe) {
+                            intervals.add(instrument.getInterval());
+                        } else {
+                            intervals.remove(instrument.getInterval());
+                        }
+                        ack.addCandlesSubscriptions(CandleSubscription.newBuilder()
+                                .setFigi(instrument.getFigi())
+                                .setInstrumentUid(id)
+                                .setInterval(instrument.getInterval())
+                                .setWaitingClose(request.getSubscribeCandlesRequest().getWaitingClose())
+                                .setSubscriptionStatus(SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS));
+                    }
+                    send(MarketDataResponse.newBuilder().setSubscribeCandlesResponse(ack).build());
+                }
+                default -> {
+                    // ping и get_my_subscriptions в replay не нужны
+                }
+            }
+        }
+
+        private boolean deliver(MarketDataResponse response, boolean broadcast, Consumer<MarketDataResponse> onSend) {
+            switch (response.getPayloadCase()) {
+                case TRADE -> {
+                    if (broadcast || matches(trades, response.getTrade().getInstrumentUid(), response.getTrade().getFigi())) {
+                        return send(response, onSend);
+                    }
+                }
+                case ORDERBOOK -> {
+                    if (broadcast || matches(orderBooks, response.getOrderbook().getInstrumentUid(), response.getOrderbook().getFigi())) {
+                        return send(response, onSend);
+                    }
+                }
+                case LAST_PRICE -> {
+                    if (broadcast || matches(lastPrices, response.getLastPrice().getInstrumentUid(), response.getLastPrice().getFigi())) {
+                        return send(response, onSend);
+                    }
+                }
+                case TRADING_STATUS -> {
+                    if (broadcast || matches(infos, response.getTradingStatus().getInstrumentUid(), response.getTradingStatus().getFigi())) {
+                        return send(response, onSend);
+                    }
+                }
+                case CANDLE -> {
+                    return deliverCandle(response, broadcast, onSend);
+                }
+                default -> {
+                    return send(response, onSend);
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Одна синтетическая свеча уходит в каждый интервал на который подписан стрим
+         */
+        private boolean deliverCandle(MarketDataResponse response, boolean broadcast, Consumer<MarketDataResponse> onSend) {
+            Set<SubscriptionInterval> intervals = candles.get(response.getCandle().getInstrumentUid());
+            if (intervals == null) {
+                intervals = candles.get(response.getCandle().getFigi());
+            }
+            if (intervals == null || intervals.isEmpty()) {
+                return broadcast && send(response, onSend);
+            }
+            boolean delivered = false;
+            for (SubscriptionInterval interval : intervals) {
+                MarketDataResponse candle = interval == response.getCandle().getInterval()
+                        ? response
+                        : MarketDataResponse.newBuilder()
+                        .setCandle(response.getCandle().toBuilder().setInterval(interval))
+                        .build();
+                delivered |= send(candle, onSend);
+            }
+            return delivered;
+        }
+
+        private boolean send(MarketDataResponse response) {
+            return send(response, NO_SEND_LISTENER);
+        }
+
+        private synchronized boolean send(MarketDataResponse response, Consumer<MarketDataResponse> onSend) {
+            while (!cancelled && !call.isReady() && !call.isCancelled()) {
+                LockSupport.parkNanos(NOT_READY_PARK_NANOS);
+            }
+            if (cancelled || call.isCancelled()) {
+                return false;
+            }
+            onSend.accept(response);
+            call.onNext(response);
+            return true;
+        }
+
+        private synchronized void complete() {
+            if (!call.isCancelled()) {
+                call.onCompleted();
+            }
+        }
+
+        private static boolean matches(Set<String> subscriptions, String instrumentUid, String figi) {
+            return subscriptions.contains(instrumentUid) || subscriptions.contains(figi);
+        }
+
+        private static void update(Set<String> subscriptions, String id, boolean subscribe) {
+            if (subscribe) {
+                subscriptions.add(id);
+            } else {
+                subscriptions.remove(id);
+            }
+        }
+
+        private static boolean isSubscribe(SubscriptionAction action) {
+            return action != SubscriptionAction.SUBSCRIPTION_ACTION_UNSUBSCRIBE;
+        }
+
+        private static String id(String instrumentId, String figi) {
+            return instrumentId.isEmpty() ? figi : instrumentId;
+        }
+    }
+}
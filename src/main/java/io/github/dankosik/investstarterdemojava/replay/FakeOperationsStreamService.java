@@ -0,0 +1,126 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.OperationsStreamServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.PortfolioResponse;
+import ru.tinkoff.piapi.contract.v1.PortfolioStreamRequest;
+import ru.tinkoff.piapi.contract.v1.PortfolioStreamResponse;
+import ru.tinkoff.piapi.contract.v1.PositionData;
+import ru.tinkoff.piapi.contract.v1.PositionsStreamRequest;
+import ru.tinkoff.piapi.contract.v1.PositionsStreamResponse;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Стримы портфеля и позиций для replay: держит их открытыми чтобы стартер не переподключался,
+ * {@link #publish(PortfolioResponse)} и {@link #publish(PositionData)} отдают события в стримы подписанные на счет.
+ * Отправка уважает flow control gRPC так же как в {@link FakeMarketDataStreamService}
+ */
+public final class FakeOperationsStreamService extends OperationsStreamServiceGrpc.OperationsStreamServiceImplBase {
+
+    private static final long NOT_READY_PARK_NANOS = 20_000;
+
+    private final CopyOnWriteArrayList<Subscriber<PortfolioStreamResponse>> portfolioStreams = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<Subscriber<PositionsStreamResponse>> positionsStreams = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void portfolioStream(PortfolioStreamRequest request, StreamObserver<PortfolioStreamResponse> responseObserver) {
+        subscribe(portfolioStreams, responseObserver, Set.copyOf(request.getAccountsList()));
+    }
+
+    @Override
+    public void positionsStream(PositionsStreamRequest request, StreamObserver<PositionsStreamResponse> responseObserver) {
+        subscribe(positionsStreams, responseObserver, Set.copyOf(request.getAccountsList()));
+    }
+
+    public int portfolioStreamCount() {
+        return portfolioStreams.size();
+    }
+
+    public int positionsStreamCount() {
+        return positionsStreams.size();
+    }
+
+    /**
+     * Отдает портфель во все стримы подписанные на его счет (стрим без счетов получает все)
+     *
+     * @return во сколько стримов портфель был отправлен
+     */
+    public int publish(@NotNull PortfolioResponse portfolio) {
+        PortfolioStreamResponse response = null;
+        int delivered = 0;
+        for (Subscriber<PortfolioStreamResponse> subscriber : portfolioStreams) {
+            if (subscriber.accepts(portfolio.getAccountId())) {
+                if (response == null) {
+                    response = PortfolioStreamResponse.newBuilder().setPortfolio(portfolio).build();
+                }
+                if (subscriber.send(response)) {
+                    delivered++;
+                }
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Отдает изменение позиций во все стримы подписанные на его счет (стрим без счетов получает все)
+     *
+     * @return во сколько стримов изменение было отправлено
+     */
+    public int publish(@NotNull PositionData position) {
+        PositionsStreamResponse response = null;
+        int delivered = 0;
+        for (Subscriber<PositionsStreamResponse> subscriber : positionsStreams) {
+            if (subscriber.accepts(position.getAccountId())) {
+                if (response == null) {
+                    response = PositionsStreamResponse.newBuilder().setPosition(position).build();
+                }
+                if (subscriber.send(response)) {
+                    delivered++;
+                }
+            }
+        }
+        return delivered;
+    }
+
+    private static <T> void subscribe(CopyOnWriteArrayList<Subscriber<T>> streams, StreamObserver<T> responseObserver,
+                                      Set<String> accounts) {
+        Subscriber<T> subscriber = new Subscriber<>((ServerCallStreamObserver<T>) responseObserver, accounts);
+        subscriber.call.setOnCancelHandler(() -> {
+            subscriber.cancelled = true;
+            streams.remove(subscriber);
+        });
+        streams.add(subscriber);
+    }
+
+    private static final class Subscriber<T> {
+
+        private final ServerCallStreamObserver<T> call;
+        private final Set<String> accounts;
+        private volatile boolean cancelled;
+
+        private Subscriber(ServerCallStreamObserver<T> call, Set<String> accounts) {
+            this.call = call;
+            this.accounts = accounts;
+        }
+
+        private boolean accepts(String accountId) {
+            return accounts.isEmpty() || accounts.contains(accountId);
+        }
+
+        private synchronized boolean send(T response) {
+            while (!cancelled && !call.isReady() && !call.isCancelled()) {
+                LockSupport.parkNanos(NOT_READY_PARK_NANOS);
+            }
+            if (cancelled || call.isCancelled()) {
+                return false;
+            }
+            call.onNext(response);
+            return true;
+        }
+    }
+}
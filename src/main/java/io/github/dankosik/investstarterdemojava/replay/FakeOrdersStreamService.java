@@ -0,0 +1,84 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.OrderTrades;
+import ru.tinkoff.piapi.contract.v1.OrdersStreamServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.TradesStreamRequest;
+import ru.tinkoff.piapi.contract.v1.TradesStreamResponse;
+
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Стрим сделок по поручениям для replay: держит его открытым чтобы стартер не переподключался,
+ * {@link #publish} отдает сделки в стримы подписанные на счет поручения.
+ * Отправка уважает flow control gRPC так же как в {@link FakeMarketDataStreamService}
+ */
+public final class FakeOrdersStreamService extends OrdersStreamServiceGrpc.OrdersStreamServiceImplBase {
+
+    private static final long NOT_READY_PARK_NANOS = 20_000;
+
+    private final CopyOnWriteArrayList<Subscriber> tradesStreams = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void tradesStream(TradesStreamRequest request, StreamObserver<TradesStreamResponse> responseObserver) {
+        Subscriber subscriber = new Subscriber((ServerCallStreamObserver<TradesStreamResponse>) responseObserver,
+                Set.copyOf(request.getAccountsList()));
+        subscriber.call.setOnCancelHandler(() -> {
+            subscriber.cancelled = true;
+            tradesStreams.remove(subscriber);
+        });
+        tradesStreams.add(subscriber);
+    }
+
+    public int streamCount() {
+        return tradesStreams.size();
+    }
+
+    /**
+     * Отдает сделки по поручению во все стримы подписанные на его счет (стрим без счетов получает все)
+     *
+     * @return во сколько стримов сделки были отправлены
+     */
+    public int publish(@NotNull OrderTrades orderTrades) {
+        TradesStreamResponse response = null;
+        int delivered = 0;
+        for (Subscriber subscriber : tradesStreams) {
+            if (subscriber.accounts.isEmpty() || subscriber.accounts.contains(orderTrades.getAccountId())) {
+                if (response == null) {
+                    response = TradesStreamResponse.newBuilder().setOrderTrades(orderTrades).build();
+                }
+                if (subscriber.send(response)) {
+                    delivered++;
+                }
+            }
+        }
+        return delivered;
+    }
+
+    private static final class Subscriber {
+
+        private final ServerCallStreamObserver<TradesStreamResponse> call;
+        private final Set<String> accounts;
+        private volatile boolean cancelled;
+
+        private Subscriber(ServerCallStreamObserver<TradesStreamResponse> call, Set<String> accounts) {
+            this.call = call;
+            this.accounts = accounts;
+        }
+
+        private synchronized boolean send(TradesStreamResponse response) {
+            while (!cancelled && !call.isReady() && !call.isCancelled()) {
+                LockSupport.parkNanos(NOT_READY_PARK_NANOS);
+            }
+            if (cancelled || call.isCancelled()) {
+                return false;
+            }
+            call.onNext(response);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+
+import java.time.Duration;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Отдает события из {@link ReplaySource} в {@link FakeMarketDataStreamService} с заданной скоростью.
+ * Момент отправки каждого события в стрим (после ожидания flow control) запоминается в {@link ReplayStats#sendTimes()},
+ * по нему считается задержка хендлеров,
+ * сами события (время свечей, записанного потока) не меняются.
+ * Стартует последним после поднятия контекста, когда стартер уже подписался на стримы
+ */
+public final class MarketDataReplayer implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(MarketDataReplayer.class);
+
+    private final Supplier<ReplaySource> sourceFactory;
+    private final FakeMarketDataStreamService marketData;
+    private final ReplayStats stats;
+    private final double speed;
+    private final long reportIntervalNanos;
+    private final Consumer<MarketDataResponse> onSend;
+    private volatile boolean running;
+    private Thread thread;
+
+    public MarketDataReplayer(@NotNull Supplier<ReplaySource> sourceFactory, @NotNull FakeMarketDataStreamService marketData,
+                              @NotNull ReplayStats stats, double speed, @NotNull Duration reportInterval) {
+        this.sourceFactory = sourceFactory;
+        this.marketData = marketData;
+        this.stats = stats;
+        this.speed = speed;
+        this.reportIntervalNanos = reportInterval.toNanos();
+        this.onSend = response -> stats.sendTimes().sent(response, EpochClock.nanos());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        thread = Thread.ofPlatform().name("market-data-replayer").daemon().start(this::replay);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Ждет пока источник не закончится
+     */
+    public void awaitCompletion(@NotNull Duration timeout) throws InterruptedException {
+        if (thread != null) {
+            thread.join(timeout);
+        }
+    }
+
+    private void replay() {
+        long wallStart = System.nanoTime();
+        long firstEventTime = Long.MIN_VALUE;
+        long lastReport = wallStart;
+        long emittedAtLastReport = 0;
+        try (ReplaySource source = sourceFactory.get()) {
+            MarketDataResponse response;
+            while (running && (response = source.next()) != null) {
+                if (speed > 0) {
+                    long eventTime = ReplaySource.eventTimeNanos(response);
+                    if (firstEventTime == Long.MIN_VALUE) {
+                        firstEventTime = eventTime;
+                    }
+                    long due = wallStart + (long) ((eventTime - firstEventTime) / speed);
+                    long wait = due - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                }
+                stats.emitted(marketData.publish(response, onSend) > 0);
+
+                long now = System.nanoTime();
+                if (now - lastReport >= reportIntervalNanos) {
+                    long emitted = stats.emittedCount();
+                    report((emitted - emittedAtLastReport) * 1e9 / (now - lastReport), stats.takeIntervalLag().toString());
+                    lastReport = now;
+                    emittedAtLastReport = emitted;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("replay остановлен из-за ошибки", e);
+        } finally {
+            double seconds = (System.nanoTime() - wallStart) / 1e9;
+            report(stats.emittedCount() / Math.max(seconds, 1e-9), stats.lag().snapshot().toString());
+            log.info("replay завершен за {}s", "%.1f".formatted(seconds));
+            running = false;
+        }
+    }
+
+    private void report(double eventsPerSecond, String lag) {
+        log.info("replay: {} events/s, emitted={}, delivered={}, handled={}, without send time={}, handler lag: {}",
+                "%.0f".formatted(eventsPerSecond), stats.emittedCount(), stats.deliveredCount(), stats.handledCount(),
+                stats.unmatchedCount(), lag);
+    }
+}
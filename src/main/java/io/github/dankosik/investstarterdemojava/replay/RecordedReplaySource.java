@@ -0,0 +1,72 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Чтение записанного стрима: файл это последовательность MarketDataResponse в формате writeDelimitedTo
+ */
+public final class RecordedReplaySource implements ReplaySource {
+
+    private final InputStream in;
+    private final long limit;
+    private long produced;
+
+    public RecordedReplaySource(@NotNull Path file, long limit) {
+        try {
+            this.in = new BufferedInputStream(Files.newInputStream(file), 1 << 16);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.limit = limit;
+    }
+
+    /**
+     * Записывает события в формате который читает этот источник
+     */
+    public static void write(@NotNull Path file, @NotNull Iterable<MarketDataResponse> responses) {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16)) {
+            for (MarketDataResponse response : responses) {
+                response.writeDelimitedTo(out);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Nullable
+    @Override
+    public MarketDataResponse next() {
+        if (limit > 0 && produced >= limit) {
+            return null;
+        }
+        try {
+            MarketDataResponse response = MarketDataResponse.parseDelimitedFrom(in);
+            if (response != null) {
+                produced++;
+            }
+            return response;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+/**
+ * Replay режим: demo.replay.enabled=true (или профиль replay)
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "demo.replay", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ReplayProperties.class)
+class ReplayConfiguration {
+
+    @Bean
+    static ReplayInvestApiPostProcessor replayInvestApiPostProcessor(ObjectProvider<FakeInvestApi> fakeInvestApi) {
+        return new ReplayInvestApiPostProcessor(fakeInvestApi);
+    }
+
+    @Bean(destroyMethod = "close")
+    public FakeInvestApi fakeInvestApi(ReplayProperties properties) {
+        return new FakeInvestApi(properties.tickers(), properties.instruments(), properties.broadcast(), properties.instrumentsLatency());
+    }
+
+    @Bean
+    public ReplayStats replayStats() {
+        return new ReplayStats();
+    }
+
+    @Bean
+    TimeToFirstEvent timeToFirstEvent(ReplayStats replayStats, ConfigurableApplicationContext context, ReplayProperties properties) {
+        return new TimeToFirstEvent(replayStats, context, properties.exitAfterFirstEvent());
+    }
+
+    @Bean
+    public MarketDataReplayer marketDataReplayer(ReplayProperties properties, FakeInvestApi fakeInvestApi, ReplayStats replayStats) {
+        return new MarketDataReplayer(
+                () -> switch (properties.source()) {
+                    case SYNTHETIC -> new SyntheticReplaySource(properties.seed(), Math.max(properties.instruments(), properties.tickers().size()),
+                            properties.orderBookDepth(), properties.eventsPerSecond(), properties.events(), EpochClock.nanos());
+                    case RECORDED -> new RecordedReplaySource(Path.of(properties.file()), properties.events());
+                },
+                fakeInvestApi.marketData(),
+                replayStats,
+                properties.speed(),
+                properties.reportInterval()
+        );
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import ru.tinkoff.piapi.core.InvestApi;
+
+/**
+ * Подменяет каждый InvestApi созданный стартером на InvestApi поверх канала к {@link FakeInvestApi}.
+ * Все сервисы и стримы стартера создаются из InvestApi, поэтому хендлеры получают события replay без изменений.
+ * Выполняется раньше остальных пост-процессоров InvestApi, чтобы они оборачивали уже подмененный канал
+ */
+class ReplayInvestApiPostProcessor implements BeanPostProcessor, Ordered {
+
+    private final ObjectProvider<FakeInvestApi> fakeInvestApi;
+
+    ReplayInvestApiPostProcessor(ObjectProvider<FakeInvestApi> fakeInvestApi) {
+        this.fakeInvestApi = fakeInvestApi;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(@NotNull Object bean, @NotNull String beanName) {
+        if (!(bean instanceof InvestApi original)) {
+            return bean;
+        }
+        original.destroy(0);
+        var channel = fakeInvestApi.getObject().newChannel();
+        if (original.isSandboxMode()) {
+            return InvestApi.createSandbox(channel);
+        }
+        if (original.isReadonlyMode()) {
+            return InvestApi.createReadonly(channel);
+        }
+        return InvestApi.create(channel);
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllCandles;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllLastPrices;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllOrderBooks;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllTrades;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllTradingStatuses;
+import io.github.dankosik.starter.invest.contract.marketdata.candle.AsyncCandleHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.lastprice.AsyncLastPriceHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.AsyncOrderBookHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.status.AsyncTradingStatusHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.contract.v1.TradingStatus;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Хендлеры-зонды для replay: регистрируются только при demo.replay.enabled=true,
+ * выполняются параллельно с остальными хендлерами и замеряют задержку от отправки события до хендлера по {@link ReplayStats#sendTimes()}
+ */
+
+@HandleAllTrades
+@ConditionalOnProperty(prefix = "demo.replay", name = "enabled", havingValue = "true")
+class ReplayTradeLagProbe implements AsyncTradeHandler {
+
+    private final ReplayStats stats;
+
+    ReplayTradeLagProbe(ReplayStats stats) {
+        this.stats = stats;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
+        stats.handled(trade);
+        return CompletableFuture.completedFuture(null);
+    }
+}
+
+@HandleAllOrderBooks
+@ConditionalOnProperty(prefix = "demo.replay", name = "enabled", havingValue = "true")
+class ReplayOrderBookLagProbe implements AsyncOrderBookHandler {
+
+    private final ReplayStats stats;
+
+    ReplayOrderBookLagProbe(ReplayStats stats) {
+        this.stats = stats;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull OrderBook orderBook) {
+        stats.handled(orderBook);
+        return CompletableFuture.completedFuture(null);
+    }
+}
+
+@HandleAllLastPrices
+@ConditionalOnProperty(prefix = "demo.replay", name = "enabled", havingValue = "true")
+class ReplayLastPriceLagProbe implements AsyncLastPriceHandler {
+
+    private final ReplayStats stats;
+
+    ReplayLastPriceLagProbe(ReplayStats stats) {
+        this.stats = stats;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull LastPrice lastPrice) {
+        stats.handled(lastPrice);
+        return CompletableFuture.completedFuture(null);
+    }
+}
+
+@HandleAllCandles(subscriptionInterval = SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+@ConditionalOnProperty(prefix = "demo.replay", name = "enabled", havingValue = "true")
+class ReplayCandleLagProbe implements AsyncCandleHandler {
+
+    private final ReplayStats stats;
+
+    ReplayCandleLagProbe(ReplayStats stats) {
+        this.stats = stats;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Candle candle) {
+        stats.handled(candle);
+        return CompletableFuture.completedFuture(null);
+    }
+}
+
+@HandleAllTradingStatuses
+@ConditionalOnProperty(prefix = "demo.replay", name = "enabled", havingValue = "true")
+class ReplayTradingStatusLagProbe implements AsyncTradingStatusHandler {
+
+    private final ReplayStats stats;
+
+    ReplayTradingStatusLagProbe(ReplayStats stats) {
+        this.stats = stats;
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull TradingStatus tradingStatus) {
+        stats.handled(tradingStatus);
+        return CompletableFuture.completedFuture(null);
+    }
+}
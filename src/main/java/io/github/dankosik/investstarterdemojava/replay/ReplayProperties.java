@@ -0,0 +1,55 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Настройки replay режима: вместо Invest API приложение подключается к gRPC серверу внутри процесса
+ *
+ * @param enabled         включает replay, реальный токен при этом не нужен
+ * @param source          откуда брать события
+ * @param file            файл записи для {@link Source#RECORDED}
+ * @param speed           0 - так быстро как получится, 1 - в реальном времени, N - в N раз быстрее
+ * @param tickers         тикеры которые знает встроенный InstrumentsService, им соответствуют первые синтетические инструменты
+ * @param instruments     размер синтетической вселенной инструментов
+ * @param instrumentsLatency задержка ответа встроенного InstrumentsService на каждый запрос, как у выгрузки списков инструментов из API
+ * @param eventsPerSecond плотность синтетических событий по времени биржи (учитывается вместе со speed)
+ * @param events          сколько событий отдать, 0 - бесконечно (для записи - до конца файла)
+ * @param orderBookDepth  глубина синтетических стаканов
+ * @param seed            seed синтетического генератора
+ * @param broadcast       отдавать все события во все стримы, даже без подписки на инструмент (эмуляция всего рынка)
+ * @param reportInterval  как часто писать в лог события/сек и задержку хендлеров
+ * @param exitAfterFirstEvent завершить приложение когда первое событие дойдет до хендлера (замер time-to-first-event)
+ */
+@ConfigurationProperties(prefix = "demo.replay")
+public record ReplayProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("SYNTHETIC") Source source,
+        String file,
+        @DefaultValue("0") double speed,
+        @DefaultValue({"SiH4", "CRH4", "BRG4", "SBER", "LKOH"}) List<String> tickers,
+        @DefaultValue("100") int instruments,
+        @DefaultValue("0ms") Duration instrumentsLatency,
+        @DefaultValue("10000") long eventsPerSecond,
+        @DefaultValue("0") long events,
+        @DefaultValue("20") int orderBookDepth,
+        @DefaultValue("42") long seed,
+        @DefaultValue("false") boolean broadcast,
+        @DefaultValue("5s") Duration reportInterval,
+        @DefaultValue("false") boolean exitAfterFirstEvent
+) {
+
+    public enum Source {
+        /**
+         * события из {@link io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData}
+         */
+        SYNTHETIC,
+        /**
+         * события из файла записанного {@link RecordedReplaySource#write}
+         */
+        RECORDED
+    }
+}
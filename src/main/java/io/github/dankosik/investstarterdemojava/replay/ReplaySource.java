@@ -0,0 +1,36 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+
+/**
+ * Источник событий для {@link MarketDataReplayer}. События должны идти в порядке времени биржи
+ */
+public interface ReplaySource extends AutoCloseable {
+
+    /**
+     * @return следующее событие или null если события закончились
+     */
+    @Nullable
+    MarketDataResponse next();
+
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Время биржи из события, 0 если у события нет времени
+     */
+    static long eventTimeNanos(@NotNull MarketDataResponse response) {
+        return switch (response.getPayloadCase()) {
+            case TRADE -> Prices.toEpochNanos(response.getTrade().getTime());
+            case ORDERBOOK -> Prices.toEpochNanos(response.getOrderbook().getTime());
+            case CANDLE -> Prices.toEpochNanos(response.getCandle().getTime());
+            case LAST_PRICE -> Prices.toEpochNanos(response.getLastPrice().getTime());
+            case TRADING_STATUS -> Prices.toEpochNanos(response.getTradingStatus().getTime());
+            default -> 0;
+        };
+    }
+}
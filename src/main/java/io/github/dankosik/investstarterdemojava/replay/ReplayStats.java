@@ -0,0 +1,101 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import com.google.protobuf.Message;
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import io.github.dankosik.investstarterdemojava.stats.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongConsumer;
+
+/**
+ * Счетчики replay: сколько событий отдано в стримы и через сколько они дошли до хендлеров.
+ * Replay запоминает момент отправки каждого события в {@link #sendTimes()}, задержка = now - момент отправки
+ */
+public final class ReplayStats {
+
+    private final LongAdder emitted = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder handled = new LongAdder();
+    private final LongAdder unmatched = new LongAdder();
+    private final SendTimes sendTimes = new SendTimes();
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final LatencyHistogram intervalLag = new LatencyHistogram();
+    private final AtomicBoolean firstHandled = new AtomicBoolean();
+    private volatile LongConsumer firstHandledListener = epochNanos -> {};
+
+    void emitted(boolean wasDelivered) {
+        emitted.increment();
+        if (wasDelivered) {
+            delivered.increment();
+        }
+    }
+
+    /**
+     * Вызывается хендлером когда он получил событие (trade, стакан, свечу, ...)
+     */
+    public void handled(@NotNull Message payload) {
+        handled(sendTimes.sentAt(payload));
+    }
+
+    /**
+     * Вызывается хендлером когда он получил событие с временем отправки sentEpochNanos,
+     * {@link SendTimes#UNKNOWN} - задержка не считается
+     */
+    public void handled(long sentEpochNanos) {
+        long now = EpochClock.nanos();
+        if (!firstHandled.getPlain() && firstHandled.compareAndSet(false, true)) {
+            firstHandledListener.accept(now);
+        }
+        handled.increment();
+        if (sentEpochNanos == SendTimes.UNKNOWN) {
+            unmatched.increment();
+            return;
+        }
+        long lagNanos = now - sentEpochNanos;
+        lag.record(lagNanos);
+        intervalLag.record(lagNanos);
+    }
+
+    /**
+     * Вызывается один раз, когда первое событие дошло до хендлера, с временем от эпохи в наносекундах
+     */
+    void onFirstHandled(LongConsumer listener) {
+        this.firstHandledListener = listener;
+    }
+
+    public long emittedCount() {
+        return emitted.sum();
+    }
+
+    public long deliveredCount() {
+        return delivered.sum();
+    }
+
+    public long handledCount() {
+        return handled.sum();
+    }
+
+    /**
+     * Событий, время отправки которых уже вытеснено из {@link SendTimes} - их задержка не попала в {@link #lag()}
+     */
+    public long unmatchedCount() {
+        return unmatched.sum();
+    }
+
+    @NotNull
+    public SendTimes sendTimes() {
+        return sendTimes;
+    }
+
+    public LatencyHistogram lag() {
+        return lag;
+    }
+
+    LatencyHistogram.Snapshot takeIntervalLag() {
+        LatencyHistogram.Snapshot snapshot = intervalLag.snapshot();
+        intervalLag.reset();
+        return snapshot;
+    }
+}
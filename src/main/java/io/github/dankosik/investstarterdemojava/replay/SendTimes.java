@@ -0,0 +1,89 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import com.google.protobuf.Message;
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Моменты отправки событий replay, чтобы не переписывать поле time самих событий: у свечи это начало интервала,
+ * а в записанном потоке - исходное время биржи.
+ * Ключ - сам объект события: in-process канал отдает хендлеру тот же экземпляр, что ушел из
+ * {@link FakeMarketDataStreamService}, поэтому одинаковые по содержимому события не путаются между собой.
+ * Таблица фиксированного размера, событие ищется в {@link #WAYS} ячейках подряд начиная с его identityHashCode,
+ * при нехватке места затирается самая старая запись: для события, которое шло до хендлера дольше чем replay
+ * заполняет таблицу, время отправки уже не найдется. Таблица держит ссылки на последние {@link #SLOTS} событий.
+ * Пишет только поток replay, читают хендлеры
+ */
+public final class SendTimes {
+
+    /**
+     * Время отправки неизвестно
+     */
+    public static final long UNKNOWN = 0;
+
+    private static final int SLOT_BITS = 14;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int WAYS = 8;
+
+    private final AtomicReferenceArray<Message> payloads = new AtomicReferenceArray<>(SLOTS);
+    private final AtomicLongArray times = new AtomicLongArray(SLOTS);
+
+    void sent(@NotNull MarketDataResponse response, long epochNanos) {
+        Message payload = payload(response);
+        if (payload == null) {
+            return;
+        }
+        int first = first(payload);
+        int slot = first;
+        for (int i = 0; i < WAYS; i++) {
+            int candidate = (first + i) & (SLOTS - 1);
+            Message current = payloads.get(candidate);
+            if (current == null || current == payload) {
+                slot = candidate;
+                break;
+            }
+            if (times.get(candidate) < times.get(slot)) {
+                slot = candidate;
+            }
+        }
+        // сначала убираем ключ, чтобы читатель не принял новое время за время старого события
+        payloads.set(slot, null);
+        times.set(slot, epochNanos);
+        payloads.set(slot, payload);
+    }
+
+    /**
+     * @return момент отправки события от эпохи в наносекундах или {@link #UNKNOWN}
+     */
+    public long sentAt(@NotNull Message payload) {
+        int first = first(payload);
+        for (int i = 0; i < WAYS; i++) {
+            int slot = (first + i) & (SLOTS - 1);
+            if (payloads.get(slot) == payload) {
+                long sent = times.get(slot);
+                if (payloads.get(slot) == payload) {
+                    return sent;
+                }
+            }
+        }
+        return UNKNOWN;
+    }
+
+    private static int first(Message payload) {
+        return (System.identityHashCode(payload) * 0x9E3779B9) >>> (Integer.SIZE - SLOT_BITS);
+    }
+
+    private static Message payload(MarketDataResponse response) {
+        return switch (response.getPayloadCase()) {
+            case TRADE -> response.getTrade();
+            case ORDERBOOK -> response.getOrderbook();
+            case CANDLE -> response.getCandle();
+            case LAST_PRICE -> response.getLastPrice();
+            case TRADING_STATUS -> response.getTradingStatus();
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+
+import java.util.SplittableRandom;
+
+/**
+ * Бесконечный (или ограниченный по количеству) поток синтетических событий всех типов.
+ * Доли: 40% трейды, 30% стаканы, 20% последние цены, 8% свечи, 2% торговые статусы
+ */
+public final class SyntheticReplaySource implements ReplaySource {
+
+    private final SyntheticMarketData data;
+    private final SplittableRandom mix;
+    private final int orderBookDepth;
+    private final long stepNanos;
+    private final long limit;
+    private long time;
+    private long produced;
+
+    public SyntheticReplaySource(long seed, int instruments, int orderBookDepth, long eventsPerSecond,
+                                 long limit, long startEpochNanos) {
+        this.data = new SyntheticMarketData(seed, instruments);
+        this.mix = new SplittableRandom(seed ^ 0x5DEECE66DL);
+        this.orderBookDepth = orderBookDepth;
+        this.stepNanos = Math.max(1, 1_000_000_000L / Math.max(1, eventsPerSecond));
+        this.limit = limit;
+        this.time = startEpochNanos;
+    }
+
+    @Nullable
+    @Override
+    public MarketDataResponse next() {
+        if (limit > 0 && produced >= limit) {
+            return null;
+        }
+        produced++;
+        time += stepNanos;
+        int instrument = data.nextInstrument();
+        int roll = mix.nextInt(100);
+        MarketDataResponse.Builder response = MarketDataResponse.newBuilder();
+        if (roll < 40) {
+            response.setTrade(data.trade(instrument, time));
+        } else if (roll < 70) {
+            response.setOrderbook(data.orderBook(instrument, orderBookDepth, time));
+        } else if (roll < 90) {
+            response.setLastPrice(data.lastPrice(instrument, time));
+        } else if (roll < 98) {
+            response.setCandle(data.candle(instrument, SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE, time));
+        } else {
+            response.setTradingStatus(data.tradingStatus(instrument, time));
+        }
+        return response.build();
+    }
+}
@@ -0,0 +1,49 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+
+/**
+ * Время от старта процесса до первого события replay, дошедшего до хендлера: запуск JVM (или native бинарника),
+ * поднятие контекста, регистрация хендлеров, поиск инструментов и подписка на стримы.
+ * Пишет в лог строку {@link #LOG_PREFIX}N ms, по ней TimeToFirstEventBenchmark сравнивает JVM, AppCDS, AOT и native сборки.
+ * При demo.replay.exitAfterFirstEvent=true завершает приложение сразу после первого события
+ */
+final class TimeToFirstEvent {
+
+    static final String LOG_PREFIX = "time-to-first-event: ";
+
+    private static final Logger log = LoggerFactory.getLogger(TimeToFirstEvent.class);
+
+    private final ConfigurableApplicationContext context;
+    private final boolean exit;
+
+    TimeToFirstEvent(ReplayStats stats, ConfigurableApplicationContext context, boolean exit) {
+        this.context = context;
+        this.exit = exit;
+        stats.onFirstHandled(this::firstHandled);
+    }
+
+    private void firstHandled(long epochNanos) {
+        long processStart = processStartMillis();
+        log.info("{}{} ms (refresh контекста начат через {} ms)", LOG_PREFIX, epochNanos / 1_000_000 - processStart,
+                context.getStartupDate() - processStart);
+        if (exit) {
+            Thread.ofPlatform().name("replay-exit").start(() -> System.exit(SpringApplication.exit(context)));
+        }
+    }
+
+    /**
+     * Старт процесса по данным ОС, в него входит запуск JVM до main. Если ОС не отдает время - старт JVM
+     */
+    static long processStartMillis() {
+        return ProcessHandle.current().info().startInstant()
+                .map(Instant::toEpochMilli)
+                .orElseGet(() -> ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+}
@@ -0,0 +1,97 @@
+package io.github.dankosik.investstarterdemojava.sharding;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Состав узлов в общем файле на одной машине или общем диске: строки "nodeId epochMillis".
+ * Каждый heartbeat берет эксклюзивную блокировку файла, обновляет свою строку, выкидывает просроченные и переписывает файл
+ */
+public final class FileMembership implements Membership {
+
+    private final Path file;
+    private final long ttlMillis;
+
+    public FileMembership(@NotNull Path file, @NotNull Duration ttl) {
+        this.file = file;
+        this.ttlMillis = ttl.toMillis();
+    }
+
+    @NotNull
+    @Override
+    public Set<String> heartbeat(@NotNull String nodeId) {
+        return update(nodeId, true);
+    }
+
+    @Override
+    public void leave(@NotNull String nodeId) {
+        update(nodeId, false);
+    }
+
+    private Set<String> update(String nodeId, boolean join) {
+        try {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                Map<String, Long> members = read(channel);
+                long now = System.currentTimeMillis();
+                members.values().removeIf(seen -> now - seen > ttlMillis);
+                if (join) {
+                    members.put(nodeId, now);
+                } else {
+                    members.remove(nodeId);
+                }
+                write(channel, members);
+                return Set.copyOf(members.keySet());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("не удалось обновить " + file, e);
+        }
+    }
+
+    private static Map<String, Long> read(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // читаем до конца
+        }
+        Map<String, Long> members = new LinkedHashMap<>();
+        for (String line : new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).split("\n")) {
+            int space = line.lastIndexOf(' ');
+            if (space > 0) {
+                try {
+                    members.put(line.substring(0, space), Long.parseLong(line.substring(space + 1).trim()));
+                } catch (NumberFormatException e) {
+                    // недописанная строка упавшего узла
+                }
+            }
+        }
+        return members;
+    }
+
+    private static void write(FileChannel channel, Map<String, Long> members) throws IOException {
+        StringBuilder text = new StringBuilder();
+        members.forEach((node, seen) -> text.append(node).append(' ').append(seen).append('\n'));
+        ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+        channel.truncate(0);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, buffer.position());
+        }
+        channel.force(false);
+    }
+}
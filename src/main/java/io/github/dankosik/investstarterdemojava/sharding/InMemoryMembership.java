@@ -0,0 +1,35 @@
+package io.github.dankosik.investstarterdemojava.sharding;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Состав узлов в памяти одной JVM: для тестов и нескольких узлов в одном процессе
+ */
+public final class InMemoryMembership implements Membership {
+
+    private final ConcurrentHashMap<String, Long> lastSeen = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+
+    public InMemoryMembership(@NotNull Duration ttl) {
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    @NotNull
+    @Override
+    public Set<String> heartbeat(@NotNull String nodeId) {
+        long now = System.nanoTime();
+        lastSeen.put(nodeId, now);
+        lastSeen.values().removeIf(seen -> now - seen > ttlNanos);
+        return lastSeen.keySet().stream().collect(Collectors.toUnmodifiableSet());
+    }
+
+    @Override
+    public void leave(@NotNull String nodeId) {
+        lastSeen.remove(nodeId);
+    }
+}
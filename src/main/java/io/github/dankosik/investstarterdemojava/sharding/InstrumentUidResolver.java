@@ -0,0 +1,79 @@
+package io.github.dankosik.investstarterdemojava.sharding;
+
+import io.grpc.Channel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.InstrumentIdType;
+import ru.tinkoff.piapi.contract.v1.InstrumentRequest;
+import ru.tinkoff.piapi.contract.v1.InstrumentsServiceGrpc;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+import java.util.regex.Pattern;
+
+/**
+ * Приводит идентификатор из подписки (figi или instrumentUid) к instrumentUid, чтобы подписки на один инструмент
+ * по figi и по uid хешировались в одного владельца. figi ищется через GetInstrumentBy, ответы запоминаются.
+ * Если канал еще не подключен или инструмент не найден, остается исходный идентификатор
+ */
+final class InstrumentUidResolver implements UnaryOperator<String> {
+
+    private static final Logger log = LoggerFactory.getLogger(InstrumentUidResolver.class);
+    private static final Pattern UID = Pattern.compile("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
+
+    private final long timeoutMillis;
+    private final ConcurrentHashMap<String, String> uids = new ConcurrentHashMap<>();
+    private volatile Channel channel;
+
+    InstrumentUidResolver(@NotNull Duration timeout) {
+        this.timeoutMillis = timeout.toMillis();
+    }
+
+    /**
+     * Канал для GetInstrumentBy, используется первый подключенный
+     */
+    void attach(@NotNull Channel channel) {
+        if (this.channel == null) {
+            this.channel = channel;
+        }
+    }
+
+    @Override
+    public String apply(String id) {
+        if (id.isEmpty() || UID.matcher(id).matches()) {
+            return id;
+        }
+        String uid = uids.get(id);
+        if (uid != null) {
+            return uid;
+        }
+        Channel lookup = channel;
+        if (lookup == null) {
+            return id;
+        }
+        try {
+            uid = InstrumentsServiceGrpc.newBlockingStub(lookup)
+                    .withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS)
+                    .getInstrumentBy(InstrumentRequest.newBuilder().setIdType(InstrumentIdType.INSTRUMENT_ID_TYPE_FIGI).setId(id).build())
+                    .getInstrument()
+                    .getUid();
+        } catch (StatusRuntimeException e) {
+            log.warn("sharding: instrumentUid для {} не получен ({}), владелец считается по исходному идентификатору", id, e.getStatus());
+            if (e.getStatus().getCode() != Status.Code.NOT_FOUND) {
+                // временная ошибка: в следующий раз спросим снова
+                return id;
+            }
+            uid = "";
+        }
+        if (uid.isEmpty()) {
+            uid = id;
+        }
+        uids.put(id, uid);
+        return uid;
+    }
+}
@@ -0,0 +1,24 @@
+package io.github.dankosik.investstarterdemojava.sharding;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Set;
+
+/**
+ * Состав узлов шардирования. Узел периодически вызывает {@link #heartbeat}, узел без heartbeat дольше ttl считается ушедшим
+ */
+public interface Membership {
+
+    /**
+     * Продлевает участие узла
+     *
+     * @return живые узлы, включая этот
+     */
+    @NotNull
+    Set<String> heartbeat(@NotNull String nodeId);
+
+    /**
+     * Убирает узел сразу, не дожидаясь ttl
+     */
+    void leave(@NotNull String nodeId);
+}
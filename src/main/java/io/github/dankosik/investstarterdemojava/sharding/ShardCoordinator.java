@@ -0,0 +1,127 @@
+package io.github.dankosik.investstarterdemojava.sharding;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Решает какой узел владеет инструментом. Раз в heartbeatInterval продлевает участие узла в {@link Membership};
+ * если состав узлов изменился, строит новое {@link ConsistentHashRing} и вызывает слушателей, которые переподписывают
+ * инструменты. Все узлы строят кольцо из одного и того же состава, поэтому после схождения у каждого инструмента
+ * ровно один владелец
+ */
+public final class ShardCoordinator implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardCoordinator.class);
+
+    private final String nodeId;
+    private final Membership membership;
+    private final int virtualNodes;
+    private final Duration heartbeatInterval;
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+    private final LongAdder rebalances = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final Object lock = new Object();
+    private ScheduledExecutorService timer;
+    private volatile ConsistentHashRing ring;
+
+    public ShardCoordinator(@NotNull String nodeId, @NotNull Membership membership, int virtualNodes,
+                            @NotNull Duration heartbeatInterval) {
+        this.nodeId = nodeId;
+        this.membership = membership;
+        this.virtualNodes = virtualNodes;
+        this.heartbeatInterval = heartbeatInterval;
+        this.ring = new ConsistentHashRing(Set.of(nodeId), virtualNodes);
+    }
+
+    /**
+     * Регистрирует узел сразу, чтобы подписки стартера на старте уже шли по общему кольцу, и запускает heartbeat
+     */
+    public ShardCoordinator start() {
+        refresh();
+        timer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("shard-heartbeat").daemon().factory());
+        long interval = heartbeatInterval.toMillis();
+        timer.scheduleAtFixedRate(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+        return this;
+    }
+
+    /**
+     * Heartbeat и перестроение кольца, если состав узлов изменился. Кольцо меняется под блокировкой, слушатели
+     * вызываются после нее и читают уже текущее кольцо
+     */
+    public void refresh() {
+        synchronized (lock) {
+            Set<String> members;
+            try {
+                members = membership.heartbeat(nodeId);
+            } catch (RuntimeException e) {
+                // без связи с membership держим прежнее кольцо: лучше дубли на время сбоя, чем потеря инструментов
+                failures.increment();
+                log.warn("heartbeat узла {} не удался, остается прежний состав {}", nodeId, ring.nodes(), e);
+                return;
+            }
+            if (members.size() == ring.nodes().size() && members.containsAll(ring.nodes())) {
+                return;
+            }
+            log.info("состав узлов шардирования: {} -> {}", ring.nodes(), members);
+            ring = new ConsistentHashRing(members, virtualNodes);
+            rebalances.increment();
+        }
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                log.error("ошибка перераспределения инструментов", e);
+            }
+        }
+    }
+
+    public boolean owns(@NotNull String instrumentId) {
+        return nodeId.equals(ring.owner(instrumentId));
+    }
+
+    public String nodeId() {
+        return nodeId;
+    }
+
+    public List<String> members() {
+        return ring.nodes();
+    }
+
+    /**
+     * Слушатель вызывается в потоке heartbeat после смены кольца, вне блокировки координатора. При параллельных refresh
+     * уведомления могут прийти не по порядку, поэтому слушатель читает текущее кольцо через {@link #owns}
+     */
+    public void addListener(@NotNull Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public long rebalanceCount() {
+        return rebalances.sum();
+    }
+
+    public long failureCount() {
+        return failures.sum();
+    }
+
+    @Override
+    public void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        try {
+            membership.leave(nodeId);
+        } catch (RuntimeException e) {
+            log.warn("узел {} не смог выйти из состава, его инструменты переедут через ttl", nodeId, e);
+        }
+    }
+}
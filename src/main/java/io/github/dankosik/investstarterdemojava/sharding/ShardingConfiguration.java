@@ -0,0 +1,80 @@
+package io.github.dankosik.investstarterdemojava.sharding;
+
+import io.github.dankosik.investstarterdemojava.instruments.InstrumentCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+
+/**
+ * Шардирование инструментов между экземплярами приложения: demo.sharding.enabled=true
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "demo.sharding", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+class ShardingConfiguration {
+
+    @Bean
+    static ShardingPostProcessor shardingPostProcessor(ObjectProvider<ShardingInterceptor> shardingInterceptor,
+                                                      ObjectProvider<InstrumentUidResolver> instrumentUidResolver,
+                                                      ObjectProvider<InstrumentCache> instrumentCache) {
+        return new ShardingPostProcessor(shardingInterceptor, instrumentUidResolver, instrumentCache);
+    }
+
+    @Bean
+    public Membership membership(ShardingProperties properties) {
+        return switch (properties.membership()) {
+            case FILE -> new FileMembership(properties.membershipFile(), properties.ttl());
+            case MEMORY -> new InMemoryMembership(properties.ttl());
+        };
+    }
+
+    @Bean(destroyMethod = "close")
+    public ShardCoordinator shardCoordinator(Membership membership, ShardingProperties properties) {
+        String nodeId = properties.nodeId().isBlank() ? defaultNodeId() : properties.nodeId();
+        return new ShardCoordinator(nodeId, membership, properties.virtualNodes(), properties.heartbeatInterval()).start();
+    }
+
+    @Bean
+    InstrumentUidResolver instrumentUidResolver() {
+        return new InstrumentUidResolver(Duration.ofSeconds(30));
+    }
+
+    @Bean
+    public ShardingInterceptor shardingInterceptor(ShardCoordinator shardCoordinator, InstrumentUidResolver instrumentUidResolver) {
+        return new ShardingInterceptor(shardCoordinator, instrumentUidResolver);
+    }
+
+    /**
+     * Участники, перебалансировки и распределение инструментов, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder shardingMetrics(ShardCoordinator coordinator, ShardingInterceptor interceptor) {
+        return registry -> {
+            Gauge.builder("demo.sharding.members", coordinator, c -> c.members().size()).register(registry);
+            FunctionCounter.builder("demo.sharding.rebalances", coordinator, ShardCoordinator::rebalanceCount).register(registry);
+            FunctionCounter.builder("demo.sharding.heartbeat.failures", coordinator, ShardCoordinator::failureCount).register(registry);
+            Gauge.builder("demo.sharding.instruments.owned", interceptor, ShardingInterceptor::ownedCount).register(registry);
+            Gauge.builder("demo.sharding.instruments.requested", interceptor, ShardingInterceptor::requestedCount).register(registry);
+            FunctionCounter.builder("demo.sharding.dropped", interceptor, ShardingInterceptor::droppedCount).register(registry);
+        };
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "localhost";
+        }
+        return host + "-" + ProcessHandle.current().pid();
+    }
+}
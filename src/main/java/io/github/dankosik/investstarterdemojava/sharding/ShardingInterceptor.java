@@ -0,0 +1,336 @@
+package io.github.dankosik.investstarterdemojava.sharding;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.Descriptors.OneofDescriptor;
+import com.google.protobuf.Message;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.piapi.contract.v1.MarketDataRequest;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.MarketDataStreamServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.SubscriptionAction;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Шардирование подписок на рыночные данные на уровне gRPC канала. В каждом MarketDataStream запоминает все инструменты,
+ * на которые подписывается приложение (хендлеры стартера с аннотациями и withTickers, динамические подписки), но отправляет
+ * подписку только на инструменты, которыми владеет этот узел по {@link ShardCoordinator}.
+ * После смены состава узлов каждый открытый стрим досылает subscribe на полученные инструменты и unsubscribe на отданные.
+ * События по отданным инструментам, которые еще в пути, не доходят до хендлеров.
+ * Запросы подписки всех типов разбираются одинаково через protobuf reflection: у всех есть subscription_action и instruments.
+ * Владелец считается по instrumentUid: figi из подписки приводится к uid, чтобы подписки по figi и по uid на один инструмент
+ * всегда попадали к одному узлу
+ */
+public final class ShardingInterceptor implements ClientInterceptor {
+
+    private static final String MARKET_DATA_STREAM = MarketDataStreamServiceGrpc.getMarketDataStreamMethod().getFullMethodName();
+    private static final OneofDescriptor REQUEST_PAYLOAD = MarketDataRequest.getDescriptor().getOneofs().get(0);
+
+    private final ShardCoordinator coordinator;
+    private final UnaryOperator<String> instrumentUid;
+    private final Set<ShardedCall<?, ?>> calls = ConcurrentHashMap.newKeySet();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param instrumentUid приводит figi или instrumentUid из подписки к instrumentUid
+     */
+    public ShardingInterceptor(@NotNull ShardCoordinator coordinator, @NotNull UnaryOperator<String> instrumentUid) {
+        this.coordinator = coordinator;
+        this.instrumentUid = instrumentUid;
+        coordinator.addListener(this::rebalance);
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+        if (!MARKET_DATA_STREAM.equals(method.getFullMethodName())) {
+            return next.newCall(method, callOptions);
+        }
+        return new ShardedCall<>(next.newCall(method, callOptions));
+    }
+
+    /**
+     * Инструментов, на которые подписаны стримы этого узла
+     */
+    public int ownedCount() {
+        int count = 0;
+        for (ShardedCall<?, ?> call : calls) {
+            count += call.forwardedCount();
+        }
+        return count;
+    }
+
+    /**
+     * Инструментов, на которые подписывается приложение, по всем стримам
+     */
+    public int requestedCount() {
+        int count = 0;
+        for (ShardedCall<?, ?> call : calls) {
+            count += call.wantedCount();
+        }
+        return count;
+    }
+
+    /**
+     * Событий по инструментам другого узла, которые пришли после перераспределения и не были отданы хендлерам
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    private void rebalance() {
+        for (ShardedCall<?, ?> call : calls) {
+            call.rebalance();
+        }
+    }
+
+    private String instrumentUid(Message instrument) {
+        return instrumentUid.apply(instrumentId(instrument));
+    }
+
+    private static String instrumentId(Message instrument) {
+        FieldDescriptor instrumentId = instrument.getDescriptorForType().findFieldByName("instrument_id");
+        String id = instrumentId != null ? (String) instrument.getField(instrumentId) : "";
+        if (id.isEmpty()) {
+            FieldDescriptor figi = instrument.getDescriptorForType().findFieldByName("figi");
+            id = figi != null ? (String) instrument.getField(figi) : "";
+        }
+        return id;
+    }
+
+    /**
+     * Инструмент, на который подписалось приложение
+     *
+     * @param payload       поле MarketDataRequest с запросом подписки (трейды, стаканы, ...)
+     * @param template      запрос подписки без инструментов и действия: глубина стакана, waiting_close свечей и т.п.
+     * @param instrumentUid по нему считается владелец и отбрасываются события чужих инструментов
+     */
+    private record Wanted(FieldDescriptor payload, Message template, String instrumentUid) {
+    }
+
+    private record Batch(FieldDescriptor payload, Message template, boolean subscribe) {
+    }
+
+    /**
+     * Разобранный запрос подписки
+     *
+     * @param instrumentUids инструменты запроса и их instrumentUid (для отписки не ищутся)
+     */
+    private record Subscription(Batch batch, Map<Message, String> instrumentUids) {
+    }
+
+    /**
+     * Методы ClientCall не потокобезопасны, а вызываются из потока приложения (подписки), потока ответов (request(1)
+     * за отброшенное событие) и потока координатора (rebalance), поэтому все вызовы делегата идут под монитором вызова
+     */
+    private final class ShardedCall<ReqT, RespT> extends ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT> {
+
+        private final LinkedHashMap<Message, Wanted> wanted = new LinkedHashMap<>();
+        private final Set<Message> forwarded = new HashSet<>();
+        private volatile Set<String> foreignUids = Set.of();
+        private boolean closed;
+
+        ShardedCall(ClientCall<ReqT, RespT> delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public synchronized void start(Listener<RespT> responseListener, Metadata headers) {
+            calls.add(this);
+            super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                @Override
+                public void onMessage(RespT message) {
+                    if (message instanceof MarketDataResponse response && isForeign(response)) {
+                        dropped.increment();
+                        // хендлер сообщение не увидит и не запросит следующее - запрашиваем сами
+                        ShardedCall.this.request(1);
+                        return;
+                    }
+                    super.onMessage(message);
+                }
+
+                @Override
+                public void onClose(Status status, Metadata trailers) {
+                    markClosed();
+                    super.onClose(status, trailers);
+                }
+            }, headers);
+        }
+
+        @Override
+        public void sendMessage(ReqT message) {
+            Subscription subscription = message instanceof MarketDataRequest request ? parse(request) : null;
+            synchronized (this) {
+                if (subscription == null) {
+                    super.sendMessage(message);
+                } else {
+                    subscription(subscription);
+                }
+            }
+        }
+
+        @Override
+        public synchronized void request(int numMessages) {
+            super.request(numMessages);
+        }
+
+        @Override
+        public synchronized void halfClose() {
+            markClosed();
+            super.halfClose();
+        }
+
+        @Override
+        public synchronized void cancel(@Nullable String message, @Nullable Throwable cause) {
+            markClosed();
+            super.cancel(message, cause);
+        }
+
+        synchronized int forwardedCount() {
+            return forwarded.size();
+        }
+
+        synchronized int wantedCount() {
+            return wanted.size();
+        }
+
+        /**
+         * Разбирает запрос подписки и приводит его инструменты к instrumentUid. Вызывается без монитора:
+         * поиск uid может ходить в InstrumentsService
+         *
+         * @return null если это не запрос подписки и его надо отправить как есть
+         */
+        @Nullable
+        private Subscription parse(MarketDataRequest request) {
+            FieldDescriptor payload = request.getOneofFieldDescriptor(REQUEST_PAYLOAD);
+            if (payload == null || payload.getJavaType() != FieldDescriptor.JavaType.MESSAGE) {
+                return null;
+            }
+            Message subscription = (Message) request.getField(payload);
+            FieldDescriptor instruments = subscription.getDescriptorForType().findFieldByName("instruments");
+            FieldDescriptor action = subscription.getDescriptorForType().findFieldByName("subscription_action");
+            if (instruments == null || action == null) {
+                return null;
+            }
+            boolean subscribe = subscription.getField(action) == SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE.getValueDescriptor();
+            Message template = subscription.toBuilder().clearField(instruments).clearField(action).build();
+            Map<Message, String> uids = new LinkedHashMap<>();
+            for (Object item : (List<?>) subscription.getField(instruments)) {
+                Message instrument = (Message) item;
+                uids.put(instrument, subscribe ? instrumentUid(instrument) : "");
+            }
+            return new Subscription(new Batch(payload, template, subscribe), uids);
+        }
+
+        /**
+         * Запоминает инструменты запроса подписки и отправляет только свои
+         */
+        private void subscription(Subscription subscription) {
+            Batch batch = subscription.batch();
+            List<Message> send = new ArrayList<>();
+            for (Map.Entry<Message, String> entry : subscription.instrumentUids().entrySet()) {
+                Message instrument = entry.getKey();
+                if (batch.subscribe()) {
+                    wanted.put(instrument, new Wanted(batch.payload(), batch.template(), entry.getValue()));
+                    if (coordinator.owns(entry.getValue())) {
+                        forwarded.add(instrument);
+                        send.add(instrument);
+                    }
+                } else {
+                    wanted.remove(instrument);
+                    if (forwarded.remove(instrument)) {
+                        send.add(instrument);
+                    }
+                }
+            }
+            if (!send.isEmpty()) {
+                send(batch, send);
+            }
+            updateForeignUids();
+        }
+
+        private synchronized void rebalance() {
+            if (closed) {
+                return;
+            }
+            Map<Batch, List<Message>> batches = new LinkedHashMap<>();
+            for (Map.Entry<Message, Wanted> entry : wanted.entrySet()) {
+                Message instrument = entry.getKey();
+                Wanted want = entry.getValue();
+                boolean own = coordinator.owns(want.instrumentUid());
+                if (own && forwarded.add(instrument)) {
+                    batches.computeIfAbsent(new Batch(want.payload(), want.template(), true), key -> new ArrayList<>()).add(instrument);
+                } else if (!own && forwarded.remove(instrument)) {
+                    batches.computeIfAbsent(new Batch(want.payload(), want.template(), false), key -> new ArrayList<>()).add(instrument);
+                }
+            }
+            updateForeignUids();
+            batches.forEach(this::send);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void send(Batch batch, List<Message> instruments) {
+            Message.Builder subscription = batch.template().toBuilder();
+            FieldDescriptor action = subscription.getDescriptorForType().findFieldByName("subscription_action");
+            FieldDescriptor instrumentsField = subscription.getDescriptorForType().findFieldByName("instruments");
+            subscription.setField(action, (batch.subscribe()
+                    ? SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE
+                    : SubscriptionAction.SUBSCRIPTION_ACTION_UNSUBSCRIBE).getValueDescriptor());
+            for (Message instrument : instruments) {
+                subscription.addRepeatedField(instrumentsField, instrument);
+            }
+            MarketDataRequest request = MarketDataRequest.newBuilder().setField(batch.payload(), subscription.build()).build();
+            super.sendMessage((ReqT) request);
+        }
+
+        /**
+         * instrumentUid инструментов, на которые подписано приложение, но которыми владеет другой узел
+         */
+        private void updateForeignUids() {
+            Set<String> uids = new HashSet<>();
+            for (Map.Entry<Message, Wanted> entry : wanted.entrySet()) {
+                if (!forwarded.contains(entry.getKey())) {
+                    uids.add(entry.getValue().instrumentUid());
+                }
+            }
+            foreignUids = uids.isEmpty() ? Set.of() : uids;
+        }
+
+        private boolean isForeign(MarketDataResponse response) {
+            Set<String> uids = foreignUids;
+            if (uids.isEmpty()) {
+                return false;
+            }
+            return switch (response.getPayloadCase()) {
+                case TRADE -> uids.contains(response.getTrade().getInstrumentUid());
+                case ORDERBOOK -> uids.contains(response.getOrderbook().getInstrumentUid());
+                case CANDLE -> uids.contains(response.getCandle().getInstrumentUid());
+                case LAST_PRICE -> uids.contains(response.getLastPrice().getInstrumentUid());
+                case TRADING_STATUS -> uids.contains(response.getTradingStatus().getInstrumentUid());
+                default -> false;
+            };
+        }
+
+        private synchronized void markClosed() {
+            closed = true;
+            calls.remove(this);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.dankosik.investstarterdemojava.sharding;
+
+import io.github.dankosik.investstarterdemojava.grpc.InterceptedManagedChannel;
+import io.github.dankosik.investstarterdemojava.instruments.InstrumentCache;
+import io.grpc.ManagedChannel;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.core.Ordered;
+import ru.tinkoff.piapi.core.InvestApi;
+
+/**
+ * Пересоздает каждый InvestApi стартера поверх канала с {@link ShardingInterceptor}, до того как стартер откроет стримы.
+ * Выполняется после подмены канала в replay режиме и перед кэшем инструментов
+ */
+class ShardingPostProcessor implements BeanPostProcessor, Ordered {
+
+    private final ObjectProvider<ShardingInterceptor> shardingInterceptor;
+    private final ObjectProvider<InstrumentUidResolver> instrumentUidResolver;
+    private final ObjectProvider<InstrumentCache> instrumentCache;
+
+    ShardingPostProcessor(ObjectProvider<ShardingInterceptor> shardingInterceptor, ObjectProvider<InstrumentUidResolver> instrumentUidResolver,
+                          ObjectProvider<InstrumentCache> instrumentCache) {
+        this.shardingInterceptor = shardingInterceptor;
+        this.instrumentUidResolver = instrumentUidResolver;
+        this.instrumentCache = instrumentCache;
+    }
+
+    @Override
+    public int getOrder() {
+        return Ordered.LOWEST_PRECEDENCE - 1;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(@NotNull Object bean, @NotNull String beanName) {
+        if (!(bean instanceof InvestApi original) || !(original.getChannel() instanceof ManagedChannel channel)) {
+            return bean;
+        }
+        // figi из подписок приводятся к instrumentUid через GetInstrumentBy, ответы которого есть в кэше инструментов
+        InstrumentCache cache = instrumentCache.getIfAvailable();
+        instrumentUidResolver.getObject().attach(cache != null ? cache.attach(channel) : channel);
+        var sharded = new InterceptedManagedChannel(channel, shardingInterceptor.getObject());
+        if (original.isSandboxMode()) {
+            return InvestApi.createSandbox(sharded);
+        }
+        if (original.isReadonlyMode()) {
+            return InvestApi.createReadonly(sharded);
+        }
+        return InvestApi.create(sharded);
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.dankosik.investstarterdemojava.sharding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Настройки шардирования инструментов между экземплярами приложения
+ *
+ * @param enabled           включает шардирование подписок на рыночные данные
+ * @param nodeId            имя узла, по умолчанию hostname-pid
+ * @param membership        FILE - общий файл с блокировкой, MEMORY - только узлы этой JVM
+ * @param membershipFile    файл состава узлов, общий для всех экземпляров
+ * @param heartbeatInterval как часто узел подтверждает участие и проверяет состав
+ * @param ttl               через сколько без heartbeat узел считается ушедшим, его инструменты переезжают
+ * @param virtualNodes      точек узла на кольце consistent hashing, больше - ровнее распределение
+ */
+@ConfigurationProperties(prefix = "demo.sharding")
+public record ShardingProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("") String nodeId,
+        @DefaultValue("FILE") MembershipType membership,
+        @DefaultValue("sharding/members") Path membershipFile,
+        @DefaultValue("1s") Duration heartbeatInterval,
+        @DefaultValue("5s") Duration ttl,
+        @DefaultValue("160") int virtualNodes
+) {
+
+    public enum MembershipType {
+        FILE, MEMORY
+    }
+}
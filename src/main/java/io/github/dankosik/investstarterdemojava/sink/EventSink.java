@@ -0,0 +1,324 @@
+package io.github.dankosik.investstarterdemojava.sink;
+
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.TextFormat;
+import io.github.dankosik.investstarterdemojava.concurrent.MpscRing;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Асинхронный вывод событий из хендлеров.
+ * Хендлер только кладет ссылку на событие в {@link MpscRing} (без лямбд, задач в common pool и toString()),
+ * а форматирование и запись пачками в файл/stdout выполняет один фоновый поток в переиспользуемые буферы.
+ * Событие которое не удалось отформатировать пишется в лог и считается отброшенным. Если не удалась сама запись,
+ * sink останавливается: недописанная пачка, события из буфера и все следующие отбрасываются, BLOCK продюсеры не ждут места.
+ * Каждое принятое событие в итоге попадает ровно в один из счетчиков {@link #flushedCount()} и {@link #droppedCount()}
+ */
+public final class EventSink implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(EventSink.class);
+    private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+    private static final TextFormat.Printer PRINTER = TextFormat.printer();
+    private static final long BLOCK_PARK_NANOS = 1_000;
+
+    private final MpscRing<Entry> ring;
+
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final long idleNanos;
+    private final WritableByteChannel out;
+    private final boolean closeOut;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong writerDropped = new AtomicLong();
+    private final AtomicLong flushed = new AtomicLong();
+
+    private final StringBuilder line = new StringBuilder(1024);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private final ByteBuffer outBuffer = ByteBuffer.allocateDirect(64 * 1024);
+    private char[] chars = new char[1024];
+    private CharBuffer charBuffer = CharBuffer.wrap(chars);
+
+    private final Thread writer;
+    private volatile boolean running = true;
+    private volatile boolean closed;
+    // события вынутые из буфера, но еще не записанные в out: при ошибке записи они отбрасываются
+    private int unflushed;
+
+    public EventSink(int capacity, int batchSize, @NotNull OverflowPolicy overflowPolicy,
+                     @NotNull WritableByteChannel out, boolean closeOut, @NotNull Duration idleInterval) {
+        if (capacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("capacity и batchSize должны быть положительными");
+        }
+        this.ring = new MpscRing<>(capacity);
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.idleNanos = idleInterval.toNanos();
+        this.out = out;
+        this.closeOut = closeOut;
+        this.writer = Thread.ofPlatform().name("event-sink-writer").daemon().unstarted(this::runWriter);
+    }
+
+    /**
+     * Создает sink по настройкам: в файл (append) если он указан, иначе в stdout
+     */
+    public static EventSink create(@NotNull EventSinkProperties properties) {
+        WritableByteChannel channel;
+        boolean closeOut;
+        if (properties.file() == null || properties.file().isBlank()) {
+            channel = Channels.newChannel(new FileOutputStream(FileDescriptor.out));
+            closeOut = false;
+        } else {
+            try {
+                channel = FileChannel.open(Path.of(properties.file()),
+                        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            closeOut = true;
+        }
+        return new EventSink(properties.capacity(), properties.batchSize(), properties.overflowPolicy(),
+                channel, closeOut, properties.idleInterval());
+    }
+
+    public EventSink start() {
+        writer.start();
+        return this;
+    }
+
+    /**
+     * Кладет событие в буфер. source выводится перед событием, обычно это имя хендлера.
+     *
+     * @return false если событие отброшено из-за переполнения (только для {@link OverflowPolicy#DROP})
+     * или sink уже остановлен
+     */
+    public boolean publish(@NotNull String source, @NotNull Object event) {
+        if (!running) {
+            dropped.increment();
+            return false;
+        }
+        Entry entry = new Entry(source, event);
+        while (!ring.offer(entry)) {
+            if (overflowPolicy == OverflowPolicy.DROP || !running) {
+                dropped.increment();
+                return false;
+            }
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        enqueued.increment();
+        return true;
+    }
+
+    /**
+     * То же что {@link #publish}, но в форме удобной для Async*Handler: возвращает уже завершенный future
+     */
+    public CompletableFuture<Void> publishAsync(@NotNull String source, @NotNull Object event) {
+        publish(source, event);
+        return DONE;
+    }
+
+    public long enqueuedCount() {
+        return enqueued.sum();
+    }
+
+    /**
+     * Отброшенные при переполнении, после остановки и писателем: не отформатированные или не записанные из-за ошибки вывода
+     */
+    public long droppedCount() {
+        return dropped.sum() + writerDropped.get();
+    }
+
+    public long flushedCount() {
+        return flushed.get();
+    }
+
+    public int capacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * Примерное количество событий ожидающих записи
+     */
+    public long backlog() {
+        return Math.max(0, enqueued.sum() - flushed.get() - writerDropped.get());
+    }
+
+    private void runWriter() {
+        try {
+            while (running) {
+                if (drainBatch() == 0) {
+                    LockSupport.parkNanos(idleNanos);
+                }
+            }
+            while (drainBatch() > 0) {
+                // дописываем то что осталось в буфере после остановки
+            }
+        } catch (IOException e) {
+            fail(e);
+            // продюсер, успевший проверить running до ошибки, может положить событие позже: отбрасываем до close
+            while (!closed) {
+                discard();
+                LockSupport.parkNanos(idleNanos);
+            }
+            discard();
+        }
+    }
+
+    private int drainBatch() throws IOException {
+        int count = 0;
+        Entry entry;
+        while (count < batchSize && (entry = ring.poll()) != null) {
+            count++;
+            unflushed++;
+            if (!format(entry.source(), entry.event())) {
+                unflushed--;
+            }
+        }
+        if (unflushed > 0) {
+            flushOut();
+            flushed.addAndGet(unflushed);
+            unflushed = 0;
+        }
+        return count;
+    }
+
+    /**
+     * Вывод сломан: дальше писать некуда, останавливаем прием событий, недописанную пачку и буфер отбрасываем
+     */
+    private void fail(IOException e) {
+        running = false;
+        log.error("event sink: ошибка записи, дальше события отбрасываются", e);
+        writerDropped.addAndGet(unflushed);
+        unflushed = 0;
+        outBuffer.clear();
+        discard();
+    }
+
+    private void discard() {
+        while (ring.poll() != null) {
+            writerDropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Переполненный outBuffer сбрасывается в out посреди события, поэтому ошибка записи может прийти и отсюда
+     *
+     * @return false если событие не удалось отформатировать, в вывод из него ничего не попало
+     */
+    private boolean format(Object source, Object event) throws IOException {
+        try {
+            formatLine(source, event);
+        } catch (RuntimeException e) {
+            writerDropped.incrementAndGet();
+            log.warn("event sink: не удалось отформатировать событие {}, оно отброшено", source, e);
+            return false;
+        }
+        int length = line.length();
+        while (length > 0 && line.charAt(length - 1) == '\n') {
+            length--;
+        }
+        if (chars.length < length + 1) {
+            chars = new char[Math.max(length + 1, chars.length * 2)];
+            charBuffer = CharBuffer.wrap(chars);
+        }
+        line.getChars(0, length, chars, 0);
+        for (int i = 0; i < length; i++) {
+            if (chars[i] == '\n') {
+                chars[i] = ' ';
+            }
+        }
+        chars[length] = '\n';
+        charBuffer.clear().limit(length + 1);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(charBuffer, outBuffer, true);
+            if (result.isOverflow()) {
+                flushOut();
+            } else {
+                break;
+            }
+        }
+        return true;
+    }
+
+    private void formatLine(Object source, Object event) {
+        line.setLength(0);
+        line.append(source).append(": ");
+        if (event instanceof MessageOrBuilder message) {
+            try {
+                PRINTER.print(message, line);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            line.append(event);
+        }
+    }
+
+    private void flushOut() throws IOException {
+        outBuffer.flip();
+        try {
+            while (outBuffer.hasRemaining()) {
+                out.write(outBuffer);
+            }
+        } finally {
+            outBuffer.clear();
+        }
+    }
+
+    /**
+     * Источник и событие в буфере
+     */
+    private record Entry(String source, Object event) {
+    }
+
+    /**
+     * Останавливает писателя, дописывает все что уже попало в буфер
+     */
+    @Override
+    public void close() throws IOException {
+        running = false;
+        closed = true;
+        LockSupport.unpark(writer);
+        if (writer.isAlive()) {
+            try {
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            try {
+                while (drainBatch() > 0) {
+                    // писатель не запускался или уже завершился, дописываем в текущем потоке
+                }
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+        if (closeOut) {
+            out.close();
+        }
+    }
+}
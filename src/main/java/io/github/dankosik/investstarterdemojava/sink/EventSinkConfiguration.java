@@ -0,0 +1,31 @@
+package io.github.dankosik.investstarterdemojava.sink;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(EventSinkProperties.class)
+class EventSinkConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public EventSink eventSink(EventSinkProperties properties) {
+        return EventSink.create(properties).start();
+    }
+
+    /**
+     * Очередь и запись EventSink, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder eventSinkMetrics(EventSink sink) {
+        return registry -> {
+            FunctionCounter.builder("demo.sink.enqueued", sink, EventSink::enqueuedCount).register(registry);
+            FunctionCounter.builder("demo.sink.dropped", sink, EventSink::droppedCount).register(registry);
+            FunctionCounter.builder("demo.sink.flushed", sink, EventSink::flushedCount).register(registry);
+            Gauge.builder("demo.sink.backlog", sink, EventSink::backlog).register(registry);
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package io.github.dankosik.investstarterdemojava.sink;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Настройки {@link EventSink}
+ *
+ * @param capacity       размер кольцевого буфера, округляется вверх до степени двойки
+ * @param batchSize      сколько событий писатель забирает из буфера за одну запись
+ * @param overflowPolicy что делать когда буфер заполнен
+ * @param file           файл для вывода, если не указан - события пишутся в stdout
+ * @param idleInterval   сколько писатель спит когда буфер пуст
+ */
+@ConfigurationProperties(prefix = "demo.sink")
+public record EventSinkProperties(
+        @DefaultValue("16384") int capacity,
+        @DefaultValue("512") int batchSize,
+        @DefaultValue("DROP") OverflowPolicy overflowPolicy,
+        String file,
+        @DefaultValue("5ms") Duration idleInterval
+) {
+}
@@ -0,0 +1,17 @@
+package io.github.dankosik.investstarterdemojava.sink;
+
+/**
+ * Поведение {@link EventSink} когда кольцевой буфер заполнен
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Новое событие отбрасывается, счетчик dropped увеличивается. Хендлер никогда не ждет
+     */
+    DROP,
+
+    /**
+     * Хендлер ждет пока писатель освободит место в буфере (backpressure на поток хендлера)
+     */
+    BLOCK
+}
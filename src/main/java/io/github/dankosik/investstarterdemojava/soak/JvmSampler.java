@@ -0,0 +1,139 @@
+package io.github.dankosik.investstarterdemojava.soak;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import io.github.dankosik.investstarterdemojava.stats.LatencyHistogram;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Паузы GC, занятый heap после сборок и число потоков JVM для нагрузочного прогона.
+ * Паузы приходят из уведомлений GarbageCollectorMXBean; сборщики которые работают параллельно с приложением
+ * (G1 Concurrent GC, ZGC/Shenandoah Cycles) паузами не считаются
+ */
+final class JvmSampler implements AutoCloseable {
+
+    private final LatencyHistogram pauses = new LatencyHistogram();
+    private final AtomicLong heapAfterGc = new AtomicLong(-1);
+    private final AtomicLong heapAfterFirstGc = new AtomicLong(-1);
+    private final AtomicLong collections = new AtomicLong();
+    private final Set<String> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .map(MemoryPoolMXBean::getName)
+            .collect(Collectors.toUnmodifiableSet());
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener listener = this::onNotification;
+
+    JvmSampler() {
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (collector instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    LatencyHistogram pauses() {
+        return pauses;
+    }
+
+    /**
+     * @return сколько сборок было с запуска, включая параллельные
+     */
+    long collectionCount() {
+        return collections.get();
+    }
+
+    /**
+     * @return занятый heap после последней сборки или -1 если сборок еще не было
+     */
+    long heapAfterGc() {
+        return heapAfterGc.get();
+    }
+
+    /**
+     * @return занятый heap после первой сборки с {@link #reset} или -1 если ее еще не было
+     */
+    long heapAfterFirstGc() {
+        return heapAfterFirstGc.get();
+    }
+
+    /**
+     * @return живые платформенные потоки, виртуальные потоки сюда не входят
+     */
+    int threadCount() {
+        return threads.getThreadCount();
+    }
+
+    int peakThreadCount() {
+        return threads.getPeakThreadCount();
+    }
+
+    /**
+     * Платформенные потоки сгруппированные по имени без номера в конце: grpc-default-executor-3 - grpc-default-executor
+     */
+    Map<String, Integer> threadGroups() {
+        Map<String, Integer> groups = new TreeMap<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            groups.merge(thread.getName().replaceAll("[-#]?\\d+$", ""), 1, Integer::sum);
+        }
+        return groups;
+    }
+
+    /**
+     * Сбрасывает паузы, пик потоков и первую сборку в конце прогрева
+     */
+    void reset() {
+        pauses.reset();
+        heapAfterFirstGc.set(-1);
+        threads.resetPeakThreadCount();
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (ListenerNotFoundException ignored) {
+                // уже снят
+            }
+        }
+    }
+
+    private void onNotification(Notification notification, Object handback) {
+        if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            return;
+        }
+        GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+        String name = info.getGcName();
+        if (!name.contains("Concurrent") && !name.contains("Cycles")) {
+            pauses.record(info.getGcInfo().getDuration() * 1_000_000);
+        }
+        long used = 0;
+        for (Map.Entry<String, MemoryUsage> pool : info.getGcInfo().getMemoryUsageAfterGc().entrySet()) {
+            if (heapPools.contains(pool.getKey())) {
+                used += pool.getValue().getUsed();
+            }
+        }
+        heapAfterGc.set(used);
+        heapAfterFirstGc.compareAndSet(-1, used);
+        collections.incrementAndGet();
+    }
+}
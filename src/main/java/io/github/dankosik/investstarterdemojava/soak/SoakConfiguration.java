@@ -0,0 +1,58 @@
+package io.github.dankosik.investstarterdemojava.soak;
+
+import io.github.dankosik.investstarterdemojava.replay.FakeInvestApi;
+import io.github.dankosik.investstarterdemojava.replay.ReplayProperties;
+import io.github.dankosik.investstarterdemojava.replay.ReplayStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Нагрузочный прогон: demo.soak.enabled=true вместе с replay (профили replay,soak)
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(SoakProperties.class)
+class SoakConfiguration {
+
+    @Bean
+    public SoakStats soakStats() {
+        return new SoakStats();
+    }
+
+    @Bean(destroyMethod = "close")
+    JvmSampler jvmSampler() {
+        return new JvmSampler();
+    }
+
+    @Bean
+    public SoakLoadGenerator soakLoadGenerator(SoakProperties properties, ObjectProvider<FakeInvestApi> fakeInvestApi,
+                                               ObjectProvider<ReplayProperties> replayProperties) {
+        FakeInvestApi api = fakeInvestApi.getIfAvailable();
+        ReplayProperties replay = replayProperties.getIfAvailable();
+        if (api == null || replay == null) {
+            throw new IllegalStateException("demo.soak.enabled=true работает только вместе с demo.replay.enabled=true");
+        }
+        return new SoakLoadGenerator(
+                api.operations(),
+                api.orders(),
+                Math.max(replay.instruments(), replay.tickers().size()),
+                properties.accounts(),
+                properties.portfoliosPerSecond(),
+                properties.positionsPerSecond(),
+                properties.ordersPerSecond(),
+                properties.portfolioPositions(),
+                properties.seed()
+        );
+    }
+
+    @Bean
+    public SoakRunner soakRunner(SoakStats soakStats, JvmSampler jvmSampler, ReplayStats replayStats, SoakLoadGenerator soakLoadGenerator,
+                                 MeterRegistry meterRegistry, SoakProperties properties, ConfigurableApplicationContext context) {
+        return new SoakRunner(soakStats, jvmSampler, replayStats, soakLoadGenerator, meterRegistry, properties, context);
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.dankosik.investstarterdemojava.soak;
+
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.github.dankosik.investstarterdemojava.replay.FakeOperationsStreamService;
+import io.github.dankosik.investstarterdemojava.replay.FakeOrdersStreamService;
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import ru.tinkoff.piapi.contract.v1.OrderDirection;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Отдает в стримы портфеля, позиций и сделок по поручениям синтетические события с заданной частотой,
+ * рыночные данные в это время отдает replay. Последовательность событий определяется seed.
+ * В поле времени позиций (date) и сделок (createdAt) пишется момент отправки, по нему зонды считают задержку хендлеров
+ */
+public final class SoakLoadGenerator implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(SoakLoadGenerator.class);
+
+    private final FakeOperationsStreamService operations;
+    private final FakeOrdersStreamService orders;
+    private final SyntheticMarketData data;
+    private final SplittableRandom random;
+    private final List<String> accounts;
+    private final int portfolioPositions;
+    private final long portfolioStep;
+    private final long positionStep;
+    private final long orderStep;
+    private final LongAdder published = new LongAdder();
+    private volatile boolean running;
+    private Thread thread;
+    private long orderSequence;
+
+    public SoakLoadGenerator(@NotNull FakeOperationsStreamService operations, @NotNull FakeOrdersStreamService orders,
+                             int instruments, @NotNull List<String> accounts, double portfoliosPerSecond,
+                             double positionsPerSecond, double ordersPerSecond, int portfolioPositions, long seed) {
+        this.operations = operations;
+        this.orders = orders;
+        this.data = new SyntheticMarketData(seed, instruments);
+        this.random = new SplittableRandom(seed ^ 0x9E3779B97F4A7C15L);
+        this.accounts = List.copyOf(accounts);
+        this.portfolioPositions = portfolioPositions;
+        this.portfolioStep = step(portfoliosPerSecond);
+        this.positionStep = step(positionsPerSecond);
+        this.orderStep = step(ordersPerSecond);
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        thread = Thread.ofPlatform().name("soak-load-generator").daemon().start(this::generate);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(Duration.ofSeconds(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return сколько событий отдано во все стримы
+     */
+    public long publishedCount() {
+        return published.sum();
+    }
+
+    private void generate() {
+        if (accounts.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        long nextPortfolio = start;
+        long nextPosition = start;
+        long nextOrder = start;
+        try {
+            while (running) {
+                long due = Math.min(nextPortfolio, Math.min(nextPosition, nextOrder));
+                if (due == Long.MAX_VALUE) {
+                    return;
+                }
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                    continue;
+                }
+                String account = accounts.get(random.nextInt(accounts.size()));
+                if (due == nextPortfolio) {
+                    operations.publish(data.portfolio(account, portfolioPositions));
+                    nextPortfolio = advance(nextPortfolio, portfolioStep);
+                } else if (due == nextPosition) {
+                    operations.publish(data.position(account, data.nextInstrument(), EpochClock.nanos()));
+                    nextPosition = advance(nextPosition, positionStep);
+                } else {
+                    OrderDirection direction = random.nextBoolean() ? OrderDirection.ORDER_DIRECTION_BUY : OrderDirection.ORDER_DIRECTION_SELL;
+                    orders.publish(data.orderTrades("soak-" + orderSequence++, account, data.nextInstrument(), direction,
+                            1 + random.nextInt(10), EpochClock.nanos()));
+                    nextOrder = advance(nextOrder, orderStep);
+                }
+                published.increment();
+            }
+        } catch (RuntimeException e) {
+            log.error("генератор нагрузки остановлен из-за ошибки", e);
+        } finally {
+            running = false;
+        }
+    }
+
+    private static long step(double perSecond) {
+        return perSecond > 0 ? Math.max(1, (long) (1e9 / perSecond)) : Long.MAX_VALUE;
+    }
+
+    private static long advance(long due, long step) {
+        return step == Long.MAX_VALUE ? Long.MAX_VALUE : due + step;
+    }
+}
@@ -0,0 +1,263 @@
+package io.github.dankosik.investstarterdemojava.soak;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.replay.ReplayStats;
+import io.github.dankosik.investstarterdemojava.replay.SendTimes;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllCandles;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllLastPrices;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllOrderBooks;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllTrades;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllTradingStatuses;
+import io.github.dankosik.starter.invest.annotation.operation.HandleAllPortfolios;
+import io.github.dankosik.starter.invest.annotation.operation.HandleAllPositions;
+import io.github.dankosik.starter.invest.annotation.order.HandleAllOrders;
+import io.github.dankosik.starter.invest.contract.marketdata.candle.AsyncCandleHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.lastprice.AsyncLastPriceHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.AsyncOrderBookHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.BlockingOrderBookHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.status.AsyncTradingStatusHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.BlockingTradeHandler;
+import io.github.dankosik.starter.invest.contract.operation.portfolio.AsyncPortfolioHandler;
+import io.github.dankosik.starter.invest.contract.operation.positions.AsyncPositionHandler;
+import io.github.dankosik.starter.invest.contract.orders.AsyncOrderHandler;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.OrderTrades;
+import ru.tinkoff.piapi.contract.v1.PortfolioResponse;
+import ru.tinkoff.piapi.contract.v1.PositionData;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.contract.v1.TradingStatus;
+
+import java.util.concurrent.CompletableFuture;
+
+/*
+ * Зонды нагрузочного прогона: регистрируются только при demo.soak.enabled=true и выполняются параллельно с остальными хендлерами.
+ * На каждый стрим есть async зонд, для трейдов и стаканов еще зонды других стилей:
+ * async - возвращает завершенный future в потоке стрима, async-pool - CompletableFuture.runAsync на каждое событие,
+ * blocking - Blocking*Handler, который стартер вызывает в виртуальном потоке.
+ * Время отправки рыночных данных берется из {@link ReplayStats#sendTimes()}, операций и поручений - из самого события
+ */
+
+@HandleAllTrades
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+class SoakAsyncTradeProbe implements AsyncTradeHandler {
+
+    private final SoakStats.Probe probe;
+    private final SendTimes sendTimes;
+
+    SoakAsyncTradeProbe(SoakStats stats, ReplayStats replayStats) {
+        this.sendTimes = replayStats.sendTimes();
+        this.probe = stats.probe("async", "trades");
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
+        probe.record(sendTimes.sentAt(trade));
+        return CompletableFuture.completedFuture(null);
+    }
+}
+
+@HandleAllTrades
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+class SoakPoolTradeProbe implements AsyncTradeHandler {
+
+    private final SoakStats.Probe probe;
+    private final SendTimes sendTimes;
+
+    SoakPoolTradeProbe(SoakStats stats, ReplayStats replayStats) {
+        this.sendTimes = replayStats.sendTimes();
+        this.probe = stats.probe("async-pool", "trades");
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Trade trade) {
+        long sent = sendTimes.sentAt(trade);
+        return CompletableFuture.runAsync(() -> probe.record(sent));
+    }
+}
+
+@HandleAllTrades
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+class SoakBlockingTradeProbe implements BlockingTradeHandler {
+
+    private final SoakStats.Probe probe;
+    private final SendTimes sendTimes;
+
+    SoakBlockingTradeProbe(SoakStats stats, ReplayStats replayStats) {
+        this.sendTimes = replayStats.sendTimes();
+        this.probe = stats.probe("blocking", "trades");
+    }
+
+    @Override
+    public void handleBlocking(@NotNull Trade trade) {
+        probe.record(sendTimes.sentAt(trade));
+    }
+}
+
+@HandleAllOrderBooks
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+class SoakAsyncOrderBookProbe implements AsyncOrderBookHandler {
+
+    private final SoakStats.Probe probe;
+    private final SendTimes sendTimes;
+
+    SoakAsyncOrderBookProbe(SoakStats stats, ReplayStats replayStats) {
+        this.sendTimes = replayStats.sendTimes();
+        this.probe = stats.probe("async", "orderbooks");
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull OrderBook orderBook) {
+        probe.record(sendTimes.sentAt(orderBook));
+        return CompletableFuture.completedFuture(null);
+    }
+}
+
+@HandleAllOrderBooks
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+class SoakBlockingOrderBookProbe implements BlockingOrderBookHandler {
+
+    private final SoakStats.Probe probe;
+    private final SendTimes sendTimes;
+
+    SoakBlockingOrderBookProbe(SoakStats stats, ReplayStats replayStats) {
+        this.sendTimes = replayStats.sendTimes();
+        this.probe = stats.probe("blocking", "orderbooks");
+    }
+
+    @Override
+    public void handleBlocking(@NotNull OrderBook orderBook) {
+        probe.record(sendTimes.sentAt(orderBook));
+    }
+}
+
+@HandleAllLastPrices
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+class SoakLastPriceProbe implements AsyncLastPriceHandler {
+
+    private final SoakStats.Probe probe;
+    private final SendTimes sendTimes;
+
+    SoakLastPriceProbe(SoakStats stats, ReplayStats replayStats) {
+        this.sendTimes = replayStats.sendTimes();
+        this.probe = stats.probe("async", "lastprices");
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull LastPrice lastPrice) {
+        probe.record(sendTimes.sentAt(lastPrice));
+        return CompletableFuture.completedFuture(null);
+    }
+}
+
+/**
+ * afterEach: свечи всех инструментов стартер гарантированно отдает before/after хендлерам интервала
+ */
+@HandleAllCandles(
+        afterEachCandleHandler = true,
+        subscriptionInterval = SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE
+)
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+class SoakCandleProbe implements AsyncCandleHandler {
+
+    private final SoakStats.Probe probe;
+    private final SendTimes sendTimes;
+
+    SoakCandleProbe(SoakStats stats, ReplayStats replayStats) {
+        this.sendTimes = replayStats.sendTimes();
+        this.probe = stats.probe("async", "candles");
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull Candle candle) {
+        probe.record(sendTimes.sentAt(candle));
+        return CompletableFuture.completedFuture(null);
+    }
+}
+
+@HandleAllTradingStatuses
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+class SoakTradingStatusProbe implements AsyncTradingStatusHandler {
+
+    private final SoakStats.Probe probe;
+    private final SendTimes sendTimes;
+
+    SoakTradingStatusProbe(SoakStats stats, ReplayStats replayStats) {
+        this.sendTimes = replayStats.sendTimes();
+        this.probe = stats.probe("async", "statuses");
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull TradingStatus tradingStatus) {
+        probe.record(sendTimes.sentAt(tradingStatus));
+        return CompletableFuture.completedFuture(null);
+    }
+}
+
+/**
+ * У портфеля нет времени события, поэтому считается только количество
+ */
+@HandleAllPortfolios(accounts = {"accountId", "accountId2"}) //должны совпадать с demo.soak.accounts
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+class SoakPortfolioProbe implements AsyncPortfolioHandler {
+
+    private final SoakStats.Probe probe;
+
+    SoakPortfolioProbe(SoakStats stats) {
+        this.probe = stats.probe("async", "portfolios");
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull PortfolioResponse portfolioResponse) {
+        probe.record(0);
+        return CompletableFuture.completedFuture(null);
+    }
+}
+
+@HandleAllPositions(accounts = {"accountId", "accountId2"}) //должны совпадать с demo.soak.accounts
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+class SoakPositionProbe implements AsyncPositionHandler {
+
+    private final SoakStats.Probe probe;
+
+    SoakPositionProbe(SoakStats stats) {
+        this.probe = stats.probe("async", "positions");
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull PositionData positionData) {
+        probe.record(Prices.toEpochNanos(positionData.getDate()));
+        return CompletableFuture.completedFuture(null);
+    }
+}
+
+@HandleAllOrders(accounts = {"accountId", "accountId2"}) //должны совпадать с demo.soak.accounts
+@ConditionalOnProperty(prefix = "demo.soak", name = "enabled", havingValue = "true")
+class SoakOrderProbe implements AsyncOrderHandler {
+
+    private final SoakStats.Probe probe;
+
+    SoakOrderProbe(SoakStats stats) {
+        this.probe = stats.probe("async", "orders");
+    }
+
+    @NotNull
+    @Override
+    public CompletableFuture<Void> handleAsync(@NotNull OrderTrades orderTrades) {
+        probe.record(Prices.toEpochNanos(orderTrades.getCreatedAt()));
+        return CompletableFuture.completedFuture(null);
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.dankosik.investstarterdemojava.soak;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Настройки нагрузочного прогона {@link SoakRunner}. Рыночные данные отдает replay (demo.replay.*), поэтому работает только вместе с ним
+ *
+ * @param enabled             включает прогон
+ * @param duration            длительность замера после прогрева, 0 - до остановки приложения
+ * @param warmup              прогрев: статистика за это время не учитывается, в конце снимаются базовые heap и потоки
+ * @param reportInterval      как часто писать в лог промежуточный отчет
+ * @param accounts            счета для портфелей, позиций и сделок по поручениям, должны совпадать со счетами в аннотациях хендлеров
+ * @param portfoliosPerSecond сколько портфелей в секунду отдавать в стрим портфеля, 0 - не отдавать
+ * @param positionsPerSecond  сколько изменений позиций в секунду отдавать в стрим позиций, 0 - не отдавать
+ * @param ordersPerSecond     сколько сделок по поручениям в секунду отдавать в стрим сделок, 0 - не отдавать
+ * @param portfolioPositions  сколько позиций в каждом портфеле
+ * @param seed                seed генератора портфелей, позиций и сделок
+ * @param reportFile          куда записать итоговый отчет, пусто - только в лог
+ * @param exitOnFinish        завершить приложение после прогона с кодом 1 если пороги нарушены
+ * @param minEventsPerSecond  порог: событий в секунду по всем стримам не меньше, 0 - не проверять
+ * @param maxLagP99           порог: p99 задержки от отправки события до хендлера для каждого стиля хендлера и стрима
+ * @param maxGcPause          порог: самая долгая пауза GC
+ * @param maxHeapGrowth       порог: рост занятого heap после сборок с конца прогрева
+ * @param maxThreadGrowth     порог: рост числа платформенных потоков с конца прогрева
+ */
+@ConfigurationProperties(prefix = "demo.soak")
+public record SoakProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("10m") Duration duration,
+        @DefaultValue("30s") Duration warmup,
+        @DefaultValue("30s") Duration reportInterval,
+        @DefaultValue({"accountId", "accountId2"}) List<String> accounts,
+        @DefaultValue("5") double portfoliosPerSecond,
+        @DefaultValue("20") double positionsPerSecond,
+        @DefaultValue("50") double ordersPerSecond,
+        @DefaultValue("10") int portfolioPositions,
+        @DefaultValue("42") long seed,
+        @DefaultValue("target/soak-report.txt") String reportFile,
+        @DefaultValue("false") boolean exitOnFinish,
+        @DefaultValue("0") double minEventsPerSecond,
+        @DefaultValue("250ms") Duration maxLagP99,
+        @DefaultValue("500ms") Duration maxGcPause,
+        @DefaultValue("256MB") DataSize maxHeapGrowth,
+        @DefaultValue("50") int maxThreadGrowth
+) {
+}
@@ -0,0 +1,143 @@
+package io.github.dankosik.investstarterdemojava.soak;
+
+import io.github.dankosik.investstarterdemojava.stats.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Итог нагрузочного прогона за время после прогрева
+ *
+ * @param elapsed         длительность замера
+ * @param events          сколько событий отдано во все стримы
+ * @param probes          зонды по стилям хендлеров и стримам
+ * @param handlers        хендлеры демо обернутые StreamMetrics, значения с запуска приложения
+ * @param gcPauses        паузы GC
+ * @param heapBaseline    занятый heap после последней сборки прогрева, если в прогреве сборок не было - после первой
+ *                        сборки замера; -1 если сборок не было
+ * @param heapEnd         занятый heap после последней сборки, -1 если сборок не было
+ * @param heapMeasured    была ли сборка после базовой, без нее рост heap не известен
+ * @param threadsBaseline платформенные потоки в конце прогрева
+ * @param threadsEnd      платформенные потоки в конце замера
+ * @param threadsPeak     пик платформенных потоков за замер
+ * @param threadGroups    платформенные потоки по именам в конце замера
+ * @param violations      нарушенные пороги, пусто - прогон прошел
+ */
+public record SoakReport(
+        @NotNull Duration elapsed,
+        long events,
+        @NotNull List<ProbeResult> probes,
+        @NotNull List<HandlerResult> handlers,
+        @NotNull LatencyHistogram.Snapshot gcPauses,
+        long heapBaseline,
+        long heapEnd,
+        boolean heapMeasured,
+        int threadsBaseline,
+        int threadsEnd,
+        int threadsPeak,
+        @NotNull Map<String, Integer> threadGroups,
+        @NotNull List<String> violations
+) {
+
+    public double eventsPerSecond() {
+        return events * 1e9 / Math.max(1, elapsed.toNanos());
+    }
+
+    public long heapGrowth() {
+        return heapMeasured ? heapEnd - heapBaseline : 0;
+    }
+
+    public int threadGrowth() {
+        return threadsEnd - threadsBaseline;
+    }
+
+    public boolean passed() {
+        return violations.isEmpty();
+    }
+
+    /**
+     * @return нарушенные пороги, 0 в minEventsPerSecond - не проверять
+     */
+    @NotNull
+    public List<String> check(double minEventsPerSecond, @NotNull Duration maxLagP99, @NotNull Duration maxGcPause,
+                              long maxHeapGrowth, int maxThreadGrowth) {
+        List<String> violations = new ArrayList<>();
+        if (minEventsPerSecond > 0 && eventsPerSecond() < minEventsPerSecond) {
+            violations.add("events/s %.0f < %.0f".formatted(eventsPerSecond(), minEventsPerSecond));
+        }
+        for (ProbeResult probe : probes) {
+            if (probe.lag().count() > 0 && probe.lag().p99() > maxLagP99.toNanos()) {
+                violations.add("lag p99 %s/%s %s > %s".formatted(probe.style(), probe.stream(), millis(probe.lag().p99()), millis(maxLagP99.toNanos())));
+            }
+        }
+        if (gcPauses.max() > maxGcPause.toNanos()) {
+            violations.add("gc pause %s > %s".formatted(millis(gcPauses.max()), millis(maxGcPause.toNanos())));
+        }
+        if (heapGrowth() > maxHeapGrowth) {
+            violations.add("heap growth %s > %s".formatted(megabytes(heapGrowth()), megabytes(maxHeapGrowth)));
+        }
+        if (threadGrowth() > maxThreadGrowth) {
+            violations.add("thread growth %d > %d".formatted(threadGrowth(), maxThreadGrowth));
+        }
+        return violations;
+    }
+
+    @NotNull
+    public SoakReport withViolations(@NotNull List<String> violations) {
+        return new SoakReport(elapsed, events, probes, handlers, gcPauses, heapBaseline, heapEnd, heapMeasured,
+                threadsBaseline, threadsEnd, threadsPeak, threadGroups, List.copyOf(violations));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append("soak %s: %ds, %d events, %.0f events/s%n".formatted(passed() ? "PASSED" : "FAILED", elapsed.toSeconds(), events, eventsPerSecond()));
+        text.append("probes:%n".formatted());
+        for (ProbeResult probe : probes) {
+            text.append("  %-24s %10d events %10.1f/s  lag %s%n".formatted(probe.style() + '/' + probe.stream(), probe.count(),
+                    probe.count() * 1e9 / Math.max(1, elapsed.toNanos()), probe.lag().count() > 0 ? probe.lag() : "-"));
+        }
+        text.append("handlers (с запуска приложения):%n".formatted());
+        for (HandlerResult handler : handlers) {
+            text.append("  %-40s %-10s %-10s %10d calls  mean=%.1fus max=%.1fus%n".formatted(handler.handler(), handler.phase(),
+                    handler.stream(), handler.count(), handler.meanNanos() / 1_000, handler.maxNanos() / 1_000));
+        }
+        text.append("gc pauses: %s%n".formatted(gcPauses));
+        text.append(heapMeasured
+                ? "heap after gc: %s -> %s (%+d MB)%n".formatted(megabytes(heapBaseline), megabytes(heapEnd), heapGrowth() >> 20)
+                : "heap after gc: не измерен, не было сборки после базовой%n".formatted());
+        text.append("threads: %d -> %d, peak %d%n".formatted(threadsBaseline, threadsEnd, threadsPeak));
+        threadGroups.forEach((name, count) -> text.append("  %-40s %d%n".formatted(name, count)));
+        if (!violations.isEmpty()) {
+            text.append("violations:%n".formatted());
+            violations.forEach(violation -> text.append("  - ").append(violation).append(System.lineSeparator()));
+        }
+        return text.toString();
+    }
+
+    private static String millis(long nanos) {
+        return "%.1fms".formatted(nanos / 1e6);
+    }
+
+    private static String megabytes(long bytes) {
+        return (bytes >> 20) + "MB";
+    }
+
+    /**
+     * @param style  стиль хендлера зонда
+     * @param stream стрим зонда
+     * @param count  сколько событий получил зонд
+     * @param lag    задержка от отправки события до зонда, пустая если у событий стрима нет времени
+     */
+    public record ProbeResult(String style, String stream, long count, LatencyHistogram.Snapshot lag) {
+    }
+
+    /**
+     * Время исполнения хендлера по таймеру demo.handler.latency
+     */
+    public record HandlerResult(String handler, String phase, String stream, long count, double meanNanos, double maxNanos) {
+    }
+}
@@ -0,0 +1,228 @@
+package io.github.dankosik.investstarterdemojava.soak;
+
+import io.github.dankosik.investstarterdemojava.replay.ReplayStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.SmartLifecycle;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Нагрузочный прогон всего графа хендлеров: пока replay и {@link SoakLoadGenerator} отдают события во все стримы,
+ * после прогрева замеряет пропускную способность, задержку зондов по стилям хендлеров, паузы GC, рост heap и потоков.
+ * Раз в reportInterval пишет промежуточный отчет в лог, по истечении duration - итоговый {@link SoakReport}
+ * с проверкой порогов в лог и reportFile. При exitOnFinish приложение завершается с кодом 1 если пороги нарушены
+ */
+public final class SoakRunner implements SmartLifecycle {
+
+    private static final Logger log = LoggerFactory.getLogger(SoakRunner.class);
+
+    private final SoakStats stats;
+    private final JvmSampler jvm;
+    private final ReplayStats replayStats;
+    private final SoakLoadGenerator generator;
+    private final MeterRegistry registry;
+    private final SoakProperties properties;
+    private final ConfigurableApplicationContext context;
+    private final CompletableFuture<SoakReport> result = new CompletableFuture<>();
+    private volatile boolean running;
+    private ScheduledExecutorService timer;
+    private boolean measuring;
+    private long measureStart;
+    private long eventsBaseline;
+    private long heapBaseline;
+    private long collectionsBaseline;
+    private int threadsBaseline;
+
+    SoakRunner(SoakStats stats, JvmSampler jvm, ReplayStats replayStats, SoakLoadGenerator generator, MeterRegistry registry,
+               SoakProperties properties, ConfigurableApplicationContext context) {
+        this.stats = stats;
+        this.jvm = jvm;
+        this.replayStats = replayStats;
+        this.generator = generator;
+        this.registry = registry;
+        this.properties = properties;
+        this.context = context;
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        timer = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().name("soak-runner").daemon().factory());
+        long warmup = properties.warmup().toMillis();
+        long interval = properties.reportInterval().toMillis();
+        timer.schedule(this::endWarmup, warmup, TimeUnit.MILLISECONDS);
+        timer.scheduleAtFixedRate(this::report, warmup + interval, interval, TimeUnit.MILLISECONDS);
+        if (!properties.duration().isZero()) {
+            timer.schedule(this::finish, warmup + properties.duration().toMillis(), TimeUnit.MILLISECONDS);
+        }
+        log.info("soak: прогрев {}, замер {}", properties.warmup(), properties.duration().isZero() ? "до остановки" : properties.duration());
+    }
+
+    /**
+     * Если замер без ограничения по времени - итоговый отчет пишется при остановке приложения
+     */
+    @Override
+    public void stop() {
+        running = false;
+        if (timer == null) {
+            return;
+        }
+        try {
+            timer.submit(() -> {
+                if (measuring && !result.isDone()) {
+                    finish();
+                }
+            }).get(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            log.warn("soak: не удалось записать итоговый отчет при остановке", e);
+        } finally {
+            timer.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Итоговый отчет, завершается по истечении прогрева и duration
+     */
+    @NotNull
+    public CompletableFuture<SoakReport> result() {
+        return result;
+    }
+
+    private void endWarmup() {
+        stats.reset();
+        jvm.reset();
+        eventsBaseline = events();
+        // база - heap после сборки, как и конец замера: занятый сейчас heap включает еще не собранный мусор
+        heapBaseline = jvm.heapAfterGc();
+        collectionsBaseline = jvm.collectionCount();
+        threadsBaseline = jvm.threadCount();
+        measureStart = System.nanoTime();
+        measuring = true;
+        log.info("soak: прогрев закончен, heap after gc {}, потоков {}", megabytes(heapBaseline), threadsBaseline);
+    }
+
+    private void report() {
+        if (!measuring || result.isDone()) {
+            return;
+        }
+        SoakReport report = snapshot();
+        StringBuilder probes = new StringBuilder();
+        for (SoakReport.ProbeResult probe : report.probes()) {
+            if (probe.lag().count() > 0) {
+                probes.append(' ').append(probe.style()).append('/').append(probe.stream())
+                        .append(" p99=").append("%.1fms".formatted(probe.lag().p99() / 1e6));
+            }
+        }
+        log.info("soak: {}s, {} events/s, gc max pause {}ms, heap after gc {}, threads {}, lag:{}", report.elapsed().toSeconds(),
+                "%.0f".formatted(report.eventsPerSecond()), report.gcPauses().max() / 1_000_000, megabytes(report.heapEnd()),
+                report.threadsEnd(), probes);
+    }
+
+    private void finish() {
+        if (result.isDone()) {
+            return;
+        }
+        SoakReport report = snapshot();
+        report = report.withViolations(report.check(properties.minEventsPerSecond(), properties.maxLagP99(), properties.maxGcPause(),
+                properties.maxHeapGrowth().toBytes(), properties.maxThreadGrowth()));
+        if (report.passed()) {
+            log.info("{}", report);
+        } else {
+            log.error("{}", report);
+        }
+        if (properties.reportFile() != null && !properties.reportFile().isBlank()) {
+            try {
+                Path file = Path.of(properties.reportFile());
+                if (file.getParent() != null) {
+                    Files.createDirectories(file.getParent());
+                }
+                Files.writeString(file, report.toString());
+            } catch (IOException e) {
+                log.warn("soak: не удалось записать отчет в {}", properties.reportFile(), e);
+            }
+        }
+        result.complete(report);
+        if (properties.exitOnFinish()) {
+            int code = report.passed() ? 0 : 1;
+            // не daemon: иначе после закрытия контекста JVM завершится с кодом 0 раньше System.exit
+            Thread.ofPlatform().name("soak-exit").daemon(false).start(() -> System.exit(SpringApplication.exit(context, () -> code)));
+        }
+    }
+
+    private SoakReport snapshot() {
+        List<SoakReport.ProbeResult> probes = stats.probes().stream()
+                .sorted(Comparator.comparing(SoakStats.Probe::stream).thenComparing(SoakStats.Probe::style))
+                .map(probe -> new SoakReport.ProbeResult(probe.style(), probe.stream(), probe.count(), probe.lag().snapshot()))
+                .toList();
+        List<SoakReport.HandlerResult> handlers = registry.find("demo.handler.latency").timers().stream()
+                .map(SoakRunner::handler)
+                .sorted(Comparator.comparing(SoakReport.HandlerResult::stream).thenComparing(SoakReport.HandlerResult::handler))
+                .toList();
+        long baseline = heapBaseline;
+        long baselineCollections = collectionsBaseline;
+        if (baseline < 0) {
+            // в прогреве сборок не было: база - первая сборка замера, рост виден только после следующей
+            baseline = jvm.heapAfterFirstGc();
+            baselineCollections++;
+        }
+        boolean heapMeasured = baseline >= 0 && jvm.collectionCount() > baselineCollections;
+        return new SoakReport(
+                Duration.ofNanos(System.nanoTime() - measureStart),
+                events() - eventsBaseline,
+                probes,
+                handlers,
+                jvm.pauses().snapshot(),
+                baseline,
+                jvm.heapAfterGc(),
+                heapMeasured,
+                threadsBaseline,
+                jvm.threadCount(),
+                jvm.peakThreadCount(),
+                jvm.threadGroups(),
+                List.of()
+        );
+    }
+
+    private static String megabytes(long bytes) {
+        return bytes >= 0 ? (bytes >> 20) + "MB" : "-";
+    }
+
+    private long events() {
+        return replayStats.emittedCount() + generator.publishedCount();
+    }
+
+    private static SoakReport.HandlerResult handler(Timer timer) {
+        return new SoakReport.HandlerResult(
+                String.valueOf(timer.getId().getTag("handler")),
+                String.valueOf(timer.getId().getTag("phase")),
+                String.valueOf(timer.getId().getTag("stream")),
+                timer.count(),
+                timer.mean(TimeUnit.NANOSECONDS),
+                timer.max(TimeUnit.NANOSECONDS)
+        );
+    }
+}
@@ -0,0 +1,86 @@
+package io.github.dankosik.investstarterdemojava.soak;
+
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import io.github.dankosik.investstarterdemojava.stats.LatencyHistogram;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Зонды нагрузочного прогона: сколько событий каждого стрима получил хендлер каждого стиля и через сколько после отправки.
+ * Задержка = now - момент отправки: для рыночных данных он запоминается replay, {@link SoakLoadGenerator} пишет его
+ * в поле времени события
+ */
+public final class SoakStats {
+
+    private final ConcurrentHashMap<String, Probe> probes = new ConcurrentHashMap<>();
+
+    /**
+     * @param style  стиль хендлера: async, async-pool, blocking
+     * @param stream стрим: trades, orderbooks, ...
+     */
+    @NotNull
+    public Probe probe(@NotNull String style, @NotNull String stream) {
+        return probes.computeIfAbsent(style + '/' + stream, key -> new Probe(style, stream));
+    }
+
+    public Collection<Probe> probes() {
+        return Collections.unmodifiableCollection(probes.values());
+    }
+
+    /**
+     * Сбрасывает счетчики и гистограммы в конце прогрева
+     */
+    void reset() {
+        probes.values().forEach(Probe::reset);
+    }
+
+    public static final class Probe {
+
+        private final String style;
+        private final String stream;
+        private final LongAdder count = new LongAdder();
+        private final LatencyHistogram lag = new LatencyHistogram();
+
+        private Probe(String style, String stream) {
+            this.style = style;
+            this.stream = stream;
+        }
+
+        /**
+         * Событие дошло до хендлера
+         *
+         * @param sentEpochNanos время отправки, 0 - время неизвестно и задержка не считается
+         */
+        public void record(long sentEpochNanos) {
+            count.increment();
+            if (sentEpochNanos > 0) {
+                lag.record(EpochClock.nanos() - sentEpochNanos);
+            }
+        }
+
+        public String style() {
+            return style;
+        }
+
+        public String stream() {
+            return stream;
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public LatencyHistogram lag() {
+            return lag;
+        }
+
+        private void reset() {
+            count.reset();
+            lag.reset();
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.dankosik.investstarterdemojava.stats;
+
+import java.time.Instant;
+
+/**
+ * Время от эпохи в наносекундах без аллокаций: один раз привязывается к Instant.now(), дальше идет по System.nanoTime().
+ * Монотонно внутри одного JVM, поэтому подходит для замера задержек между потоками
+ */
+public final class EpochClock {
+
+    private static final long BASE_EPOCH_NANOS;
+    private static final long BASE_NANO_TIME;
+
+    static {
+        Instant now = Instant.now();
+        BASE_NANO_TIME = System.nanoTime();
+        BASE_EPOCH_NANOS = now.getEpochSecond() * 1_000_000_000L + now.getNano();
+    }
+
+    private EpochClock() {
+    }
+
+    public static long nanos() {
+        return BASE_EPOCH_NANOS + (System.nanoTime() - BASE_NANO_TIME);
+    }
+}
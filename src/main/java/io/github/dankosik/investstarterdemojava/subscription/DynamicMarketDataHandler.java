@@ -0,0 +1,30 @@
+package io.github.dankosik.investstarterdemojava.subscription;
+
+import org.jetbrains.annotations.NotNull;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.contract.v1.TradingStatus;
+
+/**
+ * Обработчик событий по инструментам, добавленным в {@link SubscriptionManager#add} (например через admin эндпоинт).
+ * Бины с этим интерфейсом подключаются автоматически. Вызывается в потоке стрима, поэтому должен быть быстрым
+ */
+public interface DynamicMarketDataHandler {
+
+    default void onTrade(@NotNull Trade trade) {
+    }
+
+    default void onOrderBook(@NotNull OrderBook orderBook) {
+    }
+
+    default void onCandle(@NotNull Candle candle) {
+    }
+
+    default void onLastPrice(@NotNull LastPrice lastPrice) {
+    }
+
+    default void onTradingStatus(@NotNull TradingStatus tradingStatus) {
+    }
+}
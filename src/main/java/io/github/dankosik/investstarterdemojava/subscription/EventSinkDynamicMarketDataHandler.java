@@ -0,0 +1,50 @@
+package io.github.dankosik.investstarterdemojava.subscription;
+
+import io.github.dankosik.investstarterdemojava.sink.EventSink;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.contract.v1.TradingStatus;
+
+/**
+ * Пример обработчика динамических подписок: выводит события по инструментам добавленным через /admin/subscriptions
+ */
+@Component
+@ConditionalOnProperty(prefix = "demo.subscriptions", name = "enabled", havingValue = "true")
+class EventSinkDynamicMarketDataHandler implements DynamicMarketDataHandler {
+
+    private final EventSink eventSink;
+
+    EventSinkDynamicMarketDataHandler(EventSink eventSink) {
+        this.eventSink = eventSink;
+    }
+
+    @Override
+    public void onTrade(@NotNull Trade trade) {
+        eventSink.publish("DynamicTrade", trade);
+    }
+
+    @Override
+    public void onOrderBook(@NotNull OrderBook orderBook) {
+        eventSink.publish("DynamicOrderBook", orderBook);
+    }
+
+    @Override
+    public void onCandle(@NotNull Candle candle) {
+        eventSink.publish("DynamicCandle", candle);
+    }
+
+    @Override
+    public void onLastPrice(@NotNull LastPrice lastPrice) {
+        eventSink.publish("DynamicLastPrice", lastPrice);
+    }
+
+    @Override
+    public void onTradingStatus(@NotNull TradingStatus tradingStatus) {
+        eventSink.publish("DynamicTradingStatus", tradingStatus);
+    }
+}
@@ -0,0 +1,38 @@
+package io.github.dankosik.investstarterdemojava.subscription;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Подписка обработчика на инструмент в {@link SubscriptionManager}, {@link #close()} отписывает обработчик.
+ * Подписка в стриме снимается, когда у инструмента не остается обработчиков
+ */
+public final class InstrumentSubscription implements AutoCloseable {
+
+    private final SubscriptionManager manager;
+    private final SubscriptionType type;
+    private final String instrumentUid;
+    private final Object handler;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    InstrumentSubscription(SubscriptionManager manager, SubscriptionType type, String instrumentUid, Object handler) {
+        this.manager = manager;
+        this.type = type;
+        this.instrumentUid = instrumentUid;
+        this.handler = handler;
+    }
+
+    public SubscriptionType type() {
+        return type;
+    }
+
+    public String instrumentUid() {
+        return instrumentUid;
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            manager.release(type, instrumentUid, handler);
+        }
+    }
+}
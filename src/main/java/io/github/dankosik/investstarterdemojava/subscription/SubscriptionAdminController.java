@@ -0,0 +1,98 @@
+package io.github.dankosik.investstarterdemojava.subscription;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Управление динамическими подписками во время работы:
+ * <pre>
+ * GET    /admin/subscriptions
+ * POST   /admin/subscriptions/{type}?tickers=SBER,LKOH&amp;instrumentUids=...
+ * DELETE /admin/subscriptions/{type}?tickers=SBER
+ * </pre>
+ * type - trades, order_books, candles, last_prices или trading_statuses
+ */
+@RestController
+@RequestMapping("/admin/subscriptions")
+@ConditionalOnProperty(prefix = "demo.subscriptions", name = "enabled", havingValue = "true")
+class SubscriptionAdminController {
+
+    private final SubscriptionManager subscriptionManager;
+    private final TickerResolver tickerResolver;
+
+    SubscriptionAdminController(SubscriptionManager subscriptionManager, TickerResolver tickerResolver) {
+        this.subscriptionManager = subscriptionManager;
+        this.tickerResolver = tickerResolver;
+    }
+
+    @GetMapping
+    public Map<SubscriptionType, List<String>> subscriptions() {
+        return subscriptionManager.subscriptions();
+    }
+
+    @PostMapping("/{type}")
+    public Mono<SubscriptionChange> add(@PathVariable String type,
+                                        @RequestParam(defaultValue = "") List<String> tickers,
+                                        @RequestParam(defaultValue = "") List<String> instrumentUids) {
+        SubscriptionType subscriptionType = parse(type);
+        return resolve(subscriptionType, tickers, instrumentUids)
+                .doOnNext(change -> subscriptionManager.add(subscriptionType, change.instrumentUids()));
+    }
+
+    @DeleteMapping("/{type}")
+    public Mono<SubscriptionChange> remove(@PathVariable String type,
+                                           @RequestParam(defaultValue = "") List<String> tickers,
+                                           @RequestParam(defaultValue = "") List<String> instrumentUids) {
+        SubscriptionType subscriptionType = parse(type);
+        return resolve(subscriptionType, tickers, instrumentUids)
+                .doOnNext(change -> subscriptionManager.remove(subscriptionType, change.instrumentUids()));
+    }
+
+    /**
+     * Поиск тикеров может выгружать справочник инструментов, поэтому выполняется вне event loop
+     */
+    private Mono<SubscriptionChange> resolve(SubscriptionType type, List<String> tickers, List<String> instrumentUids) {
+        return Mono.fromCallable(() -> {
+            List<String> uids = new ArrayList<>(instrumentUids);
+            List<String> unknown = new ArrayList<>();
+            for (String ticker : tickers) {
+                String uid = tickerResolver.resolve(ticker);
+                if (uid == null) {
+                    unknown.add(ticker);
+                } else {
+                    uids.add(uid);
+                }
+            }
+            return new SubscriptionChange(type, List.copyOf(uids), List.copyOf(unknown));
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static SubscriptionType parse(String type) {
+        try {
+            return SubscriptionType.ofPath(type);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * @param instrumentUids инструменты которые добавлены или убраны
+     * @param unknownTickers тикеры для которых не нашелся инструмент
+     */
+    record SubscriptionChange(SubscriptionType type, List<String> instrumentUids, List<String> unknownTickers) {
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.dankosik.investstarterdemojava.subscription;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import ru.tinkoff.piapi.core.InvestApi;
+
+import java.util.List;
+
+/**
+ * Динамические подписки на рыночные данные: demo.subscriptions.enabled=true
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "demo.subscriptions", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(SubscriptionProperties.class)
+class SubscriptionConfiguration {
+
+    @Bean(destroyMethod = "close")
+    public SubscriptionManager subscriptionManager(ObjectProvider<InvestApi> investApi,
+                                                   ObjectProvider<DynamicMarketDataHandler> handlers,
+                                                   SubscriptionProperties properties) {
+        List<DynamicMarketDataHandler> dynamicHandlers = handlers.orderedStream().toList();
+        return SubscriptionManager.create(api(investApi).getChannel(), dynamicHandlers, properties)
+                .start();
+    }
+
+    @Bean
+    public TickerResolver tickerResolver(ObjectProvider<InvestApi> investApi) {
+        return new TickerResolver(api(investApi).getInstrumentsService());
+    }
+
+    private static InvestApi api(ObjectProvider<InvestApi> investApi) {
+        return investApi.orderedStream().findFirst()
+                .orElseThrow(() -> new IllegalStateException("нет бина InvestApi для динамических подписок"));
+    }
+
+    /**
+     * Стримы и подписки SubscriptionManager, значения читаются при выгрузке метрик
+     */
+    @Bean
+    MeterBinder subscriptionMetrics(SubscriptionManager manager) {
+        return registry -> {
+            Gauge.builder("demo.subscriptions.streams", manager, SubscriptionManager::streamCount).register(registry);
+            Gauge.builder("demo.subscriptions.instruments", manager, SubscriptionManager::subscriptionCount).register(registry);
+            FunctionCounter.builder("demo.subscriptions.requests", manager, SubscriptionManager::requestCount).register(registry);
+            FunctionCounter.builder("demo.subscriptions.rejected", manager, SubscriptionManager::rejectedCount).register(registry);
+            FunctionCounter.builder("demo.subscriptions.reconnects", manager, SubscriptionManager::reconnectCount).register(registry);
+            FunctionCounter.builder("demo.subscriptions.dispatched", manager, SubscriptionManager::dispatchedCount).register(registry);
+        };
+    }
+}
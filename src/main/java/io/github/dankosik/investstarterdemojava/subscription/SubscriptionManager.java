@@ -0,0 +1,648 @@
+package io.github.dankosik.investstarterdemojava.subscription;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.CandleSubscription;
+import ru.tinkoff.piapi.contract.v1.InfoSubscription;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.LastPriceSubscription;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.MarketDataStreamServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.OrderBookSubscription;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.SubscriptionStatus;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.contract.v1.TradeSubscription;
+import ru.tinkoff.piapi.contract.v1.TradingStatus;
+import ru.tinkoff.piapi.core.stream.MarketDataSubscriptionService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Подписки на рыночные данные, которые можно добавлять и снимать во время работы без перезапуска стримов.
+ * <p>
+ * Инструменты всех типов раскладываются по общим стримам MarketDataStreamService, не больше maxPerStream подписок
+ * в стриме: новая подписка попадает в первый стрим со свободным местом, новый стрим открывается только когда места нет,
+ * опустевший стрим закрывается. Изменения копятся и раз в batchInterval уходят одним запросом subscribe и одним
+ * unsubscribe на тип в каждом стриме, подписка и отписка одного инструмента в одной пачке взаимно уничтожаются.
+ * Если стрим оборвался или сервер его завершил, он открывается заново со всеми своими подписками.
+ * <p>
+ * Маршрутизация событий - неизменяемые таблицы instrumentUid -> обработчики, по одной на тип. Изменения строят
+ * копию таблицы под блокировкой и публикуют ее атомарно, поток стрима читает текущую таблицу без блокировок.
+ * Снятая подписка перестает доставляться сразу, еще до отписки в стриме.
+ * <p>
+ * Хендлеры с аннотациями стартера и адаптеры withTickers сюда не попадают: их подписывает стартер на своих стримах
+ */
+public final class SubscriptionManager implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(SubscriptionManager.class);
+    private static final SubscriptionType[] TYPES = SubscriptionType.values();
+    private static final Object[] NO_HANDLERS = new Object[0];
+
+    private final MarketDataStreamServiceGrpc.MarketDataStreamServiceStub stub;
+    private final List<DynamicMarketDataHandler> handlers;
+    private final int maxPerStream;
+    private final long batchIntervalNanos;
+    private final int orderBookDepth;
+    private final SubscriptionInterval candleInterval;
+    private final Object lock = new Object();
+    private final AtomicReferenceArray<Map<String, Route>> routes = new AtomicReferenceArray<>(TYPES.length);
+    private final EnumMap<SubscriptionType, HashMap<String, Entry>> entries = new EnumMap<>(SubscriptionType.class);
+    private final List<ManagedStream> streams = new ArrayList<>();
+    private final AtomicInteger streamIds = new AtomicInteger();
+    private final Thread flusher;
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private volatile boolean dirty;
+    private volatile boolean closed;
+
+    private SubscriptionManager(Channel channel, List<DynamicMarketDataHandler> handlers, SubscriptionProperties properties) {
+        this.stub = MarketDataStreamServiceGrpc.newStub(channel);
+        this.handlers = List.copyOf(handlers);
+        this.maxPerStream = properties.maxPerStream();
+        this.batchIntervalNanos = properties.batchInterval().toNanos();
+        this.orderBookDepth = properties.orderBookDepth();
+        this.candleInterval = properties.candleInterval();
+        for (SubscriptionType type : TYPES) {
+            routes.set(type.ordinal(), Map.of());
+            entries.put(type, new HashMap<>());
+        }
+        this.flusher = Thread.ofPlatform().name("subscription-flusher").daemon().unstarted(this::runFlusher);
+    }
+
+    /**
+     * @param channel канал InvestApi, стримы открываются в нем напрямую: SDK не сообщает о нормальном завершении стрима
+     */
+    public static SubscriptionManager create(@NotNull Channel channel,
+                                             @NotNull List<DynamicMarketDataHandler> handlers,
+                                             @NotNull SubscriptionProperties properties) {
+        return new SubscriptionManager(channel, handlers, properties);
+    }
+
+    public SubscriptionManager start() {
+        flusher.start();
+        return this;
+    }
+
+    /**
+     * Добавляет инструменты, события по ним получают бины {@link DynamicMarketDataHandler}
+     */
+    public void add(@NotNull SubscriptionType type, @NotNull Collection<String> instrumentUids) {
+        update(type, instrumentUids, true);
+    }
+
+    /**
+     * Убирает инструменты добавленные через {@link #add}, подписки обработчиков на них остаются
+     */
+    public void remove(@NotNull SubscriptionType type, @NotNull Collection<String> instrumentUids) {
+        update(type, instrumentUids, false);
+    }
+
+    public InstrumentSubscription trades(@NotNull String instrumentUid, @NotNull Consumer<Trade> handler) {
+        return retain(SubscriptionType.TRADES, instrumentUid, handler);
+    }
+
+    public InstrumentSubscription orderBooks(@NotNull String instrumentUid, @NotNull Consumer<OrderBook> handler) {
+        return retain(SubscriptionType.ORDER_BOOKS, instrumentUid, handler);
+    }
+
+    public InstrumentSubscription candles(@NotNull String instrumentUid, @NotNull Consumer<Candle> handler) {
+        return retain(SubscriptionType.CANDLES, instrumentUid, handler);
+    }
+
+    public InstrumentSubscription lastPrices(@NotNull String instrumentUid, @NotNull Consumer<LastPrice> handler) {
+        return retain(SubscriptionType.LAST_PRICES, instrumentUid, handler);
+    }
+
+    public InstrumentSubscription tradingStatuses(@NotNull String instrumentUid, @NotNull Consumer<TradingStatus> handler) {
+        return retain(SubscriptionType.TRADING_STATUSES, instrumentUid, handler);
+    }
+
+    /**
+     * Инструменты на которые сейчас доставляются события, по типам
+     */
+    @NotNull
+    public Map<SubscriptionType, List<String>> subscriptions() {
+        Map<SubscriptionType, List<String>> result = new EnumMap<>(SubscriptionType.class);
+        for (SubscriptionType type : TYPES) {
+            result.put(type, routes.get(type.ordinal()).keySet().stream().sorted().toList());
+        }
+        return result;
+    }
+
+    /**
+     * Отправляет накопленные изменения не дожидаясь batchInterval
+     */
+    public void flush() {
+        synchronized (lock) {
+            dirty = false;
+            Iterator<ManagedStream> iterator = streams.iterator();
+            while (iterator.hasNext()) {
+                ManagedStream stream = iterator.next();
+                if (stream.broken) {
+                    reopen(stream);
+                }
+                send(stream);
+                if (stream.members.isEmpty()) {
+                    if (stream.service != null) {
+                        stream.service.cancel();
+                    }
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public int streamCount() {
+        synchronized (lock) {
+            return streams.size();
+        }
+    }
+
+    /**
+     * Подписок во всех стримах, включая еще не отправленные
+     */
+    public int subscriptionCount() {
+        synchronized (lock) {
+            int count = 0;
+            for (ManagedStream stream : streams) {
+                count += stream.members.size();
+            }
+            return count;
+        }
+    }
+
+    public long dispatchedCount() {
+        return dispatched.sum();
+    }
+
+    /**
+     * Запросов subscribe/unsubscribe отправлено в стримы
+     */
+    public long requestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Подписок, которые сервер не принял (неизвестный инструмент, превышен лимит и т.п.)
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    public long reconnectCount() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(flusher);
+        synchronized (lock) {
+            for (ManagedStream stream : streams) {
+                if (stream.service != null) {
+                    stream.service.cancel();
+                }
+            }
+            streams.clear();
+        }
+    }
+
+    void release(SubscriptionType type, String instrumentUid, Object handler) {
+        synchronized (lock) {
+            Entry entry = entries.get(type).get(instrumentUid);
+            if (entry == null) {
+                return;
+            }
+            boolean wasActive = entry.active();
+            entry.removeHandler(handler);
+            publish(type, entry, wasActive);
+        }
+    }
+
+    private InstrumentSubscription retain(SubscriptionType type, String instrumentUid, Object handler) {
+        synchronized (lock) {
+            Entry entry = entries.get(type).computeIfAbsent(instrumentUid, uid -> new Entry(type, uid));
+            boolean wasActive = entry.active();
+            entry.addHandler(handler);
+            publish(type, entry, wasActive);
+        }
+        return new InstrumentSubscription(this, type, instrumentUid, handler);
+    }
+
+    private void update(SubscriptionType type, Collection<String> instrumentUids, boolean global) {
+        synchronized (lock) {
+            HashMap<String, Route> table = new HashMap<>(routes.get(type.ordinal()));
+            for (String instrumentUid : instrumentUids) {
+                Entry entry = global
+                        ? entries.get(type).computeIfAbsent(instrumentUid, uid -> new Entry(type, uid))
+                        : entries.get(type).get(instrumentUid);
+                if (entry == null || entry.global == global) {
+                    continue;
+                }
+                boolean wasActive = entry.active();
+                entry.global = global;
+                apply(table, entry, wasActive);
+            }
+            routes.set(type.ordinal(), table);
+        }
+    }
+
+    private void publish(SubscriptionType type, Entry entry, boolean wasActive) {
+        HashMap<String, Route> table = new HashMap<>(routes.get(type.ordinal()));
+        apply(table, entry, wasActive);
+        routes.set(type.ordinal(), table);
+    }
+
+    /**
+     * Обновляет строку таблицы маршрутов и подписку в стриме, если инструмент стал или перестал быть нужен
+     */
+    private void apply(HashMap<String, Route> table, Entry entry, boolean wasActive) {
+        if (entry.active()) {
+            table.put(entry.instrumentUid, new Route(entry.global, entry.handlers));
+            if (!wasActive) {
+                attach(entry);
+            }
+        } else {
+            table.remove(entry.instrumentUid);
+            if (wasActive) {
+                detach(entry);
+            }
+        }
+    }
+
+    private void attach(Entry entry) {
+        ManagedStream stream = entry.stream;
+        if (stream != null) {
+            // отписка еще не отправлена - просто отменяем ее
+            stream.unsubscribe.get(entry.type).remove(entry.instrumentUid);
+            return;
+        }
+        stream = streamWithCapacity();
+        stream.members.add(entry);
+        entry.stream = stream;
+        stream.subscribe.get(entry.type).add(entry.instrumentUid);
+        dirty = true;
+    }
+
+    private void detach(Entry entry) {
+        ManagedStream stream = entry.stream;
+        if (stream.subscribe.get(entry.type).remove(entry.instrumentUid)) {
+            // подписка еще не отправлена - в стриме ее нет
+            forget(entry);
+            return;
+        }
+        stream.unsubscribe.get(entry.type).add(entry.instrumentUid);
+        dirty = true;
+    }
+
+    private void forget(Entry entry) {
+        entry.stream.members.remove(entry);
+        entry.stream = null;
+        entry.sent = false;
+        entries.get(entry.type).remove(entry.instrumentUid);
+    }
+
+    private ManagedStream streamWithCapacity() {
+        for (ManagedStream stream : streams) {
+            if (stream.members.size() < maxPerStream) {
+                return stream;
+            }
+        }
+        ManagedStream stream = new ManagedStream("dynamic-" + streamIds.incrementAndGet());
+        streams.add(stream);
+        return stream;
+    }
+
+    private void send(ManagedStream stream) {
+        for (SubscriptionType type : TYPES) {
+            LinkedHashSet<String> unsubscribe = stream.unsubscribe.get(type);
+            if (!unsubscribe.isEmpty()) {
+                unsubscribe(stream.service, type, List.copyOf(unsubscribe));
+                requests.increment();
+                for (String instrumentUid : unsubscribe) {
+                    forget(entries.get(type).get(instrumentUid));
+                }
+                unsubscribe.clear();
+            }
+            LinkedHashSet<String> subscribe = stream.subscribe.get(type);
+            if (!subscribe.isEmpty()) {
+                if (stream.service == null) {
+                    stream.service = open(stream);
+                }
+                subscribe(stream.service, type, List.copyOf(subscribe));
+                requests.increment();
+                for (String instrumentUid : subscribe) {
+                    entries.get(type).get(instrumentUid).sent = true;
+                }
+                subscribe.clear();
+            }
+        }
+    }
+
+    /**
+     * Стрим оборвался: открываем новый и подписываем заново все что в нем было, отложенные отписки уже не нужны
+     */
+    private void reopen(ManagedStream stream) {
+        stream.broken = false;
+        stream.service = null;
+        reconnects.increment();
+        for (SubscriptionType type : TYPES) {
+            for (String instrumentUid : List.copyOf(stream.unsubscribe.get(type))) {
+                forget(entries.get(type).get(instrumentUid));
+            }
+            stream.unsubscribe.get(type).clear();
+        }
+        for (Entry entry : stream.members) {
+            entry.sent = false;
+            stream.subscribe.get(entry.type).add(entry.instrumentUid);
+        }
+    }
+
+    private MarketDataSubscriptionService open(ManagedStream stream) {
+        ClientInterceptor onCompleted = new CompletionInterceptor(() -> {
+            log.warn("стрим {} динамических подписок завершен сервером, переподключение", stream.id);
+            reconnect(stream);
+        });
+        return new MarketDataSubscriptionService(stub.withInterceptors(onCompleted), this::dispatch, e -> {
+            log.warn("стрим {} динамических подписок оборвался, переподключение", stream.id, e);
+            reconnect(stream);
+        });
+    }
+
+    /**
+     * Стрим откроется заново при следующей отправке изменений
+     */
+    private void reconnect(ManagedStream stream) {
+        stream.broken = true;
+        dirty = true;
+    }
+
+    private void subscribe(MarketDataSubscriptionService service, SubscriptionType type, List<String> instrumentUids) {
+        switch (type) {
+            case TRADES -> service.subscribeTrades(instrumentUids);
+            case ORDER_BOOKS -> service.subscribeOrderbook(instrumentUids, orderBookDepth);
+            case CANDLES -> service.subscribeCandles(instrumentUids, candleInterval);
+            case LAST_PRICES -> service.subscribeLastPrices(instrumentUids);
+            case TRADING_STATUSES -> service.subscribeInfo(instrumentUids);
+        }
+    }
+
+    private void unsubscribe(MarketDataSubscriptionService service, SubscriptionType type, List<String> instrumentUids) {
+        switch (type) {
+            case TRADES -> service.unsubscribeTrades(instrumentUids);
+            case ORDER_BOOKS -> service.unsubscribeOrderbook(instrumentUids, orderBookDepth);
+            case CANDLES -> service.unsubscribeCandles(instrumentUids, candleInterval);
+            case LAST_PRICES -> service.unsubscribeLastPrices(instrumentUids);
+            case TRADING_STATUSES -> service.unsubscribeInfo(instrumentUids);
+        }
+    }
+
+    private void dispatch(MarketDataResponse response) {
+        switch (response.getPayloadCase()) {
+            case TRADE -> {
+                Trade trade = response.getTrade();
+                Route route = deliver(SubscriptionType.TRADES, trade.getInstrumentUid(), trade);
+                if (route != null && route.global) {
+                    for (DynamicMarketDataHandler handler : handlers) {
+                        handler.onTrade(trade);
+                    }
+                }
+            }
+            case ORDERBOOK -> {
+                OrderBook orderBook = response.getOrderbook();
+                Route route = deliver(SubscriptionType.ORDER_BOOKS, orderBook.getInstrumentUid(), orderBook);
+                if (route != null && route.global) {
+                    for (DynamicMarketDataHandler handler : handlers) {
+                        handler.onOrderBook(orderBook);
+                    }
+                }
+            }
+            case CANDLE -> {
+                Candle candle = response.getCandle();
+                Route route = deliver(SubscriptionType.CANDLES, candle.getInstrumentUid(), candle);
+                if (route != null && route.global) {
+                    for (DynamicMarketDataHandler handler : handlers) {
+                        handler.onCandle(candle);
+                    }
+                }
+            }
+            case LAST_PRICE -> {
+                LastPrice lastPrice = response.getLastPrice();
+                Route route = deliver(SubscriptionType.LAST_PRICES, lastPrice.getInstrumentUid(), lastPrice);
+                if (route != null && route.global) {
+                    for (DynamicMarketDataHandler handler : handlers) {
+                        handler.onLastPrice(lastPrice);
+                    }
+                }
+            }
+            case TRADING_STATUS -> {
+                TradingStatus tradingStatus = response.getTradingStatus();
+                Route route = deliver(SubscriptionType.TRADING_STATUSES, tradingStatus.getInstrumentUid(), tradingStatus);
+                if (route != null && route.global) {
+                    for (DynamicMarketDataHandler handler : handlers) {
+                        handler.onTradingStatus(tradingStatus);
+                    }
+                }
+            }
+            case SUBSCRIBE_TRADES_RESPONSE -> {
+                for (TradeSubscription subscription : response.getSubscribeTradesResponse().getTradeSubscriptionsList()) {
+                    checkStatus(SubscriptionType.TRADES, subscription.getInstrumentUid(), subscription.getSubscriptionStatus());
+                }
+            }
+            case SUBSCRIBE_ORDER_BOOK_RESPONSE -> {
+                for (OrderBookSubscription subscription : response.getSubscribeOrderBookResponse().getOrderBookSubscriptionsList()) {
+                    checkStatus(SubscriptionType.ORDER_BOOKS, subscription.getInstrumentUid(), subscription.getSubscriptionStatus());
+                }
+            }
+            case SUBSCRIBE_CANDLES_RESPONSE -> {
+                for (CandleSubscription subscription : response.getSubscribeCandlesResponse().getCandlesSubscriptionsList()) {
+                    checkStatus(SubscriptionType.CANDLES, subscription.getInstrumentUid(), subscription.getSubscriptionStatus());
+                }
+            }
+            case SUBSCRIBE_LAST_PRICE_RESPONSE -> {
+                for (LastPriceSubscription subscription : response.getSubscribeLastPriceResponse().getLastPriceSubscriptionsList()) {
+                    checkStatus(SubscriptionType.LAST_PRICES, subscription.getInstrumentUid(), subscription.getSubscriptionStatus());
+                }
+            }
+            case SUBSCRIBE_INFO_RESPONSE -> {
+                for (InfoSubscription subscription : response.getSubscribeInfoResponse().getInfoSubscriptionsList()) {
+                    checkStatus(SubscriptionType.TRADING_STATUSES, subscription.getInstrumentUid(), subscription.getSubscriptionStatus());
+                }
+            }
+            default -> {
+                // ping
+            }
+        }
+    }
+
+    /**
+     * Передает событие обработчикам инструмента
+     *
+     * @return маршрут инструмента или null если на него никто не подписан
+     */
+    @SuppressWarnings("unchecked")
+    private Route deliver(SubscriptionType type, String instrumentUid, Object event) {
+        Route route = routes.get(type.ordinal()).get(instrumentUid);
+        if (route == null) {
+            return null;
+        }
+        dispatched.increment();
+        for (Object handler : route.handlers) {
+            try {
+                ((Consumer<Object>) handler).accept(event);
+            } catch (RuntimeException e) {
+                log.error("ошибка в обработчике динамической подписки {} {}", type, instrumentUid, e);
+            }
+        }
+        return route;
+    }
+
+    private void checkStatus(SubscriptionType type, String instrumentUid, SubscriptionStatus status) {
+        if (status != SubscriptionStatus.SUBSCRIPTION_STATUS_SUCCESS) {
+            rejected.increment();
+            log.warn("подписка {} на {} не принята: {}", type, instrumentUid, status);
+        }
+    }
+
+    private void runFlusher() {
+        while (!closed) {
+            LockSupport.parkNanos(batchIntervalNanos);
+            if (dirty && !closed) {
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    log.error("ошибка отправки изменений подписок", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Строка таблицы маршрутов, не меняется после публикации
+     *
+     * @param global   отдавать события бинам {@link DynamicMarketDataHandler}
+     * @param handlers обработчики подписок {@link InstrumentSubscription}
+     */
+    private record Route(boolean global, Object[] handlers) {
+    }
+
+    /**
+     * Подписка на инструмент одного типа. Меняется только под блокировкой менеджера
+     */
+    private static final class Entry {
+
+        final SubscriptionType type;
+        final String instrumentUid;
+        boolean global;
+        Object[] handlers = NO_HANDLERS;
+        ManagedStream stream;
+        boolean sent;
+
+        Entry(SubscriptionType type, String instrumentUid) {
+            this.type = type;
+            this.instrumentUid = instrumentUid;
+        }
+
+        boolean active() {
+            return global || handlers.length > 0;
+        }
+
+        void addHandler(Object handler) {
+            Object[] next = Arrays.copyOf(handlers, handlers.length + 1);
+            next[handlers.length] = handler;
+            handlers = next;
+        }
+
+        void removeHandler(Object handler) {
+            for (int i = 0; i < handlers.length; i++) {
+                if (handlers[i] == handler) {
+                    Object[] next = new Object[handlers.length - 1];
+                    System.arraycopy(handlers, 0, next, 0, i);
+                    System.arraycopy(handlers, i + 1, next, i, handlers.length - i - 1);
+                    handlers = next;
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Сообщает о нормальном завершении вызова: StreamObserver из SDK игнорирует onCompleted, а сервер закрывает стрим
+     * со статусом OK например при обновлении
+     */
+    private static final class CompletionInterceptor implements ClientInterceptor {
+
+        private final Runnable onCompleted;
+
+        CompletionInterceptor(Runnable onCompleted) {
+            this.onCompleted = onCompleted;
+        }
+
+        @Override
+        public <Q, R> ClientCall<Q, R> interceptCall(MethodDescriptor<Q, R> method, CallOptions callOptions, Channel next) {
+            return new ForwardingClientCall.SimpleForwardingClientCall<>(next.newCall(method, callOptions)) {
+                @Override
+                public void start(Listener<R> responseListener, Metadata headers) {
+                    super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<>(responseListener) {
+                        @Override
+                        public void onClose(Status status, Metadata trailers) {
+                            super.onClose(status, trailers);
+                            if (status.isOk()) {
+                                onCompleted.run();
+                            }
+                        }
+                    }, headers);
+                }
+            };
+        }
+    }
+
+    /**
+     * Стрим MarketDataStreamService и изменения подписок, которые еще не отправлены в него
+     */
+    private static final class ManagedStream {
+
+        final String id;
+        final LinkedHashSet<Entry> members = new LinkedHashSet<>();
+        final EnumMap<SubscriptionType, LinkedHashSet<String>> subscribe = new EnumMap<>(SubscriptionType.class);
+        final EnumMap<SubscriptionType, LinkedHashSet<String>> unsubscribe = new EnumMap<>(SubscriptionType.class);
+        MarketDataSubscriptionService service;
+        volatile boolean broken;
+
+        ManagedStream(String id) {
+            this.id = id;
+            for (SubscriptionType type : TYPES) {
+                subscribe.put(type, new LinkedHashSet<>());
+                unsubscribe.put(type, new LinkedHashSet<>());
+            }
+        }
+    }
+}
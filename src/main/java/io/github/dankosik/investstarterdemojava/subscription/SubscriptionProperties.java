@@ -0,0 +1,26 @@
+package io.github.dankosik.investstarterdemojava.subscription;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+
+import java.time.Duration;
+
+/**
+ * Настройки {@link SubscriptionManager}
+ *
+ * @param enabled        включает динамические подписки и /admin/subscriptions
+ * @param maxPerStream   сколько подписок держать в одном стриме, ограничение API - 300
+ * @param batchInterval  как долго копить изменения подписок перед отправкой
+ * @param orderBookDepth глубина стаканов
+ * @param candleInterval интервал свечей
+ */
+@ConfigurationProperties(prefix = "demo.subscriptions")
+public record SubscriptionProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("300") int maxPerStream,
+        @DefaultValue("50ms") Duration batchInterval,
+        @DefaultValue("10") int orderBookDepth,
+        @DefaultValue("SUBSCRIPTION_INTERVAL_ONE_MINUTE") SubscriptionInterval candleInterval
+) {
+}
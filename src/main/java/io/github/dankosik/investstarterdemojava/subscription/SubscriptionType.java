@@ -0,0 +1,41 @@
+package io.github.dankosik.investstarterdemojava.subscription;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Тип подписки на рыночные данные, которым управляет {@link SubscriptionManager}
+ */
+public enum SubscriptionType {
+
+    TRADES("trades"),
+    ORDER_BOOKS("order_books"),
+    CANDLES("candles"),
+    LAST_PRICES("last_prices"),
+    TRADING_STATUSES("trading_statuses");
+
+    private final String path;
+
+    SubscriptionType(String path) {
+        this.path = path;
+    }
+
+    /**
+     * Имя в пути admin эндпоинта
+     */
+    public String path() {
+        return path;
+    }
+
+    /**
+     * @throws IllegalArgumentException если такого типа нет
+     */
+    @NotNull
+    public static SubscriptionType ofPath(@NotNull String path) {
+        for (SubscriptionType type : values()) {
+            if (type.path.equals(path)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("неизвестный тип подписки: " + path);
+    }
+}
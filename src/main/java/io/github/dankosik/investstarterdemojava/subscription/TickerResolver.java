@@ -0,0 +1,61 @@
+package io.github.dankosik.investstarterdemojava.subscription;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.tinkoff.piapi.core.InstrumentsService;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Поиск instrumentUid по тикеру для админского API подписок.
+ * Справочник акций, фьючерсов, фондов, облигаций и валют загружается при первом обращении
+ * и перезагружается на промахе, но не чаще раза в минуту
+ */
+public final class TickerResolver {
+
+    private static final long RELOAD_INTERVAL_NANOS = Duration.ofMinutes(1).toNanos();
+
+    private final InstrumentsService instrumentsService;
+    private volatile Map<String, String> uids;
+    private long loadedNanos;
+
+    public TickerResolver(@NotNull InstrumentsService instrumentsService) {
+        this.instrumentsService = instrumentsService;
+    }
+
+    /**
+     * Блокирующий вызов: может выгружать справочник инструментов
+     *
+     * @return instrumentUid или null если тикер не найден
+     */
+    @Nullable
+    public String resolve(@NotNull String ticker) {
+        Map<String, String> current = uids;
+        if (current == null) {
+            current = reload(null);
+        }
+        String uid = current.get(ticker);
+        if (uid == null) {
+            uid = reload(current).get(ticker);
+        }
+        return uid;
+    }
+
+    private synchronized Map<String, String> reload(@Nullable Map<String, String> seen) {
+        Map<String, String> current = uids;
+        if (current != null && (current != seen || System.nanoTime() - loadedNanos < RELOAD_INTERVAL_NANOS)) {
+            return current;
+        }
+        Map<String, String> loaded = new HashMap<>();
+        instrumentsService.getAllSharesSync().forEach(i -> loaded.putIfAbsent(i.getTicker(), i.getUid()));
+        instrumentsService.getAllFuturesSync().forEach(i -> loaded.putIfAbsent(i.getTicker(), i.getUid()));
+        instrumentsService.getAllEtfsSync().forEach(i -> loaded.putIfAbsent(i.getTicker(), i.getUid()));
+        instrumentsService.getAllBondsSync().forEach(i -> loaded.putIfAbsent(i.getTicker(), i.getUid()));
+        instrumentsService.getAllCurrenciesSync().forEach(i -> loaded.putIfAbsent(i.getTicker(), i.getUid()));
+        loadedNanos = System.nanoTime();
+        uids = Map.copyOf(loaded);
+        return uids;
+    }
+}
@@ -0,0 +1,152 @@
+package io.github.dankosik.investstarterdemojava.account;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.MoneyValue;
+import ru.tinkoff.piapi.contract.v1.PortfolioPosition;
+import ru.tinkoff.piapi.contract.v1.PortfolioResponse;
+import ru.tinkoff.piapi.contract.v1.PositionData;
+import ru.tinkoff.piapi.contract.v1.PositionsSecurities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AccountStateEngineTest {
+
+    private static final String ACCOUNT = "account";
+
+    private final List<String> deltas = new ArrayList<>();
+    private final AccountStateEngine engine = new AccountStateEngine(
+            List.of(delta -> deltas.add(delta.instrumentUid() + ":" + delta.previousQuantity() / Prices.SCALE
+                    + "->" + delta.quantity() / Prices.SCALE)),
+            4
+    );
+
+    @Test
+    void emitsOnlyChangedPositionsAndClosesMissingOnes() {
+        engine.onPortfolio(portfolio(position("a", 10, 100, 100), position("b", 5, 50, 50), position("c", 1, 10, 10)));
+        assertThat(deltas).containsExactly("a:0->10", "b:0->5", "c:0->1");
+        deltas.clear();
+
+        engine.onPortfolio(portfolio(position("a", 10, 100, 101), position("b", 7, 50, 50)));
+        assertThat(deltas).containsExactly("b:5->7", "c:1->0");
+        deltas.clear();
+
+        engine.onPortfolio(portfolio(position("a", 10, 100, 102), position("b", 7, 50, 50)));
+        assertThat(deltas).isEmpty();
+        assertThat(engine.positionCount()).isEqualTo(2);
+        assertThat(engine.quantity(ACCOUNT, "c")).isZero();
+        assertThat(engine.deltaCount()).isEqualTo(5);
+    }
+
+    @Test
+    void ticksUpdateTotalsExactlyAsFullRecompute() {
+        engine.onPortfolio(portfolio(position("a", 3, 100.5, 100.5), position("b", -2, 20, 20)));
+        engine.onPortfolio(portfolio("other", position("a", 1, 99, 99)));
+        engine.onLastPrice(lastPrice("a", 101.25));
+        engine.onLastPrice(lastPrice("b", 21.1));
+        engine.onLastPrice(lastPrice("a", 102.333333333));
+
+        AccountTotals totals = new AccountTotals();
+        assertThat(engine.readTotals(ACCOUNT, totals)).isTrue();
+        long a = Prices.multiply(3 * Prices.SCALE, scaled(102.333333333));
+        long b = Prices.multiply(-2 * Prices.SCALE, scaled(21.1));
+        long cost = Prices.multiply(3 * Prices.SCALE, scaled(100.5)) + Prices.multiply(-2 * Prices.SCALE, scaled(20));
+        assertThat(totals.positions()).isEqualTo(2);
+        assertThat(totals.marketValue()).isEqualTo(a + b);
+        assertThat(totals.grossExposure()).isEqualTo(Math.abs(a) + Math.abs(b));
+        assertThat(totals.unrealizedPnl()).isEqualTo(a + b - cost);
+
+        assertThat(engine.readTotals("other", totals)).isTrue();
+        assertThat(totals.marketValue()).isEqualTo(scaled(102.333333333));
+        assertThat(engine.repricedCount()).isEqualTo(5);
+        assertThat(engine.readTotals("unknown", totals)).isFalse();
+    }
+
+    @Test
+    void positionsStreamUpdatesAndClosesPositions() {
+        engine.onPortfolio(portfolio(position("a", 10, 100, 100), position("b", 5, 50, 50)));
+        engine.onPortfolio(portfolio("other", position("a", 2, 90, 90)));
+        deltas.clear();
+
+        engine.onPositions(positions(security("a", 8, 2), security("c", 4, 0)));
+        assertThat(deltas).containsExactly("c:0->4");
+        engine.onPositions(positions(security("a", 0, 0)));
+        assertThat(deltas).containsExactly("c:0->4", "a:10->0");
+        assertThat(engine.quantity(ACCOUNT, "b")).isEqualTo(5 * Prices.SCALE);
+
+        engine.onLastPrice(lastPrice("a", 110));
+        AccountTotals totals = new AccountTotals();
+        engine.readTotals(ACCOUNT, totals);
+        assertThat(totals.positions()).isEqualTo(2);
+        assertThat(totals.marketValue()).isEqualTo(250 * Prices.SCALE);
+        engine.readTotals("other", totals);
+        assertThat(totals.marketValue()).isEqualTo(220 * Prices.SCALE);
+        assertThat(engine.repricedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void handlersRunOutsideAccountLock() {
+        List<Long> seenByHandler = new ArrayList<>();
+        AccountStateEngine[] holder = new AccountStateEngine[1];
+        AccountStateEngine engine = new AccountStateEngine(List.of(delta -> {
+            // другой поток ждет блокировку того же счета: под блокировкой join не дождался бы его
+            Thread reader = Thread.ofPlatform().start(() -> {
+                seenByHandler.add(holder[0].quantity(delta.accountId(), delta.instrumentUid()));
+                holder[0].onLastPrice(lastPrice(delta.instrumentUid(), 1));
+            });
+            try {
+                reader.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }), 4);
+        holder[0] = engine;
+
+        engine.onPortfolio(portfolio(position("a", 10, 100, 100), position("b", 5, 50, 50)));
+        assertThat(seenByHandler).containsExactly(10 * Prices.SCALE, 5 * Prices.SCALE);
+        assertThat(engine.tickCount()).isEqualTo(2);
+    }
+
+    private static PortfolioResponse portfolio(PortfolioPosition... positions) {
+        return portfolio(ACCOUNT, positions);
+    }
+
+    private static PortfolioResponse portfolio(String accountId, PortfolioPosition... positions) {
+        return PortfolioResponse.newBuilder().setAccountId(accountId).addAllPositions(List.of(positions)).build();
+    }
+
+    private static PortfolioPosition position(String uid, long quantity, double average, double price) {
+        return PortfolioPosition.newBuilder()
+                .setInstrumentUid(uid)
+                .setQuantity(Prices.toQuotation(quantity * Prices.SCALE))
+                .setAveragePositionPrice(money(average))
+                .setCurrentPrice(money(price))
+                .build();
+    }
+
+    private static PositionData positions(PositionsSecurities... securities) {
+        return PositionData.newBuilder().setAccountId(ACCOUNT).addAllSecurities(List.of(securities)).build();
+    }
+
+    private static PositionsSecurities security(String uid, long balance, long blocked) {
+        return PositionsSecurities.newBuilder().setInstrumentUid(uid).setBalance(balance).setBlocked(blocked).build();
+    }
+
+    private static LastPrice lastPrice(String uid, double price) {
+        return LastPrice.newBuilder().setInstrumentUid(uid).setPrice(Prices.toQuotation(scaled(price))).build();
+    }
+
+    private static MoneyValue money(double value) {
+        long scaled = scaled(value);
+        return MoneyValue.newBuilder().setCurrency("rub").setUnits(scaled / Prices.SCALE).setNano((int) (scaled % Prices.SCALE)).build();
+    }
+
+    private static long scaled(double value) {
+        return Math.round(value * Prices.SCALE);
+    }
+}
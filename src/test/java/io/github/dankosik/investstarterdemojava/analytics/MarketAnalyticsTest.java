@@ -0,0 +1,179 @@
+package io.github.dankosik.investstarterdemojava.analytics;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.contract.v1.TradeDirection;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class MarketAnalyticsTest {
+
+    private static final String UID = "uid";
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final long START = TimeUnit.HOURS.toNanos(24 * 19_000);
+
+    @Test
+    void keepsVwapImbalanceAndRateOverWindow() {
+        MarketAnalytics analytics = new MarketAnalytics(Duration.ofMinutes(5), 5);
+        analytics.onTrade(trade(START, 100, 1, TradeDirection.TRADE_DIRECTION_BUY));
+        analytics.onTrade(trade(START + MINUTE, 110, 3, TradeDirection.TRADE_DIRECTION_SELL));
+        analytics.onTrade(trade(START + MINUTE + 1, 105, 2, TradeDirection.TRADE_DIRECTION_UNSPECIFIED));
+
+        AnalyticsSnapshot snapshot = new AnalyticsSnapshot();
+        assertThat(analytics.read(UID, snapshot)).isTrue();
+        assertThat(snapshot.vwap()).isEqualTo(Math.round((100.0 + 330 + 210) / 6 * Prices.SCALE));
+        assertThat(snapshot.volume()).isEqualTo(6);
+        assertThat(snapshot.buyVolume()).isEqualTo(1);
+        assertThat(snapshot.sellVolume()).isEqualTo(3);
+        assertThat(snapshot.imbalance()).isEqualTo(-0.5);
+        assertThat(snapshot.tradeCount()).isEqualTo(3);
+        assertThat(snapshot.tradeRate()).isEqualTo(3.0 / 300);
+        assertThat(snapshot.version()).isEqualTo(3);
+
+        // первая минута вышла из окна, сделка старше окна не учитывается
+        analytics.onTrade(trade(START + 5 * MINUTE + 1, 120, 1, TradeDirection.TRADE_DIRECTION_BUY));
+        analytics.onTrade(trade(START, 90, 100, TradeDirection.TRADE_DIRECTION_BUY));
+        analytics.read(UID, snapshot);
+        assertThat(snapshot.vwap()).isEqualTo(Math.round((330.0 + 210 + 120) / 6 * Prices.SCALE));
+        assertThat(snapshot.buyVolume()).isEqualTo(1);
+        assertThat(snapshot.imbalance()).isEqualTo(-0.5);
+        assertThat(snapshot.tradeCount()).isEqualTo(3);
+        assertThat(analytics.lateCount()).isEqualTo(1);
+
+        // окно целиком устарело
+        analytics.onTrade(trade(START + 20 * MINUTE, 130, 2, TradeDirection.TRADE_DIRECTION_BUY));
+        analytics.read(UID, snapshot);
+        assertThat(snapshot.vwap()).isEqualTo(130 * Prices.SCALE);
+        assertThat(snapshot.imbalance()).isEqualTo(1.0);
+        assertThat(snapshot.tradeCount()).isEqualTo(1);
+        assertThat(analytics.read("unknown", snapshot)).isFalse();
+    }
+
+    @Test
+    void realizedVolatilityFromLastPrices() {
+        MarketAnalytics analytics = new MarketAnalytics(Duration.ofMinutes(5), 5);
+        analytics.onLastPrice(lastPrice(START, 100));
+        analytics.onLastPrice(lastPrice(START + MINUTE, 110));
+        analytics.onLastPrice(lastPrice(START + 2 * MINUTE, 99));
+        // цена старше уже учтенной пропускается
+        analytics.onLastPrice(lastPrice(START + MINUTE + 1, 1_000));
+
+        AnalyticsSnapshot snapshot = new AnalyticsSnapshot();
+        analytics.read(UID, snapshot);
+        double first = Math.log(110.0 / 100);
+        double second = Math.log(99.0 / 110);
+        assertThat(snapshot.returnCount()).isEqualTo(2);
+        assertThat(snapshot.volatility()).isCloseTo(Math.sqrt(first * first + second * second), within(1e-12));
+        assertThat(snapshot.lastPrice()).isEqualTo(99 * Prices.SCALE);
+        assertThat(analytics.lateCount()).isEqualTo(1);
+
+        analytics.onLastPrice(lastPrice(START + 6 * MINUTE + 1, 99));
+        analytics.read(UID, snapshot);
+        assertThat(snapshot.returnCount()).isEqualTo(2);
+        assertThat(snapshot.volatility()).isCloseTo(Math.abs(second), within(1e-12));
+        assertThat(analytics.lastPriceCount()).isEqualTo(5);
+    }
+
+    @Test
+    void quietInstrumentDecaysWhenReadAtCurrentTime() {
+        MarketAnalytics analytics = new MarketAnalytics(Duration.ofMinutes(5), 5);
+        analytics.onTrade(trade(START, 100, 1, TradeDirection.TRADE_DIRECTION_BUY));
+        analytics.onTrade(trade(START + MINUTE, 110, 3, TradeDirection.TRADE_DIRECTION_SELL));
+        analytics.onLastPrice(lastPrice(START, 100));
+        analytics.onLastPrice(lastPrice(START + MINUTE, 110));
+        analytics.onLastPrice(lastPrice(START + 2 * MINUTE, 99));
+
+        // первая минута вышла из окна, хотя событий после нее не было
+        AnalyticsSnapshot snapshot = new AnalyticsSnapshot();
+        assertThat(analytics.read(UID, START + 5 * MINUTE + 1, snapshot)).isTrue();
+        assertThat(snapshot.vwap()).isEqualTo(110 * Prices.SCALE);
+        assertThat(snapshot.volume()).isEqualTo(3);
+        assertThat(snapshot.buyVolume()).isZero();
+        assertThat(snapshot.tradeCount()).isEqualTo(1);
+        assertThat(snapshot.returnCount()).isEqualTo(2);
+
+        analytics.read(UID, START + 8 * MINUTE, snapshot);
+        assertThat(snapshot.vwap()).isZero();
+        assertThat(snapshot.volume()).isZero();
+        assertThat(snapshot.tradeRate()).isZero();
+        assertThat(snapshot.returnCount()).isZero();
+        assertThat(snapshot.volatility()).isZero();
+        assertThat(snapshot.lastPrice()).isEqualTo(99 * Prices.SCALE);
+
+        // чтение не двигает окно
+        analytics.read(UID, snapshot);
+        assertThat(snapshot.volume()).isEqualTo(4);
+        assertThat(snapshot.tradeCount()).isEqualTo(2);
+        assertThat(analytics.read("unknown", START, snapshot)).isFalse();
+    }
+
+    @Test
+    void readersNeverSeeHalfWrittenSnapshot() throws Exception {
+        MarketAnalytics analytics = new MarketAnalytics(Duration.ofHours(1), 60);
+        // все сделки по одной цене и на покупку, поэтому в любой версии vwap постоянен и объем равен объему покупок
+        analytics.onTrade(trade(START, 100, 1, TradeDirection.TRADE_DIRECTION_BUY));
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(Thread.ofPlatform().start(() -> {
+                AnalyticsSnapshot snapshot = new AnalyticsSnapshot();
+                while (running.get()) {
+                    analytics.read(UID, snapshot);
+                    if (snapshot.vwap() != 100 * Prices.SCALE || snapshot.volume() != snapshot.buyVolume()
+                            || snapshot.volume() != snapshot.tradeCount() * 2 - 1) {
+                        failure.compareAndSet(null, snapshot.toString());
+                    }
+                }
+            }));
+        }
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 2; w++) {
+            writers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    analytics.onTrade(trade(START + i, 100, 2, TradeDirection.TRADE_DIRECTION_BUY));
+                }
+            }));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertThat(failure.get()).isNull();
+        AnalyticsSnapshot snapshot = new AnalyticsSnapshot();
+        analytics.read(UID, snapshot);
+        assertThat(snapshot.tradeCount()).isEqualTo(200_001);
+        assertThat(snapshot.version()).isEqualTo(200_001);
+    }
+
+    private static Trade trade(long time, long price, long quantity, TradeDirection direction) {
+        return Trade.newBuilder()
+                .setInstrumentUid(UID)
+                .setPrice(Prices.toQuotation(price * Prices.SCALE))
+                .setQuantity(quantity)
+                .setDirection(direction)
+                .setTime(Prices.toTimestamp(time))
+                .build();
+    }
+
+    private static LastPrice lastPrice(long time, long price) {
+        return LastPrice.newBuilder()
+                .setInstrumentUid(UID)
+                .setPrice(Prices.toQuotation(price * Prices.SCALE))
+                .setTime(Prices.toTimestamp(time))
+                .build();
+    }
+}
@@ -0,0 +1,55 @@
+package io.github.dankosik.investstarterdemojava.aot;
+
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleTrade;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RegisteredBean;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.MarketDataStreamServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+import ru.tinkoff.piapi.contract.v1.SecurityTradingStatus;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NativeHintsTest {
+
+    @Test
+    void contractMessagesBuildersAndEnumsAreRegistered() throws Exception {
+        RuntimeHints hints = new RuntimeHints();
+        new ContractRuntimeHints().registerHints(hints, getClass().getClassLoader());
+
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(Trade.class.getMethod("getPrice"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(Trade.Builder.class.getMethod("setPrice", Quotation.class))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(MarketDataResponse.class.getMethod("getPayloadCase"))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(SecurityTradingStatus.class.getMethod("forNumber", int.class))).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(MarketDataStreamServiceGrpc.class)).rejects(hints);
+    }
+
+    @Test
+    void handlerBeansAndTheirAnnotationsAreRegistered() throws Exception {
+        var beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("handler", new RootBeanDefinition(TradeHandler.class));
+        beanFactory.registerBeanDefinition("other", new RootBeanDefinition(String.class));
+        var processor = new HandlerBeanAotProcessor();
+
+        assertThat(processor.processAheadOfTime(RegisteredBean.of(beanFactory, "other"))).isNull();
+        assertThat(processor.processAheadOfTime(RegisteredBean.of(beanFactory, "handler"))).isNotNull();
+
+        RuntimeHints hints = new RuntimeHints();
+        HandlerBeanAotProcessor.registerHints(hints, TradeHandler.class, HandlerBeanAotProcessor.handlerAnnotations(TradeHandler.class));
+        assertThat(RuntimeHintsPredicates.reflection().onType(TradeHandler.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onMethod(HandleTrade.class.getMethod("ticker"))).accepts(hints);
+    }
+
+    /**
+     * abstract - чтобы не попасть в компонент-скан приложения
+     */
+    @HandleTrade(ticker = "SBER")
+    abstract static class TradeHandler implements AsyncTradeHandler {
+    }
+}
@@ -0,0 +1,159 @@
+package io.github.dankosik.investstarterdemojava.candle;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CandleAggregatorTest {
+
+    private static final String UID = "uid";
+    private static final long MINUTE = TimeUnit.MINUTES.toNanos(1);
+    private static final long START = TimeUnit.HOURS.toNanos(24 * 19_000);
+
+    private final List<Candle> closed = new ArrayList<>();
+
+    @Test
+    void buildsBarsFromTradesAndClosesThemOnNextBar() {
+        CandleAggregator aggregator = aggregator(List.of(Timeframe.TWO_MINUTES, Timeframe.FIVE_MINUTES));
+        aggregator.onTrade(trade(START, 100, 1));
+        aggregator.onTrade(trade(START + 30_000_000_000L, 105, 2));
+        aggregator.onTrade(trade(START + MINUTE + 1, 95, 3));
+        assertThat(closed).isEmpty();
+
+        aggregator.onTrade(trade(START + 2 * MINUTE, 101, 4));
+        assertThat(closed).hasSize(1);
+        Candle bar = closed.get(0);
+        assertThat(bar.getInterval()).isEqualTo(SubscriptionInterval.SUBSCRIPTION_INTERVAL_2_MIN);
+        assertThat(Prices.toEpochNanos(bar.getTime())).isEqualTo(START);
+        assertThat(Prices.toScaled(bar.getOpen())).isEqualTo(100 * Prices.SCALE);
+        assertThat(Prices.toScaled(bar.getHigh())).isEqualTo(105 * Prices.SCALE);
+        assertThat(Prices.toScaled(bar.getLow())).isEqualTo(95 * Prices.SCALE);
+        assertThat(Prices.toScaled(bar.getClose())).isEqualTo(95 * Prices.SCALE);
+        assertThat(bar.getVolume()).isEqualTo(6);
+
+        aggregator.closeExpired(START + 5 * MINUTE + 1);
+        assertThat(closed).extracting(Candle::getInterval).containsExactly(
+                SubscriptionInterval.SUBSCRIPTION_INTERVAL_2_MIN,
+                SubscriptionInterval.SUBSCRIPTION_INTERVAL_2_MIN,
+                SubscriptionInterval.SUBSCRIPTION_INTERVAL_FIVE_MINUTES
+        );
+        assertThat(closed.get(2).getVolume()).isEqualTo(10);
+        assertThat(aggregator.closedBarCount()).isEqualTo(3);
+    }
+
+    @Test
+    void replacesVolumeOfRepeatedMinuteCandles() {
+        CandleAggregator aggregator = aggregator(List.of(Timeframe.FIVE_MINUTES));
+        aggregator.onCandle(candle(START, 100, 101, 99, 100, 10));
+        aggregator.onCandle(candle(START, 100, 103, 99, 102, 25));
+        aggregator.onCandle(candle(START + MINUTE, 102, 102, 97, 98, 5));
+        aggregator.onCandle(candle(START + MINUTE, 102, 104, 97, 104, 7));
+        aggregator.onCandle(candle(START + 5 * MINUTE, 104, 104, 104, 104, 1));
+
+        assertThat(closed).hasSize(1);
+        Candle bar = closed.get(0);
+        assertThat(Prices.toScaled(bar.getOpen())).isEqualTo(100 * Prices.SCALE);
+        assertThat(Prices.toScaled(bar.getHigh())).isEqualTo(104 * Prices.SCALE);
+        assertThat(Prices.toScaled(bar.getLow())).isEqualTo(97 * Prices.SCALE);
+        assertThat(Prices.toScaled(bar.getClose())).isEqualTo(104 * Prices.SCALE);
+        assertThat(bar.getVolume()).isEqualTo(32);
+        // первая минута уже вышла из 5-минутного окна
+        assertThat(aggregator.rollingVolume(UID)).isEqualTo(8);
+    }
+
+    @Test
+    void expiredBarIsNotReopenedByLateUpdates() {
+        CandleAggregator aggregator = aggregator(List.of(Timeframe.TWO_MINUTES));
+        aggregator.onCandle(candle(START, 100, 101, 99, 100, 10));
+        aggregator.closeExpired(START + 2 * MINUTE);
+        assertThat(closed).hasSize(1);
+        assertThat(closed.get(0).getVolume()).isEqualTo(10);
+        assertThat(closed.get(0).getFigi()).isEmpty();
+
+        // обновление той же минуты и трейд из закрытого интервала
+        aggregator.onCandle(candle(START, 100, 120, 99, 120, 15));
+        aggregator.onTrade(trade(START + MINUTE, 130, 1));
+        aggregator.closeExpired(START + 2 * MINUTE);
+        assertThat(closed).hasSize(1);
+        assertThat(aggregator.lateUpdateCount()).isEqualTo(2);
+
+        aggregator.onCandle(candle(START + 2 * MINUTE, 105, 106, 104, 105, 3));
+        aggregator.onCandle(candle(START + 4 * MINUTE, 105, 105, 105, 105, 1));
+        assertThat(closed).hasSize(2);
+        Candle bar = closed.get(1);
+        assertThat(Prices.toEpochNanos(bar.getTime())).isEqualTo(START + 2 * MINUTE);
+        assertThat(Prices.toScaled(bar.getHigh())).isEqualTo(106 * Prices.SCALE);
+        assertThat(bar.getVolume()).isEqualTo(3);
+    }
+
+    @Test
+    void rollingVwapForgetsTradesOutsideWindow() {
+        CandleAggregator aggregator = aggregator(List.of(Timeframe.ONE_HOUR));
+        aggregator.onTrade(trade(START, 100, 1));
+        aggregator.onTrade(trade(START + MINUTE, 110, 3));
+        assertThat(aggregator.vwap(UID)).isEqualTo(Math.round((100.0 + 330) / 4 * Prices.SCALE));
+        assertThat(aggregator.rollingVolume(UID)).isEqualTo(4);
+
+        aggregator.onTrade(trade(START + 5 * MINUTE + 1, 120, 1));
+        assertThat(aggregator.rollingVolume(UID)).isEqualTo(4);
+        assertThat(aggregator.vwap(UID)).isEqualTo(Math.round((330.0 + 120) / 4 * Prices.SCALE));
+        assertThat(aggregator.vwap("unknown")).isZero();
+    }
+
+    @Test
+    void handlersRunOutsideInstrumentLock() throws Exception {
+        List<Long> vwapsSeenByHandler = new ArrayList<>();
+        CandleAggregator[] holder = new CandleAggregator[1];
+        CandleAggregator aggregator = new CandleAggregator(List.of(Timeframe.TWO_MINUTES), List.of(bar -> {
+            // другой поток ждет ту же блокировку инструмента: под блокировкой join не дождался бы его
+            Thread reader = Thread.ofPlatform().start(() -> vwapsSeenByHandler.add(holder[0].vwap(UID)));
+            try {
+                reader.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }), Duration.ZERO, Duration.ofMinutes(5), 5);
+        holder[0] = aggregator;
+
+        aggregator.onTrade(trade(START, 100, 1));
+        aggregator.onTrade(trade(START + 2 * MINUTE, 100, 1));
+        aggregator.closeExpired(START + 4 * MINUTE);
+        assertThat(vwapsSeenByHandler).containsExactly(100 * Prices.SCALE, 100 * Prices.SCALE);
+    }
+
+    private CandleAggregator aggregator(List<Timeframe> timeframes) {
+        return new CandleAggregator(timeframes, List.of(bar -> closed.add(bar.toCandle())), Duration.ZERO, Duration.ofMinutes(5), 5);
+    }
+
+    private static Trade trade(long time, long price, long quantity) {
+        return Trade.newBuilder()
+                .setInstrumentUid(UID)
+                .setPrice(Prices.toQuotation(price * Prices.SCALE))
+                .setQuantity(quantity)
+                .setTime(Prices.toTimestamp(time))
+                .build();
+    }
+
+    private static Candle candle(long minute, long open, long high, long low, long close, long volume) {
+        return Candle.newBuilder()
+                .setInstrumentUid(UID)
+                .setInterval(SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE)
+                .setOpen(Prices.toQuotation(open * Prices.SCALE))
+                .setHigh(Prices.toQuotation(high * Prices.SCALE))
+                .setLow(Prices.toQuotation(low * Prices.SCALE))
+                .setClose(Prices.toQuotation(close * Prices.SCALE))
+                .setVolume(volume)
+                .setTime(Prices.toTimestamp(minute))
+                .setLastTradeTs(Prices.toTimestamp(minute + 1))
+                .build();
+    }
+}
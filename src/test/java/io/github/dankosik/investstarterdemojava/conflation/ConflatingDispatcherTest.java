@@ -0,0 +1,129 @@
+package io.github.dankosik.investstarterdemojava.conflation;
+
+import io.github.dankosik.investstarterdemojava.executor.LaneThreads;
+import io.github.dankosik.starter.invest.contract.marketdata.lastprice.AsyncLastPriceHandler;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConflatingDispatcherTest {
+
+    @Test
+    void deliversOnlyLatestWhileHandlerIsBusy() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Long> handled = new CopyOnWriteArrayList<>();
+        try (ConflatingDispatcher dispatcher = new ConflatingDispatcher(true, 1, LaneThreads.PLATFORM, 16).start()) {
+            AsyncLastPriceHandler handler = dispatcher.lastPrices(lastPrice -> {
+                started.countDown();
+                await(release);
+                handled.add(lastPrice.getPrice().getUnits());
+                return CompletableFuture.completedFuture(null);
+            });
+            CompletableFuture<Void> first = handler.handleAsync(lastPrice("uid", 0));
+            started.await();
+            List<CompletableFuture<Void>> coalesced = new ArrayList<>();
+            for (long n = 1; n <= 10; n++) {
+                coalesced.add(handler.handleAsync(lastPrice("uid", n)));
+            }
+            assertThat(dispatcher.dirtyCount()).isZero();
+            // future завершается только когда событие или заменившее его обработано
+            assertThat(first).isNotDone();
+            assertThat(coalesced).allSatisfy(future -> assertThat(future).isNotDone());
+            release.countDown();
+            first.get(5, TimeUnit.SECONDS);
+            CompletableFuture.allOf(coalesced.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            awaitDispatched(dispatcher, 2);
+
+            assertThat(handled).containsExactly(0L, 10L);
+            assertThat(dispatcher.receivedCount()).isEqualTo(11);
+            assertThat(dispatcher.coalescedCount()).isEqualTo(9);
+        }
+    }
+
+    @Test
+    void neverRunsSameInstrumentConcurrentlyAndEndsWithLatest() throws Exception {
+        int instruments = 16;
+        int perInstrument = 20_000;
+        Map<String, AtomicInteger> inFlight = new ConcurrentHashMap<>();
+        Map<String, Long> last = new ConcurrentHashMap<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        try (ConflatingDispatcher dispatcher = new ConflatingDispatcher(true, 4, LaneThreads.VIRTUAL, 64).start()) {
+            Consumer<OrderBook> handler = dispatcher.blockingOrderBooks(orderBook -> {
+                String uid = orderBook.getInstrumentUid();
+                if (inFlight.computeIfAbsent(uid, k -> new AtomicInteger()).incrementAndGet() != 1) {
+                    failure.set(uid + " обрабатывается параллельно");
+                }
+                Long previous = last.put(uid, orderBook.getDepth() * 1L);
+                if (previous != null && previous >= orderBook.getDepth()) {
+                    failure.set(uid + " получил устаревший стакан");
+                }
+                inFlight.get(uid).decrementAndGet();
+            });
+            Thread producer = Thread.ofPlatform().start(() -> {
+                for (int n = 1; n <= perInstrument; n++) {
+                    for (int i = 0; i < instruments; i++) {
+                        handler.accept(OrderBook.newBuilder().setInstrumentUid("uid-" + i).setDepth(n).build());
+                    }
+                }
+            });
+            producer.join();
+            long deadline = System.nanoTime() + 5_000_000_000L;
+            while (last.values().stream().anyMatch(depth -> depth != perInstrument) && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+
+            assertThat(failure.get()).isNull();
+            assertThat(last).hasSize(instruments).allSatisfy((uid, depth) -> assertThat(depth).isEqualTo(perInstrument));
+            assertThat(dispatcher.receivedCount()).isEqualTo((long) instruments * perInstrument);
+            assertThat(dispatcher.dispatchedCount() + dispatcher.coalescedCount()).isEqualTo(dispatcher.receivedCount());
+        }
+    }
+
+    @Test
+    void passesThroughWhenDisabled() {
+        List<Long> handled = new CopyOnWriteArrayList<>();
+        try (ConflatingDispatcher dispatcher = new ConflatingDispatcher(false, 2, LaneThreads.VIRTUAL, 16).start()) {
+            Consumer<LastPrice> handler = dispatcher.blockingLastPrices(lastPrice -> handled.add(lastPrice.getPrice().getUnits()));
+            for (long n = 0; n < 5; n++) {
+                handler.accept(lastPrice("uid", n));
+            }
+            assertThat(handled).containsExactly(0L, 1L, 2L, 3L, 4L);
+            assertThat(dispatcher.receivedCount()).isZero();
+        }
+    }
+
+    private static LastPrice lastPrice(String uid, long price) {
+        return LastPrice.newBuilder().setInstrumentUid(uid).setPrice(Quotation.newBuilder().setUnits(price)).build();
+    }
+
+    private static void awaitDispatched(ConflatingDispatcher dispatcher, long count) throws InterruptedException {
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (dispatcher.dispatchedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
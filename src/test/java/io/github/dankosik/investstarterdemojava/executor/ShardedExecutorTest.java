@@ -0,0 +1,173 @@
+package io.github.dankosik.investstarterdemojava.executor;
+
+import io.github.dankosik.starter.invest.contract.marketdata.orderbook.BlockingOrderBookHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.BlockingTradeHandler;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardedExecutorTest {
+
+    @Test
+    void keepsOrderPerInstrumentAcrossLanes() throws Exception {
+        int instruments = 32;
+        int perInstrument = 5_000;
+        Map<String, List<Long>> seen = new ConcurrentHashMap<>();
+        Map<String, Thread> threads = new ConcurrentHashMap<>();
+        AtomicReference<String> failure = new AtomicReference<>();
+        try (ShardedExecutor executor = new ShardedExecutor(4, 64, 16, LaneOverflowPolicy.BLOCK, LaneThreads.PLATFORM, "test").start()) {
+            BlockingTradeHandler handler = executor.blockingTrades(trade -> {
+                seen.computeIfAbsent(trade.getInstrumentUid(), uid -> new ArrayList<>()).add(trade.getQuantity());
+                Thread previous = threads.putIfAbsent(trade.getInstrumentUid(), Thread.currentThread());
+                if (previous != null && previous != Thread.currentThread()) {
+                    failure.set(trade.getInstrumentUid() + " обработан в разных полосах");
+                }
+            });
+            // каждый инструмент публикует один поток, как один стрим
+            List<Thread> producers = new ArrayList<>();
+            for (int p = 0; p < 4; p++) {
+                int producer = p;
+                producers.add(Thread.ofPlatform().start(() -> {
+                    for (long n = 0; n < perInstrument; n++) {
+                        for (int i = producer; i < instruments; i += 4) {
+                            handler.handleBlocking(Trade.newBuilder().setInstrumentUid("uid-" + i).setQuantity(n).build());
+                        }
+                    }
+                }));
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+        }
+        assertThat(failure.get()).isNull();
+        assertThat(seen).hasSize(instruments);
+        for (List<Long> quantities : seen.values()) {
+            assertThat(quantities).hasSize(perInstrument);
+            for (int n = 0; n < perInstrument; n++) {
+                assertThat(quantities.get(n)).isEqualTo(n);
+            }
+        }
+    }
+
+    @Test
+    void dropsOldestWhenLaneIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        List<Long> handled = new CopyOnWriteArrayList<>();
+        try (ShardedExecutor executor = new ShardedExecutor(1, 4, 16, LaneOverflowPolicy.DROP_OLDEST, LaneThreads.VIRTUAL, "test").start()) {
+            BlockingTradeHandler handler = executor.blockingTrades(trade -> {
+                started.countDown();
+                await(release);
+                handled.add(trade.getQuantity());
+            });
+            handler.handleBlocking(trade(0));
+            started.await();
+            for (long n = 1; n <= 10; n++) {
+                handler.handleBlocking(trade(n));
+            }
+            assertThat(executor.stats(false).get(0).dropped()).isEqualTo(6);
+            release.countDown();
+        }
+        assertThat(handled).containsExactly(0L, 7L, 8L, 9L, 10L);
+    }
+
+    @Test
+    void dropOldestNeverDropsEventsOfOtherHandlers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        List<Long> blocking = new CopyOnWriteArrayList<>();
+        List<Long> dropping = new CopyOnWriteArrayList<>();
+        try (ShardedExecutor executor = new ShardedExecutor(1, 4, 16, LaneOverflowPolicy.BLOCK, LaneThreads.VIRTUAL, "test").start()) {
+            BlockingTradeHandler block = executor.blockingTrades(trade -> {
+                started.countDown();
+                await(release);
+                blocking.add(trade.getQuantity());
+            });
+            BlockingTradeHandler drop = executor.blockingTrades(trade -> dropping.add(trade.getQuantity()), LaneOverflowPolicy.DROP_OLDEST);
+            block.handleBlocking(trade(0));
+            started.await();
+            for (long n = 1; n <= 3; n++) {
+                block.handleBlocking(trade(n));
+            }
+            for (long n = 1; n <= 10; n++) {
+                drop.handleBlocking(trade(n));
+            }
+            assertThat(executor.stats(false).get(0).dropped()).isEqualTo(6);
+            assertThat(executor.depth(0)).isEqualTo(7);
+            release.countDown();
+        }
+        assertThat(blocking).containsExactly(0L, 1L, 2L, 3L);
+        assertThat(dropping).containsExactly(7L, 8L, 9L, 10L);
+    }
+
+    @Test
+    void conflatesSnapshotsToLatestPerInstrument() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        List<String> handled = new CopyOnWriteArrayList<>();
+        try (ShardedExecutor executor = new ShardedExecutor(1, 4, 16, LaneOverflowPolicy.BLOCK, LaneThreads.PLATFORM, "test").start()) {
+            BlockingOrderBookHandler handler = executor.blockingOrderBooks(orderBook -> {
+                started.countDown();
+                await(release);
+                handled.add(orderBook.getInstrumentUid() + ":" + orderBook.getDepth());
+            }, LaneOverflowPolicy.CONFLATE);
+            handler.handleBlocking(orderBook("a", 0));
+            started.await();
+            for (int depth = 1; depth <= 20; depth++) {
+                handler.handleBlocking(orderBook("a", depth));
+                handler.handleBlocking(orderBook("b", depth));
+            }
+            assertThat(executor.stats(false).get(0).conflated()).isEqualTo(38);
+            release.countDown();
+        }
+        assertThat(handled).containsExactly("a:0", "a:20", "b:20");
+    }
+
+    @Test
+    void countsEventsSubmittedAfterCloseAsDropped() {
+        List<String> handled = new CopyOnWriteArrayList<>();
+        ShardedExecutor executor = new ShardedExecutor(1, 4, 16, LaneOverflowPolicy.BLOCK, LaneThreads.PLATFORM, "test").start();
+        BlockingTradeHandler block = executor.blockingTrades(trade -> handled.add("block"));
+        BlockingTradeHandler drop = executor.blockingTrades(trade -> handled.add("drop"), LaneOverflowPolicy.DROP_OLDEST);
+        BlockingOrderBookHandler conflate = executor.blockingOrderBooks(orderBook -> handled.add("conflate"), LaneOverflowPolicy.CONFLATE);
+        block.handleBlocking(trade(0));
+        executor.close();
+
+        block.handleBlocking(trade(1));
+        drop.handleBlocking(trade(1));
+        conflate.handleBlocking(orderBook("a", 1));
+        conflate.handleBlocking(orderBook("a", 2));
+
+        assertThat(handled).containsExactly("block");
+        assertThat(executor.droppedCount(0)).isEqualTo(4);
+        assertThat(executor.conflatedCount(0)).isZero();
+        assertThat(executor.processedCount(0)).isEqualTo(1);
+        assertThat(executor.depth(0)).isZero();
+    }
+
+    private static Trade trade(long quantity) {
+        return Trade.newBuilder().setInstrumentUid("uid").setQuantity(quantity).build();
+    }
+
+    private static OrderBook orderBook(String uid, int depth) {
+        return OrderBook.newBuilder().setInstrumentUid(uid).setDepth(depth).build();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
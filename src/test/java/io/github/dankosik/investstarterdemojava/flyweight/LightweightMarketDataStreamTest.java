@@ -0,0 +1,119 @@
+package io.github.dankosik.investstarterdemojava.flyweight;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.github.dankosik.investstarterdemojava.replay.FakeInvestApi;
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import io.grpc.ManagedChannel;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LightweightMarketDataStreamTest {
+
+    private final SyntheticMarketData data = new SyntheticMarketData(1, 4);
+    private final InstrumentIndex instruments = new InstrumentIndex(data.instrumentUids().subList(0, 2));
+
+    @Test
+    void viewsMatchGeneratedMessages() {
+        Trade trade = data.trade(1, EpochClock.nanos()).toBuilder()
+                .setPrice(Quotation.newBuilder().setUnits(-3).setNano(-250_000_000))
+                .build();
+        TradeView tradeView = new TradeView();
+        byte[] tradeBytes = trade.toByteArray();
+        tradeView.wrap(tradeBytes, 0, tradeBytes.length, instruments);
+        assertThat(tradeView.instrument()).isEqualTo(1);
+        assertThat(tradeView.instrumentUid()).isSameAs(instruments.instrumentUid(1));
+        assertThat(tradeView.figi()).isEqualTo(trade.getFigi());
+        assertThat(tradeView.direction()).isEqualTo(trade.getDirection());
+        assertThat(tradeView.price()).isEqualTo(Prices.toScaled(trade.getPrice())).isEqualTo(-3_250_000_000L);
+        assertThat(tradeView.quantity()).isEqualTo(trade.getQuantity());
+        assertThat(tradeView.timeNanos()).isEqualTo(Prices.toEpochNanos(trade.getTime()));
+
+        OrderBook orderBook = data.orderBook(3, 50, EpochClock.nanos()).toBuilder()
+                .setLimitUp(Prices.toQuotation(10 * Prices.SCALE))
+                .build();
+        // тот же OrderBook с префиксом в буфере: view читает с произвольного смещения
+        byte[] orderBookBytes = orderBook.toByteArray();
+        byte[] buffer = new byte[orderBookBytes.length + 7];
+        System.arraycopy(orderBookBytes, 0, buffer, 7, orderBookBytes.length);
+        OrderBookView view = new OrderBookView().wrap(buffer, 7, orderBookBytes.length, instruments);
+        assertThat(view.instrument()).isEqualTo(InstrumentIndex.UNKNOWN);
+        assertThat(view.instrumentUid()).isEqualTo(orderBook.getInstrumentUid());
+        assertThat(view.depth()).isEqualTo(50);
+        assertThat(view.isConsistent()).isTrue();
+        assertThat(view.limitUp()).isEqualTo(10 * Prices.SCALE);
+        assertThat(view.timeNanos()).isEqualTo(Prices.toEpochNanos(orderBook.getTime()));
+        assertThat(view.bidCount()).isEqualTo(orderBook.getBidsCount());
+        assertThat(view.askCount()).isEqualTo(orderBook.getAsksCount());
+        for (int level = 0; level < 50; level++) {
+            assertThat(view.bidPrice(level)).isEqualTo(Prices.toScaled(orderBook.getBids(level).getPrice()));
+            assertThat(view.bidQuantity(level)).isEqualTo(orderBook.getBids(level).getQuantity());
+            assertThat(view.askPrice(level)).isEqualTo(Prices.toScaled(orderBook.getAsks(level).getPrice()));
+            assertThat(view.askQuantity(level)).isEqualTo(orderBook.getAsks(level).getQuantity());
+        }
+    }
+
+    @Test
+    void deliversSubscribedInstrumentsThroughRawStream() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        List<Trade> expectedTrades = new ArrayList<>();
+        List<OrderBook> expectedBooks = new ArrayList<>();
+        try (FakeInvestApi fake = new FakeInvestApi(List.of(), 4, false)) {
+            ManagedChannel channel = fake.newChannel();
+            try (LightweightMarketDataStream stream = LightweightMarketDataStream.create(channel, instruments.instrumentUids(), 20,
+                    List.of(trade -> received.add("trade " + trade.instrumentUid() + " " + trade.price() + " " + trade.quantity())),
+                    List.of(book -> received.add("book " + book.instrumentUid() + " " + book.bidPrice(0) + " " + book.askQuantity(19))))
+                    .start()) {
+                await(() -> fake.marketData().subscriptionCount() == 4);
+
+                for (int i = 0; i < 100; i++) {
+                    int instrument = i % 4;
+                    Trade trade = data.trade(instrument, EpochClock.nanos());
+                    OrderBook orderBook = data.orderBook(instrument, 20, EpochClock.nanos());
+                    fake.marketData().publish(MarketDataResponse.newBuilder().setTrade(trade).build());
+                    fake.marketData().publish(MarketDataResponse.newBuilder().setOrderbook(orderBook).build());
+                    if (instrument < 2) {
+                        expectedTrades.add(trade);
+                        expectedBooks.add(orderBook);
+                    }
+                }
+                await(() -> received.size() == 100);
+
+                List<String> expected = new ArrayList<>();
+                for (int i = 0; i < expectedTrades.size(); i++) {
+                    Trade trade = expectedTrades.get(i);
+                    OrderBook orderBook = expectedBooks.get(i);
+                    expected.add("trade " + trade.getInstrumentUid() + " " + Prices.toScaled(trade.getPrice()) + " " + trade.getQuantity());
+                    expected.add("book " + orderBook.getInstrumentUid() + " " + Prices.toScaled(orderBook.getBids(0).getPrice())
+                            + " " + orderBook.getAsks(19).getQuantity());
+                }
+                assertThat(received).containsExactlyElementsOf(expected);
+                assertThat(stream.tradeCount()).isEqualTo(50);
+                assertThat(stream.orderBookCount()).isEqualTo(50);
+                assertThat(stream.rejectedCount()).isZero();
+                assertThat(stream.messageCount()).isEqualTo(102);
+            }
+            await(() -> fake.marketData().streamCount() == 0);
+            channel.shutdownNow();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 10 секунд").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}
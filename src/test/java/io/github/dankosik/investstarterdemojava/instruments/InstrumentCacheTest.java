@@ -0,0 +1,117 @@
+package io.github.dankosik.investstarterdemojava.instruments;
+
+import io.github.dankosik.investstarterdemojava.replay.FakeInvestApi;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tinkoff.piapi.contract.v1.Future;
+import ru.tinkoff.piapi.contract.v1.InstrumentStatus;
+import ru.tinkoff.piapi.contract.v1.Share;
+import ru.tinkoff.piapi.core.InvestApi;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InstrumentCacheTest {
+
+    private static final List<String> TICKERS = List.of("SiH4", "SBER", "LKOH");
+
+    @TempDir
+    Path dir;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @Test
+    void concurrentLookupsAreCoalescedAndWarmStartSkipsApi() {
+        Path file = dir.resolve("instruments.cache");
+        List<Share> shares;
+        try (FakeInvestApi fake = new FakeInvestApi(TICKERS, 10, false, Duration.ofMillis(50))) {
+            try (InstrumentCache cache = cache(file).start()) {
+                InvestApi api = InvestApi.create(cache.attach(fake.newChannel()));
+                List<CompletableFuture<List<Share>>> lookups = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    lookups.add(api.getInstrumentsService().getShares(InstrumentStatus.INSTRUMENT_STATUS_ALL));
+                    api.getInstrumentsService().getFutures(InstrumentStatus.INSTRUMENT_STATUS_ALL);
+                }
+                shares = lookups.getFirst().join();
+                lookups.forEach(lookup -> assertThat(lookup.join()).isEqualTo(lookups.getFirst().join()));
+                assertThat(api.getInstrumentsService().getSharesSync(InstrumentStatus.INSTRUMENT_STATUS_ALL)).isEqualTo(shares);
+
+                assertThat(fake.instruments().requestCount()).isEqualTo(2);
+                assertThat(cache.missCount()).isEqualTo(2);
+                assertThat(cache.coalescedCount() + cache.hitCount()).isEqualTo(15);
+            }
+            assertThat(file).exists();
+
+            try (InstrumentCache cache = cache(file).start()) {
+                InvestApi api = InvestApi.create(cache.attach(fake.newChannel()));
+                assertThat(api.getInstrumentsService().getSharesSync(InstrumentStatus.INSTRUMENT_STATUS_ALL)).isEqualTo(shares);
+                assertThat(api.getInstrumentsService().getFuturesSync(InstrumentStatus.INSTRUMENT_STATUS_ALL))
+                        .extracting(Future::getTicker)
+                        .containsExactly("SiH4");
+                assertThat(fake.instruments().requestCount()).isEqualTo(2);
+                assertThat(cache.hitCount()).isEqualTo(2);
+                assertThat(cache.missCount()).isZero();
+            }
+        }
+    }
+
+    @Test
+    void expiredEntriesAreRefetchedAndServedStaleWhenApiIsDown() throws Exception {
+        Path file = dir.resolve("instruments.cache");
+        List<Share> shares;
+        try (FakeInvestApi fake = new FakeInvestApi(TICKERS, 10, false);
+             InstrumentCache cache = cache(file).start()) {
+            shares = InvestApi.create(cache.attach(fake.newChannel())).getInstrumentsService()
+                    .getSharesSync(InstrumentStatus.INSTRUMENT_STATUS_BASE);
+        }
+        clock.addAndGet(Duration.ofHours(2).toMillis());
+
+        try (FakeInvestApi fake = new FakeInvestApi(TICKERS, 10, false);
+             InstrumentCache cache = cache(file).start()) {
+            InvestApi api = InvestApi.create(cache.attach(fake.newChannel()));
+            assertThat(api.getInstrumentsService().getSharesSync(InstrumentStatus.INSTRUMENT_STATUS_BASE)).isEqualTo(shares);
+            assertThat(fake.instruments().requestCount()).isEqualTo(1);
+            assertThat(cache.missCount()).isEqualTo(1);
+        }
+        clock.addAndGet(Duration.ofHours(2).toMillis());
+
+        var down = new FakeInvestApi(TICKERS, 10, false);
+        var channel = down.newChannel();
+        down.close();
+        try (InstrumentCache cache = cache(file).start()) {
+            InvestApi api = InvestApi.create(cache.attach(channel));
+            assertThat(api.getInstrumentsService().getSharesSync(InstrumentStatus.INSTRUMENT_STATUS_BASE)).isEqualTo(shares);
+            assertThat(cache.staleCount()).isEqualTo(1);
+            assertThatThrownBy(() -> api.getInstrumentsService().getBondsSync(InstrumentStatus.INSTRUMENT_STATUS_BASE))
+                    .isInstanceOf(RuntimeException.class);
+        } finally {
+            channel.shutdownNow();
+        }
+    }
+
+    @Test
+    void corruptedSnapshotIsIgnored() throws Exception {
+        Path file = dir.resolve("instruments.cache");
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7});
+        try (FakeInvestApi fake = new FakeInvestApi(TICKERS, 10, false);
+             InstrumentCache cache = cache(file).start()) {
+            assertThat(cache.size()).isZero();
+            InvestApi api = InvestApi.create(cache.attach(fake.newChannel()));
+            assertThat(api.getInstrumentsService().getSharesSync(InstrumentStatus.INSTRUMENT_STATUS_BASE)).hasSize(9);
+        }
+        assertThat(InstrumentSnapshot.read(file)).hasSize(1);
+    }
+
+    private InstrumentCache cache(Path file) {
+        return new InstrumentCache(file, Duration.ofHours(1), Duration.ofMinutes(30), Duration.ofSeconds(5),
+                List.of("Shares", "Futures", "Bonds"), clock::get);
+    }
+}
@@ -0,0 +1,214 @@
+package io.github.dankosik.investstarterdemojava.journal;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.github.dankosik.investstarterdemojava.sink.OverflowPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import ru.tinkoff.piapi.contract.v1.Candle;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TickJournalTest {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void readsBackEveryEventAcrossSegments() {
+        SyntheticMarketData data = new SyntheticMarketData(7, 50);
+        List<Object> events = new ArrayList<>();
+        try (JournalWriter writer = new JournalWriter(dir, SEGMENT_SIZE)) {
+            for (int i = 0; i < 5_000; i++) {
+                int instrument = data.nextInstrument();
+                long time = 1_700_000_000_000_000_000L + i;
+                Object event = switch (i % 4) {
+                    case 0 -> data.trade(instrument, time);
+                    case 1 -> data.orderBook(instrument, 50, time);
+                    case 2 -> data.candle(instrument, SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE, time);
+                    default -> data.lastPrice(instrument, time);
+                };
+                switch (event) {
+                    case Trade trade -> writer.append(trade);
+                    case OrderBook orderBook -> writer.append(orderBook);
+                    case Candle candle -> writer.append(candle);
+                    case LastPrice lastPrice -> writer.append(lastPrice);
+                    default -> throw new IllegalStateException();
+                }
+                events.add(event);
+            }
+            assertThat(writer.segmentIndex()).isGreaterThan(10);
+        }
+
+        try (JournalReader reader = new JournalReader(dir)) {
+            for (Object event : events) {
+                assertThat(reader.next()).isTrue();
+                switch (event) {
+                    case Trade trade -> {
+                        assertThat(reader.type()).isEqualTo(TickType.TRADE);
+                        assertThat(reader.instrumentUid()).isEqualTo(trade.getInstrumentUid());
+                        assertThat(reader.timeNanos()).isEqualTo(Prices.toEpochNanos(trade.getTime()));
+                        assertThat(reader.price()).isEqualTo(Prices.toScaled(trade.getPrice()));
+                        assertThat(reader.quantity()).isEqualTo(trade.getQuantity());
+                        assertThat(reader.direction()).isEqualTo(trade.getDirection());
+                    }
+                    case OrderBook orderBook -> {
+                        assertThat(reader.type()).isEqualTo(TickType.ORDER_BOOK);
+                        assertThat(reader.instrumentUid()).isEqualTo(orderBook.getInstrumentUid());
+                        assertThat(reader.depth()).isEqualTo(orderBook.getDepth());
+                        assertThat(reader.bidCount()).isEqualTo(orderBook.getBidsCount());
+                        assertThat(reader.askCount()).isEqualTo(orderBook.getAsksCount());
+                        for (int level = 0; level < orderBook.getBidsCount(); level++) {
+                            assertThat(reader.bidPrice(level)).isEqualTo(Prices.toScaled(orderBook.getBids(level).getPrice()));
+                            assertThat(reader.bidQuantity(level)).isEqualTo(orderBook.getBids(level).getQuantity());
+                        }
+                        for (int level = 0; level < orderBook.getAsksCount(); level++) {
+                            assertThat(reader.askPrice(level)).isEqualTo(Prices.toScaled(orderBook.getAsks(level).getPrice()));
+                            assertThat(reader.askQuantity(level)).isEqualTo(orderBook.getAsks(level).getQuantity());
+                        }
+                    }
+                    case Candle candle -> {
+                        assertThat(reader.type()).isEqualTo(TickType.CANDLE);
+                        assertThat(reader.interval()).isEqualTo(candle.getInterval());
+                        assertThat(reader.openPrice()).isEqualTo(Prices.toScaled(candle.getOpen()));
+                        assertThat(reader.highPrice()).isEqualTo(Prices.toScaled(candle.getHigh()));
+                        assertThat(reader.lowPrice()).isEqualTo(Prices.toScaled(candle.getLow()));
+                        assertThat(reader.closePrice()).isEqualTo(Prices.toScaled(candle.getClose()));
+                        assertThat(reader.volume()).isEqualTo(candle.getVolume());
+                    }
+                    case LastPrice lastPrice -> {
+                        assertThat(reader.type()).isEqualTo(TickType.LAST_PRICE);
+                        assertThat(reader.instrumentUid()).isEqualTo(lastPrice.getInstrumentUid());
+                        assertThat(reader.price()).isEqualTo(Prices.toScaled(lastPrice.getPrice()));
+                    }
+                    default -> throw new IllegalStateException();
+                }
+            }
+            assertThat(reader.next()).isFalse();
+        }
+    }
+
+    @Test
+    void writesEventsFromManyHandlerThreads() throws Exception {
+        int producers = 4;
+        int perProducer = 10_000;
+        TickJournal journal = new TickJournal(new JournalWriter(dir, SEGMENT_SIZE), 256, 64, OverflowPolicy.BLOCK,
+                Duration.ofMillis(1), Duration.ZERO).start();
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int seed = p;
+            threads.add(Thread.ofPlatform().start(() -> {
+                SyntheticMarketData data = new SyntheticMarketData(seed, 10);
+                for (int i = 0; i < perProducer; i++) {
+                    journal.append(data.trade(data.nextInstrument(), i));
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        journal.close();
+        assertThat(journal.writtenCount()).isEqualTo(producers * perProducer);
+
+        long read = 0;
+        try (JournalReader reader = new JournalReader(dir)) {
+            while (reader.next()) {
+                read++;
+            }
+        }
+        assertThat(read).isEqualTo(producers * perProducer);
+    }
+
+    @Test
+    void dropsRecordThatDoesNotFitIntoSegment() {
+        SyntheticMarketData data = new SyntheticMarketData(3, 2);
+        TickJournal journal = new TickJournal(new JournalWriter(dir, SEGMENT_SIZE), 16, 4, OverflowPolicy.BLOCK,
+                Duration.ofMillis(1), Duration.ZERO).start();
+
+        journal.append(data.trade(0, 1));
+        journal.append(data.orderBook(0, 5_000, 2));
+        journal.append(data.trade(1, 3));
+        journal.close();
+
+        assertThat(journal.writtenCount()).isEqualTo(2);
+        assertThat(journal.droppedCount()).isEqualTo(1);
+        try (JournalReader reader = new JournalReader(dir)) {
+            assertThat(reader.next()).isTrue();
+            assertThat(reader.type()).isEqualTo(TickType.TRADE);
+            assertThat(reader.next()).isTrue();
+            assertThat(reader.type()).isEqualTo(TickType.TRADE);
+            assertThat(reader.next()).isFalse();
+        }
+    }
+
+    @Test
+    void blockingProducersFailFastWhenJournalCannotWrite() throws Exception {
+        Path journalDir = Files.createDirectory(dir.resolve("broken"));
+        TickJournal journal = new TickJournal(new JournalWriter(journalDir, SEGMENT_SIZE), 16, 4, OverflowPolicy.BLOCK,
+                Duration.ofMillis(1), Duration.ZERO).start();
+        try (Stream<Path> files = Files.list(journalDir)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(journalDir);
+
+        SyntheticMarketData data = new SyntheticMarketData(5, 10);
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 20_000; i++) {
+                journal.append(data.trade(data.nextInstrument(), i));
+            }
+        });
+        producer.get(10, TimeUnit.SECONDS);
+        journal.close();
+
+        assertThat(journal.writtenCount()).isLessThan(20_000);
+        assertThat(journal.writtenCount() + journal.droppedCount()).isGreaterThanOrEqualTo(20_000 - 16);
+    }
+
+    @Test
+    void rejectsSegmentSizeThatDoesNotFitIntoInt() throws Exception {
+        for (DataSize segmentSize : List.of(DataSize.ofGigabytes(2), DataSize.ofBytes((4L << 30) + SEGMENT_SIZE))) {
+            JournalProperties properties = new JournalProperties(true, JournalSource.HANDLERS, dir.toString(), segmentSize, 16, 4, OverflowPolicy.DROP,
+                    Duration.ofMillis(1), Duration.ZERO);
+            assertThatThrownBy(() -> TickJournal.create(properties))
+                    .isInstanceOf(IllegalArgumentException.class)
+                    .hasMessageContaining("demo.journal.segment-size");
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void closedWriterAndReaderCannotTouchUnmappedSegments() {
+        SyntheticMarketData data = new SyntheticMarketData(9, 1);
+        JournalWriter writer = new JournalWriter(dir, SEGMENT_SIZE);
+        writer.append(data.trade(0, 1));
+        writer.close();
+        writer.close();
+        assertThatThrownBy(() -> writer.append(data.trade(0, 2))).isInstanceOf(NullPointerException.class);
+
+        JournalReader reader = new JournalReader(dir);
+        assertThat(reader.next()).isTrue();
+        reader.close();
+        assertThatThrownBy(reader::price).isInstanceOf(NullPointerException.class);
+    }
+}
@@ -0,0 +1,39 @@
+package io.github.dankosik.investstarterdemojava.marketdata;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PricesTest {
+
+    @Test
+    void multiplyMatchesExactProductWhenIntermediateOverflows() {
+        long[] values = {
+                0, 1, -1, Prices.SCALE / 3, -Prices.SCALE / 7, 123 * Prices.SCALE + 456_789_012,
+                -(9_876 * Prices.SCALE + 1), 1_000 * Prices.SCALE + 999_999_999L, -3_000 * Prices.SCALE
+        };
+        for (long a : values) {
+            for (long b : values) {
+                assertThat(Prices.multiply(a, b)).as(a + " * " + b).isEqualTo(exact(a, b));
+            }
+        }
+        // 10^6 штук по 5 000 рублей: a * b не помещается в long, результат помещается
+        long quantity = 1_000_000 * Prices.SCALE;
+        long price = 5_000 * Prices.SCALE + 1;
+        assertThat(Prices.multiply(quantity, price)).isEqualTo(exact(quantity, price));
+        assertThat(Prices.multiply(-quantity, price)).isEqualTo(exact(-quantity, price));
+    }
+
+    @Test
+    void multiplyThrowsWhenResultDoesNotFit() {
+        long huge = 3_000_000_000L * Prices.SCALE;
+        assertThatThrownBy(() -> Prices.multiply(huge, huge)).isInstanceOf(ArithmeticException.class);
+    }
+
+    private static long exact(long a, long b) {
+        return BigInteger.valueOf(a).multiply(BigInteger.valueOf(b)).divide(BigInteger.valueOf(Prices.SCALE)).longValueExact();
+    }
+}
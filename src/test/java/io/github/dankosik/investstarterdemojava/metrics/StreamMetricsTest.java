@@ -0,0 +1,135 @@
+package io.github.dankosik.investstarterdemojava.metrics;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleAllTrades;
+import io.github.dankosik.starter.invest.annotation.marketdata.HandleTrade;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import io.github.dankosik.starter.invest.contract.marketdata.trade.BlockingTradeHandler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.Ping;
+import ru.tinkoff.piapi.contract.v1.PositionData;
+import ru.tinkoff.piapi.contract.v1.PositionsStreamResponse;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StreamMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void detectsChainPhaseFromAnnotation() {
+        assertThat(HandlerPhase.of(BeforeEach.class)).isEqualTo(HandlerPhase.BEFORE_EACH);
+        assertThat(HandlerPhase.of(AfterEach.class)).isEqualTo(HandlerPhase.AFTER_EACH);
+        assertThat(HandlerPhase.of(PerTicker.class)).isEqualTo(HandlerPhase.HANDLER);
+    }
+
+    @Test
+    void recordsLatencyLagAndInFlightPerHandler() {
+        StreamMetrics metrics = new StreamMetrics(registry, true, 1, true, 10, false);
+        CompletableFuture<Void> pending = new CompletableFuture<>();
+        AsyncTradeHandler handler = metrics.trades(BeforeEach.class,
+                trade -> trade.getQuantity() == 0 ? CompletableFuture.completedFuture(null) : pending);
+
+        handler.handleAsync(trade("uid", EpochClock.nanos() - 5_000_000)).join();
+        handler.handleAsync(trade("uid", EpochClock.nanos() - 5_000_000).toBuilder().setQuantity(1).build());
+
+        var tags = new String[]{"handler", "BeforeEach", "phase", "before_each", "stream", "trades"};
+        assertThat(registry.get("demo.handler.in.flight").tags(tags).gauge().value()).isEqualTo(1);
+        assertThat(registry.get("demo.handler.lag").tags(tags).timer().count()).isEqualTo(2);
+        assertThat(registry.get("demo.handler.lag").tags(tags).timer().max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(5);
+        assertThat(registry.get("demo.handler.latency").tags(tags).timer().count()).isEqualTo(1);
+
+        pending.complete(null);
+        assertThat(registry.get("demo.handler.in.flight").tags(tags).gauge().value()).isZero();
+        assertThat(registry.get("demo.handler.latency").tags(tags).timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void countsBlockingCallsByThreadKind() throws Exception {
+        StreamMetrics metrics = new StreamMetrics(registry, true, 1, true, 10, false);
+        BlockingTradeHandler handler = metrics.blockingTrades(PerTicker.class, trade -> {
+        });
+
+        handler.handleBlocking(trade("uid", 0));
+        Thread.ofVirtual().start(() -> handler.handleBlocking(trade("uid", 0))).join();
+
+        assertThat(registry.get("demo.handler.blocking.calls").tags("handler", "PerTicker", "thread", "virtual").counter().count()).isEqualTo(1);
+        assertThat(registry.get("demo.handler.blocking.calls").tags("handler", "PerTicker", "thread", "platform").counter().count()).isEqualTo(1);
+        assertThat(registry.get("demo.handler.blocking.active").tags("handler", "PerTicker", "thread", "virtual").gauge().value()).isZero();
+        // время трейда не задано - задержку от биржи не пишем
+        assertThat(registry.get("demo.handler.lag").tags("handler", "PerTicker").timer().count()).isZero();
+        assertThat(registry.get("demo.handler.latency").tags("handler", "PerTicker").timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void countsStreamEventsPerInstrumentWithCardinalityCap() {
+        StreamMetrics metrics = new StreamMetrics(registry, true, 1, true, 2, false);
+        for (int i = 0; i < 4; i++) {
+            metrics.received(MarketDataResponse.newBuilder().setTrade(trade("uid-" + i, EpochClock.nanos())).build());
+        }
+        metrics.received(MarketDataResponse.newBuilder().setTrade(trade("uid-0", EpochClock.nanos())).build());
+        metrics.received(MarketDataResponse.newBuilder().setPing(Ping.getDefaultInstance()).build());
+        metrics.received(PositionsStreamResponse.newBuilder().setPosition(PositionData.newBuilder().setAccountId("account")).build());
+
+        assertThat(registry.get("demo.stream.events").tags("stream", "trades", "instrument", "uid-0").counter().count()).isEqualTo(2);
+        assertThat(registry.get("demo.stream.events").tags("stream", "trades", "instrument", "uid-1").counter().count()).isEqualTo(1);
+        assertThat(registry.get("demo.stream.events").tags("stream", "trades", "instrument", "other").counter().count()).isEqualTo(2);
+        assertThat(registry.get("demo.stream.events").tags("stream", "positions", "instrument", "account").counter().count()).isEqualTo(1);
+        assertThat(registry.get("demo.stream.lag").tags("stream", "trades").timer().count()).isEqualTo(5);
+    }
+
+    @Test
+    void samplesTimersButKeepsCountersExact() {
+        StreamMetrics metrics = new StreamMetrics(registry, true, 100, false, 10, false);
+        AsyncTradeHandler handler = metrics.trades(AfterEach.class, trade -> CompletableFuture.completedFuture(null));
+        int events = 10_000;
+        for (int i = 0; i < events; i++) {
+            Trade trade = trade("uid", EpochClock.nanos());
+            metrics.received(MarketDataResponse.newBuilder().setTrade(trade).build());
+            handler.handleAsync(trade);
+        }
+
+        assertThat(registry.get("demo.stream.events").tags("stream", "trades").counter().count()).isEqualTo(events);
+        assertThat(registry.get("demo.handler.latency").tags("handler", "AfterEach").timer().count()).isBetween(40L, 250L);
+        assertThat(registry.get("demo.stream.lag").tags("stream", "trades").timer().count()).isBetween(40L, 250L);
+    }
+
+    @Test
+    void passesThroughWhenDisabled() {
+        StreamMetrics metrics = new StreamMetrics(registry, false, 1, true, 10, true);
+        AsyncTradeHandler handler = trade -> CompletableFuture.completedFuture(null);
+
+        assertThat(metrics.trades(BeforeEach.class, handler)).isSameAs(handler);
+        metrics.received(MarketDataResponse.newBuilder().setTrade(trade("uid", EpochClock.nanos())).build());
+        assertThat(registry.getMeters()).isEmpty();
+    }
+
+    private static Trade trade(String uid, long epochNanos) {
+        Trade.Builder trade = Trade.newBuilder().setInstrumentUid(uid);
+        if (epochNanos > 0) {
+            trade.setTime(Prices.toTimestamp(epochNanos));
+        }
+        return trade.build();
+    }
+
+    // abstract - чтобы сканирование компонентов в тестах контекста не зарегистрировало их как хендлеры
+
+    @HandleAllTrades(beforeEachTradesHandler = true)
+    abstract static class BeforeEach implements AsyncTradeHandler {
+    }
+
+    @HandleAllTrades(afterEachTradesHandler = true)
+    abstract static class AfterEach implements AsyncTradeHandler {
+    }
+
+    @HandleTrade(ticker = "SiH4")
+    abstract static class PerTicker implements BlockingTradeHandler {
+    }
+}
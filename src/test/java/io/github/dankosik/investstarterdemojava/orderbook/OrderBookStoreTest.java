@@ -0,0 +1,127 @@
+package io.github.dankosik.investstarterdemojava.orderbook;
+
+import io.github.dankosik.investstarterdemojava.marketdata.Prices;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.Order;
+import ru.tinkoff.piapi.contract.v1.OrderBook;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderBookStoreTest {
+
+    private static final String UID = "uid";
+
+    @Test
+    void appliesSnapshotsInPlaceAndCountsChangedLevels() {
+        OrderBookStore store = new OrderBookStore(2);
+        assertThat(store.update(book(new long[]{100, 99}, new long[]{10, 20}, new long[]{101, 102}, new long[]{5, 6}))).isEqualTo(4);
+        assertThat(store.update(book(new long[]{100, 99}, new long[]{10, 25}, new long[]{101, 102}, new long[]{5, 6}))).isEqualTo(1);
+        assertThat(store.update(book(new long[]{100, 99, 98}, new long[]{10, 25, 7}, new long[]{101}, new long[]{5}))).isEqualTo(2);
+
+        TopOfBook top = new TopOfBook();
+        assertThat(store.readTop(UID, top)).isTrue();
+        assertThat(top.bidPrice()).isEqualTo(100 * Prices.SCALE);
+        assertThat(top.askQuantity()).isEqualTo(5);
+        assertThat(top.version()).isEqualTo(3);
+
+        PriceLevelBook book = store.book(UID);
+        assertThat(book.spread()).isEqualTo(Prices.SCALE);
+        assertThat(book.mid()).isEqualTo(100 * Prices.SCALE + Prices.SCALE / 2);
+        assertThat(book.bidVolume(2)).isEqualTo(35);
+        assertThat(book.bidVolume(50)).isEqualTo(42);
+        assertThat(book.askVolume(50)).isEqualTo(5);
+        // (100 * 10 + 99 * 25 + 101 * 5) / 40
+        assertThat(book.depthWeightedMid(2)).isEqualTo(Math.round((100.0 * 10 + 99 * 25 + 101 * 5) / 40 * Prices.SCALE));
+        assertThat(store.readTop("unknown", top)).isFalse();
+    }
+
+    @Test
+    void zeroAndNegativePricesAreLevels() {
+        OrderBookStore store = new OrderBookStore(2);
+        // стакан спреда: бид ниже нуля, аск ровно ноль
+        store.update(book(new long[]{-1, -2}, new long[]{3, 4}, new long[]{0}, new long[]{7}));
+
+        TopOfBook top = new TopOfBook();
+        store.readTop(UID, top);
+        assertThat(top.hasBoth()).isTrue();
+        assertThat(top.bidPrice()).isEqualTo(-Prices.SCALE);
+        assertThat(top.askPrice()).isZero();
+        assertThat(top.spread()).isEqualTo(Prices.SCALE);
+
+        PriceLevelBook book = store.book(UID);
+        assertThat(book.bestAsk()).isZero();
+        assertThat(book.spread()).isEqualTo(Prices.SCALE);
+        assertThat(book.mid()).isEqualTo(-Prices.SCALE / 2);
+
+        store.update(book(new long[]{-1}, new long[]{3}, new long[0], new long[0]));
+        store.readTop(UID, top);
+        assertThat(top.hasBid()).isTrue();
+        assertThat(top.hasAsk()).isFalse();
+        assertThat(top.askPrice()).isEqualTo(PriceLevelBook.NO_PRICE);
+        assertThat(top.spread()).isEqualTo(PriceLevelBook.NO_PRICE);
+        assertThat(book.bestAsk()).isEqualTo(PriceLevelBook.NO_PRICE);
+        assertThat(book.mid()).isEqualTo(PriceLevelBook.NO_PRICE);
+    }
+
+    @Test
+    void readersNeverSeeHalfWrittenBook() throws Exception {
+        OrderBookStore store = new OrderBookStore(50);
+        // в каждом снимке цена лучшего бида и аска и объемы связаны с номером снимка
+        store.update(snapshot(0));
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicReference<String> failure = new AtomicReference<>();
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            readers.add(Thread.ofPlatform().start(() -> {
+                TopOfBook top = new TopOfBook();
+                while (running.get()) {
+                    store.readTop(UID, top);
+                    long n = top.bidQuantity();
+                    if (top.askQuantity() != n || top.bidPrice() != (1_000 + n) * Prices.SCALE || top.askPrice() != (1_001 + n) * Prices.SCALE) {
+                        failure.compareAndSet(null, top.toString());
+                    }
+                    long volume = store.book(UID).bidVolume(50);
+                    if (volume % 50 != 0) {
+                        failure.compareAndSet(null, "bidVolume " + volume);
+                    }
+                }
+            }));
+        }
+        for (int i = 1; i < 200_000; i++) {
+            store.update(snapshot(i % 1000));
+        }
+        running.set(false);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertThat(failure.get()).isNull();
+    }
+
+    private static OrderBook snapshot(long n) {
+        long[] prices = new long[50];
+        long[] quantities = new long[50];
+        long[] askPrices = new long[50];
+        for (int i = 0; i < 50; i++) {
+            prices[i] = 1_000 + n - i;
+            askPrices[i] = 1_001 + n + i;
+            quantities[i] = n;
+        }
+        return book(prices, quantities, askPrices, quantities);
+    }
+
+    private static OrderBook book(long[] bidPrices, long[] bidQuantities, long[] askPrices, long[] askQuantities) {
+        OrderBook.Builder builder = OrderBook.newBuilder().setInstrumentUid(UID).setDepth(50);
+        for (int i = 0; i < bidPrices.length; i++) {
+            builder.addBids(Order.newBuilder().setPrice(Prices.toQuotation(bidPrices[i] * Prices.SCALE)).setQuantity(bidQuantities[i]));
+        }
+        for (int i = 0; i < askPrices.length; i++) {
+            builder.addAsks(Order.newBuilder().setPrice(Prices.toQuotation(askPrices[i] * Prices.SCALE)).setQuantity(askQuantities[i]));
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,127 @@
+package io.github.dankosik.investstarterdemojava.orders;
+
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.github.dankosik.investstarterdemojava.replay.FakeInvestApi;
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.OrderDirection;
+import ru.tinkoff.piapi.core.InvestApi;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OrderTrackerTest {
+
+    private static final String ACCOUNT = "account";
+    private static final OrderDirection BUY = OrderDirection.ORDER_DIRECTION_BUY;
+
+    private final SyntheticMarketData data = new SyntheticMarketData(1, 4);
+    private final OrderTracker tracker = new OrderTracker(16, Duration.ofSeconds(1));
+    private final List<String> fills = new ArrayList<>();
+
+    @Test
+    void fillsMoveOrderToFilledAndReleaseIndexes() {
+        String uid = SyntheticMarketData.instrumentUid(0);
+        TrackedOrder order = tracker.track("o1", ACCOUNT, uid, BUY, 10, this::record);
+        tracker.track("o2", ACCOUNT, uid, OrderDirection.ORDER_DIRECTION_SELL, 5, this::record);
+        int instrumentId = tracker.instrumentId(uid);
+        assertThat(tracker.openQuantity(instrumentId, BUY)).isEqualTo(10);
+
+        tracker.onOrderTrades(data.orderTrades("o1", ACCOUNT, 0, BUY, 4, EpochClock.nanos()));
+        assertThat(order.status()).isEqualTo(OrderStatus.PARTIALLY_FILLED);
+        assertThat(tracker.openQuantity(instrumentId, BUY)).isEqualTo(6);
+
+        tracker.onOrderTrades(data.orderTrades("o1", "other", 0, BUY, 6, EpochClock.nanos()));
+        assertThat(order.filledQuantity()).isEqualTo(4);
+
+        tracker.onOrderTrades(data.orderTrades("o1", ACCOUNT, 0, BUY, 6, EpochClock.nanos()));
+        assertThat(fills).containsExactly("o1:4/10:PARTIALLY_FILLED", "o1:10/10:FILLED");
+        assertThat(order.status()).isEqualTo(OrderStatus.FILLED);
+        assertThat(tracker.order("o1")).isNull();
+        assertThat(tracker.activeOrders(ACCOUNT)).extracting(TrackedOrder::orderId).containsExactly("o2");
+        assertThat(tracker.openQuantity(instrumentId, BUY)).isZero();
+        assertThat(tracker.openQuantity(instrumentId, OrderDirection.ORDER_DIRECTION_SELL)).isEqualTo(5);
+        assertThat(tracker.activeCount()).isEqualTo(1);
+        assertThat(tracker.unknownCount()).isEqualTo(1);
+        assertThat(tracker.dispatchLatency().count()).isEqualTo(2);
+    }
+
+    @Test
+    void tradesBeforeRegistrationAndAfterCancelReachHandler() {
+        long now = EpochClock.nanos();
+        tracker.onOrderTrades(data.orderTrades("early", ACCOUNT, 1, BUY, 3, now));
+        tracker.onOrderTrades(data.orderTrades("stranger", ACCOUNT, 1, BUY, 3, now));
+        assertThat(tracker.pendingCount()).isEqualTo(2);
+
+        TrackedOrder early = tracker.track("early", ACCOUNT, SyntheticMarketData.instrumentUid(1), BUY, 5, this::record);
+        assertThat(early.filledQuantity()).isEqualTo(3);
+        assertThat(tracker.pendingCount()).isEqualTo(1);
+
+        assertThat(tracker.cancel("early")).isTrue();
+        assertThat(tracker.cancel("early")).isFalse();
+        assertThat(tracker.activeOrders(ACCOUNT)).isEmpty();
+        assertThat(tracker.openQuantity(tracker.instrumentId(SyntheticMarketData.instrumentUid(1)), BUY)).isZero();
+
+        tracker.onOrderTrades(data.orderTrades("early", ACCOUNT, 1, BUY, 1, now));
+        assertThat(fills).containsExactly("early:3/5:PARTIALLY_FILLED", "early:4/5:CANCELLED");
+        assertThat(tracker.openQuantity(tracker.instrumentId(SyntheticMarketData.instrumentUid(1)), BUY)).isZero();
+
+        tracker.expire(EpochClock.nanos() + TimeUnit.SECONDS.toNanos(2));
+        assertThat(tracker.order("early")).isNull();
+        assertThat(tracker.pendingCount()).isZero();
+        assertThat(tracker.unknownCount()).isEqualTo(1);
+        assertThat(tracker.cancelledCount()).isEqualTo(1);
+    }
+
+    @Test
+    void tracksSyntheticOrderStreamThroughFakeApi() throws Exception {
+        int orders = 2_000;
+        int fillsPerOrder = 4;
+        CountDownLatch done = new CountDownLatch(orders);
+        AtomicLong filledPieces = new AtomicLong();
+        try (FakeInvestApi fake = new FakeInvestApi(List.of(), 4, false)) {
+            InvestApi api = InvestApi.create(fake.newChannel());
+            api.getOrdersStreamService().subscribeTrades(response -> {
+                if (response.hasOrderTrades()) {
+                    tracker.onOrderTrades(response.getOrderTrades());
+                }
+            }, List.of(ACCOUNT));
+            while (fake.orders().streamCount() == 0) {
+                Thread.sleep(1);
+            }
+
+            for (int i = 0; i < orders; i++) {
+                tracker.track("order-" + i, ACCOUNT, SyntheticMarketData.instrumentUid(i % 4), BUY, fillsPerOrder, fill -> {
+                    filledPieces.addAndGet(fill.quantity());
+                    if (fill.status() == OrderStatus.FILLED) {
+                        done.countDown();
+                    }
+                });
+            }
+            for (int fill = 0; fill < fillsPerOrder; fill++) {
+                for (int i = 0; i < orders; i++) {
+                    fake.orders().publish(data.orderTrades("order-" + i, ACCOUNT, i % 4, BUY, 1, EpochClock.nanos()));
+                }
+            }
+            fake.orders().publish(data.orderTrades("foreign", "other", 0, BUY, 1, EpochClock.nanos()));
+
+            assertThat(done.await(30, TimeUnit.SECONDS)).isTrue();
+            assertThat(filledPieces.get()).isEqualTo((long) orders * fillsPerOrder);
+            assertThat(tracker.activeCount()).isZero();
+            assertThat(tracker.filledCount()).isEqualTo(orders);
+            assertThat(tracker.eventLatency().count()).isEqualTo((long) orders * fillsPerOrder);
+            assertThat(tracker.pendingCount()).isZero();
+            api.destroy(0);
+        }
+    }
+
+    private void record(OrderFill fill) {
+        fills.add(fill.order().orderId() + ":" + fill.filledQuantity() + "/" + fill.order().quantity() + ":" + fill.status());
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.dankosik.investstarterdemojava.reactive;
+
+import io.github.dankosik.starter.invest.contract.marketdata.trade.AsyncTradeHandler;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+import reactor.core.publisher.Mono;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FluxBridgeTest {
+
+    @Test
+    void streamThreadWaitsUntilPipelineRequestsMore() throws Exception {
+        List<Long> received = new CopyOnWriteArrayList<>();
+        ManualSubscriber subscriber = new ManualSubscriber(received);
+        try (FluxBridge bridge = new FluxBridge(4)) {
+            AsyncTradeHandler handler = bridge.trades(trades -> {
+                trades.subscribe(subscriber);
+                return Mono.never();
+            });
+            for (long n = 0; n < 4; n++) {
+                assertThat(handler.handleAsync(trade("uid", n))).isDone();
+            }
+            assertThat(received).isEmpty();
+            assertThat(bridge.bufferedCount()).isEqualTo(4);
+
+            Thread stream = Thread.ofPlatform().start(() -> handler.handleAsync(trade("uid", 4)));
+            assertThat(stream.join(Duration.ofMillis(200))).isFalse();
+
+            subscriber.request(2);
+            assertThat(received).containsExactly(0L, 1L);
+            assertThat(stream.join(Duration.ofSeconds(5))).isTrue();
+            assertThat(bridge.backpressuredCount()).isEqualTo(1);
+
+            subscriber.request(10);
+            assertThat(received).containsExactly(0L, 1L, 2L, 3L, 4L);
+            assertThat(bridge.deliveredCount()).isEqualTo(5);
+            assertThat(bridge.bufferedCount()).isZero();
+        }
+    }
+
+    @Test
+    void groupsByInstrumentAndFlushesBuffersOnClose() {
+        List<List<Trade>> batches = new CopyOnWriteArrayList<>();
+        FluxBridge bridge = new FluxBridge(64);
+        AsyncTradeHandler handler = bridge.trades(trades -> trades
+                .groupBy(Trade::getInstrumentUid)
+                .flatMap(instrument -> instrument.bufferTimeout(3, Duration.ofHours(1)))
+                .doOnNext(batches::add));
+        handler.handleAsync(trade("a", 0));
+        handler.handleAsync(trade("b", 0));
+        handler.handleAsync(trade("a", 1));
+        handler.handleAsync(trade("a", 2));
+        handler.handleAsync(trade("b", 1));
+        assertThat(batches).hasSize(1);
+        assertThat(units(batches.get(0))).containsExactly("a0", "a1", "a2");
+
+        bridge.close();
+        assertThat(batches).hasSize(2);
+        assertThat(units(batches.get(1))).containsExactly("b0", "b1");
+        assertThat(bridge.receivedCount()).isEqualTo(5);
+    }
+
+    @Test
+    void failedPipelineDropsFurtherEvents() {
+        List<Long> handled = new CopyOnWriteArrayList<>();
+        try (FluxBridge bridge = new FluxBridge(16)) {
+            AsyncTradeHandler handler = bridge.trades(trades -> trades.doOnNext(trade -> {
+                if (trade.getPrice().getUnits() == 1) {
+                    throw new IllegalStateException("test");
+                }
+                handled.add(trade.getPrice().getUnits());
+            }));
+            for (long n = 0; n < 3; n++) {
+                assertThat(handler.handleAsync(trade("uid", n))).isDone();
+            }
+            assertThat(handled).containsExactly(0L);
+            assertThat(bridge.droppedCount()).isEqualTo(1);
+        }
+    }
+
+    private static List<String> units(List<Trade> batch) {
+        return batch.stream().map(trade -> trade.getInstrumentUid() + trade.getPrice().getUnits()).toList();
+    }
+
+    private static Trade trade(String uid, long units) {
+        return Trade.newBuilder()
+                .setInstrumentUid(uid)
+                .setPrice(Quotation.newBuilder().setUnits(units))
+                .build();
+    }
+
+    /**
+     * Ничего не запрашивает сам, только через request(n) из теста
+     */
+    private static final class ManualSubscriber extends BaseSubscriber<Trade> {
+
+        private final List<Long> received;
+
+        ManualSubscriber(List<Long> received) {
+            this.received = received;
+        }
+
+        @Override
+        protected void hookOnSubscribe(@NotNull Subscription subscription) {
+        }
+
+        @Override
+        protected void hookOnNext(@NotNull Trade trade) {
+            received.add(trade.getPrice().getUnits());
+        }
+    }
+}
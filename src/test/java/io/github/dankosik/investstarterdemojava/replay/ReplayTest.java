@@ -0,0 +1,157 @@
+package io.github.dankosik.investstarterdemojava.replay;
+
+import com.google.protobuf.Message;
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.core.InvestApi;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplayTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordedSourceReadsBackWhatWasWritten() {
+        List<MarketDataResponse> written = new ArrayList<>();
+        try (SyntheticReplaySource source = new SyntheticReplaySource(1, 10, 5, 1000, 500, 0)) {
+            MarketDataResponse response;
+            while ((response = source.next()) != null) {
+                written.add(response);
+            }
+        }
+        Path file = dir.resolve("stream.bin");
+        RecordedReplaySource.write(file, written);
+
+        List<MarketDataResponse> read = new ArrayList<>();
+        try (RecordedReplaySource source = new RecordedReplaySource(file, 0)) {
+            MarketDataResponse response;
+            while ((response = source.next()) != null) {
+                read.add(response);
+            }
+        }
+        assertThat(read).hasSize(500).isEqualTo(written);
+    }
+
+    @Test
+    void fakeStreamDeliversOnlySubscribedInstruments() throws Exception {
+        try (FakeInvestApi fake = new FakeInvestApi(List.of("SBER"), 2, false)) {
+            InvestApi api = InvestApi.create(fake.newChannel());
+            BlockingQueue<MarketDataResponse> received = new LinkedBlockingQueue<>();
+            api.getMarketDataStreamService()
+                    .newStream("test", received::add, e -> {})
+                    .subscribeTrades(List.of(SyntheticMarketData.instrumentUid(0)));
+            while (fake.marketData().subscriptionCount() == 0) {
+                Thread.sleep(1);
+            }
+
+            SyntheticMarketData data = new SyntheticMarketData(1, 2);
+            assertThat(fake.marketData().publish(trade(data.trade(1, 1)))).isZero();
+            assertThat(fake.marketData().publish(trade(data.trade(0, 2)))).isEqualTo(1);
+
+            MarketDataResponse response;
+            do {
+                response = received.poll(5, TimeUnit.SECONDS);
+                assertThat(response).isNotNull();
+            } while (!response.hasTrade());
+            assertThat(response.getTrade().getInstrumentUid()).isEqualTo(SyntheticMarketData.instrumentUid(0));
+            assertThat(received.poll(100, TimeUnit.MILLISECONDS)).matches(r -> r == null || !r.hasTrade());
+            api.destroy(0);
+        }
+    }
+
+    @Test
+    void replayDeliversEventsUnchangedAndMeasuresLagBySendTime() throws Exception {
+        List<MarketDataResponse> written = new ArrayList<>();
+        try (SyntheticReplaySource source = new SyntheticReplaySource(1, 10, 5, 1000, 100, 0)) {
+            MarketDataResponse response;
+            while ((response = source.next()) != null) {
+                written.add(response);
+            }
+        }
+        Path file = dir.resolve("stream.bin");
+        RecordedReplaySource.write(file, written);
+
+        try (FakeInvestApi fake = new FakeInvestApi(List.of(), 10, true)) {
+            InvestApi api = InvestApi.create(fake.newChannel());
+            BlockingQueue<MarketDataResponse> received = new LinkedBlockingQueue<>();
+            api.getMarketDataStreamService()
+                    .newStream("test", response -> {
+                        if (response.hasTrade() || response.hasOrderbook() || response.hasLastPrice() || response.hasCandle()
+                                || response.hasTradingStatus()) {
+                            received.add(response);
+                        }
+                    }, e -> {})
+                    .subscribeTrades(List.of(SyntheticMarketData.instrumentUid(0)));
+            while (fake.marketData().subscriptionCount() == 0) {
+                Thread.sleep(1);
+            }
+
+            ReplayStats stats = new ReplayStats();
+            MarketDataReplayer replayer = new MarketDataReplayer(() -> new RecordedReplaySource(file, 0), fake.marketData(), stats,
+                    0, Duration.ofMinutes(1));
+            replayer.start();
+            replayer.awaitCompletion(Duration.ofSeconds(10));
+
+            List<MarketDataResponse> delivered = new ArrayList<>();
+            while (delivered.size() < written.size()) {
+                MarketDataResponse response = received.poll(5, TimeUnit.SECONDS);
+                assertThat(response).isNotNull();
+                delivered.add(response);
+            }
+            // время свечей и записанных событий не переписывается
+            assertThat(delivered).isEqualTo(written);
+
+            for (MarketDataResponse response : delivered) {
+                stats.handled(payload(response));
+            }
+            assertThat(stats.handledCount()).isEqualTo(written.size());
+            assertThat(stats.unmatchedCount()).isZero();
+            assertThat(stats.lag().snapshot().count()).isEqualTo(written.size());
+            assertThat(stats.lag().snapshot().max()).isLessThan(TimeUnit.SECONDS.toNanos(10));
+            api.destroy(0);
+        }
+    }
+
+    @Test
+    void equalPayloadsKeepTheirOwnSendTimes() {
+        SyntheticMarketData data = new SyntheticMarketData(1, 1);
+        Trade trade = data.trade(0, 1);
+        MarketDataResponse first = trade(trade);
+        MarketDataResponse second = trade(trade.toBuilder().build());
+        assertThat(second.getTrade()).isEqualTo(first.getTrade()).isNotSameAs(first.getTrade());
+
+        SendTimes sendTimes = new SendTimes();
+        sendTimes.sent(first, 100);
+        sendTimes.sent(second, 200);
+        assertThat(sendTimes.sentAt(first.getTrade())).isEqualTo(100);
+        assertThat(sendTimes.sentAt(second.getTrade())).isEqualTo(200);
+        assertThat(sendTimes.sentAt(trade.toBuilder().build())).isEqualTo(SendTimes.UNKNOWN);
+    }
+
+    private static Message payload(MarketDataResponse response) {
+        return switch (response.getPayloadCase()) {
+            case TRADE -> response.getTrade();
+            case ORDERBOOK -> response.getOrderbook();
+            case CANDLE -> response.getCandle();
+            case LAST_PRICE -> response.getLastPrice();
+            default -> response.getTradingStatus();
+        };
+    }
+
+    private static MarketDataResponse trade(Trade trade) {
+        return MarketDataResponse.newBuilder().setTrade(trade).build();
+    }
+}
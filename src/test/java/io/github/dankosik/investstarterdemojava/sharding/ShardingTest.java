@@ -0,0 +1,352 @@
+package io.github.dankosik.investstarterdemojava.sharding;
+
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.github.dankosik.investstarterdemojava.replay.FakeInvestApi;
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptors;
+import io.grpc.ManagedChannel;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tinkoff.piapi.contract.v1.MarketDataRequest;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.MarketDataStreamServiceGrpc;
+import ru.tinkoff.piapi.contract.v1.SubscribeTradesRequest;
+import ru.tinkoff.piapi.contract.v1.SubscriptionAction;
+import ru.tinkoff.piapi.contract.v1.TradeInstrument;
+import ru.tinkoff.piapi.core.InvestApi;
+import ru.tinkoff.piapi.core.stream.MarketDataSubscriptionService;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.UnaryOperator;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShardingTest {
+
+    private static final int INSTRUMENTS = 60;
+
+    @Test
+    void ringSpreadsKeysEvenlyAndMovesOnlyNewNodeShare() {
+        List<String> keys = IntStream.range(0, 6_000).mapToObj(SyntheticMarketData::instrumentUid).toList();
+        ConsistentHashRing three = new ConsistentHashRing(List.of("a", "b", "c"), 160);
+        Map<String, Integer> shares = new HashMap<>();
+        keys.forEach(key -> shares.merge(three.owner(key), 1, Integer::sum));
+        assertThat(shares.values()).allSatisfy(share -> assertThat(share).isBetween(1_600, 2_400));
+
+        ConsistentHashRing four = new ConsistentHashRing(List.of("c", "b", "a", "d"), 160);
+        int moved = 0;
+        for (String key : keys) {
+            String before = three.owner(key);
+            String after = four.owner(key);
+            if (!before.equals(after)) {
+                assertThat(after).isEqualTo("d");
+                moved++;
+            }
+        }
+        assertThat(moved).isBetween(1_000, 2_000);
+        assertThat(new ConsistentHashRing(List.of(), 160).owner("x")).isNull();
+    }
+
+    @Test
+    void nodesSplitInstrumentsAndRebalanceOnJoinAndLeave() throws Exception {
+        SyntheticMarketData data = new SyntheticMarketData(1, INSTRUMENTS);
+        InMemoryMembership membership = new InMemoryMembership(Duration.ofMinutes(1));
+        Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+        try (FakeInvestApi fake = new FakeInvestApi(List.of(), INSTRUMENTS, false)) {
+            List<Node> nodes = new ArrayList<>();
+            for (String name : List.of("node-1", "node-2", "node-3")) {
+                nodes.add(new Node(name, membership, fake, data.instrumentUids(), UnaryOperator.identity(), received));
+            }
+            nodes.forEach(node -> node.coordinator.refresh());
+            await(() -> fake.marketData().streamCount() == 3 && fake.marketData().subscriptionCount() == INSTRUMENTS);
+            for (Node node : nodes) {
+                assertThat(node.interceptor.requestedCount()).isEqualTo(INSTRUMENTS);
+                assertThat(node.interceptor.ownedCount()).isBetween(INSTRUMENTS / 6, INSTRUMENTS / 2);
+            }
+            publishAll(fake, data, received);
+
+            // узел уходит: его инструменты переезжают к оставшимся
+            Node leaving = nodes.remove(0);
+            leaving.close();
+            nodes.forEach(node -> node.coordinator.refresh());
+            await(() -> fake.marketData().streamCount() == 2 && fake.marketData().subscriptionCount() == INSTRUMENTS);
+            assertThat(nodes.get(0).interceptor.ownedCount() + nodes.get(1).interceptor.ownedCount()).isEqualTo(INSTRUMENTS);
+            publishAll(fake, data, received);
+
+            // новый узел забирает часть инструментов у остальных
+            nodes.add(new Node("node-4", membership, fake, data.instrumentUids(), UnaryOperator.identity(), received));
+            nodes.forEach(node -> node.coordinator.refresh());
+            await(() -> fake.marketData().streamCount() == 3 && fake.marketData().subscriptionCount() == INSTRUMENTS);
+            assertThat(nodes.get(2).interceptor.ownedCount()).isPositive();
+            publishAll(fake, data, received);
+
+            assertThat(nodes.get(0).coordinator.members()).containsExactly("node-2", "node-3", "node-4");
+            nodes.forEach(Node::close);
+        }
+    }
+
+    @Test
+    void figiAndUidSubscriptionsOfOneInstrumentHaveOneOwner() throws Exception {
+        SyntheticMarketData data = new SyntheticMarketData(1, INSTRUMENTS);
+        InMemoryMembership membership = new InMemoryMembership(Duration.ofMinutes(1));
+        Map<String, AtomicInteger> received = new ConcurrentHashMap<>();
+        Map<String, String> uidByFigi = new HashMap<>();
+        List<String> figis = new ArrayList<>();
+        for (String uid : data.instrumentUids()) {
+            String figi = "BBG" + uid;
+            uidByFigi.put(figi, uid);
+            figis.add(figi);
+        }
+        // broadcast: каждый стрим получает все события, лишние отбрасывает перехватчик
+        try (FakeInvestApi fake = new FakeInvestApi(List.of(), INSTRUMENTS, true)) {
+            List<Node> nodes = List.of(
+                    new Node("node-1", membership, fake, data.instrumentUids(), UnaryOperator.identity(), received),
+                    new Node("node-2", membership, fake, figis, id -> uidByFigi.getOrDefault(id, id), received));
+            nodes.forEach(node -> node.coordinator.refresh());
+            await(() -> fake.marketData().streamCount() == 2 && fake.marketData().subscriptionCount() == INSTRUMENTS);
+            for (int i = 0; i < INSTRUMENTS; i++) {
+                fake.marketData().publish(MarketDataResponse.newBuilder().setTrade(data.trade(i, EpochClock.nanos())).build());
+            }
+            await(() -> received.size() == INSTRUMENTS);
+            Thread.sleep(50);
+            assertThat(received.values()).allSatisfy(count -> assertThat(count.get()).isEqualTo(1));
+            nodes.forEach(Node::close);
+        }
+    }
+
+    @Test
+    void resolverLooksUpFigiOnceAndKeepsUnknownIds() {
+        try (FakeInvestApi fake = new FakeInvestApi(List.of(), 3, false)) {
+            ManagedChannel channel = fake.newChannel();
+            InstrumentUidResolver resolver = new InstrumentUidResolver(Duration.ofSeconds(5));
+            assertThat(resolver.apply("synthetic-00000001")).as("канал еще не подключен").isEqualTo("synthetic-00000001");
+            resolver.attach(channel);
+
+            String uuid = "e6123145-9665-43e0-8413-cd61b8aa9b13";
+            assertThat(resolver.apply(uuid)).isEqualTo(uuid);
+            assertThat(fake.instruments().requestCount()).isZero();
+
+            assertThat(resolver.apply("synthetic-00000001")).isEqualTo(SyntheticMarketData.instrumentUid(1));
+            assertThat(resolver.apply("synthetic-00000001")).isEqualTo(SyntheticMarketData.instrumentUid(1));
+            assertThat(resolver.apply("BBG000UNKNOWN")).isEqualTo("BBG000UNKNOWN");
+            assertThat(resolver.apply("BBG000UNKNOWN")).isEqualTo("BBG000UNKNOWN");
+            assertThat(fake.instruments().requestCount()).isEqualTo(2);
+            channel.shutdownNow();
+        }
+    }
+
+    @Test
+    void delegateCallIsNeverUsedFromTwoThreadsAtOnce() throws Exception {
+        SyntheticMarketData data = new SyntheticMarketData(1, INSTRUMENTS);
+        InMemoryMembership membership = new InMemoryMembership(Duration.ofMinutes(1));
+        membership.heartbeat("b");
+        ShardCoordinator coordinator = new ShardCoordinator("a", membership, 160, Duration.ofHours(1));
+        coordinator.refresh();
+        ShardingInterceptor interceptor = new ShardingInterceptor(coordinator, UnaryOperator.identity());
+        ExclusiveCall delegate = new ExclusiveCall();
+        Channel channel = new Channel() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+                return (ClientCall<ReqT, RespT>) delegate;
+            }
+
+            @Override
+            public String authority() {
+                return "test";
+            }
+        };
+        ClientCall<MarketDataRequest, MarketDataResponse> call = ClientInterceptors.intercept(channel, interceptor)
+                .newCall(MarketDataStreamServiceGrpc.getMarketDataStreamMethod(), CallOptions.DEFAULT);
+        call.start(new ClientCall.Listener<>() {
+        }, new Metadata());
+        call.sendMessage(MarketDataRequest.newBuilder().setSubscribeTradesRequest(SubscribeTradesRequest.newBuilder()
+                .setSubscriptionAction(SubscriptionAction.SUBSCRIPTION_ACTION_SUBSCRIBE)
+                .addAllInstruments(data.instrumentUids().stream().map(uid -> TradeInstrument.newBuilder().setInstrumentId(uid).build()).toList()))
+                .build());
+
+        // поток координатора перераспределяет инструменты, поток ответов запрашивает следующее сообщение за отброшенные события
+        AtomicBoolean stop = new AtomicBoolean();
+        Thread rebalancer = Thread.ofPlatform().start(() -> {
+            while (!stop.get()) {
+                membership.leave("b");
+                coordinator.refresh();
+                membership.heartbeat("b");
+                coordinator.refresh();
+            }
+        });
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < INSTRUMENTS; i++) {
+                delegate.listener.onMessage(MarketDataResponse.newBuilder().setTrade(data.trade(i, EpochClock.nanos())).build());
+            }
+        }
+        stop.set(true);
+        rebalancer.join();
+        assertThat(interceptor.droppedCount()).isPositive();
+        assertThat(delegate.overlaps.get()).isZero();
+        coordinator.close();
+    }
+
+    @Test
+    void listenersRunOutsideCoordinatorLock() throws Exception {
+        InMemoryMembership membership = new InMemoryMembership(Duration.ofMinutes(1));
+        ShardCoordinator coordinator = new ShardCoordinator("a", membership, 160, Duration.ofHours(1));
+        List<List<String>> seen = new CopyOnWriteArrayList<>();
+        coordinator.addListener(() -> {
+            // heartbeat из другого потока ждет блокировку координатора: под ней join не дождался бы его
+            Thread heartbeat = Thread.ofPlatform().start(coordinator::refresh);
+            try {
+                heartbeat.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            seen.add(heartbeat.isAlive() ? List.of() : coordinator.members());
+        });
+        membership.heartbeat("b");
+        coordinator.refresh();
+        assertThat(seen).hasSize(1);
+        assertThat(seen.get(0)).containsExactlyInAnyOrder("a", "b");
+        assertThat(coordinator.rebalanceCount()).isEqualTo(1);
+    }
+
+    @Test
+    void fileMembershipSharesNodesThroughLockedFile(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("cluster/members");
+        FileMembership first = new FileMembership(file, Duration.ofMillis(300));
+        FileMembership second = new FileMembership(file, Duration.ofMillis(300));
+        assertThat(first.heartbeat("a")).containsExactly("a");
+        assertThat(second.heartbeat("b")).containsExactlyInAnyOrder("a", "b");
+        second.leave("b");
+        assertThat(first.heartbeat("a")).containsExactly("a");
+
+        second.heartbeat("b");
+        Thread.sleep(400);
+        // b не подтверждал участие дольше ttl
+        assertThat(first.heartbeat("a")).containsExactly("a");
+    }
+
+    /**
+     * Публикует по событию на каждый инструмент и проверяет что каждое дошло ровно до одного узла
+     */
+    private static void publishAll(FakeInvestApi fake, SyntheticMarketData data, Map<String, AtomicInteger> received) throws Exception {
+        received.clear();
+        for (int i = 0; i < INSTRUMENTS; i++) {
+            assertThat(fake.marketData().publish(MarketDataResponse.newBuilder()
+                    .setTrade(data.trade(i, EpochClock.nanos())).build())).isEqualTo(1);
+        }
+        await(() -> received.size() == INSTRUMENTS);
+        Thread.sleep(50);
+        assertThat(received.values()).allSatisfy(count -> assertThat(count.get()).isEqualTo(1));
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 10 секунд").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    /**
+     * ClientCall, который считает одновременные вызовы из разных потоков
+     */
+    @SuppressWarnings("rawtypes")
+    private static final class ExclusiveCall extends ClientCall {
+
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger overlaps = new AtomicInteger();
+        volatile Listener listener;
+
+        @Override
+        public void start(Listener responseListener, Metadata headers) {
+            enter();
+            listener = responseListener;
+            exit();
+        }
+
+        @Override
+        public void request(int numMessages) {
+            enter();
+            exit();
+        }
+
+        @Override
+        public void cancel(String message, Throwable cause) {
+            enter();
+            exit();
+        }
+
+        @Override
+        public void halfClose() {
+            enter();
+            exit();
+        }
+
+        @Override
+        public void sendMessage(Object message) {
+            enter();
+            exit();
+        }
+
+        private void enter() {
+            if (active.incrementAndGet() > 1) {
+                overlaps.incrementAndGet();
+            }
+            Thread.yield();
+        }
+
+        private void exit() {
+            active.decrementAndGet();
+        }
+    }
+
+    /**
+     * Экземпляр приложения: свой канал с перехватчиком и стрим, подписанный на все инструменты
+     */
+    private static final class Node {
+
+        final ShardCoordinator coordinator;
+        final ShardingInterceptor interceptor;
+        final ManagedChannel channel;
+        final MarketDataSubscriptionService stream;
+
+        Node(String name, InMemoryMembership membership, FakeInvestApi fake, List<String> instrumentIds,
+             UnaryOperator<String> instrumentUid, Map<String, AtomicInteger> received) {
+            coordinator = new ShardCoordinator(name, membership, 160, Duration.ofHours(1));
+            coordinator.refresh();
+            interceptor = new ShardingInterceptor(coordinator, instrumentUid);
+            channel = fake.newChannel();
+            InvestApi api = InvestApi.create(ClientInterceptors.intercept(channel, interceptor));
+            stream = api.getMarketDataStreamService().newStream(name, response -> {
+                if (response.hasTrade()) {
+                    received.computeIfAbsent(response.getTrade().getInstrumentUid(), uid -> new AtomicInteger()).incrementAndGet();
+                }
+            }, e -> {
+            });
+            stream.subscribeTrades(instrumentIds);
+        }
+
+        void close() {
+            coordinator.close();
+            stream.cancel();
+            channel.shutdownNow();
+        }
+    }
+}
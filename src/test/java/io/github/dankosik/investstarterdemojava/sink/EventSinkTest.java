@@ -0,0 +1,172 @@
+package io.github.dankosik.investstarterdemojava.sink;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.tinkoff.piapi.contract.v1.Quotation;
+import ru.tinkoff.piapi.contract.v1.Trade;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EventSinkTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void writesEveryEventFromManyProducersAsSingleLine() throws Exception {
+        Path file = dir.resolve("events.log");
+        EventSinkProperties properties = new EventSinkProperties(64, 16, OverflowPolicy.BLOCK, file.toString(), Duration.ofMillis(1));
+        Trade trade = Trade.newBuilder()
+                .setInstrumentUid("uid")
+                .setPrice(Quotation.newBuilder().setUnits(100).setNano(500_000_000))
+                .setQuantity(3)
+                .build();
+
+        int producers = 4;
+        int perProducer = 5_000;
+        EventSink sink = EventSink.create(properties).start();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int j = 0; j < perProducer; j++) {
+                    sink.publish("TestHandler", trade);
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        sink.close();
+
+        List<String> lines = Files.readAllLines(file);
+        assertThat(lines).hasSize(producers * perProducer);
+        assertThat(lines).allMatch(line -> line.startsWith("TestHandler: ") && line.contains("instrument_uid: \"uid\""));
+        assertThat(sink.enqueuedCount()).isEqualTo(producers * perProducer);
+        assertThat(sink.flushedCount()).isEqualTo(producers * perProducer);
+        assertThat(sink.droppedCount()).isZero();
+    }
+
+    @Test
+    void dropsWhenBufferIsFull() throws Exception {
+        Path file = dir.resolve("dropped.log");
+        EventSink sink = EventSink.create(new EventSinkProperties(8, 4, OverflowPolicy.DROP, file.toString(), Duration.ofMillis(1)));
+
+        for (int i = 0; i < 20; i++) {
+            sink.publish("TestHandler", i);
+        }
+        sink.close();
+
+        assertThat(sink.capacity()).isEqualTo(8);
+        assertThat(sink.enqueuedCount()).isEqualTo(8);
+        assertThat(sink.droppedCount()).isEqualTo(12);
+        assertThat(Files.readAllLines(file)).containsExactly(
+                "TestHandler: 0", "TestHandler: 1", "TestHandler: 2", "TestHandler: 3",
+                "TestHandler: 4", "TestHandler: 5", "TestHandler: 6", "TestHandler: 7"
+        );
+    }
+
+    @Test
+    void skipsEventThatFailsToFormat() throws Exception {
+        Path file = dir.resolve("format.log");
+        EventSink sink = EventSink.create(new EventSinkProperties(8, 4, OverflowPolicy.BLOCK, file.toString(), Duration.ofMillis(1))).start();
+        Object broken = new Object() {
+            @Override
+            public String toString() {
+                throw new IllegalStateException("broken");
+            }
+        };
+
+        sink.publish("TestHandler", 1);
+        sink.publish("TestHandler", broken);
+        sink.publish("TestHandler", 2);
+        sink.close();
+
+        assertThat(Files.readAllLines(file)).containsExactly("TestHandler: 1", "TestHandler: 2");
+        assertThat(sink.flushedCount()).isEqualTo(2);
+        assertThat(sink.droppedCount()).isEqualTo(1);
+        assertThat(sink.backlog()).isZero();
+    }
+
+    @Test
+    void countsBatchLostMidFlushAsDropped() throws Exception {
+        // первая запись проходит, дальше диск заполнен: ошибка приходит посреди пачки при переполнении буфера вывода
+        WritableByteChannel failing = new WritableByteChannel() {
+            private int writes;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (writes++ > 0) {
+                    throw new IOException("disk full");
+                }
+                int remaining = src.remaining();
+                src.position(src.limit());
+                return remaining;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        EventSink sink = new EventSink(64, 64, OverflowPolicy.BLOCK, failing, false, Duration.ofMillis(1));
+        String large = "x".repeat(40_000);
+        for (int i = 0; i < 10; i++) {
+            sink.publish("TestHandler", large);
+        }
+        sink.start();
+        sink.close();
+
+        assertThat(sink.flushedCount() + sink.droppedCount()).isEqualTo(10);
+        assertThat(sink.droppedCount()).isPositive();
+        assertThat(sink.backlog()).isZero();
+    }
+
+    @Test
+    void blockingProducersFailFastWhenOutputBreaks() throws Exception {
+        WritableByteChannel failing = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        EventSink sink = new EventSink(8, 4, OverflowPolicy.BLOCK, failing, false, Duration.ofMillis(1)).start();
+
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> {
+            for (int i = 0; i < 1_000; i++) {
+                sink.publish("TestHandler", i);
+            }
+        });
+        producer.get(10, TimeUnit.SECONDS);
+        sink.close();
+
+        assertThat(sink.publish("TestHandler", "after")).isFalse();
+        assertThat(sink.flushedCount()).isZero();
+        // каждое событие посчитано: записанных нет, отброшены все включая недописанную пачку
+        assertThat(sink.droppedCount()).isEqualTo(1_001);
+        assertThat(sink.backlog()).isZero();
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.dankosik.investstarterdemojava.soak;
+
+import io.github.dankosik.investstarterdemojava.stats.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "demo.replay.speed=1",
+        "demo.replay.eventsPerSecond=500",
+        "demo.replay.broadcast=true",
+        "demo.sink.file=target/soak-test-events.log",
+        "demo.soak.enabled=true",
+        "demo.soak.warmup=2s",
+        "demo.soak.duration=6s",
+        "demo.soak.reportInterval=2s",
+        "demo.soak.reportFile=target/soak-test-report.txt",
+        "demo.soak.maxLagP99=30s",
+        "demo.soak.maxGcPause=5s",
+        "demo.soak.maxHeapGrowth=1GB",
+        "demo.soak.maxThreadGrowth=1000"
+})
+@ActiveProfiles("replay")
+class SoakTest {
+
+    @Autowired
+    SoakRunner runner;
+
+    @Test
+    void soakRunReachesEveryHandlerStyleAndStream() throws Exception {
+        SoakReport report = runner.result().get(60, TimeUnit.SECONDS);
+
+        assertThat(report.violations()).isEmpty();
+        assertThat(report.events()).isPositive();
+        assertThat(report.probes())
+                .extracting(probe -> probe.style() + "/" + probe.stream())
+                .contains("async/trades", "async-pool/trades", "blocking/trades", "async/orderbooks", "blocking/orderbooks",
+                        "async/lastprices", "async/candles", "async/statuses", "async/portfolios", "async/positions", "async/orders");
+        assertThat(report.probes()).allSatisfy(probe -> assertThat(probe.count()).as(probe.style() + "/" + probe.stream()).isPositive());
+        assertThat(report.probes())
+                .filteredOn(probe -> !probe.stream().equals("portfolios"))
+                .allSatisfy(probe -> assertThat(probe.lag().count()).as(probe.style() + "/" + probe.stream()).isPositive());
+        assertThat(report.handlers()).isNotEmpty();
+        assertThat(report.threadsEnd()).isPositive();
+    }
+
+    @Test
+    void thresholdsProduceViolations() {
+        LatencyHistogram lag = new LatencyHistogram();
+        lag.record(TimeUnit.MILLISECONDS.toNanos(300));
+        LatencyHistogram gc = new LatencyHistogram();
+        gc.record(TimeUnit.MILLISECONDS.toNanos(50));
+        SoakReport report = new SoakReport(Duration.ofSeconds(10), 1_000, List.of(new SoakReport.ProbeResult("async", "trades", 1, lag.snapshot())),
+                List.of(), gc.snapshot(), 100L << 20, 400L << 20, true, 40, 45, 50, Map.of(), List.of());
+
+        assertThat(report.eventsPerSecond()).isEqualTo(100);
+        assertThat(report.check(0, Duration.ofSeconds(1), Duration.ofSeconds(1), 1L << 30, 10)).isEmpty();
+        assertThat(report.check(1_000, Duration.ofMillis(100), Duration.ofMillis(10), 200L << 20, 2))
+                .hasSize(5)
+                .anyMatch(violation -> violation.startsWith("events/s"))
+                .anyMatch(violation -> violation.startsWith("lag p99 async/trades"))
+                .anyMatch(violation -> violation.startsWith("gc pause"))
+                .anyMatch(violation -> violation.startsWith("heap growth"))
+                .anyMatch(violation -> violation.startsWith("thread growth"));
+
+        SoakReport failed = report.withViolations(report.check(1_000, Duration.ofMillis(100), Duration.ofMillis(10), 200L << 20, 2));
+        assertThat(failed.passed()).isFalse();
+        assertThat(failed.toString()).startsWith("soak FAILED").contains("violations:");
+
+        // без сборки после базовой рост heap не проверяется
+        SoakReport unmeasured = new SoakReport(Duration.ofSeconds(10), 1_000, List.of(), List.of(), gc.snapshot(),
+                100L << 20, -1, false, 40, 40, 40, Map.of(), List.of());
+        assertThat(unmeasured.heapGrowth()).isZero();
+        assertThat(unmeasured.check(0, Duration.ofSeconds(1), Duration.ofSeconds(1), 0, 10)).isEmpty();
+        assertThat(unmeasured.toString()).contains("heap after gc: не измерен");
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.dankosik.investstarterdemojava.subscription;
+
+import io.github.dankosik.investstarterdemojava.marketdata.SyntheticMarketData;
+import io.github.dankosik.investstarterdemojava.replay.FakeInstrumentsService;
+import io.github.dankosik.investstarterdemojava.replay.FakeInvestApi;
+import io.github.dankosik.investstarterdemojava.stats.EpochClock;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ru.tinkoff.piapi.contract.v1.LastPrice;
+import ru.tinkoff.piapi.contract.v1.MarketDataResponse;
+import ru.tinkoff.piapi.contract.v1.SubscriptionInterval;
+import ru.tinkoff.piapi.contract.v1.Trade;
+import ru.tinkoff.piapi.core.InvestApi;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SubscriptionManagerTest {
+
+    private static final int INSTRUMENTS = 8;
+
+    private final SyntheticMarketData data = new SyntheticMarketData(1, INSTRUMENTS);
+    private final FakeInvestApi fake = new FakeInvestApi(List.of("SBER", "LKOH"), INSTRUMENTS, false);
+    private final InvestApi api = InvestApi.create(fake.newChannel());
+    private final Queue<String> received = new ConcurrentLinkedQueue<>();
+    private final SubscriptionProperties properties =
+            new SubscriptionProperties(true, 3, Duration.ofMinutes(1), 10, SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE);
+
+    @AfterEach
+    void tearDown() {
+        api.destroy(0);
+        fake.close();
+    }
+
+    @Test
+    void multiplexesInstrumentsOntoSharedStreamsAndClosesEmptyOnes() throws Exception {
+        try (SubscriptionManager manager = SubscriptionManager.create(api.getChannel(), List.of(), properties)) {
+            List<InstrumentSubscription> subscriptions = IntStream.range(0, 7)
+                    .mapToObj(i -> manager.trades(SyntheticMarketData.instrumentUid(i), this::record))
+                    .toList();
+            manager.lastPrices(SyntheticMarketData.instrumentUid(0), this::record);
+            manager.flush();
+
+            // 8 подписок по 3 в стриме
+            assertThat(manager.streamCount()).isEqualTo(3);
+            await(() -> fake.marketData().streamCount() == 3 && fake.marketData().subscriptionCount() == 8);
+
+            for (int i = 0; i < INSTRUMENTS; i++) {
+                publishTrade(i);
+            }
+            await(() -> received.size() == 7);
+            assertThat(received).doesNotContain("trade:" + SyntheticMarketData.instrumentUid(7));
+
+            // снятый обработчик перестает получать события сразу, до отписки в стриме
+            subscriptions.subList(3, 6).forEach(InstrumentSubscription::close);
+            subscriptions.get(3).close();
+            received.clear();
+            publishTrade(3);
+            publishTrade(2);
+            await(() -> received.size() == 1);
+            assertThat(received).containsExactly("trade:" + SyntheticMarketData.instrumentUid(2));
+
+            // второй стрим опустел и закрывается, остальные не трогаются
+            manager.flush();
+            assertThat(manager.streamCount()).isEqualTo(2);
+            await(() -> fake.marketData().streamCount() == 2 && fake.marketData().subscriptionCount() == 5);
+            assertThat(manager.subscriptions().get(SubscriptionType.TRADES)).hasSize(4);
+            assertThat(manager.subscriptions().get(SubscriptionType.LAST_PRICES))
+                    .containsExactly(SyntheticMarketData.instrumentUid(0));
+        }
+        await(() -> fake.marketData().streamCount() == 0);
+    }
+
+    @Test
+    void batchesChangesIntoOneRequestPerTypeAndStream() {
+        try (SubscriptionManager manager = SubscriptionManager.create(api.getChannel(), List.of(),
+                new SubscriptionProperties(true, 300, Duration.ofMinutes(1), 10, SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE))) {
+            for (int i = 0; i < INSTRUMENTS; i++) {
+                manager.add(SubscriptionType.TRADES, List.of(SyntheticMarketData.instrumentUid(i)));
+            }
+            manager.add(SubscriptionType.ORDER_BOOKS, List.of(SyntheticMarketData.instrumentUid(0)));
+            manager.flush();
+            assertThat(manager.requestCount()).isEqualTo(2);
+            assertThat(manager.streamCount()).isEqualTo(1);
+
+            // подписка и отписка в одной пачке не доходят до стрима
+            manager.add(SubscriptionType.CANDLES, List.of(SyntheticMarketData.instrumentUid(1)));
+            manager.remove(SubscriptionType.CANDLES, List.of(SyntheticMarketData.instrumentUid(1)));
+            manager.remove(SubscriptionType.TRADES, List.of(SyntheticMarketData.instrumentUid(2)));
+            manager.add(SubscriptionType.TRADES, List.of(SyntheticMarketData.instrumentUid(2)));
+            manager.flush();
+            assertThat(manager.requestCount()).isEqualTo(2);
+
+            manager.remove(SubscriptionType.TRADES, List.of(SyntheticMarketData.instrumentUid(2), SyntheticMarketData.instrumentUid(3)));
+            manager.flush();
+            assertThat(manager.requestCount()).isEqualTo(3);
+            assertThat(manager.subscriptionCount()).isEqualTo(7);
+            assertThat(manager.rejectedCount()).isZero();
+        }
+    }
+
+    @Test
+    void globalSubscriptionsReachDynamicHandlersAndTickersResolve() throws Exception {
+        TickerResolver resolver = new TickerResolver(api.getInstrumentsService());
+        assertThat(resolver.resolve("LKOH")).isEqualTo(SyntheticMarketData.instrumentUid(1));
+        assertThat(resolver.resolve(FakeInstrumentsService.tickerOf(5))).isEqualTo(SyntheticMarketData.instrumentUid(5));
+        assertThat(resolver.resolve("UNKNOWN")).isNull();
+
+        DynamicMarketDataHandler handler = new DynamicMarketDataHandler() {
+            @Override
+            public void onLastPrice(@NotNull LastPrice lastPrice) {
+                received.add("global:" + lastPrice.getInstrumentUid());
+            }
+        };
+        SubscriptionProperties background =
+                new SubscriptionProperties(true, 3, Duration.ofMillis(20), 10, SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE);
+        try (SubscriptionManager manager = SubscriptionManager.create(api.getChannel(), List.of(handler), background)
+                .start()) {
+            String uid = resolver.resolve("SBER");
+            manager.add(SubscriptionType.LAST_PRICES, List.of(uid));
+            InstrumentSubscription own = manager.lastPrices(uid, this::record);
+            manager.flush();
+            await(() -> fake.marketData().subscriptionCount() == 1);
+
+            fake.marketData().publish(MarketDataResponse.newBuilder().setLastPrice(data.lastPrice(0, EpochClock.nanos())).build());
+            await(() -> received.size() == 2);
+            assertThat(received).containsExactly("last:" + uid, "global:" + uid);
+
+            // глобальная подписка снята, но у инструмента остался обработчик - подписка в стриме остается
+            manager.remove(SubscriptionType.LAST_PRICES, List.of(uid));
+            manager.flush();
+            assertThat(manager.subscriptionCount()).isEqualTo(1);
+            own.close();
+            // отписку отправляет фоновый поток
+            await(() -> fake.marketData().streamCount() == 0);
+            assertThat(manager.streamCount()).isZero();
+        }
+    }
+
+    @Test
+    void reopensStreamsCompletedByServer() throws Exception {
+        SubscriptionProperties background =
+                new SubscriptionProperties(true, 3, Duration.ofMillis(20), 10, SubscriptionInterval.SUBSCRIPTION_INTERVAL_ONE_MINUTE);
+        try (SubscriptionManager manager = SubscriptionManager.create(api.getChannel(), List.of(), background).start()) {
+            manager.trades(SyntheticMarketData.instrumentUid(0), this::record);
+            manager.trades(SyntheticMarketData.instrumentUid(4), this::record);
+            manager.flush();
+            await(() -> fake.marketData().subscriptionCount() == 2);
+
+            // сервер закрывает стрим без ошибки
+            fake.marketData().completeAll();
+            await(() -> manager.reconnectCount() == 1 && fake.marketData().subscriptionCount() == 2);
+            assertThat(fake.marketData().streamCount()).isEqualTo(1);
+
+            publishTrade(4);
+            await(() -> received.size() == 1);
+            assertThat(received).containsExactly("trade:" + SyntheticMarketData.instrumentUid(4));
+        }
+    }
+
+    private void publishTrade(int instrument) {
+        fake.marketData().publish(MarketDataResponse.newBuilder().setTrade(data.trade(instrument, EpochClock.nanos())).build());
+    }
+
+    private void record(Trade trade) {
+        received.add("trade:" + trade.getInstrumentUid());
+    }
+
+    private void record(LastPrice lastPrice) {
+        received.add("last:" + lastPrice.getInstrumentUid());
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("условие не выполнилось за 10 секунд").isLessThan(deadline);
+            Thread.sleep(5);
+        }
+    }
+}